@@ -0,0 +1,199 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BenchmarkFixtures.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Creates the synthetic scenarios of the benchmarks. All fixtures only depend on their parameters and
+ * the seed, so every run of a benchmark works on exactly the same data.
+ */
+final class BenchmarkFixtures {
+
+	static final long SEED = 4711;
+	static final double GRID_SPACING = 500.0;
+
+	private BenchmarkFixtures() {
+	}
+
+	static Scenario createScenario() {
+		Config config = ConfigUtils.createConfig();
+		config.global().setRandomSeed(SEED);
+		return ScenarioUtils.createScenario(config);
+	}
+
+	/**
+	 * Adds a square grid with <code>size</code> x <code>size</code> nodes, connected by links in both directions.
+	 * The id of the node in row r and column c is <code>r_c</code>.
+	 */
+	static void createGridNetwork(Network network, int size) {
+		Node[][] nodes = new Node[size][size];
+		for (int r = 0; r < size; r++) {
+			for (int c = 0; c < size; c++) {
+				nodes[r][c] = NetworkUtils.createAndAddNode(network, getNodeId(r, c), new Coord(c * GRID_SPACING, r * GRID_SPACING));
+			}
+		}
+		for (int r = 0; r < size; r++) {
+			for (int c = 0; c < size; c++) {
+				if (c + 1 < size) {
+					addLinks(network, nodes[r][c], nodes[r][c + 1]);
+				}
+				if (r + 1 < size) {
+					addLinks(network, nodes[r][c], nodes[r + 1][c]);
+				}
+			}
+		}
+	}
+
+	private static void addLinks(Network network, Node a, Node b) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, GRID_SPACING, 13.89, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, GRID_SPACING, 13.89, 1000, 1);
+	}
+
+	static Id<Node> getNodeId(int row, int column) {
+		return Id.createNodeId(row + "_" + column);
+	}
+
+	/**
+	 * Adds persons with a home - work - home plan by car between random locations of the area of the grid.
+	 * The legs are not routed.
+	 */
+	static void createPopulation(Population population, int numberOfPersons, int gridSize) {
+		Random random = new Random(SEED);
+		PopulationFactory pf = population.getFactory();
+		double extent = (gridSize - 1) * GRID_SPACING;
+		for (int i = 0; i < numberOfPersons; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Coord home = new Coord(random.nextDouble() * extent, random.nextDouble() * extent);
+			Coord work = new Coord(random.nextDouble() * extent, random.nextDouble() * extent);
+			Activity morning = pf.createActivityFromCoord("home", home);
+			morning.setEndTime(6 * 3600 + random.nextDouble() * 3 * 3600);
+			plan.addActivity(morning);
+			plan.addLeg(pf.createLeg(TransportMode.car));
+			Activity activity = pf.createActivityFromCoord("work", work);
+			activity.setEndTime(15 * 3600 + random.nextDouble() * 4 * 3600);
+			plan.addActivity(activity);
+			plan.addLeg(pf.createLeg(TransportMode.car));
+			plan.addActivity(pf.createActivityFromCoord("home", home));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+	}
+
+	/**
+	 * Routes the plans and creates the vehicles, as before the mobsim of an iteration.
+	 */
+	static void prepareForSim(Scenario scenario) {
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+	}
+
+	/**
+	 * Adds bus lines along every <code>lineSpacing</code>-th row and column of a grid created with
+	 * {@link #createGridNetwork(Network, int)}, in both directions, with a stop at every node they pass and a
+	 * departure every <code>headway</code> seconds between 5:00 and 23:00.
+	 */
+	static void createGridSchedule(TransitSchedule schedule, Network network, int gridSize, int lineSpacing, double headway) {
+		TransitScheduleFactory f = schedule.getFactory();
+		TransitStopFacility[][] stops = new TransitStopFacility[gridSize][gridSize];
+		for (int r = 0; r < gridSize; r++) {
+			for (int c = 0; c < gridSize; c++) {
+				if (r % lineSpacing == 0 || c % lineSpacing == 0) {
+					Node node = network.getNodes().get(getNodeId(r, c));
+					stops[r][c] = f.createTransitStopFacility(Id.create(node.getId(), TransitStopFacility.class), node.getCoord(), false);
+					stops[r][c].setLinkId(node.getInLinks().keySet().iterator().next());
+					schedule.addStopFacility(stops[r][c]);
+				}
+			}
+		}
+		for (int i = 0; i < gridSize; i += lineSpacing) {
+			List<int[]> row = new ArrayList<>();
+			List<int[]> column = new ArrayList<>();
+			for (int j = 0; j < gridSize; j++) {
+				row.add(new int[] { i, j });
+				column.add(new int[] { j, i });
+			}
+			addLine(schedule, network, stops, "row" + i, row, headway);
+			addLine(schedule, network, stops, "column" + i, column, headway);
+		}
+	}
+
+	private static void addLine(TransitSchedule schedule, Network network, TransitStopFacility[][] stops, String name, List<int[]> nodes, double headway) {
+		TransitScheduleFactory f = schedule.getFactory();
+		TransitLine line = f.createTransitLine(Id.create(name, TransitLine.class));
+		for (int direction = 0; direction < 2; direction++) {
+			List<int[]> path = new ArrayList<>(nodes);
+			if (direction == 1) {
+				Collections.reverse(path);
+			}
+			List<Id<Link>> linkIds = new ArrayList<>();
+			List<TransitRouteStop> routeStops = new ArrayList<>();
+			double travelTime = GRID_SPACING / 10.0;
+			for (int k = 0; k < path.size(); k++) {
+				int[] node = path.get(k);
+				if (k > 0) {
+					int[] previous = path.get(k - 1);
+					linkIds.add(Id.createLinkId(getNodeId(previous[0], previous[1]) + "-" + getNodeId(node[0], node[1])));
+				}
+				double offset = k * (travelTime + 20);
+				routeStops.add(f.createTransitRouteStop(stops[node[0]][node[1]], offset, offset + 20));
+			}
+			NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(linkIds.get(0), linkIds.subList(1, linkIds.size() - 1), linkIds.get(linkIds.size() - 1));
+			TransitRoute route = f.createTransitRoute(Id.create(name + "_" + direction, TransitRoute.class), networkRoute, routeStops, "bus");
+			int departureIndex = 0;
+			for (double time = 5 * 3600; time < 23 * 3600; time += headway) {
+				route.addDeparture(f.createDeparture(Id.create(name + "_" + direction + "_" + departureIndex++, Departure.class), time));
+			}
+			line.addRoute(route);
+		}
+		schedule.addTransitLine(line);
+	}
+
+}
@@ -0,0 +1,49 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BenchmarkSuite.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of this module and writes the results as JSON, so they can be collected
+ * and compared over time.
+ * <p></p>
+ * Usage: <code>BenchmarkSuite [result-file [benchmark-regexp]]</code>. By default, all benchmarks are run and the
+ * results are written to <code>benchmark-results.json</code>. For other options (e.g. fewer iterations), use
+ * <code>org.openjdk.jmh.Main</code> with <code>-rf json -rff result-file</code> directly.
+ */
+public class BenchmarkSuite {
+
+	public static void main(String[] args) throws RunnerException {
+		String resultFile = args.length > 0 ? args[0] : "benchmark-results.json";
+		String include = args.length > 1 ? args[1] : BenchmarkSuite.class.getPackage().getName() + ".*";
+		Options options = new OptionsBuilder()
+				.include(include)
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile)
+				.build();
+		new Runner(options).run();
+	}
+
+}
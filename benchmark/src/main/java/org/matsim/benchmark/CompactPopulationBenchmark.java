@@ -0,0 +1,172 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPopulationBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares populations with standard plans and with compact plans
+ * (see {@link PlansConfigGroup#isCompactPlans()}). Every person has 5 plans with 4 activities and 3 car legs
+ * with routes of 30 links.
+ * <p></p>
+ * The benchmarks measure creating (and compacting) a population and reading all plan elements and routes of it.
+ * The heap retained by the population is logged once per fork in the setup. Run with <code>-prof gc</code> to
+ * also see the allocations per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactPopulationBenchmark {
+
+	private static final Logger log = Logger.getLogger(CompactPopulationBenchmark.class);
+
+	private static final int NUMBER_OF_LINKS = 10_000;
+	private static final String[] ACTIVITY_TYPES = { "home", "work", "shop", "leisure" };
+
+	@Param({"false", "true"})
+	public boolean compactPlans;
+
+	@Param({"20000"})
+	public int numberOfPersons;
+
+	private Population population;
+
+	@Setup
+	public void setup() {
+		for (int l = 0; l < NUMBER_OF_LINKS; l++) {
+			Id.createLinkId(l);
+		}
+		long before = usedMemory();
+		this.population = createPopulation();
+		long after = usedMemory();
+		log.info(String.format(Locale.ROOT, "%s plans: %d persons, %.1f MB, %.0f bytes per person",
+				this.compactPlans ? "compact" : "standard", this.population.getPersons().size(),
+				(after - before) / 1024.0 / 1024.0, (after - before) / (double) this.numberOfPersons));
+	}
+
+	@Benchmark
+	public Population createPopulation() {
+		Config config = ConfigUtils.createConfig();
+		config.plans().setCompactPlans(this.compactPlans);
+		if (this.compactPlans) {
+			config.plans().setNetworkRouteType(PlansConfigGroup.NetworkRouteType.CompactNetworkRoute);
+		}
+		Population population = PopulationUtils.createPopulation(config);
+		PopulationFactory pf = population.getFactory();
+		Random random = new Random(BenchmarkFixtures.SEED);
+		for (int i = 0; i < this.numberOfPersons; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			for (int p = 0; p < 5; p++) {
+				Plan plan = pf.createPlan();
+				plan.setScore(random.nextDouble());
+				person.addPlan(plan);
+				for (int a = 0; a < ACTIVITY_TYPES.length; a++) {
+					// new strings, as read from a file
+					Activity act = pf.createActivityFromCoord(new String(ACTIVITY_TYPES[a]), new Coord(random.nextInt(100_000), random.nextInt(100_000)));
+					act.setLinkId(Id.createLinkId(random.nextInt(NUMBER_OF_LINKS)));
+					act.setEndTime(6 * 3600 + a * 3 * 3600);
+					plan.addActivity(act);
+					if (a < ACTIVITY_TYPES.length - 1) {
+						Leg leg = pf.createLeg(new String(TransportMode.car));
+						leg.setDepartureTime(act.getEndTime().seconds());
+						leg.setTravelTime(random.nextInt(3600));
+						NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, act.getLinkId(), Id.createLinkId(random.nextInt(NUMBER_OF_LINKS)));
+						List<Id<Link>> links = new ArrayList<>(30);
+						for (int l = 0; l < 30; l++) {
+							links.add(Id.createLinkId(random.nextInt(NUMBER_OF_LINKS)));
+						}
+						route.setLinkIds(route.getStartLinkId(), links, route.getEndLinkId());
+						route.setDistance(random.nextInt(20_000));
+						route.setTravelTime(leg.getTravelTime().seconds());
+						leg.setRoute(route);
+						plan.addLeg(leg);
+					}
+				}
+			}
+			population.addPerson(person);
+			PopulationUtils.compactPlans(person);
+		}
+		return population;
+	}
+
+	@Benchmark
+	public long readPlans() {
+		long sum = 0;
+		for (Person person : this.population.getPersons().values()) {
+			for (Plan plan : person.getPlans()) {
+				for (PlanElement pe : plan.getPlanElements()) {
+					if (pe instanceof Leg) {
+						for (Id<Link> linkId : ((NetworkRoute) ((Leg) pe).getRoute()).getLinkIds()) {
+							sum += linkId.index();
+						}
+					} else {
+						sum += ((Activity) pe).getLinkId().index();
+					}
+				}
+			}
+		}
+		return sum;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
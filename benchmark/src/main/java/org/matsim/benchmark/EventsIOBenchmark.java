@@ -0,0 +1,121 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsIOBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing events with {@link EventWriterXML} and reading them with {@link MatsimEventsReader}.
+ * The xml is kept in memory, so the results do not depend on the disk.
+ * The scores are events files per second; divide by <code>numberOfEvents</code> for events per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventsIOBenchmark {
+
+	@Param({"200000"})
+	public int numberOfEvents;
+
+	private Event[] events;
+	private byte[] xml;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkFixtures.SEED);
+		this.events = new Event[this.numberOfEvents];
+		double time = 0;
+		for (int i = 0; i < this.numberOfEvents; i += 2) {
+			Id<Vehicle> vehicleId = Id.createVehicleId("eio" + random.nextInt(10000));
+			Id<Link> linkId = Id.createLinkId("eio" + random.nextInt(50000));
+			time += random.nextDouble();
+			this.events[i] = new LinkEnterEvent(time, vehicleId, linkId);
+			if (i + 1 < this.numberOfEvents) {
+				this.events[i + 1] = new LinkLeaveEvent(time + 10, vehicleId, linkId);
+			}
+		}
+		this.xml = write().toByteArray();
+	}
+
+	private ByteArrayOutputStream write() {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(this.numberOfEvents * 120);
+		EventWriterXML writer = new EventWriterXML(stream);
+		for (Event event : this.events) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+		return stream;
+	}
+
+	@Benchmark
+	public int writeEvents() {
+		return write().size();
+	}
+
+	@State(Scope.Benchmark)
+	public static class ReaderOptions {
+		@Param({"false", "true"})
+		public boolean parallelXmlParsing;
+	}
+
+	@Benchmark
+	public long readEvents(ReaderOptions options) {
+		EventsManager eventsManager = new EventsManagerImpl();
+		long[] count = new long[1];
+		eventsManager.addHandler((BasicEventHandler) event -> count[0]++);
+		MatsimEventsReader reader = new MatsimEventsReader(eventsManager);
+		reader.setParallelXmlParsing(options.parallelXmlParsing);
+		eventsManager.initProcessing();
+		reader.readStream(new ByteArrayInputStream(this.xml), ControlerConfigGroup.EventsFileFormat.xml);
+		eventsManager.finishProcessing();
+		return count[0];
+	}
+
+}
@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+/**
+ * Compares the throughput of the sequential and the parallel xml events reader.
+ * Usage: <code>EventsReaderBenchmark events-file [rounds]</code>
+ */
+public class EventsReaderBenchmark {
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("usage: EventsReaderBenchmark events-file [rounds]");
+			System.exit(1);
+		}
+		String eventsFile = args[0];
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		// first round is warm-up
+		for (int round = 0; round <= rounds; round++) {
+			String prefix = round == 0 ? "warm-up " : "round " + round + " ";
+			System.out.println(prefix + "sequential: " + run(eventsFile, false));
+			System.out.println(prefix + "parallel:   " + run(eventsFile, true));
+		}
+	}
+
+	private static String run(String eventsFile, boolean parallel) {
+		EventsManager events = new EventsManagerImpl();
+		long[] count = new long[1];
+		events.addHandler((BasicEventHandler) event -> count[0]++);
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.setParallelXmlParsing(parallel);
+
+		long start = System.nanoTime();
+		events.initProcessing();
+		reader.readFile(eventsFile);
+		events.finishProcessing();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		return String.format("%d events in %.2f s, %.0f events/s", count[0], seconds, count[0] / seconds);
+	}
+
+}
@@ -0,0 +1,107 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LeastCostPathCalculatorBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.FastAStarLandmarksFactory;
+import org.matsim.core.router.FastDijkstraFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures single car route queries between random nodes of a grid network.
+ * The preprocessing of the routers (e.g. the landmarks) is done once in the setup and not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LeastCostPathCalculatorBenchmark {
+
+	private static final int NUMBER_OF_QUERIES = 1000;
+
+	@Param({"FastDijkstra", "FastAStarLandmarks"})
+	public String router;
+
+	@Param({"100"})
+	public int gridSize;
+
+	private LeastCostPathCalculator calculator;
+	private Node[] fromNodes;
+	private Node[] toNodes;
+	private int query = 0;
+
+	@Setup
+	public void setup() {
+		Network network = NetworkUtils.createNetwork();
+		BenchmarkFixtures.createGridNetwork(network, this.gridSize);
+
+		LeastCostPathCalculatorFactory factory;
+		switch (this.router) {
+			case "FastDijkstra":
+				factory = new FastDijkstraFactory(false);
+				break;
+			case "FastAStarLandmarks":
+				factory = new FastAStarLandmarksFactory(1);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown router: " + this.router);
+		}
+		FreeSpeedTravelTime travelTime = new FreeSpeedTravelTime();
+		this.calculator = factory.createPathCalculator(network, new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
+
+		Random random = new Random(BenchmarkFixtures.SEED);
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		this.fromNodes = new Node[NUMBER_OF_QUERIES];
+		this.toNodes = new Node[NUMBER_OF_QUERIES];
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			this.fromNodes[i] = nodes[random.nextInt(nodes.length)];
+			this.toNodes[i] = nodes[random.nextInt(nodes.length)];
+		}
+	}
+
+	@Benchmark
+	public LeastCostPathCalculator.Path calcLeastCostPath() {
+		int i = this.query;
+		this.query = (i + 1) % NUMBER_OF_QUERIES;
+		return this.calculator.calcLeastCostPath(this.fromNodes[i], this.toNodes[i], 8 * 3600, null, null);
+	}
+
+}
@@ -0,0 +1,96 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MobsimBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.hermes.HermesProvider;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long the QSim and Hermes take to simulate one day of car traffic on a grid network,
+ * including the processing of the events. The scenario is routed once in the setup.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MobsimBenchmark {
+
+	@Param({"qsim", "hermes"})
+	public String mobsim;
+
+	@Param({"40"})
+	public int gridSize;
+
+	@Param({"20000"})
+	public int numberOfPersons;
+
+	private Scenario scenario;
+
+	@Setup
+	public void setup() {
+		this.scenario = BenchmarkFixtures.createScenario();
+		this.scenario.getConfig().global().setNumberOfThreads(1);
+		this.scenario.getConfig().qsim().setNumberOfThreads(1);
+		BenchmarkFixtures.createGridNetwork(this.scenario.getNetwork(), this.gridSize);
+		BenchmarkFixtures.createPopulation(this.scenario.getPopulation(), this.numberOfPersons, this.gridSize);
+		BenchmarkFixtures.prepareForSim(this.scenario);
+	}
+
+	@Benchmark
+	public long runMobsim() {
+		EventsManager events = EventsUtils.createEventsManager();
+		long[] count = new long[1];
+		events.addHandler((BasicEventHandler) event -> count[0]++);
+		Mobsim sim;
+		switch (this.mobsim) {
+			case "qsim":
+				sim = new QSimBuilder(this.scenario.getConfig()).useDefaults().build(this.scenario, events);
+				break;
+			case "hermes":
+				sim = new HermesProvider(this.scenario, events).get();
+				break;
+			default:
+				throw new IllegalArgumentException("unknown mobsim: " + this.mobsim);
+		}
+		sim.run();
+		return count[0];
+	}
+
+}
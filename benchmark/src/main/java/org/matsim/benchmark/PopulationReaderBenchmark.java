@@ -0,0 +1,77 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PopulationReaderBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.population.io.PopulationWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing a population in the v6 format with the {@link PopulationReader}.
+ * The plans are routed, so the file contains network routes like a typical output population.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PopulationReaderBenchmark {
+
+	@Param({"20000"})
+	public int numberOfPersons;
+
+	private byte[] xml;
+
+	@Setup
+	public void setup() {
+		Scenario scenario = BenchmarkFixtures.createScenario();
+		BenchmarkFixtures.createGridNetwork(scenario.getNetwork(), 50);
+		BenchmarkFixtures.createPopulation(scenario.getPopulation(), this.numberOfPersons, 50);
+		BenchmarkFixtures.prepareForSim(scenario);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new PopulationWriter(scenario.getPopulation(), scenario.getNetwork()).writeV6(stream);
+		this.xml = stream.toByteArray();
+	}
+
+	@Benchmark
+	public Scenario readPopulation() {
+		Scenario scenario = BenchmarkFixtures.createScenario();
+		PopulationReader reader = new PopulationReader(scenario);
+		reader.parse(new ByteArrayInputStream(this.xml));
+		return scenario;
+	}
+
+}
@@ -0,0 +1,97 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QuadTreeBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.core.utils.collections.QuadTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link QuadTree#getClosest} and {@link QuadTree#getDisk} on uniformly distributed points.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuadTreeBenchmark {
+
+	private static final int NUMBER_OF_QUERIES = 4096;
+	private static final double EXTENT = 50000;
+
+	@Param({"1000000"})
+	public int numberOfPoints;
+
+	@Param({"500"})
+	public double diskRadius;
+
+	private QuadTree<Integer> quadTree;
+	private double[] queryX;
+	private double[] queryY;
+	private int query = 0;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkFixtures.SEED);
+		this.quadTree = new QuadTree<>(0, 0, EXTENT, EXTENT);
+		for (int i = 0; i < this.numberOfPoints; i++) {
+			this.quadTree.put(random.nextDouble() * EXTENT, random.nextDouble() * EXTENT, i);
+		}
+		this.queryX = new double[NUMBER_OF_QUERIES];
+		this.queryY = new double[NUMBER_OF_QUERIES];
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			this.queryX[i] = random.nextDouble() * EXTENT;
+			this.queryY[i] = random.nextDouble() * EXTENT;
+		}
+	}
+
+	private int nextQuery() {
+		int i = this.query;
+		this.query = (i + 1) % NUMBER_OF_QUERIES;
+		return i;
+	}
+
+	@Benchmark
+	public Integer getClosest() {
+		int i = nextQuery();
+		return this.quadTree.getClosest(this.queryX[i], this.queryY[i]);
+	}
+
+	@Benchmark
+	public Collection<Integer> getDisk() {
+		int i = nextQuery();
+		return this.quadTree.getDisk(this.queryX[i], this.queryY[i], this.diskRadius);
+	}
+
+}
@@ -0,0 +1,245 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SwissRailRaptorBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scoring.functions.SubpopulationScoringParameters;
+import org.matsim.facilities.FacilitiesUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+import org.matsim.vehicles.Vehicles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.sbb.matsim.routing.pt.raptor.CapacityDependentInVehicleCostCalculator;
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorInVehicleCostCalculator;
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorIntermodalAccessEgress;
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorParametersForPerson;
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorStopFinder;
+import ch.sbb.matsim.routing.pt.raptor.LeastCostRaptorRouteSelector;
+import ch.sbb.matsim.routing.pt.raptor.OccupancyData;
+import ch.sbb.matsim.routing.pt.raptor.OccupancyTracker;
+import ch.sbb.matsim.routing.pt.raptor.RaptorInVehicleCostCalculator;
+import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
+import ch.sbb.matsim.routing.pt.raptor.RaptorStaticConfig;
+import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorCore;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
+
+/**
+ * Measures {@link SwissRailRaptor#calcRoute} between random coordinates and {@link SwissRailRaptor#calcTree}
+ * from random stops, on a grid of bus lines with a departure every 10 minutes.
+ *
+ * With <code>capacityAware</code>, the router uses capacity constraints and the {@link CapacityDependentInVehicleCostCalculator},
+ * based on the occupancy of a simulated day recorded by an {@link OccupancyTracker}. Comparing the two settings shows
+ * the overhead of capacity-aware routing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SwissRailRaptorBenchmark {
+
+	private static final int NUMBER_OF_QUERIES = 1000;
+
+	@Param({"60"})
+	public int gridSize;
+
+	@Param({"4"})
+	public int lineSpacing;
+
+	@Param({"false", "true"})
+	public boolean capacityAware;
+
+	private SwissRailRaptor raptor;
+	private RaptorParameters parameters;
+	private Facility[] fromFacilities;
+	private Facility[] toFacilities;
+	private TransitStopFacility[] fromStops;
+	private double[] departureTimes;
+	private int query = 0;
+
+	@Setup
+	public void setup() {
+		Scenario scenario = BenchmarkFixtures.createScenario();
+		Config config = scenario.getConfig();
+		BenchmarkFixtures.createGridNetwork(scenario.getNetwork(), this.gridSize);
+		BenchmarkFixtures.createGridSchedule(scenario.getTransitSchedule(), scenario.getNetwork(), this.gridSize, this.lineSpacing, 600);
+
+		RaptorStaticConfig staticConfig = RaptorUtils.createStaticConfig(config);
+		OccupancyData occupancyData = null;
+		RaptorInVehicleCostCalculator inVehicleCostCalculator = new DefaultRaptorInVehicleCostCalculator();
+		if (this.capacityAware) {
+			createTransitVehicles(scenario);
+			occupancyData = new OccupancyData();
+			OccupancyTracker tracker = new OccupancyTracker(occupancyData, scenario, new DefaultRaptorInVehicleCostCalculator(), EventsUtils.createEventsManager(), new SubpopulationScoringParameters(scenario));
+			simulateOccupancy(scenario, tracker);
+			staticConfig.setUseCapacityConstraints(true);
+			inVehicleCostCalculator = new CapacityDependentInVehicleCostCalculator();
+		}
+
+		SwissRailRaptorData data = SwissRailRaptorData.create(scenario.getTransitSchedule(), scenario.getTransitVehicles(), staticConfig, scenario.getNetwork(), occupancyData);
+		DefaultRaptorStopFinder stopFinder = new DefaultRaptorStopFinder(new DefaultRaptorIntermodalAccessEgress(), null);
+		this.raptor = new SwissRailRaptor(data, new DefaultRaptorParametersForPerson(config), new LeastCostRaptorRouteSelector(), stopFinder, inVehicleCostCalculator);
+		this.parameters = RaptorUtils.createParameters(config);
+
+		Random random = new Random(BenchmarkFixtures.SEED);
+		double extent = (this.gridSize - 1) * BenchmarkFixtures.GRID_SPACING;
+		TransitStopFacility[] stops = scenario.getTransitSchedule().getFacilities().values().toArray(new TransitStopFacility[0]);
+		this.fromFacilities = new Facility[NUMBER_OF_QUERIES];
+		this.toFacilities = new Facility[NUMBER_OF_QUERIES];
+		this.fromStops = new TransitStopFacility[NUMBER_OF_QUERIES];
+		this.departureTimes = new double[NUMBER_OF_QUERIES];
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			Coord from = new Coord(random.nextDouble() * extent, random.nextDouble() * extent);
+			Coord to = new Coord(random.nextDouble() * extent, random.nextDouble() * extent);
+			this.fromFacilities[i] = FacilitiesUtils.wrapLinkAndCoord(NetworkUtils.getNearestLink(scenario.getNetwork(), from), from);
+			this.toFacilities[i] = FacilitiesUtils.wrapLinkAndCoord(NetworkUtils.getNearestLink(scenario.getNetwork(), to), to);
+			this.fromStops[i] = stops[random.nextInt(stops.length)];
+			this.departureTimes[i] = 6 * 3600 + random.nextDouble() * 12 * 3600;
+		}
+	}
+
+	private static void createTransitVehicles(Scenario scenario) {
+		Vehicles vehicles = scenario.getTransitVehicles();
+		VehicleType busType = VehicleUtils.createVehicleType(Id.create("bus", VehicleType.class));
+		busType.getCapacity().setSeats(40);
+		busType.getCapacity().setStandingRoom(40);
+		vehicles.addVehicleType(busType);
+		for (TransitLine line : scenario.getTransitSchedule().getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				for (Departure departure : route.getDepartures().values()) {
+					Id<Vehicle> vehicleId = Id.create(departure.getId(), Vehicle.class);
+					departure.setVehicleId(vehicleId);
+					vehicles.addVehicle(VehicleUtils.createVehicle(vehicleId, busType));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes the events of a day to the tracker, in which up to 6 passengers board and alight at every stop of every departure.
+	 */
+	private static void simulateOccupancy(Scenario scenario, OccupancyTracker tracker) {
+		Population population = scenario.getPopulation();
+		Id<Person>[] passengers = new Id[1000];
+		for (int i = 0; i < passengers.length; i++) {
+			passengers[i] = Id.create("passenger_" + i, Person.class);
+			population.addPerson(population.getFactory().createPerson(passengers[i]));
+		}
+		Random random = new Random(BenchmarkFixtures.SEED);
+		int nextPassenger = 0;
+		for (TransitLine line : scenario.getTransitSchedule().getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				List<TransitRouteStop> stops = route.getStops();
+				for (Departure departure : route.getDepartures().values()) {
+					Id<Vehicle> vehicleId = departure.getVehicleId();
+					double depTime = departure.getDepartureTime();
+					Id<Person> driverId = Id.create("driver_" + vehicleId, Person.class);
+					tracker.handleEvent(new TransitDriverStartsEvent(depTime, driverId, vehicleId, line.getId(), route.getId(), departure.getId()));
+					Deque<Id<Person>> onboard = new ArrayDeque<>();
+					for (int k = 0; k < stops.size(); k++) {
+						TransitStopFacility stop = stops.get(k).getStopFacility();
+						double arrTime = depTime + stops.get(k).getArrivalOffset().seconds();
+						tracker.handleEvent(new VehicleArrivesAtFacilityEvent(arrTime, vehicleId, stop.getId(), 0));
+						int alighting = k == stops.size() - 1 ? onboard.size() : Math.min(onboard.size(), random.nextInt(7));
+						for (int i = 0; i < alighting; i++) {
+							tracker.handleEvent(new PersonLeavesVehicleEvent(arrTime, onboard.poll(), vehicleId));
+						}
+						if (k < stops.size() - 1) {
+							int boarding = random.nextInt(7);
+							for (int i = 0; i < boarding; i++) {
+								Id<Person> passengerId = passengers[nextPassenger];
+								nextPassenger = (nextPassenger + 1) % passengers.length;
+								double waitStart = arrTime - random.nextInt(600);
+								tracker.handleEvent(new PersonDepartureEvent(waitStart, passengerId, stop.getLinkId(), TransportMode.pt));
+								tracker.handleEvent(new AgentWaitingForPtEvent(waitStart, passengerId, stop.getId(), stops.get(stops.size() - 1).getStopFacility().getId()));
+								tracker.handleEvent(new PersonEntersVehicleEvent(arrTime, passengerId, vehicleId));
+								onboard.add(passengerId);
+							}
+							tracker.handleEvent(new VehicleDepartsAtFacilityEvent(depTime + stops.get(k).getDepartureOffset().seconds(), vehicleId, stop.getId(), 0));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private int nextQuery() {
+		int i = this.query;
+		this.query = (i + 1) % NUMBER_OF_QUERIES;
+		return i;
+	}
+
+	@Benchmark
+	public List<Leg> calcRoute() {
+		int i = nextQuery();
+		return this.raptor.calcRoute(this.fromFacilities[i], this.toFacilities[i], this.departureTimes[i], null);
+	}
+
+	@Benchmark
+	public Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo> calcTree() {
+		int i = nextQuery();
+		return this.raptor.calcTree(this.fromStops[i], this.departureTimes[i], this.parameters, null);
+	}
+
+}
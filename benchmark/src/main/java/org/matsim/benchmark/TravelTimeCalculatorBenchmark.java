@@ -0,0 +1,137 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeCalculatorBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares how fast the {@link TravelTimeCalculator} handles link enter and leave events with the different
+ * ways to store the travel times, see {@link TravelTimeCalculatorType}.
+ * <p></p>
+ * The events are created once for a synthetic network: every vehicle drives along a random sequence of links.
+ * Usage: <code>TravelTimeCalculatorBenchmark</code>, or with the JMH command line options.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TravelTimeCalculatorBenchmark {
+
+	private static final int NUMBER_OF_LINKS = 10000;
+	private static final int NUMBER_OF_VEHICLES = 5000;
+	private static final int LINKS_PER_VEHICLE = 40;
+
+	@Param({"TravelTimeCalculatorArray", "TravelTimeCalculatorHashMap", "TravelTimeCalculatorConcurrentArray"})
+	public String travelTimeCalculatorType;
+
+	private TravelTimeCalculator travelTimeCalculator;
+	private LinkEnterEvent[] enterEvents;
+	private LinkLeaveEvent[] leaveEvents;
+
+	@Setup
+	public void setup() {
+		Network network = NetworkUtils.createNetwork();
+		Node[] nodes = new Node[NUMBER_OF_LINKS / 2 + 1];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.createNodeId("ttcb" + i), new Coord(i * 100, 0));
+		}
+		Link[] links = new Link[NUMBER_OF_LINKS];
+		for (int i = 0; i < NUMBER_OF_LINKS; i++) {
+			Node from = nodes[i / 2];
+			Node to = nodes[i / 2 + 1];
+			links[i] = NetworkUtils.createAndAddLink(network, Id.createLinkId("ttcb" + i), (i % 2 == 0) ? from : to, (i % 2 == 0) ? to : from, 100, 10, 1000, 1);
+		}
+
+		Random random = new Random(4711);
+		this.enterEvents = new LinkEnterEvent[NUMBER_OF_VEHICLES * LINKS_PER_VEHICLE];
+		this.leaveEvents = new LinkLeaveEvent[NUMBER_OF_VEHICLES * LINKS_PER_VEHICLE];
+		int index = 0;
+		for (int v = 0; v < NUMBER_OF_VEHICLES; v++) {
+			Id<Vehicle> vehicleId = Id.createVehicleId("ttcb" + v);
+			double time = 5 * 3600 + random.nextDouble() * 14 * 3600;
+			for (int l = 0; l < LINKS_PER_VEHICLE; l++) {
+				Id<Link> linkId = links[random.nextInt(NUMBER_OF_LINKS)].getId();
+				double travelTime = 10 + random.nextDouble() * 60;
+				this.enterEvents[index] = new LinkEnterEvent(time, vehicleId, linkId);
+				this.leaveEvents[index] = new LinkLeaveEvent(time + travelTime, vehicleId, linkId);
+				time += travelTime;
+				index++;
+			}
+		}
+
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTravelTimeCalculatorType(this.travelTimeCalculatorType);
+		TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(network);
+		builder.setTimeslice(config.getTraveltimeBinSize());
+		builder.setMaxTime(config.getMaxTime());
+		builder.configure(config);
+		this.travelTimeCalculator = builder.build();
+	}
+
+	@Benchmark
+	public int handleEvents() {
+		TravelTimeCalculator calculator = this.travelTimeCalculator;
+		calculator.reset(0);
+		for (int i = 0; i < this.enterEvents.length; i++) {
+			calculator.handleEvent(this.enterEvents[i]);
+			calculator.handleEvent(this.leaveEvents[i]);
+		}
+		return this.enterEvents.length;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(TravelTimeCalculatorBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+
+}
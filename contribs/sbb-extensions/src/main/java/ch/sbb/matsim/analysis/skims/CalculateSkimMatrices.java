@@ -11,8 +11,10 @@ import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -94,6 +96,7 @@ public class CalculateSkimMatrices {
     private final String outputDirectory;
     private final int numberOfThreads;
     private Map<String, Coord[]> coordsPerZone = null;
+    private boolean writeBinaryMatrices = false;
 
     public CalculateSkimMatrices(String outputDirectory, int numberOfThreads) {
         this.outputDirectory = outputDirectory;
@@ -113,6 +116,28 @@ public class CalculateSkimMatrices {
         this.numberOfThreads = numberOfThreads;
     }
 
+    /**
+     * If set to <code>true</code>, the matrices are written in the binary format which can be memory-mapped with {@link MappedFloatMatrix},
+     * with the file extension <code>.bin</code> instead of <code>.csv.gz</code>. Use {@link FloatMatrixIO#convertBinaryToCSV} to convert them.
+     * <p>
+     * The network and PT matrices are then written row by row while they are calculated, so they never have to fit into memory.
+     */
+    public void setWriteBinaryMatrices(boolean writeBinaryMatrices) {
+        this.writeBinaryMatrices = writeBinaryMatrices;
+    }
+
+    private <T> void writeMatrix(FloatMatrix<T> matrix, String filename) throws IOException {
+        if (this.writeBinaryMatrices) {
+            FloatMatrixIO.writeAsBinary(matrix, getBinaryFilename(filename));
+        } else {
+            FloatMatrixIO.writeAsCSV(matrix, filename);
+        }
+    }
+
+    private static String getBinaryFilename(String filename) {
+        return filename.replace(".csv.gz", ".bin");
+    }
+
     private static <T> void combineMatrices(FloatMatrix<T> matrix1, FloatMatrix<T> matrix2) {
         Set<T> ids = matrix2.id2index.keySet();
         for (T fromId : ids) {
@@ -316,7 +341,7 @@ public class CalculateSkimMatrices {
         FloatMatrix<String> beelineMatrix = BeelineDistanceMatrix.calculateBeelineDistanceMatrix(this.coordsPerZone.keySet(), coordsPerZone, numberOfThreads);
 
         log.info("write beeline distance matrix to " + outputDirectory);
-        FloatMatrixIO.writeAsCSV(beelineMatrix, outputDirectory + "/" + BEELINE_DISTANCE_FILENAME);
+        writeMatrix(beelineMatrix, outputDirectory + "/" + BEELINE_DISTANCE_FILENAME);
     }
 
     public final void calculateNetworkMatrices(String networkFilename, String eventsFilename, double[] times, Config config, String outputPrefix, Predicate<Link> xy2linksPredicate)
@@ -349,6 +374,24 @@ public class CalculateSkimMatrices {
         log.info("filter car-only network for assigning links to locations");
         final Network xy2linksNetwork = extractXy2LinksNetwork(carNetwork, xy2linksPredicate);
 
+        if (this.writeBinaryMatrices) {
+            double[] departureTimes = tt instanceof FreeSpeedTravelTime ? new double[] {times[0]} : times;
+            log.info("calc CAR matrices for " + departureTimes.length + " departure times and write them to " + outputDirectory + (prefix.isEmpty() ? "" : (" with prefix " + prefix)));
+            try (FloatMatrixBinaryWriter<String> travelTimeWriter = new FloatMatrixBinaryWriter<>(getBinaryFilename(outputDirectory + "/" + prefix + CAR_TRAVELTIMES_FILENAME), this.coordsPerZone.keySet());
+                    FloatMatrixBinaryWriter<String> distanceWriter = new FloatMatrixBinaryWriter<>(getBinaryFilename(outputDirectory + "/" + prefix + CAR_DISTANCES_FILENAME), this.coordsPerZone.keySet())) {
+                NetworkSkimMatrices.calculateSkimMatrices(xy2linksNetwork, carNetwork, this.coordsPerZone, departureTimes, tt, td, this.numberOfThreads,
+                        (fromZoneId, travelTimes, distances) -> {
+                            try {
+                                travelTimeWriter.writeRow(fromZoneId, travelTimes);
+                                distanceWriter.writeRow(fromZoneId, distances);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+            }
+            return;
+        }
+
         log.info("calc CAR matrix for " + Time.writeTime(times[0]));
         NetworkIndicators<String> netIndicators = NetworkSkimMatrices.calculateSkimMatrices(
                 xy2linksNetwork, carNetwork, coordsPerZone, times[0], tt, td, this.numberOfThreads);
@@ -370,8 +413,8 @@ public class CalculateSkimMatrices {
         }
 
         log.info("write CAR matrices to " + outputDirectory + (prefix.isEmpty() ? "" : (" with prefix " + prefix)));
-        FloatMatrixIO.writeAsCSV(netIndicators.travelTimeMatrix, outputDirectory + "/" + prefix + CAR_TRAVELTIMES_FILENAME);
-        FloatMatrixIO.writeAsCSV(netIndicators.distanceMatrix, outputDirectory + "/" + prefix + CAR_DISTANCES_FILENAME);
+        writeMatrix(netIndicators.travelTimeMatrix, outputDirectory + "/" + prefix + CAR_TRAVELTIMES_FILENAME);
+        writeMatrix(netIndicators.distanceMatrix, outputDirectory + "/" + prefix + CAR_DISTANCES_FILENAME);
     }
 
     private Network extractXy2LinksNetwork(Network network, Predicate<Link> xy2linksPredicate) {
@@ -406,6 +449,17 @@ public class CalculateSkimMatrices {
 
     public final void calculatePTMatrices(String networkFilename, String transitScheduleFilename, double startTime, double endTime, Config config, String outputPrefix,
             BiPredicate<TransitLine, TransitRoute> trainDetector) throws IOException {
+        calculatePTMatrices(networkFilename, transitScheduleFilename, startTime, endTime, config, outputPrefix, trainDetector, 0, false);
+    }
+
+    /**
+     * @param originPointsPerZone the number of sampling points per zone used as origins of the pt routing, all points if <code>0</code>.
+     * @param useCheckpoints if <code>true</code>, the finished rows are regularly written to a sub-directory of the output directory, and a
+     *         calculation which was interrupted continues from there when it is started again. The checkpoints are deleted once the matrices are
+     *         written, as they would also be loaded by a calculation with another schedule or other routing parameters.
+     */
+    public final void calculatePTMatrices(String networkFilename, String transitScheduleFilename, double startTime, double endTime, Config config, String outputPrefix,
+            BiPredicate<TransitLine, TransitRoute> trainDetector, int originPointsPerZone, boolean useCheckpoints) throws IOException {
         String prefix = outputPrefix == null ? "" : outputPrefix;
         Scenario scenario = ScenarioUtils.createScenario(config);
         log.info("loading schedule from " + transitScheduleFilename);
@@ -418,20 +472,43 @@ public class CalculateSkimMatrices {
         SwissRailRaptorData raptorData = SwissRailRaptorData.create(scenario.getTransitSchedule(), scenario.getTransitVehicles(), raptorConfig, scenario.getNetwork(), null);
         RaptorParameters raptorParameters = RaptorUtils.createParameters(config);
 
+        File checkpointDirectory = null;
+        if (useCheckpoints) {
+            checkpointDirectory = new File(this.outputDirectory, prefix + "pt_checkpoints_" + (int) startTime + "_" + (int) endTime);
+            log.info("PT matrices checkpoints are stored in " + checkpointDirectory.getAbsolutePath());
+        }
+
+        if (this.writeBinaryMatrices) {
+            log.info("calc PT matrices for " + Time.writeTime(startTime) + " - " + Time.writeTime(endTime) + " and write them to " + outputDirectory
+                    + (prefix.isEmpty() ? "" : (" with prefix " + prefix)));
+            try (PtMatrixWriters writers = new PtMatrixWriters(outputDirectory + "/" + prefix, this.coordsPerZone.keySet())) {
+                PTSkimMatrices.calculateSkimMatrices(raptorData, this.coordsPerZone, startTime, endTime, raptorParameters, this.numberOfThreads, originPointsPerZone,
+                        PTSkimMatrices.DEFAULT_BATCH_SIZE, checkpointDirectory, trainDetector, writers);
+            }
+            if (checkpointDirectory != null) {
+                PTSkimCheckpoints.delete(checkpointDirectory);
+            }
+            return;
+        }
+
         log.info("calc PT matrices for " + Time.writeTime(startTime) + " - " + Time.writeTime(endTime));
         PTSkimMatrices.PtIndicators<String> matrices = PTSkimMatrices.calculateSkimMatrices(
-                raptorData, this.coordsPerZone, startTime, endTime, 120, raptorParameters, this.numberOfThreads, trainDetector);
+                raptorData, this.coordsPerZone, startTime, endTime, raptorParameters, this.numberOfThreads, originPointsPerZone, PTSkimMatrices.DEFAULT_BATCH_SIZE, checkpointDirectory,
+                trainDetector);
 
         log.info("write PT matrices to " + outputDirectory + (prefix.isEmpty() ? "" : (" with prefix " + prefix)));
-        FloatMatrixIO.writeAsCSV(matrices.adaptionTimeMatrix, outputDirectory + "/" + prefix + PT_ADAPTIONTIMES_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.frequencyMatrix, outputDirectory + "/" + prefix + PT_FREQUENCIES_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.distanceMatrix, outputDirectory + "/" + prefix + PT_DISTANCES_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.travelTimeMatrix, outputDirectory + "/" + prefix + PT_TRAVELTIMES_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.accessTimeMatrix, outputDirectory + "/" + prefix + PT_ACCESSTIMES_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.egressTimeMatrix, outputDirectory + "/" + prefix + PT_EGRESSTIMES_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.transferCountMatrix, outputDirectory + "/" + prefix + PT_TRANSFERCOUNTS_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.trainTravelTimeShareMatrix, outputDirectory + "/" + prefix + PT_TRAINSHARE_BYTIME_FILENAME);
-        FloatMatrixIO.writeAsCSV(matrices.trainDistanceShareMatrix, outputDirectory + "/" + prefix + PT_TRAINSHARE_BYDISTANCE_FILENAME);
+        writeMatrix(matrices.adaptionTimeMatrix, outputDirectory + "/" + prefix + PT_ADAPTIONTIMES_FILENAME);
+        writeMatrix(matrices.frequencyMatrix, outputDirectory + "/" + prefix + PT_FREQUENCIES_FILENAME);
+        writeMatrix(matrices.distanceMatrix, outputDirectory + "/" + prefix + PT_DISTANCES_FILENAME);
+        writeMatrix(matrices.travelTimeMatrix, outputDirectory + "/" + prefix + PT_TRAVELTIMES_FILENAME);
+        writeMatrix(matrices.accessTimeMatrix, outputDirectory + "/" + prefix + PT_ACCESSTIMES_FILENAME);
+        writeMatrix(matrices.egressTimeMatrix, outputDirectory + "/" + prefix + PT_EGRESSTIMES_FILENAME);
+        writeMatrix(matrices.transferCountMatrix, outputDirectory + "/" + prefix + PT_TRANSFERCOUNTS_FILENAME);
+        writeMatrix(matrices.trainTravelTimeShareMatrix, outputDirectory + "/" + prefix + PT_TRAINSHARE_BYTIME_FILENAME);
+        writeMatrix(matrices.trainDistanceShareMatrix, outputDirectory + "/" + prefix + PT_TRAINSHARE_BYDISTANCE_FILENAME);
+        if (checkpointDirectory != null) {
+            PTSkimCheckpoints.delete(checkpointDirectory);
+        }
     }
 
     private String findZone(Coord coord, SpatialIndex zonesQt, String zonesIdAttributeName) {
@@ -446,6 +523,78 @@ public class CalculateSkimMatrices {
         return null;
     }
 
+    /**
+     * Writes the rows of the PT matrices to binary files while they are calculated.
+     */
+    private static class PtMatrixWriters implements PTSkimMatrices.RowConsumer<String>, Closeable {
+
+        private final List<FloatMatrixBinaryWriter<String>> writers = new ArrayList<>();
+        private final FloatMatrixBinaryWriter<String> adaptionTimes;
+        private final FloatMatrixBinaryWriter<String> frequencies;
+        private final FloatMatrixBinaryWriter<String> distances;
+        private final FloatMatrixBinaryWriter<String> travelTimes;
+        private final FloatMatrixBinaryWriter<String> accessTimes;
+        private final FloatMatrixBinaryWriter<String> egressTimes;
+        private final FloatMatrixBinaryWriter<String> transferCounts;
+        private final FloatMatrixBinaryWriter<String> trainTravelTimeShares;
+        private final FloatMatrixBinaryWriter<String> trainDistanceShares;
+
+        PtMatrixWriters(String filenamePrefix, Collection<String> zoneIds) throws IOException {
+            try {
+                this.adaptionTimes = createWriter(filenamePrefix + PT_ADAPTIONTIMES_FILENAME, zoneIds);
+                this.frequencies = createWriter(filenamePrefix + PT_FREQUENCIES_FILENAME, zoneIds);
+                this.distances = createWriter(filenamePrefix + PT_DISTANCES_FILENAME, zoneIds);
+                this.travelTimes = createWriter(filenamePrefix + PT_TRAVELTIMES_FILENAME, zoneIds);
+                this.accessTimes = createWriter(filenamePrefix + PT_ACCESSTIMES_FILENAME, zoneIds);
+                this.egressTimes = createWriter(filenamePrefix + PT_EGRESSTIMES_FILENAME, zoneIds);
+                this.transferCounts = createWriter(filenamePrefix + PT_TRANSFERCOUNTS_FILENAME, zoneIds);
+                this.trainTravelTimeShares = createWriter(filenamePrefix + PT_TRAINSHARE_BYTIME_FILENAME, zoneIds);
+                this.trainDistanceShares = createWriter(filenamePrefix + PT_TRAINSHARE_BYDISTANCE_FILENAME, zoneIds);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private FloatMatrixBinaryWriter<String> createWriter(String filename, Collection<String> zoneIds) throws IOException {
+            FloatMatrixBinaryWriter<String> writer = new FloatMatrixBinaryWriter<>(getBinaryFilename(filename), zoneIds);
+            this.writers.add(writer);
+            return writer;
+        }
+
+        @Override
+        public void accept(String fromZoneId, PTSkimMatrices.PtIndicatorRow row) {
+            try {
+                this.adaptionTimes.writeRow(fromZoneId, row.adaptionTime);
+                this.frequencies.writeRow(fromZoneId, row.frequency);
+                this.distances.writeRow(fromZoneId, row.distance);
+                this.travelTimes.writeRow(fromZoneId, row.travelTime);
+                this.accessTimes.writeRow(fromZoneId, row.accessTime);
+                this.egressTimes.writeRow(fromZoneId, row.egressTime);
+                this.transferCounts.writeRow(fromZoneId, row.transferCount);
+                this.trainTravelTimeShares.writeRow(fromZoneId, row.trainTravelTimeShare);
+                this.trainDistanceShares.writeRow(fromZoneId, row.trainDistanceShare);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException exception = null;
+            for (FloatMatrixBinaryWriter<String> writer : this.writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+
     private static class WeightedCoord {
 
         Coord coord;
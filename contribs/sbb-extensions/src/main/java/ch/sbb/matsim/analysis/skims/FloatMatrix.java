@@ -90,6 +90,22 @@ public class FloatMatrix<T> {
         }
     }
 
+    /**
+     * Copies the values of one row into <code>values</code>, ordered by the column index of the zones.
+     */
+    public void getRow(T from, float[] values) {
+        int fromIndex = this.id2index.get(from);
+        System.arraycopy(this.data, fromIndex * this.size, values, 0, this.size);
+    }
+
+    /**
+     * Sets all values of one row, ordered by the column index of the zones.
+     */
+    public void setRow(T from, float[] values) {
+        int fromIndex = this.id2index.get(from);
+        System.arraycopy(values, 0, this.data, fromIndex * this.size, this.size);
+    }
+
     private int getIndex(T from, T to) {
         int fromIndex = this.id2index.get(from);
         int toIndex = this.id2index.get(to);
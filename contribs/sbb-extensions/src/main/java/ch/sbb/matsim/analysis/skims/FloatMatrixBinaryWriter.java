@@ -0,0 +1,136 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FloatMatrixBinaryWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.analysis.skims;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a matrix in the binary format read by {@link MappedFloatMatrix}, row by row, without keeping the matrix in memory.
+ * <p>
+ * The file format (all numbers little-endian):
+ * <ul>
+ *     <li>int: magic number {@link #MAGIC}</li>
+ *     <li>int: format version</li>
+ *     <li>int: number of zones n</li>
+ *     <li>long: offset of the first value in the file</li>
+ *     <li>n times: int length followed by the UTF-8 bytes of the zone id</li>
+ *     <li>padding up to the offset of the first value, which is a multiple of 8</li>
+ *     <li>n * n floats: the values, row by row</li>
+ * </ul>
+ * <p>
+ * The file is created with its full size, rows which are never written contain 0. Rows can be written in any order, and {@link #writeRow}
+ * can be called concurrently from several threads, e.g. by the threads of a skim calculation.
+ */
+public final class FloatMatrixBinaryWriter<T> implements Closeable {
+
+    static final int MAGIC = 0x584d4c46; // "FLMX"
+    static final int VERSION = 1;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Map<T, Integer> id2index;
+    private final int size;
+    private final long dataOffset;
+
+    /**
+     * @param zoneIds the zones in the order of the rows and columns in the file.
+     */
+    public FloatMatrixBinaryWriter(String filename, Collection<T> zoneIds) throws IOException {
+        this.size = zoneIds.size();
+        this.id2index = new HashMap<>((int) (this.size * 1.5));
+        List<byte[]> encodedIds = new ArrayList<>(this.size);
+        long headerSize = 4 + 4 + 4 + 8;
+        for (T zoneId : zoneIds) {
+            if (this.id2index.put(zoneId, this.id2index.size()) != null) {
+                throw new IllegalArgumentException("duplicate zone id " + zoneId);
+            }
+            byte[] encodedId = zoneId.toString().getBytes(StandardCharsets.UTF_8);
+            encodedIds.add(encodedId);
+            headerSize += 4 + encodedId.length;
+        }
+        this.dataOffset = (headerSize + 7) / 8 * 8;
+
+        ByteBuffer header = ByteBuffer.allocate((int) this.dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(this.size);
+        header.putLong(this.dataOffset);
+        for (byte[] encodedId : encodedIds) {
+            header.putInt(encodedId.length);
+            header.put(encodedId);
+        }
+        header.position(0);
+
+        this.file = new RandomAccessFile(filename, "rw");
+        this.file.setLength(0);
+        this.file.setLength(this.dataOffset + 4L * this.size * this.size);
+        this.channel = this.file.getChannel();
+        write(header, 0);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Writes all values of a row, ordered like the zones given in the constructor.
+     */
+    public void writeRow(T from, float[] values) throws IOException {
+        Integer fromIndex = this.id2index.get(from);
+        if (fromIndex == null) {
+            throw new IllegalArgumentException("unknown zone " + from);
+        }
+        writeRow(fromIndex, values);
+    }
+
+    public void writeRow(int fromIndex, float[] values) throws IOException {
+        if (values.length != this.size) {
+            throw new IllegalArgumentException("expected " + this.size + " values, but got " + values.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 * this.size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        write(buffer, this.dataOffset + 4L * this.size * fromIndex);
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += this.channel.write(buffer, pos);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.force(false);
+        this.file.close();
+    }
+}
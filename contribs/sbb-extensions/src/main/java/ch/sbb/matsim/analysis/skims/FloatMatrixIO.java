@@ -11,11 +11,18 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.matsim.core.utils.io.IOUtils;
 
 /**
- * Helper methods to write and read matrices as CSV files (well, actually semi-colon separated files).
+ * Helper methods to write and read matrices as CSV files (well, actually semi-colon separated files),
+ * and as binary files which can be memory-mapped with {@link MappedFloatMatrix}.
  *
  * @author mrieser / SBB
  */
@@ -65,10 +72,7 @@ public final class FloatMatrixIO {
     }
 
     private static <T> void readCSV(FloatMatrix<T> matrix, BufferedReader reader, IdConverter<T> idConverter) throws IOException {
-        String header = reader.readLine();
-        if (!HEADER.equals(header)) {
-            throw new IOException("Expected header '" + HEADER + "' but found '" + header + "'.");
-        }
+        readCSVHeader(reader);
         String line;
         while ((line = reader.readLine()) != null) {
             String[] parts = line.split(";");
@@ -79,6 +83,111 @@ public final class FloatMatrixIO {
         }
     }
 
+    /**
+     * Writes the matrix in the binary format that can be memory-mapped with {@link MappedFloatMatrix}.
+     */
+    public static <T> void writeAsBinary(FloatMatrix<T> matrix, String filename) throws IOException {
+        T[] zoneIds = getSortedIds(matrix);
+        float[] row = new float[zoneIds.length];
+        try (FloatMatrixBinaryWriter<T> writer = new FloatMatrixBinaryWriter<>(filename, Arrays.asList(zoneIds))) {
+            for (int i = 0; i < zoneIds.length; i++) {
+                matrix.getRow(zoneIds[i], row);
+                writer.writeRow(i, row);
+            }
+        }
+    }
+
+    /**
+     * Reads a binary matrix file into the given matrix, which must contain all zones of the file.
+     */
+    public static <T> void readAsBinary(FloatMatrix<T> matrix, String filename, IdConverter<T> idConverter) throws IOException {
+        try (MappedFloatMatrix<T> mapped = MappedFloatMatrix.open(filename, idConverter)) {
+            List<T> zoneIds = mapped.getZoneIds();
+            for (int i = 0; i < zoneIds.size(); i++) {
+                FloatBuffer row = mapped.getRow(i);
+                T fromZoneId = zoneIds.get(i);
+                for (int j = 0; j < zoneIds.size(); j++) {
+                    matrix.set(fromZoneId, zoneIds.get(j), row.get(j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a CSV file to a binary matrix file, without loading the full matrix into memory.
+     * The lines of the CSV file must be grouped by the FROM zone, as written by {@link #writeAsCSV}. Missing values are written as 0.
+     */
+    public static void convertCSVToBinary(String csvFilename, String binaryFilename) throws IOException {
+        // first pass: collect the zones
+        Map<String, Integer> id2index = new LinkedHashMap<>();
+        try (BufferedReader reader = IOUtils.getBufferedReader(csvFilename)) {
+            readCSVHeader(reader);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(SEP);
+                id2index.putIfAbsent(parts[0], id2index.size());
+                id2index.putIfAbsent(parts[1], id2index.size());
+            }
+        }
+        // second pass: write the values row by row
+        try (BufferedReader reader = IOUtils.getBufferedReader(csvFilename);
+                FloatMatrixBinaryWriter<String> writer = new FloatMatrixBinaryWriter<>(binaryFilename, id2index.keySet())) {
+            readCSVHeader(reader);
+            float[] row = new float[id2index.size()];
+            Set<String> finishedRows = new HashSet<>();
+            String currentFrom = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(SEP);
+                if (!parts[0].equals(currentFrom)) {
+                    if (currentFrom != null) {
+                        writer.writeRow(currentFrom, row);
+                        Arrays.fill(row, 0.0f);
+                    }
+                    currentFrom = parts[0];
+                    if (!finishedRows.add(currentFrom)) {
+                        throw new IOException("The lines of zone " + currentFrom + " are not grouped together in " + csvFilename);
+                    }
+                }
+                row[id2index.get(parts[1])] = Float.parseFloat(parts[2]);
+            }
+            if (currentFrom != null) {
+                writer.writeRow(currentFrom, row);
+            }
+        }
+    }
+
+    /**
+     * Converts a binary matrix file to a CSV file, without loading the full matrix into memory.
+     */
+    public static void convertBinaryToCSV(String binaryFilename, String csvFilename) throws IOException {
+        try (MappedFloatMatrix<String> mapped = MappedFloatMatrix.open(binaryFilename);
+                BufferedWriter writer = IOUtils.getBufferedWriter(csvFilename)) {
+            writer.write(HEADER);
+            writer.write(NL);
+            List<String> zoneIds = mapped.getZoneIds();
+            for (int i = 0; i < zoneIds.size(); i++) {
+                FloatBuffer row = mapped.getRow(i);
+                String fromZoneId = zoneIds.get(i);
+                for (int j = 0; j < zoneIds.size(); j++) {
+                    writer.write(fromZoneId);
+                    writer.append(SEP);
+                    writer.write(zoneIds.get(j));
+                    writer.append(SEP);
+                    writer.write(Float.toString(row.get(j)));
+                    writer.append(NL);
+                }
+            }
+        }
+    }
+
+    private static void readCSVHeader(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (!HEADER.equals(header)) {
+            throw new IOException("Expected header '" + HEADER + "' but found '" + header + "'.");
+        }
+    }
+
     private static <T> T[] getSortedIds(FloatMatrix<T> matrix) {
         // the array-creation is only safe as long as the generated array is only within this class!
         @SuppressWarnings("unchecked")
@@ -0,0 +1,192 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MappedFloatMatrix.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.analysis.skims;
+
+import ch.sbb.matsim.analysis.skims.FloatMatrixIO.IdConverter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only m x m matrix backed by a memory-mapped file written by {@link FloatMatrixBinaryWriter}.
+ * <p>
+ * In contrast to {@link FloatMatrix}, the values are not loaded into the heap: the operating system pages them in when they are accessed, so
+ * matrices larger than the available memory can be used. All methods can be called concurrently from several threads. {@link #getRow} returns a
+ * view on the mapped file, so a row can be read without copying it.
+ * <p>
+ * A single mapping is limited to 2 GB, so larger matrices are mapped in several segments of complete rows.
+ */
+public final class MappedFloatMatrix<T> implements Closeable {
+
+    private static final int MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final List<T> zoneIds;
+    private final Map<T, Integer> id2index;
+    private final int size;
+    private final int rowsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    private MappedFloatMatrix(FileChannel channel, List<T> zoneIds, long dataOffset, int maxSegmentBytes) throws IOException {
+        this.channel = channel;
+        this.zoneIds = Collections.unmodifiableList(zoneIds);
+        this.size = zoneIds.size();
+        this.id2index = new HashMap<>((int) (this.size * 1.5));
+        for (T zoneId : zoneIds) {
+            this.id2index.put(zoneId, this.id2index.size());
+        }
+
+        long rowBytes = 4L * this.size;
+        this.rowsPerSegment = (int) Math.max(1, Math.min(this.size, maxSegmentBytes / Math.max(1, rowBytes)));
+        int segmentCount = this.size == 0 ? 0 : (this.size + this.rowsPerSegment - 1) / this.rowsPerSegment;
+        if (channel.size() < dataOffset + rowBytes * this.size) {
+            throw new IOException("The file is too short for a matrix with " + this.size + " zones.");
+        }
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int rows = Math.min(this.rowsPerSegment, this.size - i * this.rowsPerSegment);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + rowBytes * i * this.rowsPerSegment, rowBytes * rows);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            this.segments[i] = segment;
+        }
+    }
+
+    public static MappedFloatMatrix<String> open(String filename) throws IOException {
+        return open(filename, id -> id);
+    }
+
+    public static <T> MappedFloatMatrix<T> open(String filename, IdConverter<T> idConverter) throws IOException {
+        return open(filename, idConverter, MAX_SEGMENT_BYTES);
+    }
+
+    /*package*/ static <T> MappedFloatMatrix<T> open(String filename, IdConverter<T> idConverter, int maxSegmentBytes) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4 + 4 + 4 + 8).order(ByteOrder.LITTLE_ENDIAN);
+            read(channel, header, 0);
+            header.flip();
+            int magic = header.getInt();
+            if (magic != FloatMatrixBinaryWriter.MAGIC) {
+                throw new IOException(filename + " is not a binary matrix file.");
+            }
+            int version = header.getInt();
+            if (version != FloatMatrixBinaryWriter.VERSION) {
+                throw new IOException("Unsupported version " + version + " of binary matrix file " + filename);
+            }
+            int size = header.getInt();
+            long dataOffset = header.getLong();
+
+            ByteBuffer ids = ByteBuffer.allocate((int) (dataOffset - header.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+            read(channel, ids, header.capacity());
+            ids.flip();
+            List<T> zoneIds = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                byte[] encodedId = new byte[ids.getInt()];
+                ids.get(encodedId);
+                zoneIds.add(idConverter.parse(new String(encodedId, StandardCharsets.UTF_8)));
+            }
+            return new MappedFloatMatrix<>(channel, zoneIds, dataOffset, maxSegmentBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, pos);
+            if (count < 0) {
+                throw new IOException("unexpected end of file");
+            }
+            pos += count;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the zones in the order of the rows and columns
+     */
+    public List<T> getZoneIds() {
+        return this.zoneIds;
+    }
+
+    public int getIndex(T zoneId) {
+        Integer index = this.id2index.get(zoneId);
+        if (index == null) {
+            throw new IllegalArgumentException("unknown zone " + zoneId);
+        }
+        return index;
+    }
+
+    public float get(T from, T to) {
+        return get(getIndex(from), getIndex(to));
+    }
+
+    public float get(int fromIndex, int toIndex) {
+        if (toIndex < 0 || toIndex >= this.size) {
+            throw new IndexOutOfBoundsException("column " + toIndex);
+        }
+        MappedByteBuffer segment = this.segments[fromIndex / this.rowsPerSegment];
+        int rowInSegment = fromIndex % this.rowsPerSegment;
+        return segment.getFloat(4 * (rowInSegment * this.size + toIndex));
+    }
+
+    /**
+     * @return a read-only view on the values of the row, ordered like {@link #getZoneIds()}. The values are not copied.
+     */
+    public FloatBuffer getRow(T from) {
+        return getRow(getIndex(from));
+    }
+
+    public FloatBuffer getRow(int fromIndex) {
+        MappedByteBuffer segment = this.segments[fromIndex / this.rowsPerSegment];
+        int rowInSegment = fromIndex % this.rowsPerSegment;
+        // duplicate, as position and limit must not be changed on the shared buffer
+        ByteBuffer row = segment.duplicate();
+        row.position(4 * rowInSegment * this.size);
+        row.limit(4 * (rowInSegment + 1) * this.size);
+        return row.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /**
+     * Closes the file. The mapped memory is released by the JVM once this object is garbage collected, it must not be used anymore after closing.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -6,10 +6,14 @@ package ch.sbb.matsim.analysis.skims;
 
 import ch.sbb.matsim.routing.graph.Graph;
 import ch.sbb.matsim.routing.graph.LeastCostPathTree;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Network;
@@ -43,6 +47,22 @@ public final class NetworkSkimMatrices {
 
     public static <T> NetworkIndicators<T> calculateSkimMatrices(Network xy2lNetwork, Network routingNetwork, Map<T, Coord[]> coordsPerZone, double departureTime, TravelTime travelTime,
             TravelDisutility travelDisutility, int numberOfThreads) {
+        NetworkIndicators<T> networkIndicators = new NetworkIndicators<>(coordsPerZone.keySet());
+        calculateSkimMatrices(xy2lNetwork, routingNetwork, coordsPerZone, new double[] {departureTime}, travelTime, travelDisutility, numberOfThreads,
+                (fromZoneId, travelTimes, distances) -> {
+                    networkIndicators.travelTimeMatrix.setRow(fromZoneId, travelTimes);
+                    networkIndicators.distanceMatrix.setRow(fromZoneId, distances);
+                });
+        return networkIndicators;
+    }
+
+    /**
+     * Calculates the matrices averaged over all given departure times, without keeping them in memory. Instead, the finished row of every
+     * origin zone is passed to <code>rowConsumer</code>, e.g. to write it with a {@link FloatMatrixBinaryWriter}. This allows to calculate
+     * matrices which are too large for the heap. The values of the rows are ordered like the keys of <code>coordsPerZone</code>.
+     */
+    public static <T> void calculateSkimMatrices(Network xy2lNetwork, Network routingNetwork, Map<T, Coord[]> coordsPerZone, double[] departureTimes, TravelTime travelTime,
+            TravelDisutility travelDisutility, int numberOfThreads, RowConsumer<T> rowConsumer) {
         Graph routingGraph = new Graph(routingNetwork);
         Map<T, Node[]> nodesPerZone = new HashMap<>();
         for (Map.Entry<T, Coord[]> e : coordsPerZone.entrySet()) {
@@ -58,19 +78,22 @@ public final class NetworkSkimMatrices {
         }
 
         // prepare calculation
-        NetworkIndicators<T> networkIndicators = new NetworkIndicators<>(coordsPerZone.keySet());
+        List<T> zones = new ArrayList<>(coordsPerZone.keySet());
 
         int numberOfPointsPerZone = coordsPerZone.values().iterator().next().length;
-        float avgFactor = (float) (1.0 / numberOfPointsPerZone / numberOfPointsPerZone);
+        float avgFactor = (float) (1.0 / numberOfPointsPerZone / numberOfPointsPerZone / departureTimes.length);
 
         // do calculation
-        ConcurrentLinkedQueue<T> originZones = new ConcurrentLinkedQueue<>(coordsPerZone.keySet());
+        ConcurrentLinkedQueue<T> originZones = new ConcurrentLinkedQueue<>(zones);
 
-        Counter counter = new Counter("CAR-TravelTimeMatrix-" + Time.writeTime(departureTime) + " zone ", " / " + coordsPerZone.size());
+        String name = "CAR-TravelTimeMatrix-" + Time.writeTime(departureTimes[0]);
+        Counter counter = new Counter(name + " zone ", " / " + coordsPerZone.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
         Thread[] threads = new Thread[numberOfThreads];
         for (int i = 0; i < numberOfThreads; i++) {
-            RowWorker<T> worker = new RowWorker<>(originZones, coordsPerZone.keySet(), routingGraph, nodesPerZone, networkIndicators, departureTime, travelTime, travelDisutility, counter);
-            threads[i] = new Thread(worker, "CAR-TravelTimeMatrix-" + Time.writeTime(departureTime) + "-" + i);
+            RowWorker<T> worker = new RowWorker<>(originZones, zones, routingGraph, nodesPerZone, rowConsumer, departureTimes, avgFactor, travelTime, travelDisutility, counter);
+            threads[i] = new Thread(worker, name + "-" + i);
+            threads[i].setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
             threads[i].start();
         }
 
@@ -82,11 +105,18 @@ public final class NetworkSkimMatrices {
                 e.printStackTrace();
             }
         }
+        if (failure.get() != null) {
+            throw new RuntimeException("Calculation of the network skim matrices failed.", failure.get());
+        }
+    }
 
-        networkIndicators.travelTimeMatrix.multiply(avgFactor);
-        networkIndicators.distanceMatrix.multiply(avgFactor);
+    /**
+     * Receives the finished rows of the matrices. It is called concurrently by the threads of the calculation, but only once per origin zone.
+     */
+    @FunctionalInterface
+    public interface RowConsumer<T> {
 
-        return networkIndicators;
+        void accept(T fromZoneId, float[] travelTimes, float[] distances);
     }
 
     private static class RowWorker<T> implements Runnable {
@@ -94,23 +124,25 @@ public final class NetworkSkimMatrices {
         private final static Vehicle VEHICLE = VehicleUtils.getFactory().createVehicle(Id.create("theVehicle", Vehicle.class), VehicleUtils.getDefaultVehicleType());
         private final static Person PERSON = PopulationUtils.getFactory().createPerson(Id.create("thePerson", Person.class));
         private final ConcurrentLinkedQueue<T> originZones;
-        private final Set<T> destinationZones;
+        private final List<T> destinationZones;
         private final Graph graph;
         private final Map<T, Node[]> nodesPerZone;
-        private final NetworkIndicators<T> networkIndicators;
+        private final RowConsumer<T> rowConsumer;
         private final TravelTime travelTime;
         private final TravelDisutility travelDisutility;
-        private final double departureTime;
+        private final double[] departureTimes;
+        private final float avgFactor;
         private final Counter counter;
 
-        RowWorker(ConcurrentLinkedQueue<T> originZones, Set<T> destinationZones, Graph graph, Map<T, Node[]> nodesPerZone, NetworkIndicators<T> networkIndicators, double departureTime,
-                TravelTime travelTime, TravelDisutility travelDisutility, Counter counter) {
+        RowWorker(ConcurrentLinkedQueue<T> originZones, List<T> destinationZones, Graph graph, Map<T, Node[]> nodesPerZone, RowConsumer<T> rowConsumer, double[] departureTimes,
+                float avgFactor, TravelTime travelTime, TravelDisutility travelDisutility, Counter counter) {
             this.originZones = originZones;
             this.destinationZones = destinationZones;
             this.graph = graph;
             this.nodesPerZone = nodesPerZone;
-            this.networkIndicators = networkIndicators;
-            this.departureTime = departureTime;
+            this.rowConsumer = rowConsumer;
+            this.departureTimes = departureTimes;
+            this.avgFactor = avgFactor;
             this.travelTime = travelTime;
             this.travelDisutility = travelDisutility;
             this.counter = counter;
@@ -119,6 +151,7 @@ public final class NetworkSkimMatrices {
         @Override
         public void run() {
             LeastCostPathTree lcpTree = new LeastCostPathTree(this.graph, this.travelTime, this.travelDisutility);
+            int zoneCount = this.destinationZones.size();
             while (true) {
                 T fromZoneId = this.originZones.poll();
                 if (fromZoneId == null) {
@@ -126,37 +159,46 @@ public final class NetworkSkimMatrices {
                 }
 
                 this.counter.incCounter();
+                float[] travelTimes = new float[zoneCount];
+                float[] distances = new float[zoneCount];
                 Node[] fromNodes = this.nodesPerZone.get(fromZoneId);
                 if (fromNodes != null) {
-                    for (Node fromNode : fromNodes) {
-                        lcpTree.calculate(fromNode.getId().index(), this.departureTime, PERSON, VEHICLE);
-
-                        for (T toZoneId : this.destinationZones) {
-                            Node[] toNodes = this.nodesPerZone.get(toZoneId);
-                            if (toNodes != null) {
-                                for (Node toNode : toNodes) {
-                                    int nodeIndex = toNode.getId().index();
-                                    OptionalTime currOptionalTime = lcpTree.getTime(nodeIndex);
-                                    double currTime = currOptionalTime.orElseThrow(() -> new RuntimeException("Undefined Time"));
-                                    double tt = currTime - this.departureTime;
-                                    double dist = lcpTree.getDistance(nodeIndex);
-                                    this.networkIndicators.travelTimeMatrix.add(fromZoneId, toZoneId, (float) tt);
-                                    this.networkIndicators.distanceMatrix.add(fromZoneId, toZoneId, (float) dist);
+                    for (double departureTime : this.departureTimes) {
+                        for (Node fromNode : fromNodes) {
+                            lcpTree.calculate(fromNode.getId().index(), departureTime, PERSON, VEHICLE);
+
+                            for (int toIndex = 0; toIndex < zoneCount; toIndex++) {
+                                Node[] toNodes = this.nodesPerZone.get(this.destinationZones.get(toIndex));
+                                if (toNodes != null) {
+                                    for (Node toNode : toNodes) {
+                                        int nodeIndex = toNode.getId().index();
+                                        OptionalTime currOptionalTime = lcpTree.getTime(nodeIndex);
+                                        double currTime = currOptionalTime.orElseThrow(() -> new RuntimeException("Undefined Time"));
+                                        double tt = currTime - departureTime;
+                                        double dist = lcpTree.getDistance(nodeIndex);
+                                        travelTimes[toIndex] += (float) tt;
+                                        distances[toIndex] += (float) dist;
+                                    }
                                 }
-                            } else {
-                                // this might happen if a zone has no geometry, for whatever reason...
-                                this.networkIndicators.travelTimeMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                                this.networkIndicators.distanceMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
                             }
                         }
                     }
+                    for (int toIndex = 0; toIndex < zoneCount; toIndex++) {
+                        if (this.nodesPerZone.get(this.destinationZones.get(toIndex)) != null) {
+                            travelTimes[toIndex] *= this.avgFactor;
+                            distances[toIndex] *= this.avgFactor;
+                        } else {
+                            // this might happen if a zone has no geometry, for whatever reason...
+                            travelTimes[toIndex] = Float.POSITIVE_INFINITY;
+                            distances[toIndex] = Float.POSITIVE_INFINITY;
+                        }
+                    }
                 } else {
                     // this might happen if a zone has no geometry, for whatever reason...
-                    for (T toZoneId : this.destinationZones) {
-                        this.networkIndicators.travelTimeMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                        this.networkIndicators.distanceMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    }
+                    Arrays.fill(travelTimes, Float.POSITIVE_INFINITY);
+                    Arrays.fill(distances, Float.POSITIVE_INFINITY);
                 }
+                this.rowConsumer.accept(fromZoneId, travelTimes, distances);
             }
         }
     }
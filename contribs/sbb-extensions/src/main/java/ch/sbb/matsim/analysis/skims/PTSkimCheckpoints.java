@@ -0,0 +1,215 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PTSkimCheckpoints.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.analysis.skims;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+
+/**
+ * Writes the rows of finished origin zones of {@link PTSkimMatrices} to files, so an interrupted calculation can be resumed.
+ * <p>
+ * Every batch of origin zones is written to its own file, containing the values of all indicators for the zones of the batch. A file is first written to a
+ * temporary file and then renamed, so a calculation which is interrupted while writing does not leave an incomplete checkpoint. The files also contain the
+ * time window and the zone ids, and loading checkpoints of a calculation with different settings fails. The schedule and the routing parameters are not
+ * checked, so the checkpoints must be deleted with {@link #delete(File)} once the calculation is finished and its results are written.
+ */
+class PTSkimCheckpoints<T> {
+
+    private static final Logger log = Logger.getLogger(PTSkimCheckpoints.class);
+    private static final String FILE_PREFIX = "pt_skims_batch_";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final int VERSION = 2;
+
+    private final File directory;
+    private final List<T> zones;
+    private final double minDepartureTime;
+    private final double maxDepartureTime;
+    private final int originPointsPerZone;
+    private final AtomicInteger nextBatchIndex = new AtomicInteger(0);
+
+    /**
+     * @param zones the zones of the calculation, in the order of the values in the rows.
+     */
+    PTSkimCheckpoints(File directory, List<T> zones, double minDepartureTime, double maxDepartureTime, int originPointsPerZone) {
+        this.directory = directory;
+        this.zones = zones;
+        this.minDepartureTime = minDepartureTime;
+        this.maxDepartureTime = maxDepartureTime;
+        this.originPointsPerZone = originPointsPerZone;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Could not create checkpoint directory " + directory.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Loads the rows of all existing checkpoint files and passes them to the row consumer.
+     *
+     * @return the origin zones whose rows were loaded
+     */
+    List<T> load(PTSkimMatrices.RowConsumer<T> rowConsumer) {
+        List<T> loadedZones = new ArrayList<>();
+        File[] files = this.directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return loadedZones;
+        }
+        Map<String, Integer> zoneIndices = new HashMap<>();
+        for (T zoneId : this.zones) {
+            zoneIndices.put(zoneId.toString(), zoneIndices.size());
+        }
+        for (File file : files) {
+            String indexStr = file.getName().substring(FILE_PREFIX.length(), file.getName().length() - FILE_SUFFIX.length());
+            int batchIndex = Integer.parseInt(indexStr);
+            if (batchIndex >= this.nextBatchIndex.get()) {
+                this.nextBatchIndex.set(batchIndex + 1);
+            }
+            try {
+                loadedZones.addAll(load(file, rowConsumer, zoneIndices));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read checkpoint " + file.getAbsolutePath(), e);
+            }
+        }
+        log.info("loaded " + loadedZones.size() + " origin zones from " + files.length + " checkpoints in " + this.directory.getAbsolutePath());
+        return loadedZones;
+    }
+
+    private List<T> load(File file, PTSkimMatrices.RowConsumer<T> rowConsumer, Map<String, Integer> zoneIndices) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            double minDepTime = in.readDouble();
+            double maxDepTime = in.readDouble();
+            int originPoints = in.readInt();
+            int indicatorCount = in.readInt();
+            if (minDepTime != this.minDepartureTime || maxDepTime != this.maxDepartureTime || originPoints != this.originPointsPerZone
+                    || indicatorCount != PTSkimMatrices.PtIndicatorRow.INDICATOR_COUNT) {
+                throw new IOException("The checkpoint was written by a calculation with different settings.");
+            }
+            int zoneCount = in.readInt();
+            if (zoneCount != this.zones.size()) {
+                throw new IOException("The checkpoint contains " + zoneCount + " zones, but the calculation has " + this.zones.size() + " zones.");
+            }
+            // the zones might be in a different order than when the checkpoint was written
+            int[] columnIndices = new int[zoneCount];
+            for (int i = 0; i < zoneCount; i++) {
+                columnIndices[i] = getZoneIndex(in.readUTF(), zoneIndices);
+            }
+
+            List<T> loadedZones = new ArrayList<>();
+            int rowCount = in.readInt();
+            for (int r = 0; r < rowCount; r++) {
+                T fromZoneId = this.zones.get(getZoneIndex(in.readUTF(), zoneIndices));
+                PTSkimMatrices.PtIndicatorRow row = new PTSkimMatrices.PtIndicatorRow(zoneCount);
+                for (float[] values : row.values) {
+                    for (int i = 0; i < zoneCount; i++) {
+                        values[columnIndices[i]] = in.readFloat();
+                    }
+                }
+                rowConsumer.accept(fromZoneId, row);
+                loadedZones.add(fromZoneId);
+            }
+            return loadedZones;
+        }
+    }
+
+    /**
+     * Deletes all checkpoint files in the directory, and the directory itself if nothing else is left in it.
+     */
+    static void delete(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                throw new UncheckedIOException(new IOException("Could not delete checkpoint " + file.getAbsolutePath()));
+            }
+        }
+        String[] remaining = directory.list();
+        if (remaining != null && remaining.length == 0 && !directory.delete()) {
+            log.warn("Could not delete checkpoint directory " + directory.getAbsolutePath());
+        }
+        log.info("deleted " + files.length + " checkpoints in " + directory.getAbsolutePath());
+    }
+
+    private int getZoneIndex(String id, Map<String, Integer> zoneIndices) throws IOException {
+        Integer index = zoneIndices.get(id);
+        if (index == null) {
+            throw new IOException("The checkpoint contains the unknown zone " + id);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the rows of the given origin zones to a new checkpoint file. Can be called concurrently by several threads.
+     */
+    void write(List<T> fromZoneIds, List<PTSkimMatrices.PtIndicatorRow> rows) {
+        String filename = FILE_PREFIX + String.format("%06d", this.nextBatchIndex.getAndIncrement()) + FILE_SUFFIX;
+        File file = new File(this.directory, filename);
+        File tmpFile = new File(this.directory, filename + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(VERSION);
+                out.writeDouble(this.minDepartureTime);
+                out.writeDouble(this.maxDepartureTime);
+                out.writeInt(this.originPointsPerZone);
+                out.writeInt(PTSkimMatrices.PtIndicatorRow.INDICATOR_COUNT);
+                out.writeInt(this.zones.size());
+                for (T zoneId : this.zones) {
+                    out.writeUTF(zoneId.toString());
+                }
+                out.writeInt(fromZoneIds.size());
+                for (int r = 0; r < fromZoneIds.size(); r++) {
+                    out.writeUTF(fromZoneIds.get(r).toString());
+                    for (float[] values : rows.get(r).values) {
+                        for (float value : values) {
+                            out.writeFloat(value);
+                        }
+                    }
+                }
+            }
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint " + file.getAbsolutePath(), e);
+        }
+    }
+}
@@ -1,23 +1,31 @@
 package ch.sbb.matsim.analysis.skims;
 
 import ch.sbb.matsim.analysis.skims.RooftopUtils.ODConnection;
+import ch.sbb.matsim.routing.pt.raptor.DefaultRaptorInVehicleCostCalculator;
 import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
 import ch.sbb.matsim.routing.pt.raptor.RaptorRoute;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorCore.TravelInfo;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiPredicate;
+import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.utils.geometry.CoordUtils;
-import org.matsim.core.utils.misc.Counter;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
@@ -40,7 +48,8 @@ import org.matsim.pt.transitSchedule.api.TransitStopFacility;
  * combination. - average the n x n adaption times and store this value as the zone-to-zone adaption time.
  * <p>
  * A basic implementation for calculating the travel times between m zones would result in m^2 * n^2 pt route calculations, which could take a very long time. The actual algorithm makes use of
- * LeastCostPathTrees, reducing the computational effort down to the calculation of m*n LeastCostPathTrees. In addition, it supports running the calculation in parallel to reduce the time required to
+ * LeastCostPathTrees, reducing the computational effort down to the calculation of m*n LeastCostPathTrees. The trees for all departure times
+ * in the time window are calculated with one profile query ({@link SwissRailRaptor#calcTreeProfile}) per point, instead of one tree per time step. In addition, it supports running the calculation in parallel to reduce the time required to
  * compute one matrix.
  * <p>
  * If no connection can be found between two zones (can happen when there is no transit stop in a zone), the corresponding matrix cells contain the value "0" for the perceived frequency, and
@@ -50,24 +59,96 @@ import org.matsim.pt.transitSchedule.api.TransitStopFacility;
  */
 public class PTSkimMatrices {
 
+    private static final Logger log = Logger.getLogger(PTSkimMatrices.class);
+    static final int DEFAULT_BATCH_SIZE = 10;
+
     private PTSkimMatrices() {
     }
 
+    /**
+     * @param stepSize_seconds not used anymore, all departures within the time window are taken into account.
+     * @deprecated use {@link #calculateSkimMatrices(SwissRailRaptorData, Map, double, double, RaptorParameters, int, int, int, File, BiPredicate)}, which
+     *         has no step size.
+     */
+    @Deprecated
     public static <T> PTSkimMatrices.PtIndicators<T> calculateSkimMatrices(SwissRailRaptorData raptorData, Map<T, Coord[]> coordsPerZone, double minDepartureTime, double maxDepartureTime,
             double stepSize_seconds, RaptorParameters parameters, int numberOfThreads, BiPredicate<TransitLine, TransitRoute> trainDetector) {
+        return calculateSkimMatrices(raptorData, coordsPerZone, minDepartureTime, maxDepartureTime, parameters, numberOfThreads, 0, DEFAULT_BATCH_SIZE, null, trainDetector);
+    }
+
+    /**
+     * Calculates the matrices with <code>numberOfThreads</code> threads, each using its own {@link SwissRailRaptor} on the shared <code>raptorData</code>.
+     * <p>
+     * The origin zones are handed out to the threads in batches of <code>batchSize</code> zones. A zone's row in the matrices is only calculated by one
+     * thread, so the values can be accumulated without any locking. If a <code>checkpointDirectory</code> is given, the rows of each finished batch are
+     * written to a file in that directory. When the calculation is started again with the same directory, the rows from these files are loaded and only
+     * the missing origin zones are calculated.
+     *
+     * @param originPointsPerZone the number of sampling points per zone which are used as origins, all points if <code>0</code>. As a tree has to be
+     *         calculated for each origin, but not for each destination, using fewer origin points speeds up the calculation considerably. All points are
+     *         still used as destinations.
+     * @param checkpointDirectory the directory for the checkpoint files, or <code>null</code> to not write checkpoints.
+     */
+    public static <T> PTSkimMatrices.PtIndicators<T> calculateSkimMatrices(SwissRailRaptorData raptorData, Map<T, Coord[]> coordsPerZone, double minDepartureTime, double maxDepartureTime,
+            RaptorParameters parameters, int numberOfThreads, int originPointsPerZone, int batchSize, File checkpointDirectory, BiPredicate<TransitLine, TransitRoute> trainDetector) {
+        PtIndicators<T> pti = new PtIndicators<>(coordsPerZone.keySet());
+        calculateSkimMatrices(raptorData, coordsPerZone, minDepartureTime, maxDepartureTime, parameters, numberOfThreads, originPointsPerZone, batchSize, checkpointDirectory,
+                trainDetector, pti::setRow);
+        return pti;
+    }
+
+    /**
+     * Like {@link #calculateSkimMatrices(SwissRailRaptorData, Map, double, double, RaptorParameters, int, int, int, File, BiPredicate)}, but the matrices
+     * are not kept in memory. Instead, the finished row of every origin zone is passed to <code>rowConsumer</code>, e.g. to write it with a
+     * {@link FloatMatrixBinaryWriter}. This allows to calculate matrices which are too large for the heap. The values of the rows are ordered like
+     * the keys of <code>coordsPerZone</code>.
+     */
+    public static <T> void calculateSkimMatrices(SwissRailRaptorData raptorData, Map<T, Coord[]> coordsPerZone, double minDepartureTime, double maxDepartureTime,
+            RaptorParameters parameters, int numberOfThreads, int originPointsPerZone, int batchSize, File checkpointDirectory, BiPredicate<TransitLine, TransitRoute> trainDetector,
+            RowConsumer<T> rowConsumer) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, but is " + batchSize);
+        }
         // prepare calculation
         Set<T> zoneIds = coordsPerZone.keySet();
-        PtIndicators<T> pti = new PtIndicators<>(zoneIds);
+        List<T> zones = new ArrayList<>(zoneIds);
+
+        PTSkimCheckpoints<T> checkpoints = null;
+        Set<T> finishedZones = new HashSet<>();
+        if (checkpointDirectory != null) {
+            checkpoints = new PTSkimCheckpoints<>(checkpointDirectory, zones, minDepartureTime, maxDepartureTime, originPointsPerZone);
+            finishedZones.addAll(checkpoints.load(rowConsumer));
+        }
 
         // do calculation
-        ConcurrentLinkedQueue<T> originZones = new ConcurrentLinkedQueue<>(zoneIds);
+        ConcurrentLinkedQueue<List<T>> originBatches = new ConcurrentLinkedQueue<>();
+        List<T> batch = new ArrayList<>(batchSize);
+        int originZoneCount = 0;
+        for (T zoneId : zoneIds) {
+            if (!finishedZones.contains(zoneId)) {
+                batch.add(zoneId);
+                originZoneCount++;
+                if (batch.size() == batchSize) {
+                    originBatches.add(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            originBatches.add(batch);
+        }
 
-        Counter counter = new Counter("PT-FrequencyMatrix-" + Time.writeTime(minDepartureTime) + "-" + Time.writeTime(maxDepartureTime) + " zone ", " / " + coordsPerZone.size());
+        String name = "PT-FrequencyMatrix-" + Time.writeTime(minDepartureTime) + "-" + Time.writeTime(maxDepartureTime);
+        Progress progress = new Progress(name, zoneIds.size(), finishedZones.size());
+        log.info(name + ": calculating " + originZoneCount + " origin zones with " + numberOfThreads + " threads" + (finishedZones.isEmpty() ? "" : (", " + finishedZones.size() + " zones were loaded from checkpoints")));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
         Thread[] threads = new Thread[numberOfThreads];
         for (int i = 0; i < numberOfThreads; i++) {
-            SwissRailRaptor raptor = new SwissRailRaptor(raptorData, null, null, null, null);
-            RowWorker<T> worker = new RowWorker<>(originZones, zoneIds, coordsPerZone, pti, raptor, parameters, minDepartureTime, maxDepartureTime, stepSize_seconds, counter, trainDetector);
-            threads[i] = new Thread(worker, "PT-FrequencyMatrix-" + Time.writeTime(minDepartureTime) + "-" + Time.writeTime(maxDepartureTime) + "-" + i);
+            SwissRailRaptor raptor = new SwissRailRaptor(raptorData, null, null, null, new DefaultRaptorInVehicleCostCalculator());
+            RowWorker<T> worker = new RowWorker<>(originBatches, zones, coordsPerZone, rowConsumer, raptor, parameters, minDepartureTime, maxDepartureTime, originPointsPerZone, checkpoints,
+                    progress, trainDetector);
+            threads[i] = new Thread(worker, name + "-" + i);
+            threads[i].setUncaughtExceptionHandler((thread, e) -> failure.compareAndSet(null, e));
             threads[i].start();
         }
 
@@ -79,64 +160,50 @@ public class PTSkimMatrices {
                 e.printStackTrace();
             }
         }
-
-        for (T fromZoneId : zoneIds) {
-            for (T toZoneId : zoneIds) {
-                float count = pti.dataCountMatrix.get(fromZoneId, toZoneId);
-                if (count == 0) {
-                    pti.adaptionTimeMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    pti.frequencyMatrix.set(fromZoneId, toZoneId, 0);
-                    pti.distanceMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    pti.travelTimeMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    pti.accessTimeMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    pti.egressTimeMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    pti.transferCountMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    pti.trainDistanceShareMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                    pti.trainTravelTimeShareMatrix.set(fromZoneId, toZoneId, Float.POSITIVE_INFINITY);
-                } else {
-                    float avgFactor = 1.0f / count;
-                    float adaptionTime = pti.adaptionTimeMatrix.multiply(fromZoneId, toZoneId, avgFactor);
-                    pti.travelTimeMatrix.multiply(fromZoneId, toZoneId, avgFactor);
-                    pti.accessTimeMatrix.multiply(fromZoneId, toZoneId, avgFactor);
-                    pti.egressTimeMatrix.multiply(fromZoneId, toZoneId, avgFactor);
-                    pti.trainDistanceShareMatrix.multiply(fromZoneId, toZoneId, avgFactor);
-                    pti.trainTravelTimeShareMatrix.multiply(fromZoneId, toZoneId, avgFactor);
-                    pti.transferCountMatrix.multiply(fromZoneId, toZoneId, avgFactor);
-                    float frequency = (float) ((maxDepartureTime - minDepartureTime) / adaptionTime / 4.0);
-                    pti.frequencyMatrix.set(fromZoneId, toZoneId, frequency);
-                }
-            }
+        if (failure.get() != null) {
+            throw new RuntimeException("Calculation of the PT skim matrices failed.", failure.get());
         }
+        progress.log();
+    }
 
-        return pti;
+    /**
+     * Receives the finished rows of the matrices. It is called concurrently by the threads of the calculation, but only once per origin zone.
+     */
+    @FunctionalInterface
+    public interface RowConsumer<T> {
+
+        void accept(T fromZoneId, PtIndicatorRow row);
     }
 
     static class RowWorker<T> implements Runnable {
 
-        private final ConcurrentLinkedQueue<T> originZones;
-        private final Set<T> destinationZones;
+        private final ConcurrentLinkedQueue<List<T>> originBatches;
+        private final List<T> destinationZones;
         private final Map<T, Coord[]> coordsPerZone;
-        private final PtIndicators<T> pti;
+        private final RowConsumer<T> rowConsumer;
         private final SwissRailRaptor raptor;
         private final RaptorParameters parameters;
         private final double minDepartureTime;
         private final double maxDepartureTime;
-        private final double stepSize;
-        private final Counter counter;
+        private final int originPointsPerZone;
+        private final PTSkimCheckpoints<T> checkpoints;
+        private final Progress progress;
         private final BiPredicate<TransitLine, TransitRoute> trainDetector;
 
-        RowWorker(ConcurrentLinkedQueue<T> originZones, Set<T> destinationZones, Map<T, Coord[]> coordsPerZone, PtIndicators<T> pti, SwissRailRaptor raptor, RaptorParameters parameters,
-                double minDepartureTime, double maxDepartureTime, double stepSize, Counter counter, BiPredicate<TransitLine, TransitRoute> trainDetector) {
-            this.originZones = originZones;
+        RowWorker(ConcurrentLinkedQueue<List<T>> originBatches, List<T> destinationZones, Map<T, Coord[]> coordsPerZone, RowConsumer<T> rowConsumer, SwissRailRaptor raptor,
+                RaptorParameters parameters, double minDepartureTime, double maxDepartureTime, int originPointsPerZone, PTSkimCheckpoints<T> checkpoints, Progress progress,
+                BiPredicate<TransitLine, TransitRoute> trainDetector) {
+            this.originBatches = originBatches;
             this.destinationZones = destinationZones;
             this.coordsPerZone = coordsPerZone;
-            this.pti = pti;
+            this.rowConsumer = rowConsumer;
             this.raptor = raptor;
             this.parameters = parameters;
             this.minDepartureTime = minDepartureTime;
             this.maxDepartureTime = maxDepartureTime;
-            this.stepSize = stepSize;
-            this.counter = counter;
+            this.originPointsPerZone = originPointsPerZone;
+            this.checkpoints = checkpoints;
+            this.progress = progress;
             this.trainDetector = trainDetector;
         }
 
@@ -153,22 +220,37 @@ public class PTSkimMatrices {
         @Override
         public void run() {
             while (true) {
-                T fromZoneId = this.originZones.poll();
-                if (fromZoneId == null) {
+                List<T> batch = this.originBatches.poll();
+                if (batch == null) {
                     return;
                 }
 
-                this.counter.incCounter();
-                Coord[] fromCoords = this.coordsPerZone.get(fromZoneId);
-                if (fromCoords != null) {
-                    for (Coord fromCoord : fromCoords) {
-                        calcForRow(fromZoneId, fromCoord);
+                int treeCount = 0;
+                List<PtIndicatorRow> rows = new ArrayList<>(batch.size());
+                for (T fromZoneId : batch) {
+                    PtIndicatorRow row = new PtIndicatorRow(this.destinationZones.size());
+                    Coord[] fromCoords = this.coordsPerZone.get(fromZoneId);
+                    if (fromCoords != null) {
+                        int pointCount = this.originPointsPerZone > 0 ? Math.min(this.originPointsPerZone, fromCoords.length) : fromCoords.length;
+                        for (int i = 0; i < pointCount; i++) {
+                            if (fromCoords[i] != null) {
+                                calcForRow(row, fromCoords[i]);
+                                treeCount++;
+                            }
+                        }
                     }
+                    row.average(this.minDepartureTime, this.maxDepartureTime);
+                    this.rowConsumer.accept(fromZoneId, row);
+                    rows.add(row);
                 }
+                if (this.checkpoints != null) {
+                    this.checkpoints.write(batch, rows);
+                }
+                this.progress.batchFinished(batch.size(), treeCount);
             }
         }
 
-        private void calcForRow(T fromZoneId, Coord fromCoord) {
+        private void calcForRow(PtIndicatorRow row, Coord fromCoord) {
             double walkSpeed = this.parameters.getBeelineWalkSpeed();
 
             Collection<TransitStopFacility> fromStops = findStopCandidates(fromCoord, this.raptor, this.parameters);
@@ -179,26 +261,20 @@ public class PTSkimMatrices {
                 accessTimes.put(stop.getId(), accessTime);
             }
 
-            List<Map<Id<TransitStopFacility>, TravelInfo>> trees = new ArrayList<>();
-
             double timeWindow = this.maxDepartureTime - this.minDepartureTime;
-            double endTime = this.maxDepartureTime + timeWindow;
-            for (double time = this.minDepartureTime - timeWindow; time < endTime; time += this.stepSize) {
-                Map<Id<TransitStopFacility>, TravelInfo> tree = this.raptor.calcTree(fromStops, time, this.parameters, null);
-                trees.add(tree);
-            }
+            Map<Id<TransitStopFacility>, List<TravelInfo>> trees = this.raptor.calcTreeProfile(fromStops, this.minDepartureTime - timeWindow, this.maxDepartureTime + timeWindow, this.parameters, null);
 
-            for (T toZoneId : this.destinationZones) {
-                Coord[] toCoords = this.coordsPerZone.get(toZoneId);
+            for (int toIndex = 0; toIndex < this.destinationZones.size(); toIndex++) {
+                Coord[] toCoords = this.coordsPerZone.get(this.destinationZones.get(toIndex));
                 if (toCoords != null) {
                     for (Coord toCoord : toCoords) {
-                        calcForOD(fromZoneId, toZoneId, toCoord, accessTimes, trees);
+                        calcForOD(row, toIndex, toCoord, accessTimes, trees);
                     }
                 }
             }
         }
 
-        private void calcForOD(T fromZoneId, T toZoneId, Coord toCoord, Map<Id<TransitStopFacility>, Double> accessTimes, List<Map<Id<TransitStopFacility>, TravelInfo>> trees) {
+        private void calcForOD(PtIndicatorRow row, int toIndex, Coord toCoord, Map<Id<TransitStopFacility>, Double> accessTimes, Map<Id<TransitStopFacility>, List<TravelInfo>> trees) {
             double walkSpeed = this.parameters.getBeelineWalkSpeed();
 
             Collection<TransitStopFacility> toStops = findStopCandidates(toCoord, this.raptor, this.parameters);
@@ -218,7 +294,7 @@ public class PTSkimMatrices {
 
             double avgAdaptionTime = RooftopUtils.calcAverageAdaptionTime(connections, minDepartureTime, maxDepartureTime);
 
-            this.pti.adaptionTimeMatrix.add(fromZoneId, toZoneId, (float) avgAdaptionTime);
+            row.adaptionTime[toIndex] += (float) avgAdaptionTime;
 
             Map<ODConnection, Double> connectionShares = RooftopUtils.calcConnectionShares(connections, minDepartureTime, maxDepartureTime);
 
@@ -273,27 +349,27 @@ public class PTSkimMatrices {
             float trainShareByTravelTime = (float) (trainInVehTime / totalInVehTime);
             float trainShareByDistance = (float) (trainDistance / totalDistance);
 
-            this.pti.accessTimeMatrix.add(fromZoneId, toZoneId, accessTime);
-            this.pti.egressTimeMatrix.add(fromZoneId, toZoneId, egressTime);
-            this.pti.transferCountMatrix.add(fromZoneId, toZoneId, transferCount);
-            this.pti.travelTimeMatrix.add(fromZoneId, toZoneId, travelTime);
-            this.pti.distanceMatrix.add(fromZoneId, toZoneId, (float) totalDistance);
-            this.pti.trainDistanceShareMatrix.add(fromZoneId, toZoneId, trainShareByDistance);
-            this.pti.trainTravelTimeShareMatrix.add(fromZoneId, toZoneId, trainShareByTravelTime);
+            row.accessTime[toIndex] += accessTime;
+            row.egressTime[toIndex] += egressTime;
+            row.transferCount[toIndex] += transferCount;
+            row.travelTime[toIndex] += travelTime;
+            row.distance[toIndex] += (float) totalDistance;
+            row.trainDistanceShare[toIndex] += trainShareByDistance;
+            row.trainTravelTimeShare[toIndex] += trainShareByTravelTime;
 
-            this.pti.dataCountMatrix.add(fromZoneId, toZoneId, 1);
+            row.dataCount[toIndex] += 1;
         }
 
-        private List<ODConnection> buildODConnections(List<Map<Id<TransitStopFacility>, TravelInfo>> trees, Map<Id<TransitStopFacility>, Double> accessTimes,
+        private List<ODConnection> buildODConnections(Map<Id<TransitStopFacility>, List<TravelInfo>> trees, Map<Id<TransitStopFacility>, Double> accessTimes,
                 Map<Id<TransitStopFacility>, Double> egressTimes) {
             List<ODConnection> connections = new ArrayList<>();
 
-            for (Map<Id<TransitStopFacility>, TravelInfo> tree : trees) {
-                for (Map.Entry<Id<TransitStopFacility>, Double> egressEntry : egressTimes.entrySet()) {
-                    Id<TransitStopFacility> egressStopId = egressEntry.getKey();
-                    Double egressTime = egressEntry.getValue();
-                    TravelInfo info = tree.get(egressStopId);
-                    if (info != null && !info.isWalkOnly()) {
+            for (Map.Entry<Id<TransitStopFacility>, Double> egressEntry : egressTimes.entrySet()) {
+                Id<TransitStopFacility> egressStopId = egressEntry.getKey();
+                Double egressTime = egressEntry.getValue();
+                List<TravelInfo> profile = trees.get(egressStopId);
+                if (profile != null) {
+                    for (TravelInfo info : profile) {
                         Double accessTime = accessTimes.get(info.departureStop);
                         ODConnection connection = new ODConnection(info.ptDepartureTime, info.ptTravelTime, accessTime, egressTime, info.transferCount, info);
                         connections.add(connection);
@@ -305,6 +381,57 @@ public class PTSkimMatrices {
         }
     }
 
+    /**
+     * Keeps track of the finished origin zones and regularly logs the progress of the calculation.
+     */
+    static final class Progress {
+
+        private static final long LOG_INTERVAL_NANOS = 30_000_000_000L;
+
+        private final String name;
+        private final int totalZones;
+        private final int resumedZones;
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger calculatedZones = new AtomicInteger();
+        private final AtomicLong calculatedTrees = new AtomicLong();
+        private final AtomicLong lastLogNanos = new AtomicLong(this.startNanos);
+
+        Progress(String name, int totalZones, int resumedZones) {
+            this.name = name;
+            this.totalZones = totalZones;
+            this.resumedZones = resumedZones;
+        }
+
+        void batchFinished(int zoneCount, int treeCount) {
+            this.calculatedZones.addAndGet(zoneCount);
+            this.calculatedTrees.addAndGet(treeCount);
+            long now = System.nanoTime();
+            long lastLog = this.lastLogNanos.get();
+            if (now - lastLog >= LOG_INTERVAL_NANOS && this.lastLogNanos.compareAndSet(lastLog, now)) {
+                log();
+            }
+        }
+
+        int getCalculatedZones() {
+            return this.calculatedZones.get();
+        }
+
+        long getCalculatedTrees() {
+            return this.calculatedTrees.get();
+        }
+
+        void log() {
+            int zones = this.calculatedZones.get();
+            int finishedZones = this.resumedZones + zones;
+            double seconds = (System.nanoTime() - this.startNanos) / 1e9;
+            double zonesPerSecond = seconds > 0 ? zones / seconds : 0;
+            double treesPerSecond = seconds > 0 ? this.calculatedTrees.get() / seconds : 0;
+            String eta = zonesPerSecond > 0 ? Time.writeTime((this.totalZones - finishedZones) / zonesPerSecond) : "unknown";
+            log.info(String.format(Locale.ROOT, "%s: %d / %d zones finished (%.1f%%), %.2f zones/s, %.2f trees/s, remaining time %s",
+                    this.name, finishedZones, this.totalZones, 100.0 * finishedZones / Math.max(1, this.totalZones), zonesPerSecond, treesPerSecond, eta));
+        }
+    }
+
     public static class PtIndicators<T> {
 
         public final FloatMatrix<T> adaptionTimeMatrix;
@@ -333,6 +460,89 @@ public class PTSkimMatrices {
             this.trainTravelTimeShareMatrix = new FloatMatrix<>(zones, 0);
             this.trainDistanceShareMatrix = new FloatMatrix<>(zones, 0);
         }
+
+        /**
+         * @return all matrices, always in the same order.
+         */
+        List<FloatMatrix<T>> getMatrices() {
+            return Arrays.asList(this.adaptionTimeMatrix, this.frequencyMatrix, this.distanceMatrix, this.travelTimeMatrix, this.accessTimeMatrix, this.egressTimeMatrix,
+                    this.transferCountMatrix, this.trainTravelTimeShareMatrix, this.trainDistanceShareMatrix, this.dataCountMatrix);
+        }
+
+        void setRow(T fromZoneId, PtIndicatorRow row) {
+            List<FloatMatrix<T>> matrices = getMatrices();
+            for (int i = 0; i < matrices.size(); i++) {
+                matrices.get(i).setRow(fromZoneId, row.values[i]);
+            }
+        }
+    }
+
+    /**
+     * The values of all indicators from one origin zone to all zones, ordered like the zones of the calculation.
+     */
+    public static final class PtIndicatorRow {
+
+        static final int INDICATOR_COUNT = 10;
+
+        // in the same order as PtIndicators.getMatrices()
+        final float[][] values;
+
+        public final float[] adaptionTime;
+        public final float[] frequency;
+
+        public final float[] distance;
+        public final float[] travelTime;
+        public final float[] accessTime;
+        public final float[] egressTime;
+        public final float[] transferCount;
+        public final float[] trainTravelTimeShare;
+        public final float[] trainDistanceShare;
+
+        public final float[] dataCount;
+
+        PtIndicatorRow(int size) {
+            this.values = new float[INDICATOR_COUNT][size];
+            this.adaptionTime = this.values[0];
+            this.frequency = this.values[1];
+            this.distance = this.values[2];
+            this.travelTime = this.values[3];
+            this.accessTime = this.values[4];
+            this.egressTime = this.values[5];
+            this.transferCount = this.values[6];
+            this.trainTravelTimeShare = this.values[7];
+            this.trainDistanceShare = this.values[8];
+            this.dataCount = this.values[9];
+        }
+
+        /**
+         * Replaces the sums of the values by their averages, and calculates the frequencies from the adaption times.
+         */
+        void average(double minDepartureTime, double maxDepartureTime) {
+            for (int i = 0; i < this.dataCount.length; i++) {
+                float count = this.dataCount[i];
+                if (count == 0) {
+                    this.adaptionTime[i] = Float.POSITIVE_INFINITY;
+                    this.frequency[i] = 0;
+                    this.distance[i] = Float.POSITIVE_INFINITY;
+                    this.travelTime[i] = Float.POSITIVE_INFINITY;
+                    this.accessTime[i] = Float.POSITIVE_INFINITY;
+                    this.egressTime[i] = Float.POSITIVE_INFINITY;
+                    this.transferCount[i] = Float.POSITIVE_INFINITY;
+                    this.trainDistanceShare[i] = Float.POSITIVE_INFINITY;
+                    this.trainTravelTimeShare[i] = Float.POSITIVE_INFINITY;
+                } else {
+                    float avgFactor = 1.0f / count;
+                    this.adaptionTime[i] *= avgFactor;
+                    this.travelTime[i] *= avgFactor;
+                    this.accessTime[i] *= avgFactor;
+                    this.egressTime[i] *= avgFactor;
+                    this.trainDistanceShare[i] *= avgFactor;
+                    this.trainTravelTimeShare[i] *= avgFactor;
+                    this.transferCount[i] *= avgFactor;
+                    this.frequency[i] = (float) ((maxDepartureTime - minDepartureTime) / this.adaptionTime[i] / 4.0);
+                }
+            }
+        }
     }
 
 }
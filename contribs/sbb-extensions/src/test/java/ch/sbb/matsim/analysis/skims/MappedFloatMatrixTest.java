@@ -0,0 +1,184 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MappedFloatMatrixTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.analysis.skims;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Tests {@link MappedFloatMatrix}, {@link FloatMatrixBinaryWriter} and the binary methods of {@link FloatMatrixIO}.
+ */
+public class MappedFloatMatrixTest {
+
+    @Rule
+    public MatsimTestUtils utils = new MatsimTestUtils();
+
+    @Test
+    public void testWriteAndMap() throws IOException {
+        FloatMatrix<String> matrix = createMatrix(Arrays.asList("un", "dos", "tres", "quatre"));
+        String filename = this.utils.getOutputDirectory() + "matrix.bin";
+        FloatMatrixIO.writeAsBinary(matrix, filename);
+
+        try (MappedFloatMatrix<String> mapped = MappedFloatMatrix.open(filename)) {
+            Assert.assertEquals(4, mapped.size());
+            assertEqualValues(matrix, mapped);
+
+            FloatBuffer row = mapped.getRow("dos");
+            Assert.assertEquals(4, row.remaining());
+            Assert.assertTrue(row.isReadOnly());
+            for (int i = 0; i < 4; i++) {
+                Assert.assertEquals(matrix.get("dos", mapped.getZoneIds().get(i)), row.get(i), 0.0f);
+            }
+        }
+
+        FloatMatrix<String> matrix2 = new FloatMatrix<>(matrix.id2index.keySet(), Float.NaN);
+        FloatMatrixIO.readAsBinary(matrix2, filename, id -> id);
+        for (String from : matrix.id2index.keySet()) {
+            for (String to : matrix.id2index.keySet()) {
+                Assert.assertEquals(matrix.get(from, to), matrix2.get(from, to), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testSegments() throws IOException {
+        List<String> zoneIds = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            zoneIds.add("z" + i);
+        }
+        FloatMatrix<String> matrix = createMatrix(zoneIds);
+        String filename = this.utils.getOutputDirectory() + "matrix.bin";
+        FloatMatrixIO.writeAsBinary(matrix, filename);
+
+        // 3 rows per segment, so the last segment is only partially filled
+        try (MappedFloatMatrix<String> mapped = MappedFloatMatrix.open(filename, id -> id, 3 * 25 * 4 + 10)) {
+            assertEqualValues(matrix, mapped);
+            FloatBuffer row = mapped.getRow("z24");
+            Assert.assertEquals(25, row.remaining());
+            Assert.assertEquals(matrix.get("z24", "z7"), row.get(mapped.getIndex("z7")), 0.0f);
+        }
+    }
+
+    @Test
+    public void testConcurrentRowWrites() throws Exception {
+        List<Integer> zoneIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            zoneIds.add(i * 10);
+        }
+        String filename = this.utils.getOutputDirectory() + "matrix.bin";
+        try (FloatMatrixBinaryWriter<Integer> writer = new FloatMatrixBinaryWriter<>(filename, zoneIds)) {
+            Thread[] threads = new Thread[4];
+            List<Throwable> errors = new ArrayList<>();
+            for (int t = 0; t < threads.length; t++) {
+                int offset = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        float[] row = new float[zoneIds.size()];
+                        // skip the first rows to check that unwritten rows are 0
+                        for (int i = offset + threads.length; i < zoneIds.size(); i += threads.length) {
+                            for (int j = 0; j < row.length; j++) {
+                                row[j] = zoneIds.get(i) * 1000 + zoneIds.get(j);
+                            }
+                            writer.writeRow(zoneIds.get(i), row);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertTrue(errors.toString(), errors.isEmpty());
+        }
+
+        try (MappedFloatMatrix<Integer> mapped = MappedFloatMatrix.open(filename, Integer::valueOf)) {
+            Assert.assertEquals(zoneIds, mapped.getZoneIds());
+            for (Integer from : zoneIds) {
+                for (Integer to : zoneIds) {
+                    float expected = zoneIds.indexOf(from) < 4 ? 0.0f : from * 1000 + to;
+                    Assert.assertEquals(expected, mapped.get(from, to), 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCSVConversion() throws IOException {
+        FloatMatrix<String> matrix = createMatrix(Arrays.asList("un", "dos", "tres"));
+        String csvFilename = this.utils.getOutputDirectory() + "matrix.csv";
+        String binaryFilename = this.utils.getOutputDirectory() + "matrix.bin";
+        String csvFilename2 = this.utils.getOutputDirectory() + "matrix2.csv.gz";
+        FloatMatrixIO.writeAsCSV(matrix, csvFilename);
+
+        FloatMatrixIO.convertCSVToBinary(csvFilename, binaryFilename);
+        try (MappedFloatMatrix<String> mapped = MappedFloatMatrix.open(binaryFilename)) {
+            assertEqualValues(matrix, mapped);
+        }
+
+        FloatMatrixIO.convertBinaryToCSV(binaryFilename, csvFilename2);
+        FloatMatrix<String> matrix2 = new FloatMatrix<>(matrix.id2index.keySet(), Float.NaN);
+        FloatMatrixIO.readAsCSV(matrix2, csvFilename2, id -> id);
+        for (String from : matrix.id2index.keySet()) {
+            for (String to : matrix.id2index.keySet()) {
+                Assert.assertEquals(matrix.get(from, to), matrix2.get(from, to), 0.0f);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoMatrixFile() throws IOException {
+        FloatMatrix<String> matrix = createMatrix(Arrays.asList("un", "dos"));
+        String csvFilename = this.utils.getOutputDirectory() + "matrix.csv";
+        FloatMatrixIO.writeAsCSV(matrix, csvFilename);
+        MappedFloatMatrix.open(csvFilename).close();
+    }
+
+    private static FloatMatrix<String> createMatrix(List<String> zoneIds) {
+        FloatMatrix<String> matrix = new FloatMatrix<>(new LinkedHashSet<>(zoneIds), 0.0f);
+        for (int i = 0; i < zoneIds.size(); i++) {
+            for (int j = 0; j < zoneIds.size(); j++) {
+                matrix.set(zoneIds.get(i), zoneIds.get(j), i * 100 + j + 0.5f);
+            }
+        }
+        return matrix;
+    }
+
+    private static void assertEqualValues(FloatMatrix<String> expected, MappedFloatMatrix<String> actual) {
+        Assert.assertEquals(expected.id2index.size(), actual.size());
+        for (String from : actual.getZoneIds()) {
+            for (String to : actual.getZoneIds()) {
+                Assert.assertEquals(expected.get(from, to), actual.get(from, to), 0.0f);
+            }
+        }
+    }
+}
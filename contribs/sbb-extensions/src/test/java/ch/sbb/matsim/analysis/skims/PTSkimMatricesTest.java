@@ -0,0 +1,234 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PTSkimMatricesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package ch.sbb.matsim.analysis.skims;
+
+import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
+import ch.sbb.matsim.routing.pt.raptor.RaptorStaticConfig;
+import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+/**
+ * Tests the calculation of the PT skims in batches of origin zones and with checkpoints in {@link PTSkimMatrices}.
+ */
+public class PTSkimMatricesTest {
+
+    @Rule
+    public MatsimTestUtils utils = new MatsimTestUtils();
+
+    @Test
+    public void testCheckpoints() {
+        Fixture f = new Fixture();
+        File checkpointDir = new File(this.utils.getOutputDirectory(), "checkpoints");
+
+        PTSkimMatrices.PtIndicators<String> expected = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, null,
+                (line, route) -> false);
+
+        PTSkimMatrices.PtIndicators<String> first = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, checkpointDir,
+                (line, route) -> false);
+        File[] checkpoints = checkpointDir.listFiles();
+        Assert.assertNotNull(checkpoints);
+        Assert.assertEquals("there should be one checkpoint per batch", 3, checkpoints.length);
+        assertSameMatrices(expected, first, f.coordsPerZone);
+
+        // simulate an interrupted calculation
+        Assert.assertTrue(checkpoints[0].delete());
+        PTSkimMatrices.PtIndicators<String> resumed = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, checkpointDir,
+                (line, route) -> false);
+        Assert.assertEquals(3, checkpointDir.listFiles().length);
+        assertSameMatrices(expected, resumed, f.coordsPerZone);
+
+        try {
+            PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 9 * 3600, f.parameters, 2, 0, 1, checkpointDir, (line, route) -> false);
+            Assert.fail("checkpoints of a different time window must not be used.");
+        } catch (RuntimeException expectedException) {
+            // everything fine
+        }
+    }
+
+    @Test
+    public void testDeleteCheckpoints() {
+        Fixture f = new Fixture();
+        File checkpointDir = new File(this.utils.getOutputDirectory(), "checkpoints");
+
+        PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, checkpointDir, (line, route) -> false);
+        Assert.assertEquals(3, checkpointDir.listFiles().length);
+
+        PTSkimCheckpoints.delete(checkpointDir);
+        Assert.assertFalse("the checkpoints of a finished calculation must not be loaded by the next one.", checkpointDir.exists());
+
+        // a calculation with other parameters starts from scratch
+        f.parameters.setMarginalUtilityOfWaitingPt_utl_s(10 * f.parameters.getMarginalUtilityOfWaitingPt_utl_s());
+        PTSkimMatrices.PtIndicators<String> expected = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, null,
+                (line, route) -> false);
+        PTSkimMatrices.PtIndicators<String> actual = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, checkpointDir,
+                (line, route) -> false);
+        Assert.assertEquals(3, checkpointDir.listFiles().length);
+        assertSameMatrices(expected, actual, f.coordsPerZone);
+    }
+
+    @Test
+    public void testOriginPointsPerZone() {
+        Fixture f = new Fixture();
+
+        PTSkimMatrices.PtIndicators<String> all = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 1, 0, 10, null,
+                (line, route) -> false);
+        PTSkimMatrices.PtIndicators<String> sampled = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 1, 1, 10, null,
+                (line, route) -> false);
+
+        Assert.assertEquals(4, all.dataCountMatrix.get("A", "C"), 0.0f);
+        Assert.assertEquals(2, sampled.dataCountMatrix.get("A", "C"), 0.0f);
+        // the line runs every 10 minutes
+        Assert.assertEquals(6.0f, all.frequencyMatrix.get("A", "C"), 0.01f);
+        Assert.assertEquals(6.0f, sampled.frequencyMatrix.get("A", "C"), 0.01f);
+        Assert.assertEquals(Float.POSITIVE_INFINITY, all.travelTimeMatrix.get("C", "A"), 0.0f);
+    }
+
+    @Test
+    public void testRowsWrittenToBinaryFile() throws IOException {
+        Fixture f = new Fixture();
+        PTSkimMatrices.PtIndicators<String> expected = PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, null,
+                (line, route) -> false);
+
+        String filename = new File(this.utils.getOutputDirectory(), "pt_traveltimes.bin").getAbsolutePath();
+        try (FloatMatrixBinaryWriter<String> writer = new FloatMatrixBinaryWriter<>(filename, f.coordsPerZone.keySet())) {
+            PTSkimMatrices.calculateSkimMatrices(f.raptorData, f.coordsPerZone, 7 * 3600, 8 * 3600, f.parameters, 2, 0, 1, null, (line, route) -> false,
+                    (fromZoneId, row) -> {
+                        try {
+                            writer.writeRow(fromZoneId, row.travelTime);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        }
+
+        try (MappedFloatMatrix<String> travelTimes = MappedFloatMatrix.open(filename)) {
+            for (String fromZoneId : f.coordsPerZone.keySet()) {
+                for (String toZoneId : f.coordsPerZone.keySet()) {
+                    Assert.assertEquals(fromZoneId + " - " + toZoneId, expected.travelTimeMatrix.get(fromZoneId, toZoneId), travelTimes.get(fromZoneId, toZoneId), 1e-3f);
+                }
+            }
+        }
+    }
+
+    private static void assertSameMatrices(PTSkimMatrices.PtIndicators<String> expected, PTSkimMatrices.PtIndicators<String> actual, Map<String, Coord[]> coordsPerZone) {
+        List<FloatMatrix<String>> expectedMatrices = expected.getMatrices();
+        List<FloatMatrix<String>> actualMatrices = actual.getMatrices();
+        for (int i = 0; i < expectedMatrices.size(); i++) {
+            for (String fromZoneId : coordsPerZone.keySet()) {
+                for (String toZoneId : coordsPerZone.keySet()) {
+                    // the order of summing up the connections is not fixed, so allow for small rounding differences
+                    Assert.assertEquals("matrix " + i + ", " + fromZoneId + " - " + toZoneId, expectedMatrices.get(i).get(fromZoneId, toZoneId),
+                            actualMatrices.get(i).get(fromZoneId, toZoneId), 1e-3f);
+                }
+            }
+        }
+    }
+
+    /**
+     * A line from A over B to C every 10 minutes, and three zones with two points each around the stops.
+     */
+    private static class Fixture {
+
+        final SwissRailRaptorData raptorData;
+        final RaptorParameters parameters;
+        final Map<String, Coord[]> coordsPerZone = new LinkedHashMap<>();
+
+        Fixture() {
+            Config config = ConfigUtils.createConfig();
+            Scenario scenario = ScenarioUtils.createScenario(config);
+            Network network = scenario.getNetwork();
+            TransitSchedule schedule = scenario.getTransitSchedule();
+            TransitScheduleFactory sf = schedule.getFactory();
+
+            String[] names = {"A", "B", "C"};
+            Node[] nodes = new Node[names.length];
+            TransitStopFacility[] stops = new TransitStopFacility[names.length];
+            List<Id<Link>> linkIds = new ArrayList<>();
+            for (int i = 0; i < names.length; i++) {
+                Coord coord = new Coord(i * 5000, 0);
+                nodes[i] = network.getFactory().createNode(Id.create(names[i], Node.class), coord);
+                network.addNode(nodes[i]);
+                Id<Link> linkId;
+                if (i == 0) {
+                    linkId = Id.create("A", Link.class);
+                    network.addLink(network.getFactory().createLink(linkId, nodes[0], nodes[0]));
+                } else {
+                    linkId = Id.create(names[i - 1] + names[i], Link.class);
+                    network.addLink(network.getFactory().createLink(linkId, nodes[i - 1], nodes[i]));
+                }
+                linkIds.add(linkId);
+                stops[i] = sf.createTransitStopFacility(Id.create(names[i], TransitStopFacility.class), coord, false);
+                stops[i].setLinkId(linkId);
+                schedule.addStopFacility(stops[i]);
+
+                this.coordsPerZone.put(names[i], new Coord[] {new Coord(i * 5000, 100), new Coord(i * 5000 + 100, -100)});
+            }
+
+            NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(linkIds.get(0), linkIds.subList(1, linkIds.size() - 1), linkIds.get(linkIds.size() - 1));
+            List<TransitRouteStop> routeStops = new ArrayList<>();
+            for (int i = 0; i < names.length; i++) {
+                routeStops.add(sf.createTransitRouteStop(stops[i], i * 300, i * 300));
+            }
+            TransitLine line = sf.createTransitLine(Id.create("line", TransitLine.class));
+            TransitRoute route = sf.createTransitRoute(Id.create("route", TransitRoute.class), networkRoute, routeStops, "bus");
+            for (int time = 5 * 3600; time < 11 * 3600; time += 600) {
+                Departure departure = sf.createDeparture(Id.create(time, Departure.class), time);
+                route.addDeparture(departure);
+            }
+            line.addRoute(route);
+            schedule.addTransitLine(line);
+
+            RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(config);
+            raptorConfig.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+            this.raptorData = SwissRailRaptorData.create(schedule, null, raptorConfig, network, null);
+            this.parameters = RaptorUtils.createParameters(config);
+        }
+    }
+}
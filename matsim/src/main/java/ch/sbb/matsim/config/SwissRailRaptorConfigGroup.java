@@ -42,6 +42,9 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
     private static final String PARAM_USE_CAPACITY_CONSTRAINTS = "useCapacityConstraints";
     private static final String PARAM_USE_CAPACITY_CONSTRAINTS_DESC = "If true, SwissRailRaptor tries to detect when agents cannot board a vehicle in the previous iteration because it is already full and tries to find an alternative route instead.";
 
+    private static final String PARAM_USE_INCREMENTAL_DATA_UPDATE = "useIncrementalDataUpdate";
+    private static final String PARAM_USE_INCREMENTAL_DATA_UPDATE_DESC = "If true, the data of SwissRailRaptor is only updated for the changed transit routes when the transit schedule changes (e.g. in minibus), instead of being prepared from scratch. The transfers between unchanged routes are reused.";
+
     private static final String PARAM_TRANSFER_WALK_MARGIN = "transferWalkMargin";
     private static final String PARAM_TRANSFER_WALK_MARGIN_DESC = "time deducted from transfer walk leg during transfers between pt legs in order to avoid missing a vehicle by a few seconds due to delays.";
 
@@ -50,6 +53,7 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
     private IntermodalAccessEgressModeSelection intermodalAccessEgressModeSelection = IntermodalAccessEgressModeSelection.CalcLeastCostModePerStop;
     private boolean useModeMapping = false;
     private boolean useCapacityConstraints = false;
+    private boolean useIncrementalDataUpdate = false;
 
     private double transferPenaltyBaseCost = 0;
     private double transferPenaltyMinCost = Double.NEGATIVE_INFINITY;
@@ -137,6 +141,16 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
         this.useCapacityConstraints = useCapacityConstraints;
     }
 
+    @StringGetter(PARAM_USE_INCREMENTAL_DATA_UPDATE)
+    public boolean isUseIncrementalDataUpdate() {
+        return this.useIncrementalDataUpdate;
+    }
+
+    @StringSetter(PARAM_USE_INCREMENTAL_DATA_UPDATE)
+    public void setUseIncrementalDataUpdate(boolean useIncrementalDataUpdate) {
+        this.useIncrementalDataUpdate = useIncrementalDataUpdate;
+    }
+
     @StringGetter(PARAM_SCORING_PARAMETERS)
     public ScoringParameters getScoringParameters() {
         return this.scoringParameters;
@@ -595,6 +609,7 @@ public class SwissRailRaptorConfigGroup extends ReflectiveConfigGroup {
         Map<String, String> comments = super.getComments();
         comments.put(PARAM_INTERMODAL_ACCESS_EGRESS_MODE_SELECTION, PARAM_INTERMODAL_ACCESS_EGRESS_MODE_SELECTION_DESC);
         comments.put(PARAM_USE_CAPACITY_CONSTRAINTS, PARAM_USE_CAPACITY_CONSTRAINTS_DESC);
+        comments.put(PARAM_USE_INCREMENTAL_DATA_UPDATE, PARAM_USE_INCREMENTAL_DATA_UPDATE_DESC);
         comments.put(PARAM_TRANSFER_WALK_MARGIN, PARAM_TRANSFER_WALK_MARGIN_DESC);
         return comments;
     }
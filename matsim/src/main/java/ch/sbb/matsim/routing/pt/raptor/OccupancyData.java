@@ -15,8 +15,10 @@ import org.matsim.vehicles.Vehicle;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -31,14 +33,19 @@ public class OccupancyData {
 	final IdMap<TransitLine, LineData> lineData = new IdMap<>(TransitLine.class);
 	final Map<Id<Vehicle>, VehicleData> vehicleData = new HashMap<>();
 	final Map<Id<Person>, PassengerData> paxData = new HashMap<>();
-	private CacheData cache = null;
+	/**
+	 * One query-cache per {@link SwissRailRaptorData} snapshot, so routers still using an older snapshot after an
+	 * update of the raptor data do not force the cache of the newer one to be rebuilt (and vice versa).
+	 * The map is replaced (copy-on-write) when a cache is added, so lookups need no locking.
+	 */
+	private volatile Map<SwissRailRaptorData, CacheData> caches = Collections.emptyMap();
 
 	public void reset() {
 		LOG.info("[SwissRailRaptor] Resetting ExecutionData");
 		this.lineData.clear();
 		this.vehicleData.clear();
 		this.paxData.clear();
-		this.cache = null;
+		this.caches = Collections.emptyMap();
 	}
 
 	public DepartureData getNextAvailableDeparture(Id<TransitLine> transitLine, Id<TransitRoute> transitRoute, Id<TransitStopFacility> stopFacility, double time) {
@@ -130,8 +137,17 @@ public class OccupancyData {
 		return offset + pos;
 	}
 
+	/**
+	 * @return the number of passengers in the vehicle of the departure when it departed at the route stop,
+	 * or 0 if the departure was not observed. The indices are the ones from the given {@link SwissRailRaptorData}.
+	 */
+	public int getPaxCountAtDeparture(SwissRailRaptorData data, int routeStopIndex, int departureIndex) {
+		CacheData cache = getCache(data);
+		return cache.paxCountPerRouteStopAndDeparture[cache.paxCountOffsetPerRouteStop[routeStopIndex] + departureIndex];
+	}
+
 	private CacheData getCache(SwissRailRaptorData data) {
-		CacheData cache = this.cache;
+		CacheData cache = this.caches.get(data);
 		if (cache == null) {
 			cache = buildCache(data);
 		}
@@ -139,14 +155,22 @@ public class OccupancyData {
 	}
 
 	private synchronized CacheData buildCache(SwissRailRaptorData data) {
-		CacheData cache = this.cache;
+		CacheData cache = this.caches.get(data);
 		if (cache != null) {
 			return cache;
 		}
 		LOG.info("[SwissRailRaptor] build query-cache for ExecutionData");
 
-		cache = new CacheData(data.routeStops.length);
 		SwissRailRaptorData.RRouteStop[] routeStops = data.routeStops;
+		long paxCountsSize = 0;
+		for (SwissRailRaptorData.RRouteStop routeStop : routeStops) {
+			paxCountsSize += data.routes[routeStop.transitRouteIndex].countDepartures;
+		}
+		if (paxCountsSize > Integer.MAX_VALUE) {
+			throw new RuntimeException("TransitSchedule has too many departures at route stops: " + paxCountsSize);
+		}
+		cache = new CacheData(routeStops.length, (int) paxCountsSize);
+		int paxCountsIndex = 0;
 		for (int routeStopIdx = 0; routeStopIdx < routeStops.length; routeStopIdx++) {
 			SwissRailRaptorData.RRouteStop routeStop = routeStops[routeStopIdx];
 			SwissRailRaptorData.RRoute route = data.routes[routeStop.transitRouteIndex];
@@ -176,17 +200,31 @@ public class OccupancyData {
 				lastValue = latestWaitStart;
 			}
 			cache.latestWaitingTimeStartPerRouteStopPerDeparture[routeStopIdx] = departures;
+
+			// the passenger counts of the route stop are stored at the departure indices of the route, shifted by an offset
+			cache.paxCountOffsetPerRouteStop[routeStopIdx] = paxCountsIndex - route.indexFirstDeparture;
+			for (int depIdx = route.indexFirstDeparture; depIdx < route.indexFirstDeparture + departuresCount; depIdx++) {
+				DepartureData dd = stopData == null ? null : stopData.depData.get(data.departureIds[depIdx]);
+				cache.paxCountPerRouteStopAndDeparture[paxCountsIndex] = dd == null ? 0 : dd.paxCountAtDeparture;
+				paxCountsIndex++;
+			}
 		}
-		this.cache = cache;
+		Map<SwissRailRaptorData, CacheData> caches = new IdentityHashMap<>(this.caches);
+		caches.put(data, cache);
+		this.caches = caches;
 		LOG.info("[SwissRailRaptor] done (build query-cache for ExecutionData)");
 		return cache;
 	}
 
 	private static class CacheData {
-		int[][] latestWaitingTimeStartPerRouteStopPerDeparture;
+		final int[][] latestWaitingTimeStartPerRouteStopPerDeparture;
+		final int[] paxCountOffsetPerRouteStop;
+		final int[] paxCountPerRouteStopAndDeparture;
 
-		private CacheData(int routeStopsCount) {
+		private CacheData(int routeStopsCount, int paxCountsSize) {
 			this.latestWaitingTimeStartPerRouteStopPerDeparture = new int[routeStopsCount][];
+			this.paxCountOffsetPerRouteStop = new int[routeStopsCount];
+			this.paxCountPerRouteStopAndDeparture = new int[paxCountsSize];
 		}
 	}
 
@@ -280,6 +318,8 @@ public class OccupancyData {
 		final Id<TransitRoute> routeId;
 		final Id<Departure> departureId;
 		Id<TransitStopFacility> stopFacilityId = null;
+		RouteData routeData = null;
+		StopData stopData = null; // of the current stop, created when the first passenger enters or the vehicle departs
 		int currentPaxCount = 0;
 
 		public VehicleData(Vehicle vehicle, Id<TransitLine> lineId, Id<TransitRoute> routeId, Id<Departure> departureId) {
@@ -89,9 +89,10 @@ public class OccupancyTracker implements PersonDepartureEventHandler, AgentWaiti
 		this.transitDrivers.add(event.getDriverId());
 		// store information about the current service of the transit vehicle
 		Vehicle vehicle = this.scenario.getTransitVehicles().getVehicles().get(event.getVehicleId());
-		this.data.vehicleData.put(event.getVehicleId(), new VehicleData(vehicle, event.getTransitLineId(), event.getTransitRouteId(), event.getDepartureId()));
+		VehicleData vehData = new VehicleData(vehicle, event.getTransitLineId(), event.getTransitRouteId(), event.getDepartureId());
+		this.data.vehicleData.put(event.getVehicleId(), vehData);
 		LineData line = this.data.lineData.computeIfAbsent(event.getTransitLineId(), id -> new LineData());
-		RouteData route = line.routeData.computeIfAbsent(event.getTransitRouteId(), id -> new RouteData(
+		vehData.routeData = line.routeData.computeIfAbsent(event.getTransitRouteId(), id -> new RouteData(
 				this.scenario.getTransitSchedule().getTransitLines().get(event.getTransitLineId()).getRoutes().get(event.getTransitRouteId())
 		));
 	}
@@ -99,7 +100,9 @@ public class OccupancyTracker implements PersonDepartureEventHandler, AgentWaiti
 	@Override
 	public void handleEvent(VehicleArrivesAtFacilityEvent event) {
 		// store at what stop the transit vehicle currently is
-		this.data.vehicleData.getOrDefault(event.getVehicleId(), DUMMY_VEHDATA).stopFacilityId = event.getFacilityId();
+		VehicleData vehData = this.data.vehicleData.getOrDefault(event.getVehicleId(), DUMMY_VEHDATA);
+		vehData.stopFacilityId = event.getFacilityId();
+		vehData.stopData = null;
 	}
 
 	@Override
@@ -107,10 +110,7 @@ public class OccupancyTracker implements PersonDepartureEventHandler, AgentWaiti
 		// if nobody entered, store the departure time as latest time
 		VehicleData vehData = this.data.vehicleData.get(event.getVehicleId());
 		if (vehData != null) {
-			LineData line = this.data.lineData.get(vehData.lineId);
-			RouteData route = line.routeData.get(vehData.routeId);
-			StopData stop = route.stopData.computeIfAbsent(vehData.stopFacilityId, id -> new StopData());
-			DepartureData dep = stop.getOrCreate(vehData.departureId);
+			DepartureData dep = getStopData(vehData).getOrCreate(vehData.departureId);
 			dep.vehDepTime = event.getTime();
 			dep.paxCountAtDeparture = vehData.currentPaxCount;
 		}
@@ -130,15 +130,22 @@ public class OccupancyTracker implements PersonDepartureEventHandler, AgentWaiti
 			vehData.currentPaxCount++;
 			PassengerData passengerData = this.data.paxData.get(event.getPersonId());
 			double waitStart = passengerData.waitingStartTime;
-			LineData line = this.data.lineData.get(vehData.lineId);
-			RouteData route = line.routeData.get(vehData.routeId);
-			StopData stop = route.stopData.computeIfAbsent(vehData.stopFacilityId, id -> new StopData());
-			stop.getOrCreate(vehData.departureId).addWaitingPerson(waitStart);
+			getStopData(vehData).getOrCreate(vehData.departureId).addWaitingPerson(waitStart);
 			passengerData.vehBoardingTime = event.getTime();
 			passengerData.departureId = vehData.departureId;
 		}
 	}
 
+	private static StopData getStopData(VehicleData vehData) {
+		// the stop data is remembered while the vehicle is at the stop, so the nested maps are only searched once per stop
+		StopData stop = vehData.stopData;
+		if (stop == null) {
+			stop = vehData.routeData.stopData.computeIfAbsent(vehData.stopFacilityId, id -> new StopData());
+			vehData.stopData = stop;
+		}
+		return stop;
+	}
+
 	@Override
 	public void handleEvent(PersonLeavesVehicleEvent event) {
 		VehicleData vehData = this.data.vehicleData.get(event.getVehicleId());
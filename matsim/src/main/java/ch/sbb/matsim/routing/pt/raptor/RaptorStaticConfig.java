@@ -44,6 +44,7 @@ public class RaptorStaticConfig {
     private final Map<String, String> passengerModeMappings = new HashMap<>();
 
     private boolean useCapacityConstraints = false;
+    private boolean useIncrementalDataUpdate = false;
 
     private RaptorOptimization optimization = RaptorOptimization.OneToOneRouting;
 
@@ -103,6 +104,14 @@ public class RaptorStaticConfig {
         this.useCapacityConstraints = useCapacityConstraints;
     }
 
+    public boolean isUseIncrementalDataUpdate() {
+        return this.useIncrementalDataUpdate;
+    }
+
+    public void setUseIncrementalDataUpdate(boolean useIncrementalDataUpdate) {
+        this.useIncrementalDataUpdate = useIncrementalDataUpdate;
+    }
+
     public void addModeMappingForPassengers(String routeMode, String passengerMode) {
         this.passengerModeMappings.put(routeMode, passengerMode);
     }
@@ -53,6 +53,7 @@ public final class RaptorUtils {
             }
         }
         staticConfig.setUseCapacityConstraints(srrConfig.isUseCapacityConstraints());
+        staticConfig.setUseIncrementalDataUpdate(srrConfig.isUseIncrementalDataUpdate());
 
         return staticConfig;
     }
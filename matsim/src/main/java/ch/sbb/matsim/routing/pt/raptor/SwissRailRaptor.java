@@ -228,6 +228,26 @@ public class SwissRailRaptor implements TransitRouter {
         return this.calcLeastCostTree(accessStops, departureTime, parameters, person);
     }
 
+    /**
+     * Calculates the connections from the given stops to all other stops for all departures between
+     * <code>earliestDepartureTime</code> and <code>latestDepartureTime</code> in one run.
+     * This is considerably faster than calling {@link #calcTree(Collection, double, RaptorParameters, Person)}
+     * repeatedly for different departure times.
+     *
+     * @return for each reachable stop the non-dominated connections, ordered by departure time.
+     */
+    public Map<Id<TransitStopFacility>, List<SwissRailRaptorCore.TravelInfo>> calcTreeProfile(Collection<TransitStopFacility> fromStops, double earliestDepartureTime, double latestDepartureTime, RaptorParameters parameters, Person person) {
+        if (this.data.config.getOptimization() != RaptorStaticConfig.RaptorOptimization.OneToAllRouting && !this.treeWarningShown) {
+            log.warn("SwissRailRaptorData was not initialized with full support for tree calculations and may result in unexpected results. Use `RaptorStaticConfig.setOptimization(RaptorOptimization.OneToAllRouting)` to fix this issue.");
+            this.treeWarningShown = true;
+        }
+        List<InitialStop> accessStops = new ArrayList<>();
+        for (TransitStopFacility stop : fromStops) {
+            accessStops.add(new InitialStop(stop, 0, 0, 0, null));
+        }
+        return this.raptor.calcLeastCostTreeProfile(earliestDepartureTime, latestDepartureTime, accessStops, parameters, person);
+    }
+
     private Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo> calcLeastCostTree(Collection<InitialStop> accessStops, double departureTime, RaptorParameters parameters, Person person) {
         return this.raptor.calcLeastCostTree(departureTime, accessStops, parameters, person);
     }
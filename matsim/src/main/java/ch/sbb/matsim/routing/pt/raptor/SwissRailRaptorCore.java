@@ -4,7 +4,6 @@
 
 package ch.sbb.matsim.routing.pt.raptor;
 
-import ch.sbb.matsim.routing.pt.raptor.OccupancyData.DepartureData;
 import ch.sbb.matsim.routing.pt.raptor.RaptorInVehicleCostCalculator.RouteSegmentIterator;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RRoute;
 import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData.RRouteStop;
@@ -13,7 +12,6 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.facilities.Facility;
-import org.matsim.pt.transitSchedule.api.Departure;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
@@ -531,6 +529,165 @@ public class SwissRailRaptorCore {
         return result;
     }
 
+    /**
+     * Calculates the least cost trees for all departures within the given time window in one run, using the
+     * range query of the RAPTOR paper (rRAPTOR): the departures at the start stops are handled from the latest
+     * to the earliest, and the labels of the later departures are kept, so an earlier departure only has to
+     * explore the stops it reaches with an improvement.
+     *
+     * As in {@link #calcRoutes}, the cost is made to behave like time by adding the waiting cost from the
+     * earliest departure time up to the actual departure time to the initial cost of each departure. The
+     * latest departure time itself is handled like {@link #calcLeastCostTree}, so the result also contains the
+     * connections which can be reached when starting at the end of the time window.
+     *
+     * @return for each reachable stop the connections which are not dominated by another connection departing
+     * later and arriving earlier, ordered by departure time. Walk-only connections are not included.
+     */
+    public Map<Id<TransitStopFacility>, List<TravelInfo>> calcLeastCostTreeProfile(double earliestDepTime, double latestDepTime, Collection<InitialStop> startStops, RaptorParameters parameters, Person person) {
+        reset();
+
+        double waitingCost_per_s = -parameters.getMarginalUtilityOfWaitingPt_utl_s();
+        Map<Id<TransitStopFacility>, List<TravelInfo>> profiles = new HashMap<>();
+        BitSet reachedStops = new BitSet(this.data.countStops);
+
+        // the latest departure time: start at all start stops, like in calcLeastCostTree
+        BitSet initialRouteStopIndices = new BitSet();
+        BitSet initialStopIndices = new BitSet();
+        for (InitialStop stop : startStops) {
+            int[] routeStopIndices = this.data.routeStopsPerStopFacility.get(stop.stop);
+            for (int routeStopIndex : routeStopIndices) {
+                int arrivalTime = (int) (latestDepTime + stop.accessTime);
+                double arrivalCost = stop.accessCost + (latestDepTime - earliestDepTime) * waitingCost_per_s;
+                RRouteStop toRouteStop = this.data.routeStops[routeStopIndex];
+                if (arrivalCost < this.leastArrivalCostAtRouteStop[routeStopIndex]) {
+                    PathElement pe = new PathElement(null, toRouteStop, TIME_UNDEFINED, TIME_UNDEFINED, arrivalTime, arrivalCost, 0, stop.distance, 0, true, stop);
+                    this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+                    this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
+                    if (arrivalCost < this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
+                        this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
+                        this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                    }
+                    this.improvedRouteStopIndices.set(routeStopIndex);
+                    initialRouteStopIndices.set(routeStopIndex);
+                    initialStopIndices.set(toRouteStop.stopFacilityIndex);
+                }
+            }
+        }
+        exploreTree(initialRouteStopIndices, initialStopIndices, reachedStops, parameters, person);
+        addToProfiles(profiles, reachedStops, parameters);
+
+        // all earlier departures, from the latest to the earliest
+        List<DepartureAtRouteStop> departures = new ArrayList<>();
+        for (InitialStop stop : startStops) {
+            double earliestTimeAtStop = earliestDepTime + stop.accessTime;
+            double latestTimeAtStop = latestDepTime + stop.accessTime;
+            int[] routeStopIndices = this.data.routeStopsPerStopFacility.get(stop.stop);
+            if (routeStopIndices != null) {
+                for (int routeStopIndex : routeStopIndices) {
+                    RRouteStop routeStop = this.data.routeStops[routeStopIndex];
+                    if (routeStop.routeStop == routeStop.route.getStops().get(routeStop.route.getStops().size() - 1)) {
+                        // this is the last stop of a route
+                        continue;
+                    }
+                    RRoute route = this.data.routes[routeStop.transitRouteIndex];
+                    for (int depIndex = route.indexFirstDeparture; depIndex < route.indexFirstDeparture + route.countDepartures; depIndex++) {
+                        int depTimeAtStop = this.data.departures[depIndex] + routeStop.departureOffset;
+                        if (depTimeAtStop >= earliestTimeAtStop && depTimeAtStop < latestTimeAtStop) {
+                            double costOffset = (depTimeAtStop - earliestTimeAtStop) * waitingCost_per_s;
+                            departures.add(new DepartureAtRouteStop(routeStop, routeStopIndex, depIndex, depTimeAtStop, costOffset, stop));
+                        }
+                    }
+                }
+            }
+        }
+        departures.sort((d1, d2) -> {
+            int cmp = Double.compare(d2.depTime - d2.accessStop.accessTime, d1.depTime - d1.accessStop.accessTime);
+            if (cmp == 0) {
+                cmp = Integer.compare(d1.departureIndex, d2.departureIndex);
+            }
+            return cmp;
+        });
+
+        for (DepartureAtRouteStop depAtRouteStop : departures) {
+            this.improvedStops.clear();
+            this.improvedRouteStopIndices.clear();
+            reachedStops.clear();
+            int routeStopIndex = depAtRouteStop.routeStopIndex;
+            double arrivalCost = depAtRouteStop.accessStop.accessCost + depAtRouteStop.costOffset;
+            if (arrivalCost > this.leastArrivalCostAtRouteStop[routeStopIndex]) {
+                // a later departure at this stop is already cheaper, e.g. because it can be reached with less access cost
+                continue;
+            }
+            RRouteStop toRouteStop = depAtRouteStop.routeStop;
+            PathElement pe = new PathElement(null, toRouteStop, TIME_UNDEFINED, TIME_UNDEFINED, depAtRouteStop.depTime, arrivalCost, 0, depAtRouteStop.accessStop.distance, 0, true, depAtRouteStop.accessStop);
+            this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+            this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
+            if (arrivalCost <= this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
+                this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
+                this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+            }
+            this.improvedRouteStopIndices.set(routeStopIndex);
+
+            exploreTree(null, null, reachedStops, parameters, person);
+            addToProfiles(profiles, reachedStops, parameters);
+        }
+
+        for (List<TravelInfo> profile : profiles.values()) {
+            profile.sort((ti1, ti2) -> Double.compare(ti1.ptDepartureTime - ti1.accessTime, ti2.ptDepartureTime - ti2.accessTime));
+        }
+        return profiles;
+    }
+
+    private void exploreTree(BitSet initialRouteStopIndices, BitSet initialStopIndices, BitSet reachedStops, RaptorParameters parameters, Person person) {
+        while (true) {
+            exploreRoutes(parameters, person);
+            reachedStops.or(this.improvedStops);
+
+            if (this.improvedStops.isEmpty()) {
+                break;
+            }
+
+            if (initialRouteStopIndices != null) {
+                // make sure we can transfer even at the start stop
+                this.improvedRouteStopIndices.or(initialRouteStopIndices);
+                this.improvedStops.or(initialStopIndices);
+                initialRouteStopIndices = null;
+                initialStopIndices = null;
+            }
+
+            handleTransfers(true, parameters);
+            reachedStops.or(this.tmpImprovedStops);
+
+            if (this.improvedRouteStopIndices.isEmpty()) {
+                break;
+            }
+        }
+    }
+
+    private void addToProfiles(Map<Id<TransitStopFacility>, List<TravelInfo>> profiles, BitSet reachedStops, RaptorParameters parameters) {
+        for (int stopIndex = reachedStops.nextSetBit(0); stopIndex >= 0; stopIndex = reachedStops.nextSetBit(stopIndex + 1)) {
+            PathElement destination = this.arrivalPathPerStop[stopIndex];
+            TravelInfo ti = getTravelInfo(destination, parameters);
+            if (ti.isWalkOnly()) {
+                continue;
+            }
+            Id<TransitStopFacility> stopId = destination.toRouteStop.routeStop.getStopFacility().getId();
+            List<TravelInfo> profile = profiles.computeIfAbsent(stopId, id -> new ArrayList<>());
+            double depTime = ti.ptDepartureTime - ti.accessTime;
+            boolean isDominated = false;
+            for (TravelInfo other : profile) {
+                if ((other.ptDepartureTime - other.accessTime) >= depTime && other.ptArrivalTime <= ti.ptArrivalTime) {
+                    isDominated = true;
+                    break;
+                }
+            }
+            if (!isDominated) {
+                profile.removeIf(other -> (other.ptDepartureTime - other.accessTime) <= depTime && other.ptArrivalTime >= ti.ptArrivalTime);
+                profile.add(ti);
+            }
+        }
+    }
+
     private TravelInfo getTravelInfo(PathElement destination, RaptorParameters parameters) {
         PathElement firstStage = destination;
         PathElement secondStage = null;
@@ -987,13 +1144,13 @@ public class SwissRailRaptorCore {
         private int fromRouteStopIndex;
         private int toRouteStopIndex;
 
+        private int departureIndex;
         private int routeDepartureTime;
         private int currentRouteStopIndex;
 
         private double currentInVehicleTime = -1;
         private double currentPassengerCount = -1;
         private double currentTimeOfDay = -1;
-        private Id<Departure> currentDepartureId = null;
 
         public RouteSegmentIteratorImpl(SwissRailRaptorData data) {
             this.data = data;
@@ -1004,12 +1161,12 @@ public class SwissRailRaptorCore {
             this.fromRouteStopIndex = fromRouteStopIndex;
             this.toRouteStopIndex = toRouteStopIndex;
 
+            this.departureIndex = departureIndex;
             this.routeDepartureTime = this.data.departures[departureIndex];
             this.currentRouteStopIndex = fromRouteStopIndex;
             this.currentInVehicleTime = -1;
             this.currentPassengerCount = -1;
             this.currentTimeOfDay = -1;
-            this.currentDepartureId = this.data.departureIds[departureIndex];
         }
 
         @Override
@@ -1039,8 +1196,8 @@ public class SwissRailRaptorCore {
             this.currentInVehicleTime = endTime - startTime;
             this.currentTimeOfDay = startTime;
 
-            DepartureData depData = this.data.occupancyData.getDepartureData(nextRouteStop.line.getId(), nextRouteStop.route.getId(), depRouteStop.routeStop.getStopFacility().getId(), this.currentDepartureId);
-            this.currentPassengerCount = depData == null ? 0 : depData.paxCountAtDeparture;
+            OccupancyData occupancyData = this.data.occupancyData;
+            this.currentPassengerCount = occupancyData == null ? 0 : occupancyData.getPaxCountAtDeparture(this.data, departureRouteStopIndex, this.departureIndex);
         }
 
         @Override
@@ -10,10 +10,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.IntPredicate;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -58,12 +61,13 @@ public class SwissRailRaptorData {
     final QuadTree<TransitStopFacility> stopsQT;
     final Map<String, Map<String, QuadTree<TransitStopFacility>>> stopFilterAttribute2Value2StopsQT;
     final OccupancyData occupancyData;
+    private final long minimalTransferTimesFingerprint;
 
     private SwissRailRaptorData(RaptorStaticConfig config, int countStops,
                                 RRoute[] routes, int[] departures, Vehicle[] departureVehicles, Id<Departure>[] departureIds, RRouteStop[] routeStops,
                                 RTransfer[] transfers, Map<TransitStopFacility, Integer> stopFacilityIndices,
                                 Map<TransitStopFacility, int[]> routeStopsPerStopFacility, QuadTree<TransitStopFacility> stopsQT,
-                                OccupancyData occupancyData) {
+                                OccupancyData occupancyData, long minimalTransferTimesFingerprint) {
         this.config = config;
         this.countStops = countStops;
         this.countRouteStops = routeStops.length;
@@ -78,112 +82,185 @@ public class SwissRailRaptorData {
         this.stopsQT = stopsQT;
         this.stopFilterAttribute2Value2StopsQT = new HashMap<>();
         this.occupancyData = occupancyData;
+        this.minimalTransferTimesFingerprint = minimalTransferTimesFingerprint;
     }
 
     public static SwissRailRaptorData create(TransitSchedule schedule, @Nullable Vehicles transitVehicles, RaptorStaticConfig staticConfig, Network network, OccupancyData occupancyData) {
         log.info("Preparing data for SwissRailRaptor...");
         long startMillis = System.currentTimeMillis();
 
-        Map<Id<Vehicle>, Vehicle> vehicles = transitVehicles == null ? Collections.emptyMap() : transitVehicles.getVehicles();
-        int countRoutes = 0;
-        long countRouteStops = 0;
-        long countDepartures = 0;
+        RouteData routeData = RouteData.build(schedule, transitVehicles, staticConfig, network);
 
-        for (TransitLine line : schedule.getTransitLines().values()) {
-            countRoutes += line.getRoutes().size();
-            for (TransitRoute route : line.getRoutes().values()) {
-                countRouteStops += route.getStops().size();
-                countDepartures += route.getDepartures().size();
+        // only put used transit stops into the quad tree
+        Set<TransitStopFacility> stops = routeData.routeStopsPerStopFacility.keySet();
+        QuadTree<TransitStopFacility> stopsQT = TransitScheduleUtils.createQuadTreeOfTransitStopFacilities(stops);
+
+        Map<Integer, RTransfer[]> allTransfers = calculateRouteStopTransfers(schedule, stopsQT, routeData.routeStopsPerStopFacility, routeData.routeStops, staticConfig, stops, null);
+        SwissRailRaptorData data = createData(routeData, stopsQT, allTransfers, staticConfig, occupancyData, calcMinimalTransferTimesFingerprint(schedule.getMinimalTransferTimes()));
+
+        long endMillis = System.currentTimeMillis();
+        log.info("SwissRailRaptor data preparation done. Took " + (endMillis - startMillis) / 1000 + " seconds.");
+        logStatistics(data);
+        return data;
+    }
+
+    /**
+     * Creates the data for a changed transit schedule, reusing as much as possible from the data of the previous schedule.
+     * The expensive part of the data preparation is the search for transfers between route stops. The transfers between
+     * two route stops of unchanged transit routes are taken over from the previous data, only the transfers from and to
+     * route stops of new or changed transit routes are searched for.
+     *
+     * <p>A transit route is considered unchanged if it is the same object as before, with the same route stops,
+     * arrival and departure offsets, and departure times. If the minimal transfer times of the schedule or the static
+     * config changed, all data is prepared from scratch.</p>
+     *
+     * <p>The previous data is not modified, so routers still using it are not affected by the update.</p>
+     */
+    public static SwissRailRaptorData update(SwissRailRaptorData previous, TransitSchedule schedule, @Nullable Vehicles transitVehicles, RaptorStaticConfig staticConfig, Network network, OccupancyData occupancyData) {
+        long mttFingerprint = calcMinimalTransferTimesFingerprint(schedule.getMinimalTransferTimes());
+        if (previous.config != staticConfig || previous.minimalTransferTimesFingerprint != mttFingerprint) {
+            log.info("SwissRailRaptor config or minimal transfer times changed, data cannot be updated incrementally.");
+            return create(schedule, transitVehicles, staticConfig, network, occupancyData);
+        }
+
+        log.info("Updating data for SwissRailRaptor...");
+        long startMillis = System.currentTimeMillis();
+
+        RouteData routeData = RouteData.build(schedule, transitVehicles, staticConfig, network);
+        RRouteStop[] routeStops = routeData.routeStops;
+
+        Map<TransitRoute, RRoute> previousRoutes = new IdentityHashMap<>();
+        for (RRoute previousRoute : previous.routes) {
+            if (previousRoute.countRouteStops > 0) {
+                previousRoutes.put(previous.routeStops[previousRoute.indexFirstRouteStop].route, previousRoute);
+            }
+        }
+        TransitStopFacility[] previousStopFacilities = new TransitStopFacility[previous.countRouteStops];
+        for (Map.Entry<TransitStopFacility, int[]> e : previous.routeStopsPerStopFacility.entrySet()) {
+            for (int routeStopIndex : e.getValue()) {
+                previousStopFacilities[routeStopIndex] = e.getKey();
             }
         }
 
-        if (countRouteStops > Integer.MAX_VALUE) {
-            throw new RuntimeException("TransitSchedule has too many TransitRouteStops: " + countRouteStops);
+        // match the route stops of unchanged routes
+        int[] previousRouteStopIndices = new int[routeStops.length];
+        Arrays.fill(previousRouteStopIndices, -1);
+        int[] newRouteStopIndices = new int[previous.countRouteStops];
+        Arrays.fill(newRouteStopIndices, -1);
+        Set<TransitStopFacility> changedStops = new HashSet<>();
+        int countChangedRoutes = 0;
+        for (RRoute route : routeData.routes) {
+            if (route.countRouteStops == 0) {
+                continue;
+            }
+            RRoute previousRoute = previousRoutes.get(routeStops[route.indexFirstRouteStop].route);
+            if (previousRoute != null && isUnchangedRoute(previous, previousRoute, previousStopFacilities, routeData, route)) {
+                for (int i = 0; i < route.countRouteStops; i++) {
+                    previousRouteStopIndices[route.indexFirstRouteStop + i] = previousRoute.indexFirstRouteStop + i;
+                    newRouteStopIndices[previousRoute.indexFirstRouteStop + i] = route.indexFirstRouteStop + i;
+                }
+            } else {
+                countChangedRoutes++;
+                for (int i = 0; i < route.countRouteStops; i++) {
+                    changedStops.add(routeStops[route.indexFirstRouteStop + i].routeStop.getStopFacility());
+                }
+            }
+        }
+        // stops that were moved need new transfers as well
+        for (TransitStopFacility stop : routeData.routeStopsPerStopFacility.keySet()) {
+            Coord coord = stop.getCoord();
+            if (previous.routeStopsPerStopFacility.containsKey(stop) && !previous.stopsQT.getDisk(coord.getX(), coord.getY(), 0.0).contains(stop)) {
+                changedStops.add(stop);
+            }
         }
-        if (countDepartures > Integer.MAX_VALUE) {
-            throw new RuntimeException("TransitSchedule has too many Departures: " + countDepartures);
+        boolean[] isChangedRouteStop = new boolean[routeStops.length];
+        for (int i = 0; i < routeStops.length; i++) {
+            isChangedRouteStop[i] = previousRouteStopIndices[i] < 0 || changedStops.contains(routeStops[i].routeStop.getStopFacility());
         }
 
-        int[] departures = new int[(int) countDepartures];
-        Vehicle[] departureVehicles = new Vehicle[(int) countDepartures];
-        Id<Departure>[] departureIds = new Id[(int) countDepartures];
-        RRoute[] routes = new RRoute[countRoutes];
-        RRouteStop[] routeStops = new RRouteStop[(int) countRouteStops];
+        Set<TransitStopFacility> stops = routeData.routeStopsPerStopFacility.keySet();
+        QuadTree<TransitStopFacility> stopsQT = TransitScheduleUtils.createQuadTreeOfTransitStopFacilities(stops);
 
-        int indexRoutes = 0;
-        int indexRouteStops = 0;
-        int indexDeparture = 0;
+        // all transfers away from changed stops
+        Map<Integer, RTransfer[]> allTransfers = calculateRouteStopTransfers(schedule, stopsQT, routeData.routeStopsPerStopFacility, routeStops, staticConfig, changedStops, null);
 
-        // enumerate TransitStopFacilities along their usage in transit routes to (hopefully) achieve a better memory locality
-        // well, I'm not even sure how often we'll need the transit stop facilities, likely we'll use RouteStops more often
-        Map<TransitStopFacility, Integer> stopFacilityIndices = new HashMap<>((int) (schedule.getFacilities().size() * 1.5));
-        Map<TransitStopFacility, int[]> routeStopsPerStopFacility = new HashMap<>();
+        // transfers from unchanged stops to changed stops
+        Set<TransitStopFacility> stopsNearChangedStops = new HashSet<>();
+        for (TransitStopFacility stop : changedStops) {
+            Coord coord = stop.getCoord();
+            stopsNearChangedStops.addAll(stopsQT.getDisk(coord.getX(), coord.getY(), staticConfig.getBeelineWalkConnectionDistance()));
+        }
+        MinimalTransferTimes.MinimalTransferTimesIterator iter = schedule.getMinimalTransferTimes().iterator();
+        while (iter.hasNext()) {
+            iter.next();
+            TransitStopFacility fromStop = schedule.getFacilities().get(iter.getFromStopId());
+            TransitStopFacility toStop = schedule.getFacilities().get(iter.getToStopId());
+            if (changedStops.contains(toStop) && stops.contains(fromStop)) {
+                stopsNearChangedStops.add(fromStop);
+            }
+        }
+        stopsNearChangedStops.removeAll(changedStops);
+        Map<Integer, RTransfer[]> transfersToChangedStops = calculateRouteStopTransfers(schedule, stopsQT, routeData.routeStopsPerStopFacility, routeStops, staticConfig, stopsNearChangedStops, toRouteStopIndex -> isChangedRouteStop[toRouteStopIndex]);
 
-        boolean useModeMapping = staticConfig.isUseModeMappingForPassengers();
-        for (TransitLine line : schedule.getTransitLines().values()) {
-            List<TransitRoute> transitRoutes = new ArrayList<>(line.getRoutes().values());
-            transitRoutes.sort(Comparator.comparingDouble(tr -> getEarliestDeparture(tr).getDepartureTime())); // sort routes by earliest departure for additional performance gains
-            for (TransitRoute route : transitRoutes) {
-                int indexFirstDeparture = indexDeparture;
-                String mode = TransportMode.pt;
-                if (useModeMapping) {
-                    mode = staticConfig.getPassengerMode(route.getTransportMode());
-                }
-                RRoute rroute = new RRoute(indexRouteStops, route.getStops().size(), indexFirstDeparture, route.getDepartures().size());
-                routes[indexRoutes] = rroute;
-                NetworkRoute networkRoute = route.getRoute();
-                List<Id<Link>> allLinkIds = new ArrayList<>();
-                allLinkIds.add(networkRoute.getStartLinkId());
-                allLinkIds.addAll(networkRoute.getLinkIds());
-                if (allLinkIds.size() > 1 || networkRoute.getStartLinkId() != networkRoute.getEndLinkId()) {
-                    allLinkIds.add(networkRoute.getEndLinkId());
-                }
-                Iterator<Id<Link>> linkIdIterator = allLinkIds.iterator();
-                Id<Link> currentLinkId = linkIdIterator.next();
-                double distanceAlongRoute = 0.0;
-                for (TransitRouteStop routeStop : route.getStops()) {
-                    while (!routeStop.getStopFacility().getLinkId().equals(currentLinkId)) {
-                        if (linkIdIterator.hasNext()) {
-                            currentLinkId = linkIdIterator.next();
-                            Link link = network.getLinks().get(currentLinkId);
-                            distanceAlongRoute += link.getLength();
-                        } else {
-                            distanceAlongRoute = Double.NaN;
-                            break;
-                        }
-                    }
-                    int stopFacilityIndex = stopFacilityIndices.computeIfAbsent(routeStop.getStopFacility(), stop -> stopFacilityIndices.size());
-                    final int thisRouteStopIndex = indexRouteStops;
-                    RRouteStop rRouteStop = new RRouteStop(thisRouteStopIndex, routeStop, line, route, mode, indexRoutes, stopFacilityIndex, distanceAlongRoute);
-                    routeStops[thisRouteStopIndex] = rRouteStop;
-                    routeStopsPerStopFacility.compute(routeStop.getStopFacility(), (stop, currentRouteStops) -> {
-                        if (currentRouteStops == null) {
-                            return new int[] { thisRouteStopIndex };
-                        }
-                        int[] tmp = new int[currentRouteStops.length + 1];
-                        System.arraycopy(currentRouteStops, 0, tmp, 0, currentRouteStops.length);
-                        tmp[currentRouteStops.length] = thisRouteStopIndex;
-                        return tmp;
-                    });
-                    indexRouteStops++;
-                }
-                for (Departure dep : route.getDepartures().values()) {
-                    departures[indexDeparture] = (int) dep.getDepartureTime();
-                    departureVehicles[indexDeparture] = vehicles.get(dep.getVehicleId());
-                    departureIds[indexDeparture] = dep.getId();
-                    indexDeparture++;
+        // transfers between unchanged stops are taken over from the previous data
+        List<RTransfer> stopTransfers = new ArrayList<>();
+        for (int routeStopIndex = 0; routeStopIndex < routeStops.length; routeStopIndex++) {
+            if (isChangedRouteStop[routeStopIndex]) {
+                continue;
+            }
+            stopTransfers.clear();
+            RRouteStop previousRouteStop = previous.routeStops[previousRouteStopIndices[routeStopIndex]];
+            for (int i = 0; i < previousRouteStop.countTransfers; i++) {
+                RTransfer previousTransfer = previous.transfers[previousRouteStop.indexFirstTransfer + i];
+                int toRouteStopIndex = newRouteStopIndices[previousTransfer.toRouteStop];
+                if (toRouteStopIndex >= 0 && !isChangedRouteStop[toRouteStopIndex]) {
+                    stopTransfers.add(new RTransfer(routeStopIndex, toRouteStopIndex, previousTransfer.transferTime, previousTransfer.transferDistance));
                 }
-                Arrays.sort(departures, indexFirstDeparture, indexDeparture);
-                indexRoutes++;
+            }
+            RTransfer[] newTransfers = transfersToChangedStops.get(routeStopIndex);
+            if (newTransfers != null) {
+                stopTransfers.addAll(Arrays.asList(newTransfers));
+            }
+            if (!stopTransfers.isEmpty()) {
+                allTransfers.put(routeStopIndex, stopTransfers.toArray(new RTransfer[0]));
             }
         }
 
-        // only put used transit stops into the quad tree
-        Set<TransitStopFacility> stops = routeStopsPerStopFacility.keySet();
-        QuadTree<TransitStopFacility> stopsQT = TransitScheduleUtils.createQuadTreeOfTransitStopFacilities(stops);
-        int countStopFacilities = stops.size();
+        SwissRailRaptorData data = createData(routeData, stopsQT, allTransfers, staticConfig, occupancyData, mttFingerprint);
 
-        Map<Integer, RTransfer[]> allTransfers = calculateRouteStopTransfers(schedule, stopsQT, routeStopsPerStopFacility, routeStops, staticConfig);
+        long endMillis = System.currentTimeMillis();
+        log.info("SwissRailRaptor data update done. Took " + (endMillis - startMillis) / 1000 + " seconds. " + countChangedRoutes + " of "
+                + data.routes.length + " routes and " + changedStops.size() + " stopFacilities had changed.");
+        logStatistics(data);
+        return data;
+    }
+
+    private static boolean isUnchangedRoute(SwissRailRaptorData previous, RRoute previousRoute, TransitStopFacility[] previousStopFacilities, RouteData routeData, RRoute route) {
+        if (previousRoute.countRouteStops != route.countRouteStops || previousRoute.countDepartures != route.countDepartures) {
+            return false;
+        }
+        for (int i = 0; i < route.countRouteStops; i++) {
+            int previousRouteStopIndex = previousRoute.indexFirstRouteStop + i;
+            RRouteStop previousRouteStop = previous.routeStops[previousRouteStopIndex];
+            RRouteStop routeStop = routeData.routeStops[route.indexFirstRouteStop + i];
+            if (previousRouteStop.routeStop != routeStop.routeStop
+                    || previousStopFacilities[previousRouteStopIndex] != routeStop.routeStop.getStopFacility()
+                    || previousRouteStop.arrivalOffset != routeStop.arrivalOffset
+                    || previousRouteStop.departureOffset != routeStop.departureOffset) {
+                return false;
+            }
+        }
+        for (int i = 0; i < route.countDepartures; i++) {
+            if (previous.departures[previousRoute.indexFirstDeparture + i] != routeData.departures[route.indexFirstDeparture + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SwissRailRaptorData createData(RouteData routeData, QuadTree<TransitStopFacility> stopsQT, Map<Integer, RTransfer[]> allTransfers,
+                                                  RaptorStaticConfig staticConfig, OccupancyData occupancyData, long minimalTransferTimesFingerprint) {
+        RRouteStop[] routeStops = routeData.routeStops;
         long countTransfers = 0;
         for (RTransfer[] transfers : allTransfers.values()) {
             countTransfers += transfers.length;
@@ -205,20 +282,45 @@ public class SwissRailRaptorData {
             }
         }
 
-        SwissRailRaptorData data = new SwissRailRaptorData(staticConfig, countStopFacilities, routes, departures, departureVehicles, departureIds, routeStops, transfers, stopFacilityIndices, routeStopsPerStopFacility, stopsQT, occupancyData);
+        int countStopFacilities = routeData.routeStopsPerStopFacility.size();
+        return new SwissRailRaptorData(staticConfig, countStopFacilities, routeData.routes, routeData.departures, routeData.departureVehicles, routeData.departureIds,
+                routeStops, transfers, routeData.stopFacilityIndices, routeData.routeStopsPerStopFacility, stopsQT, occupancyData, minimalTransferTimesFingerprint);
+    }
 
-        long endMillis = System.currentTimeMillis();
-        log.info("SwissRailRaptor data preparation done. Took " + (endMillis - startMillis) / 1000 + " seconds.");
-        log.info("SwissRailRaptor statistics:  #routes = " + routes.length);
-        log.info("SwissRailRaptor statistics:  #departures = " + departures.length);
-        log.info("SwissRailRaptor statistics:  #routeStops = " + routeStops.length);
-        log.info("SwissRailRaptor statistics:  #stopFacilities = " + countStopFacilities);
-        log.info("SwissRailRaptor statistics:  #transfers (between routeStops) = " + transfers.length);
-        return data;
+    private static void logStatistics(SwissRailRaptorData data) {
+        log.info("SwissRailRaptor statistics:  #routes = " + data.routes.length);
+        log.info("SwissRailRaptor statistics:  #departures = " + data.departures.length);
+        log.info("SwissRailRaptor statistics:  #routeStops = " + data.routeStops.length);
+        log.info("SwissRailRaptor statistics:  #stopFacilities = " + data.countStops);
+        log.info("SwissRailRaptor statistics:  #transfers (between routeStops) = " + data.transfers.length);
+    }
+
+    private static long calcMinimalTransferTimesFingerprint(MinimalTransferTimes mtt) {
+        // order-independent, as the iteration order of the minimal transfer times is not defined
+        long fingerprint = 0;
+        MinimalTransferTimes.MinimalTransferTimesIterator iter = mtt.iterator();
+        while (iter.hasNext()) {
+            iter.next();
+            long hash = iter.getFromStopId().toString().hashCode();
+            hash = hash * 31 + iter.getToStopId().toString().hashCode();
+            hash = hash * 31 + Double.hashCode(iter.getSeconds());
+            fingerprint += mix(hash);
+        }
+        return fingerprint;
+    }
+
+    private static long mix(long value) {
+        // finalizer of SplitMix64
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     // calculate possible transfers between TransitRouteStops
-    private static Map<Integer, RTransfer[]> calculateRouteStopTransfers(TransitSchedule schedule, QuadTree<TransitStopFacility> stopsQT, Map<TransitStopFacility, int[]> routeStopsPerStopFacility, RRouteStop[] routeStops, RaptorStaticConfig config) {
+    // only transfers from the given stops and, if a filter is given, only to the accepted route stops are calculated
+    private static Map<Integer, RTransfer[]> calculateRouteStopTransfers(TransitSchedule schedule, QuadTree<TransitStopFacility> stopsQT, Map<TransitStopFacility, int[]> routeStopsPerStopFacility,
+                                                                        RRouteStop[] routeStops, RaptorStaticConfig config, Set<TransitStopFacility> fromStops, @Nullable IntPredicate toRouteStopFilter) {
         Map<Integer, RTransfer[]> transfers = new HashMap<>(stopsQT.size() * 5);
         double maxBeelineWalkConnectionDistance = config.getBeelineWalkConnectionDistance();
         double beelineWalkSpeed = config.getBeelineWalkSpeed();
@@ -228,7 +330,10 @@ public class SwissRailRaptorData {
         Map<TransitStopFacility, List<TransitStopFacility>> stopToStopsTransfers = new HashMap<>();
 
         // first, add transfers based on distance
-        for (TransitStopFacility fromStop : routeStopsPerStopFacility.keySet()) {
+        for (TransitStopFacility fromStop : fromStops) {
+            if (!routeStopsPerStopFacility.containsKey(fromStop)) {
+                continue;
+            }
             Coord fromCoord = fromStop.getCoord();
             Collection<TransitStopFacility> nearbyStops = stopsQT.getDisk(fromCoord.getX(), fromCoord.getY(), maxBeelineWalkConnectionDistance);
             stopToStopsTransfers.computeIfAbsent(fromStop, stop -> new ArrayList<>(5)).addAll(nearbyStops);
@@ -240,6 +345,9 @@ public class SwissRailRaptorData {
             iter.next();
             Id<TransitStopFacility> fromStopId = iter.getFromStopId();
             TransitStopFacility fromStop = schedule.getFacilities().get(fromStopId);
+            if (!fromStops.contains(fromStop)) {
+                continue;
+            }
             Id<TransitStopFacility> toStopId = iter.getToStopId();
             TransitStopFacility toStop = schedule.getFacilities().get(toStopId);
             List<TransitStopFacility> destinationStops = stopToStopsTransfers.computeIfAbsent(fromStop, stop -> new ArrayList<>(5));
@@ -272,12 +380,18 @@ public class SwissRailRaptorData {
                     RRouteStop fromRouteStop = routeStops[fromRouteStopIndex];
                     stopTransfers.clear();
                     for (int toRouteStopIndex : toRouteStopIndices) {
+                        if (toRouteStopFilter != null && !toRouteStopFilter.test(toRouteStopIndex)) {
+                            continue;
+                        }
                         RRouteStop toRouteStop = routeStops[toRouteStopIndex];
                         if (isUsefulTransfer(fromRouteStop, toRouteStop, maxBeelineWalkConnectionDistance, config.getOptimization())) {
                             RTransfer newTransfer = new RTransfer(fromRouteStopIndex, toRouteStopIndex, fixedTransferTime, beelineDistance * beelineDistanceFactor);
                             stopTransfers.add(newTransfer);
                         }
                     }
+                    if (stopTransfers.isEmpty() && toRouteStopFilter != null) {
+                        continue;
+                    }
                     RTransfer[] newTransfers = stopTransfers.toArray(new RTransfer[0]);
                     transfers.compute(fromRouteStopIndex, (routeStopIndex, currentTransfers) -> {
                         if (currentTransfers == null) {
@@ -470,6 +584,125 @@ public class SwissRailRaptorData {
         return this.stopsQT.getClosest(x, y);
     }
 
+    private static final class RouteData {
+        final RRoute[] routes;
+        final int[] departures;
+        final Vehicle[] departureVehicles;
+        final Id<Departure>[] departureIds;
+        final RRouteStop[] routeStops;
+        final Map<TransitStopFacility, Integer> stopFacilityIndices;
+        final Map<TransitStopFacility, int[]> routeStopsPerStopFacility;
+
+        private RouteData(RRoute[] routes, int[] departures, Vehicle[] departureVehicles, Id<Departure>[] departureIds, RRouteStop[] routeStops,
+                          Map<TransitStopFacility, Integer> stopFacilityIndices, Map<TransitStopFacility, int[]> routeStopsPerStopFacility) {
+            this.routes = routes;
+            this.departures = departures;
+            this.departureVehicles = departureVehicles;
+            this.departureIds = departureIds;
+            this.routeStops = routeStops;
+            this.stopFacilityIndices = stopFacilityIndices;
+            this.routeStopsPerStopFacility = routeStopsPerStopFacility;
+        }
+
+        static RouteData build(TransitSchedule schedule, @Nullable Vehicles transitVehicles, RaptorStaticConfig staticConfig, Network network) {
+            Map<Id<Vehicle>, Vehicle> vehicles = transitVehicles == null ? Collections.emptyMap() : transitVehicles.getVehicles();
+            int countRoutes = 0;
+            long countRouteStops = 0;
+            long countDepartures = 0;
+
+            for (TransitLine line : schedule.getTransitLines().values()) {
+                countRoutes += line.getRoutes().size();
+                for (TransitRoute route : line.getRoutes().values()) {
+                    countRouteStops += route.getStops().size();
+                    countDepartures += route.getDepartures().size();
+                }
+            }
+
+            if (countRouteStops > Integer.MAX_VALUE) {
+                throw new RuntimeException("TransitSchedule has too many TransitRouteStops: " + countRouteStops);
+            }
+            if (countDepartures > Integer.MAX_VALUE) {
+                throw new RuntimeException("TransitSchedule has too many Departures: " + countDepartures);
+            }
+
+            int[] departures = new int[(int) countDepartures];
+            Vehicle[] departureVehicles = new Vehicle[(int) countDepartures];
+            Id<Departure>[] departureIds = new Id[(int) countDepartures];
+            RRoute[] routes = new RRoute[countRoutes];
+            RRouteStop[] routeStops = new RRouteStop[(int) countRouteStops];
+
+            int indexRoutes = 0;
+            int indexRouteStops = 0;
+            int indexDeparture = 0;
+
+            // enumerate TransitStopFacilities along their usage in transit routes to (hopefully) achieve a better memory locality
+            // well, I'm not even sure how often we'll need the transit stop facilities, likely we'll use RouteStops more often
+            Map<TransitStopFacility, Integer> stopFacilityIndices = new HashMap<>((int) (schedule.getFacilities().size() * 1.5));
+            Map<TransitStopFacility, int[]> routeStopsPerStopFacility = new HashMap<>();
+
+            boolean useModeMapping = staticConfig.isUseModeMappingForPassengers();
+            for (TransitLine line : schedule.getTransitLines().values()) {
+                List<TransitRoute> transitRoutes = new ArrayList<>(line.getRoutes().values());
+                transitRoutes.sort(Comparator.comparingDouble(tr -> getEarliestDeparture(tr).getDepartureTime())); // sort routes by earliest departure for additional performance gains
+                for (TransitRoute route : transitRoutes) {
+                    int indexFirstDeparture = indexDeparture;
+                    String mode = TransportMode.pt;
+                    if (useModeMapping) {
+                        mode = staticConfig.getPassengerMode(route.getTransportMode());
+                    }
+                    RRoute rroute = new RRoute(indexRouteStops, route.getStops().size(), indexFirstDeparture, route.getDepartures().size());
+                    routes[indexRoutes] = rroute;
+                    NetworkRoute networkRoute = route.getRoute();
+                    List<Id<Link>> allLinkIds = new ArrayList<>();
+                    allLinkIds.add(networkRoute.getStartLinkId());
+                    allLinkIds.addAll(networkRoute.getLinkIds());
+                    if (allLinkIds.size() > 1 || networkRoute.getStartLinkId() != networkRoute.getEndLinkId()) {
+                        allLinkIds.add(networkRoute.getEndLinkId());
+                    }
+                    Iterator<Id<Link>> linkIdIterator = allLinkIds.iterator();
+                    Id<Link> currentLinkId = linkIdIterator.next();
+                    double distanceAlongRoute = 0.0;
+                    for (TransitRouteStop routeStop : route.getStops()) {
+                        while (!routeStop.getStopFacility().getLinkId().equals(currentLinkId)) {
+                            if (linkIdIterator.hasNext()) {
+                                currentLinkId = linkIdIterator.next();
+                                Link link = network.getLinks().get(currentLinkId);
+                                distanceAlongRoute += link.getLength();
+                            } else {
+                                distanceAlongRoute = Double.NaN;
+                                break;
+                            }
+                        }
+                        int stopFacilityIndex = stopFacilityIndices.computeIfAbsent(routeStop.getStopFacility(), stop -> stopFacilityIndices.size());
+                        final int thisRouteStopIndex = indexRouteStops;
+                        RRouteStop rRouteStop = new RRouteStop(thisRouteStopIndex, routeStop, line, route, mode, indexRoutes, stopFacilityIndex, distanceAlongRoute);
+                        routeStops[thisRouteStopIndex] = rRouteStop;
+                        routeStopsPerStopFacility.compute(routeStop.getStopFacility(), (stop, currentRouteStops) -> {
+                            if (currentRouteStops == null) {
+                                return new int[] { thisRouteStopIndex };
+                            }
+                            int[] tmp = new int[currentRouteStops.length + 1];
+                            System.arraycopy(currentRouteStops, 0, tmp, 0, currentRouteStops.length);
+                            tmp[currentRouteStops.length] = thisRouteStopIndex;
+                            return tmp;
+                        });
+                        indexRouteStops++;
+                    }
+                    for (Departure dep : route.getDepartures().values()) {
+                        departures[indexDeparture] = (int) dep.getDepartureTime();
+                        departureVehicles[indexDeparture] = vehicles.get(dep.getVehicleId());
+                        departureIds[indexDeparture] = dep.getId();
+                        indexDeparture++;
+                    }
+                    Arrays.sort(departures, indexFirstDeparture, indexDeparture);
+                    indexRoutes++;
+                }
+            }
+
+            return new RouteData(routes, departures, departureVehicles, departureIds, routeStops, stopFacilityIndices, routeStopsPerStopFacility);
+        }
+    }
+
     static final class RRoute {
         final int indexFirstRouteStop;
         final int countRouteStops;
@@ -22,7 +22,8 @@ import javax.inject.Singleton;
 @Singleton
 public class SwissRailRaptorFactory implements Provider<SwissRailRaptor> {
 
-    private SwissRailRaptorData data = null;
+    private volatile SwissRailRaptorData data = null;
+    private SwissRailRaptorData previousData = null;
     private final TransitSchedule schedule;
     private final Vehicles transitVehicles;
     private final RaptorStaticConfig raptorConfig;
@@ -51,7 +52,7 @@ public class SwissRailRaptorFactory implements Provider<SwissRailRaptor> {
         this.inVehicleCostCalculator = inVehicleCostCalculator;
 
         if (events != null) {
-            events.addHandler((TransitScheduleChangedEventHandler) event -> this.data = null);
+            events.addHandler((TransitScheduleChangedEventHandler) event -> invalidateData());
         }
     }
 
@@ -74,8 +75,21 @@ public class SwissRailRaptorFactory implements Provider<SwissRailRaptor> {
             // prevent doing the work twice.
             return this.data;
         }
-        this.data = SwissRailRaptorData.create(this.schedule, this.transitVehicles, this.raptorConfig, this.network, this.occupancyData);
+        if (this.previousData != null && this.raptorConfig.isUseIncrementalDataUpdate()) {
+            this.data = SwissRailRaptorData.update(this.previousData, this.schedule, this.transitVehicles, this.raptorConfig, this.network, this.occupancyData);
+        } else {
+            this.data = SwissRailRaptorData.create(this.schedule, this.transitVehicles, this.raptorConfig, this.network, this.occupancyData);
+        }
+        this.previousData = null;
         return this.data;
     }
 
+    synchronized private void invalidateData() {
+        // routers created before keep using the old data, it is never modified.
+        if (this.data != null) {
+            this.previousData = this.data;
+        }
+        this.data = null;
+    }
+
 }
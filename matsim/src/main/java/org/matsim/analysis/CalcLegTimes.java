@@ -28,6 +28,7 @@ import java.util.TreeMap;
 import javax.inject.Inject;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.IdDoubleMap;
 import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.ActivityStartEvent;
@@ -59,8 +60,8 @@ public class CalcLegTimes implements PersonDepartureEventHandler, PersonArrivalE
 	private static final int SLOT_SIZE = 300;	// 5-min slots
 	private static final int MAXINDEX = 12; // slots 0..11 are regular slots, slot 12 is anything above
 
-	private final IdMap<Person, Double> agentDepartures = new IdMap<>(Person.class);
-	private final IdMap<Person, Double> agentArrivals = new IdMap<>(Person.class);
+	private final IdDoubleMap<Person> agentDepartures = new IdDoubleMap<>(Person.class);
+	private final IdDoubleMap<Person> agentArrivals = new IdDoubleMap<>(Person.class);
 	private final Map<String, int[]> legStats = new TreeMap<>();
 	private final IdMap<Person, String> previousActivityTypes = new IdMap<>(Person.class);
 	private double sumTripDurations = 0;
@@ -93,9 +94,10 @@ public class CalcLegTimes implements PersonDepartureEventHandler, PersonArrivalE
 
 	@Override
 	public void handleEvent(ActivityStartEvent event) {
-		Double depTime = this.agentDepartures.remove(event.getPersonId());
-		Double arrTime = this.agentArrivals.remove(event.getPersonId());
-		if (depTime != null) {
+		boolean departed = this.agentDepartures.containsKey(event.getPersonId());
+		double depTime = this.agentDepartures.remove(event.getPersonId());
+		double arrTime = this.agentArrivals.remove(event.getPersonId());
+		if (departed) {
 			double travTime = arrTime - depTime;
 			String fromActType = previousActivityTypes.remove(event.getPersonId());
 			String toActType = event.getActType();
@@ -0,0 +1,402 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IterationProfiler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Measures the phases of the iterations and the calls of the controler listeners and replanning strategies
+ * within them. For every measured section, it records the wall time, the CPU time of the process and of the
+ * calling thread, the bytes allocated by the calling thread and the garbage collections.
+ * <p></p>
+ * The sections are nested: the calls of the listeners are part of the phase which fired them, and the strategies
+ * are part of the replanning listener. Work done by other threads (e.g. the threads of the mobsim or of the
+ * replanning modules) is included in the CPU time of the process, but not in the allocated bytes.
+ * <p></p>
+ * The profiler only records something if it is enabled and an iteration is running, so {@link #start(String, String)}
+ * is cheap to call otherwise.
+ *
+ * @see org.matsim.core.config.groups.ControlerConfigGroup#isProfiling()
+ */
+public final class IterationProfiler {
+
+	public static final String PHASE_ITERATION = "iteration";
+
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+	private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+	private boolean enabled = false;
+	private int iteration = -1;
+	private Measurement iterationMeasurement = null;
+	private final Map<Integer, List<Section>> sections = new LinkedHashMap<>();
+	// the csv file written to in this run, further iterations are appended to it
+	private String csvFilename = null;
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public synchronized void beginIteration(int iteration) {
+		if (!this.enabled) {
+			return;
+		}
+		this.iteration = iteration;
+		this.sections.put(iteration, new ArrayList<>());
+		this.iterationMeasurement = start(PHASE_ITERATION, "");
+	}
+
+	public synchronized void endIteration() {
+		if (this.iterationMeasurement != null) {
+			stop(this.iterationMeasurement);
+			this.iterationMeasurement = null;
+		}
+		this.iteration = -1;
+	}
+
+	/**
+	 * Starts measuring a section. The returned measurement has to be passed to {@link #stop(Measurement)}.
+	 *
+	 * @param phase the phase, e.g. the name of the step of the iteration or the name of the listener method
+	 * @param name the name of what is measured within the phase, e.g. the listener class, or an empty string
+	 * @return the started measurement, or <code>null</code> if nothing is recorded at the moment
+	 */
+	public Measurement start(String phase, String name) {
+		if (!isRecording()) {
+			return null;
+		}
+		return new Measurement(this.iteration, phase, name, takeSample());
+	}
+
+	/**
+	 * @return a new accumulator, or <code>null</code> if nothing is recorded at the moment
+	 */
+	public Accumulator createAccumulator() {
+		return isRecording() ? new Accumulator(this) : null;
+	}
+
+	/**
+	 * @return whether sections are recorded at the moment, i.e. the profiler is enabled and an iteration is running
+	 */
+	public boolean isRecording() {
+		return this.enabled && this.iteration >= 0;
+	}
+
+	/**
+	 * Stops the measurement and records the section. <code>null</code> is ignored.
+	 */
+	public void stop(Measurement measurement) {
+		stop(measurement, null);
+	}
+
+	/**
+	 * Stops the measurement and records the section, including the calls collected by the accumulator.
+	 * The measurement <code>null</code> is ignored, the accumulator may be <code>null</code>.
+	 */
+	public void stop(Measurement measurement, Accumulator accumulated) {
+		if (measurement == null) {
+			return;
+		}
+		Sample end = takeSample();
+		Sample sample = end.minus(measurement.start);
+		if (accumulated != null) {
+			sample = sample.plus(accumulated.getTotal());
+		}
+		Section section = new Section(measurement.phase, measurement.name, sample);
+		synchronized (this) {
+			List<Section> list = this.sections.get(measurement.iteration);
+			if (list != null) {
+				list.add(section);
+			}
+		}
+	}
+
+	/**
+	 * @return the sections of the given iteration, in the order in which they were finished.
+	 */
+	public synchronized List<Section> getSections(int iteration) {
+		List<Section> list = this.sections.get(iteration);
+		return list == null ? new ArrayList<>() : new ArrayList<>(list);
+	}
+
+	private Sample takeSample() {
+		long processCpuNanos = 0;
+		if (this.osBean instanceof com.sun.management.OperatingSystemMXBean) {
+			processCpuNanos = Math.max(0, ((com.sun.management.OperatingSystemMXBean) this.osBean).getProcessCpuTime());
+		}
+		long gcCount = 0;
+		long gcMillis = 0;
+		for (GarbageCollectorMXBean gc : this.gcBeans) {
+			gcCount += Math.max(0, gc.getCollectionCount());
+			gcMillis += Math.max(0, gc.getCollectionTime());
+		}
+		return new Sample(System.nanoTime(), processCpuNanos, threadCpuNanos(), threadAllocatedBytes(), gcCount, gcMillis);
+	}
+
+	private long threadCpuNanos() {
+		return this.threadBean.isCurrentThreadCpuTimeSupported() ? this.threadBean.getCurrentThreadCpuTime() : 0;
+	}
+
+	private long threadAllocatedBytes() {
+		if (this.threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) this.threadBean;
+			if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+				return Math.max(0, bean.getThreadAllocatedBytes(Thread.currentThread().getId()));
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Writes the sections of the given iteration, one per line. The first call creates the file with a header,
+	 * later calls with the same file append to it, so the file is not rewritten in every iteration.
+	 */
+	public synchronized void writeCsv(String filename, String delimiter, int iteration) {
+		boolean append = filename.equals(this.csvFilename);
+		try (BufferedWriter writer = append ? IOUtils.getAppendingBufferedWriter(filename) : IOUtils.getBufferedWriter(filename)) {
+			if (!append) {
+				writer.write(String.join(delimiter, "iteration", "phase", "name", "wall_ms", "cpu_ms", "thread_cpu_ms", "thread_allocated_mb", "gc_count", "gc_ms"));
+				writer.write("\n");
+			}
+			for (Section s : getSections(iteration)) {
+				writer.write(String.join(delimiter, Integer.toString(iteration), s.phase, s.name, format(s.sample.wallNanos / 1e6),
+						format(s.sample.processCpuNanos / 1e6), format(s.sample.threadCpuNanos / 1e6), format(s.sample.allocatedBytes / 1e6),
+						Long.toString(s.sample.gcCount), Long.toString(s.sample.gcMillis)));
+				writer.write("\n");
+			}
+			this.csvFilename = filename;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the totals of all sections with the same phase and name over all iterations as JSON, the most expensive first.
+	 */
+	public synchronized void writeSummary(String filename) {
+		Map<String, Section> totals = new LinkedHashMap<>();
+		Map<String, Integer> calls = new LinkedHashMap<>();
+		for (List<Section> list : this.sections.values()) {
+			for (Section s : list) {
+				String key = s.phase + "\t" + s.name;
+				Section total = totals.get(key);
+				totals.put(key, total == null ? s : new Section(s.phase, s.name, total.sample.plus(s.sample)));
+				calls.merge(key, 1, Integer::sum);
+			}
+		}
+		List<Map.Entry<String, Section>> sorted = new ArrayList<>(totals.entrySet());
+		sorted.sort(Comparator.comparingLong((Map.Entry<String, Section> e) -> e.getValue().sample.wallNanos).reversed());
+
+		try (OutputStream out = IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false);
+			 JsonGenerator json = new JsonFactory().createGenerator(out)) {
+			json.useDefaultPrettyPrinter();
+			json.writeStartObject();
+			json.writeNumberField("iterations", this.sections.size());
+			json.writeArrayFieldStart("sections");
+			for (Map.Entry<String, Section> e : sorted) {
+				Section s = e.getValue();
+				json.writeStartObject();
+				json.writeStringField("phase", s.phase);
+				json.writeStringField("name", s.name);
+				json.writeNumberField("calls", calls.get(e.getKey()));
+				json.writeNumberField("wall_ms", s.sample.wallNanos / 1e6);
+				json.writeNumberField("cpu_ms", s.sample.processCpuNanos / 1e6);
+				json.writeNumberField("thread_cpu_ms", s.sample.threadCpuNanos / 1e6);
+				json.writeNumberField("thread_allocated_mb", s.sample.allocatedBytes / 1e6);
+				json.writeNumberField("gc_count", s.sample.gcCount);
+				json.writeNumberField("gc_ms", s.sample.gcMillis);
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+			json.writeEndObject();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/**
+	 * A running measurement, see {@link IterationProfiler#start(String, String)}.
+	 */
+	public static final class Measurement {
+		private final int iteration;
+		private final String phase;
+		private final String name;
+		private final Sample start;
+
+		private Measurement(int iteration, String phase, String name, Sample start) {
+			this.iteration = iteration;
+			this.phase = phase;
+			this.name = name;
+			this.start = start;
+		}
+	}
+
+	/**
+	 * Collects many short calls, e.g. of a replanning strategy for every person, which are recorded together with a
+	 * {@link Measurement} (see {@link IterationProfiler#stop(Measurement, Accumulator)}). Only the wall time and the CPU
+	 * time and allocated bytes of the calling thread are measured per call, the CPU time of the process and the
+	 * garbage collections are too expensive to sample that often. Not thread-safe, every call must be made by the
+	 * same thread.
+	 */
+	public static final class Accumulator {
+		private final IterationProfiler profiler;
+		private long wallNanos;
+		private long threadCpuNanos;
+		private long allocatedBytes;
+		private long totalWallNanos = 0;
+		private long totalThreadCpuNanos = 0;
+		private long totalAllocatedBytes = 0;
+
+		private Accumulator(IterationProfiler profiler) {
+			this.profiler = profiler;
+		}
+
+		public void begin() {
+			this.wallNanos = System.nanoTime();
+			this.threadCpuNanos = this.profiler.threadCpuNanos();
+			this.allocatedBytes = this.profiler.threadAllocatedBytes();
+		}
+
+		public void end() {
+			this.totalWallNanos += System.nanoTime() - this.wallNanos;
+			this.totalThreadCpuNanos += this.profiler.threadCpuNanos() - this.threadCpuNanos;
+			this.totalAllocatedBytes += this.profiler.threadAllocatedBytes() - this.allocatedBytes;
+		}
+
+		private Sample getTotal() {
+			return new Sample(this.totalWallNanos, 0, this.totalThreadCpuNanos, this.totalAllocatedBytes, 0, 0);
+		}
+	}
+
+	/**
+	 * A measured section of an iteration.
+	 */
+	public static final class Section {
+		private final String phase;
+		private final String name;
+		private final Sample sample;
+
+		private Section(String phase, String name, Sample sample) {
+			this.phase = phase;
+			this.name = name;
+			this.sample = sample;
+		}
+
+		public String getPhase() {
+			return this.phase;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public long getWallNanos() {
+			return this.sample.wallNanos;
+		}
+
+		/**
+		 * @return the CPU time of the whole process, i.e. of all threads, or 0 if not supported by the JVM
+		 */
+		public long getCpuNanos() {
+			return this.sample.processCpuNanos;
+		}
+
+		/**
+		 * @return the CPU time of the thread which ran the section, or 0 if not supported by the JVM
+		 */
+		public long getThreadCpuNanos() {
+			return this.sample.threadCpuNanos;
+		}
+
+		/**
+		 * @return the bytes allocated by the thread which ran the section, or 0 if not supported by the JVM
+		 */
+		public long getThreadAllocatedBytes() {
+			return this.sample.allocatedBytes;
+		}
+
+		public long getGcCount() {
+			return this.sample.gcCount;
+		}
+
+		public long getGcMillis() {
+			return this.sample.gcMillis;
+		}
+
+		@Override
+		public String toString() {
+			return this.phase + " " + this.name + ": " + format(this.sample.wallNanos / 1e6) + " ms";
+		}
+	}
+
+	private static final class Sample {
+		final long wallNanos;
+		final long processCpuNanos;
+		final long threadCpuNanos;
+		final long allocatedBytes;
+		final long gcCount;
+		final long gcMillis;
+
+		Sample(long wallNanos, long processCpuNanos, long threadCpuNanos, long allocatedBytes, long gcCount, long gcMillis) {
+			this.wallNanos = wallNanos;
+			this.processCpuNanos = processCpuNanos;
+			this.threadCpuNanos = threadCpuNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+		}
+
+		Sample minus(Sample o) {
+			return new Sample(this.wallNanos - o.wallNanos, this.processCpuNanos - o.processCpuNanos, this.threadCpuNanos - o.threadCpuNanos,
+					this.allocatedBytes - o.allocatedBytes, this.gcCount - o.gcCount, this.gcMillis - o.gcMillis);
+		}
+
+		Sample plus(Sample o) {
+			return new Sample(this.wallNanos + o.wallNanos, this.processCpuNanos + o.processCpuNanos, this.threadCpuNanos + o.threadCpuNanos,
+					this.allocatedBytes + o.allocatedBytes, this.gcCount + o.gcCount, this.gcMillis + o.gcMillis);
+		}
+	}
+}
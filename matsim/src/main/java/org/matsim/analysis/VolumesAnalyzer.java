@@ -30,6 +30,7 @@ import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.PrimitiveLinkEventHandler;
 import org.matsim.vehicles.Vehicle;
 
 import javax.inject.Inject;
@@ -43,7 +44,7 @@ import java.util.TreeSet;
  *
  * @author mrieser
  */
-public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler {
+public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTrafficEventHandler, PrimitiveLinkEventHandler {
 
 	private final static Logger log = Logger.getLogger(VolumesAnalyzer.class);
 	private final int timeBinSize;
@@ -91,21 +92,31 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
-		int[] volumes = this.links.get(event.getLinkId());
+		handleLinkLeave(event.getTime(), event.getVehicleId().index(), event.getLinkId().index());
+	}
+
+	@Override
+	public void handleLinkEnter(double time, int vehicleIndex, int linkIndex) {
+		// not called, this is no LinkEnterEventHandler
+	}
+
+	@Override
+	public void handleLinkLeave(double time, int vehicleIndex, int linkIndex) {
+		int[] volumes = this.links.get(linkIndex);
 		if (volumes == null) {
 			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-			this.links.put(event.getLinkId(), volumes);
+			this.links.put(Id.get(linkIndex, Link.class), volumes);
 		}
-		int timeslot = getTimeSlotIndex(event.getTime());
+		int timeslot = getTimeSlotIndex(time);
 		volumes[timeslot]++;
 		
 		if (this.observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(event.getLinkId());
+			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkIndex);
 			if (modeVolumes == null) {
 				modeVolumes = new HashMap<>();
-				this.linksPerMode.put(event.getLinkId(), modeVolumes);
+				this.linksPerMode.put(Id.get(linkIndex, Link.class), modeVolumes);
 			}
-			String mode = this.enRouteModes.get(event.getVehicleId());
+			String mode = this.enRouteModes.get(vehicleIndex);
 			volumes = modeVolumes.get(mode);
 			if (volumes == null) {
 				volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
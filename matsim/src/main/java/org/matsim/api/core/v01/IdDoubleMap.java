@@ -0,0 +1,158 @@
+package org.matsim.api.core.v01;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Stores one primitive <code>double</code> per id, in an array indexed by {@link Id#index()}.
+ * This is the primitive counterpart of {@link IdMap}: values are neither boxed nor hashed,
+ * so it can be used for per-link or per-person data that is updated for every event.
+ *
+ * Looking up an id without value returns the <code>noEntryValue</code> given in the constructor.
+ * The <code>int</code> based methods take the id index directly, e.g. from
+ * {@link org.matsim.core.events.handler.PrimitiveLinkEventHandler}.
+ */
+public class IdDoubleMap<T> {
+
+	private static final int INCREMENT = 100;
+	private static final float INCREMENT_FACTOR = 1.5f;
+	private final Class<T> idClass;
+	private final double noEntryValue;
+	private int size = 0;
+	private double[] data;
+	private final BitSet keys;
+
+	public IdDoubleMap(Class<T> idClass) {
+		this(idClass, Double.NaN);
+	}
+
+	public IdDoubleMap(Class<T> idClass, double noEntryValue) {
+		this(idClass, Math.max(Id.getNumberOfIds(idClass), INCREMENT), noEntryValue);
+	}
+
+	public IdDoubleMap(Class<T> idClass, int size, double noEntryValue) {
+		this.idClass = idClass;
+		this.noEntryValue = noEntryValue;
+		this.data = new double[size];
+		this.keys = new BitSet(size);
+		if (noEntryValue != 0.0) {
+			Arrays.fill(this.data, noEntryValue);
+		}
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public double getNoEntryValue() {
+		return this.noEntryValue;
+	}
+
+	public boolean containsKey(Id<T> key) {
+		return this.keys.get(key.index());
+	}
+
+	public boolean containsKey(int index) {
+		return this.keys.get(index);
+	}
+
+	public double get(Id<T> key) {
+		return get(key.index());
+	}
+
+	public double get(int index) {
+		if (index < this.data.length) {
+			return this.data[index];
+		}
+		return this.noEntryValue;
+	}
+
+	/**
+	 * @return the previous value, or the <code>noEntryValue</code> if there was none
+	 */
+	public double put(Id<T> key, double value) {
+		return put(key.index(), value);
+	}
+
+	public double put(int index, double value) {
+		ensureCapacity(index);
+		double oldValue = this.data[index];
+		this.data[index] = value;
+		if (!this.keys.get(index)) {
+			this.keys.set(index);
+			this.size++;
+		}
+		return oldValue;
+	}
+
+	/**
+	 * Adds <code>value</code> to the value stored for the id. Ids without value start at 0.
+	 *
+	 * @return the new value
+	 */
+	public double add(Id<T> key, double value) {
+		return add(key.index(), value);
+	}
+
+	public double add(int index, double value) {
+		ensureCapacity(index);
+		if (!this.keys.get(index)) {
+			this.keys.set(index);
+			this.size++;
+			this.data[index] = value;
+		} else {
+			this.data[index] += value;
+		}
+		return this.data[index];
+	}
+
+	/**
+	 * @return the removed value, or the <code>noEntryValue</code> if there was none
+	 */
+	public double remove(Id<T> key) {
+		return remove(key.index());
+	}
+
+	public double remove(int index) {
+		if (index < this.data.length && this.keys.get(index)) {
+			double oldValue = this.data[index];
+			this.data[index] = this.noEntryValue;
+			this.keys.clear(index);
+			this.size--;
+			return oldValue;
+		}
+		return this.noEntryValue;
+	}
+
+	public void clear() {
+		this.size = 0;
+		this.keys.clear();
+		Arrays.fill(this.data, this.noEntryValue);
+	}
+
+	/**
+	 * Iterates over all ids with a value, in the order of their index.
+	 */
+	public void forEach(ObjDoubleConsumer<Id<T>> action) {
+		for (int i = this.keys.nextSetBit(0); i >= 0; i = this.keys.nextSetBit(i + 1)) {
+			action.accept(Id.get(i, this.idClass), this.data[i]);
+		}
+	}
+
+	private void ensureCapacity(int index) {
+		if (index >= this.data.length) {
+			int oldSize = this.data.length;
+			int newSize = Math.max(index + INCREMENT, (int)(oldSize * INCREMENT_FACTOR));
+			this.data = Arrays.copyOf(this.data, newSize);
+			if (this.noEntryValue != 0.0) {
+				Arrays.fill(this.data, oldSize, newSize, this.noEntryValue);
+			}
+		}
+	}
+
+}
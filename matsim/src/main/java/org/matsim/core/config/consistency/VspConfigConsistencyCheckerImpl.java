@@ -97,6 +97,8 @@ public final class VspConfigConsistencyCheckerImpl implements ConfigConsistencyC
 			case Dijkstra:
 			case AStarLandmarks:
 			case FastDijkstra:
+			case CCH:
+			case SpeedyALT:
 				log.log( lvl, "you are not using FastAStarLandmarks as routing algorithm.  vsp default is to use FastAStarLandmarks.") ;
 				System.out.flush();
 				break;
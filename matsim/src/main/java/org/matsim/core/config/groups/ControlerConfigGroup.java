@@ -33,9 +33,9 @@ import java.util.*;
 public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final Logger log = Logger.getLogger( ControlerConfigGroup.class );
 
-	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks}
+	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks, SpeedyALT, CCH}
 
-	public enum EventsFileFormat {xml, pb, json}
+	public enum EventsFileFormat {xml, pb, json, binary}
 
 	public enum CompressionType {
 		none(""),
@@ -62,11 +62,13 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String SNAPSHOT_FORMAT = "snapshotFormat";
 	private static final String WRITE_EVENTS_INTERVAL = "writeEventsInterval";
 	private static final String WRITE_PLANS_INTERVAL = "writePlansInterval";
+	private static final String WRITE_PLANS_ASYNCHRONOUSLY = "writePlansAsynchronously";
 	private static final String WRITE_TRIPS_INTERVAL = "writeTripsInterval";
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
 	private static final String DUMP_DATA_AT_END = "dumpDataAtEnd";
 	private static final String COMPRESSION_TYPE = "compressionType";
+	private static final String PROFILING = "profiling";
 
 	/*package*/ static final String MOBSIM = "mobsim";
 	public enum MobsimType {qsim, JDEQSim, hermes}
@@ -87,11 +89,13 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 
 	private int writeEventsInterval=10;
 	private int writePlansInterval=10;
+	private boolean writePlansAsynchronously = false;
 	private int writeTripsInterval = 10;
 	private String mobsim = MobsimType.qsim.toString();
 	private int writeSnapshotsInterval = 1;
 	private boolean createGraphs = true;
 	private boolean dumpDataAtEnd = true;
+	private boolean profiling = false;
 	private CompressionType compressionType = CompressionType.gzip;
 	private OverwriteFileSetting overwriteFileSetting = OverwriteFileSetting.failIfDirectoryExists;
 
@@ -103,7 +107,11 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public final Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(ROUTINGALGORITHM_TYPE, "The type of routing (least cost path) algorithm used, may have the values: " + RoutingAlgorithmType.Dijkstra + ", " + 
-				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + " or "  + RoutingAlgorithmType.FastAStarLandmarks);
+				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + ", "  + RoutingAlgorithmType.FastAStarLandmarks + ", " +
+				RoutingAlgorithmType.SpeedyALT + " or " +
+				RoutingAlgorithmType.CCH + ". " + RoutingAlgorithmType.CCH + " (customizable contraction hierarchies) searches the route with the travel disutilities at the " +
+				"start of the hour of departure, and is fastest when many routes are calculated on a large network. " + RoutingAlgorithmType.SpeedyALT +
+				" is A* with landmarks on a compact network shared by all threads, which needs much less memory per thread than " + RoutingAlgorithmType.FastAStarLandmarks + ".");
 		map.put(RUNID, "An identifier for the current run which is used as prefix for output files and mentioned in output xml files etc.");
 		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: " + Arrays.toString(EventsFileFormat.values()) + IOUtils.NATIVE_NEWLINE+ "\t\t" +
 				"Multiple values can be specified separated by commas (',').");
@@ -113,6 +121,8 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
                 "to a file. `0' disables trips writing completely.");
 		map.put(WRITE_PLANS_INTERVAL, "iterationNumber % writePlansInterval == 0 defines (hopefully) in which iterations plans are " +
                 "written to a file. `0' disables plans writing completely.  Some plans in early iterations are always written");
+		map.put(WRITE_PLANS_ASYNCHRONOUSLY, "Default=false. If true, the plans are written in the background while the mobsim runs. " +
+				"The written file then only contains the selected plan of each person, as the other plans are not copied.");
 		map.put(LINKTOLINK_ROUTING_ENABLED, "Default=false. If enabled, the router takes travel times needed for turning moves into account."
 		        + " Cannot be used if the (Fast)AStarLandmarks routing or TravelTimeCalculator.separateModes is enabled.");
 		map.put(FIRST_ITERATION, "Default=0. First Iteration of a simulation.");
@@ -136,6 +146,8 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		map.put(WRITE_SNAPSHOTS_INTERVAL, "iterationNumber % " + WRITE_SNAPSHOTS_INTERVAL + " == 0 defines in which iterations snapshots are written " +
 				"to a file. `0' disables snapshots writing completely");
 		map.put(DUMP_DATA_AT_END, "true if at the end of a run, plans, network, config etc should be dumped to a file");
+		map.put(PROFILING, "Default=false. If true, the wall time, CPU time, allocated bytes and garbage collections of every phase of the iterations, " +
+				"of every controler listener and of every replanning strategy are written to profile.csv, and their totals to profile_summary.json.");
 		return map;
 	}
 
@@ -333,6 +345,26 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.writePlansInterval = writePlansInterval;
 	}
 	
+	@StringGetter( WRITE_PLANS_ASYNCHRONOUSLY )
+	public boolean isWritePlansAsynchronously() {
+		return this.writePlansAsynchronously;
+	}
+
+	@StringSetter( WRITE_PLANS_ASYNCHRONOUSLY )
+	public void setWritePlansAsynchronously(final boolean writePlansAsynchronously) {
+		this.writePlansAsynchronously = writePlansAsynchronously;
+	}
+
+	@StringGetter( PROFILING )
+	public boolean isProfiling() {
+		return this.profiling;
+	}
+
+	@StringSetter( PROFILING )
+	public void setProfiling(final boolean profiling) {
+		this.profiling = profiling;
+	}
+
 	@StringGetter( WRITE_SNAPSHOTS_INTERVAL )
 	public int getWriteSnapshotsInterval() {
 		return writeSnapshotsInterval;
@@ -31,6 +31,8 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 
 	public static final String GROUP_NAME = "global";
 
+	public enum ReplanningPlanDistribution {roundRobin, workStealing, pipelined}
+
 	public GlobalConfigGroup() {
 		super(GROUP_NAME);
 	}
@@ -38,6 +40,7 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	@Override public Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(NUMBER_OF_THREADS, NUMBER_OF_THREADS_CMT ) ;
+		map.put(REPLANNING_PLAN_DISTRIBUTION, REPLANNING_PLAN_DISTRIBUTION_CMT ) ;
 		return map ;
 	}
 
@@ -93,6 +96,27 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 	// ---
+	private ReplanningPlanDistribution replanningPlanDistribution = ReplanningPlanDistribution.roundRobin;
+	private static final String REPLANNING_PLAN_DISTRIBUTION = "replanningPlanDistribution";
+	private static final String REPLANNING_PLAN_DISTRIBUTION_CMT = "How the multi-threaded strategy modules distribute the plans over the threads. "
+			+ ReplanningPlanDistribution.roundRobin + ": every thread gets the same number of plans, in a fixed order. This makes runs reproducible, "
+			+ "but threads with expensive plans finish last. "
+			+ ReplanningPlanDistribution.workStealing + ": the plans are handled in small chunks by whichever thread is idle. "
+			+ "This balances the load better, but the plans are not handled by the same thread in every run, so runs "
+			+ "with random decisions in replanning are not reproducible any more. "
+			+ ReplanningPlanDistribution.pipelined + ": the plans are assigned to the threads as with " + ReplanningPlanDistribution.roundRobin + ", "
+			+ "but the threads start while the strategies still select the plans of the other persons. This requires "
+			+ "strategy modules that only look at the plan they are given and at its person.";
+
+	@StringGetter( REPLANNING_PLAN_DISTRIBUTION )
+	public ReplanningPlanDistribution getReplanningPlanDistribution() {
+		return this.replanningPlanDistribution;
+	}
+	@StringSetter( REPLANNING_PLAN_DISTRIBUTION )
+	public void setReplanningPlanDistribution(final ReplanningPlanDistribution replanningPlanDistribution) {
+		this.replanningPlanDistribution = replanningPlanDistribution;
+	}
+	// ---
 	private String coordinateSystem = "Atlantis" ;
 	// see https://matsim.atlassian.net/browse/MATSIM-898
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
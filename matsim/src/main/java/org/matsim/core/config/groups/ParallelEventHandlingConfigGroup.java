@@ -49,6 +49,17 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 	private final static String EVENTS_QUEUE_SIZE_COMMENT = "Size of the events Queue. Increase for very large scenarios";
 	private int eventsQueueSize = 65536 * 2 ;
 
+	private final static String EVENT_HANDLER_PROFILING_INTERVAL = "eventHandlerProfilingInterval";
+	private final static String EVENT_HANDLER_PROFILING_INTERVAL_COMMENT = "If larger than 0, the time spent in the event handlers is measured for every n-th "
+			+ "event a handler gets, and written per handler and event class to ITERS/it.N/N.eventHandlerProfile.txt. 0 disables the profiling.";
+	private int eventHandlerProfilingInterval = 0;
+
+	private final static String NUMBER_OF_SCORING_THREADS = "numberOfScoringThreads";
+	private final static String NUMBER_OF_SCORING_THREADS_COMMENT = "If larger than 0, the persons are distributed over this number of threads for scoring, "
+			+ "so the scoring functions are no longer called from the events handler threads and no lock over all persons is needed. "
+			+ "The scoring functions of different persons must then not share unsynchronized state. 0 scores in the events handler threads.";
+	private int numberOfScoringThreads = 0;
+
 
 
 	private boolean locked = false;
@@ -67,6 +78,8 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		comments.put(ONE_THREAD_PER_HANDLER, "If enabled, each event handler is assigned to its own thread. Note that enabling this feature disabled the " + NUMBER_OF_THREADS + " option! "
 				+ "This feature is still experimental!");
 		comments.put(EVENTS_QUEUE_SIZE,EVENTS_QUEUE_SIZE_COMMENT);
+		comments.put(EVENT_HANDLER_PROFILING_INTERVAL, EVENT_HANDLER_PROFILING_INTERVAL_COMMENT);
+		comments.put(NUMBER_OF_SCORING_THREADS, NUMBER_OF_SCORING_THREADS_COMMENT);
 		return comments;
 	}
 
@@ -116,6 +129,44 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		return eventsQueueSize;
 	}
 
+	/**
+	 * {@value #EVENT_HANDLER_PROFILING_INTERVAL_COMMENT}
+	 */
+	@StringGetter( EVENT_HANDLER_PROFILING_INTERVAL )
+	public int getEventHandlerProfilingInterval() {
+		return this.eventHandlerProfilingInterval;
+	}
+
+	/**
+	 * {@value #EVENT_HANDLER_PROFILING_INTERVAL_COMMENT}
+	 */
+	@StringSetter( EVENT_HANDLER_PROFILING_INTERVAL )
+	public void setEventHandlerProfilingInterval(int eventHandlerProfilingInterval) {
+		if (eventHandlerProfilingInterval < 0) {
+			throw new IllegalArgumentException("the event handler profiling interval must not be negative.");
+		}
+		this.eventHandlerProfilingInterval = eventHandlerProfilingInterval;
+	}
+
+	/**
+	 * {@value #NUMBER_OF_SCORING_THREADS_COMMENT}
+	 */
+	@StringGetter( NUMBER_OF_SCORING_THREADS )
+	public int getNumberOfScoringThreads() {
+		return this.numberOfScoringThreads;
+	}
+
+	/**
+	 * {@value #NUMBER_OF_SCORING_THREADS_COMMENT}
+	 */
+	@StringSetter( NUMBER_OF_SCORING_THREADS )
+	public void setNumberOfScoringThreads(int numberOfScoringThreads) {
+		if (numberOfScoringThreads < 0) {
+			throw new IllegalArgumentException("the number of scoring threads must not be negative.");
+		}
+		this.numberOfScoringThreads = numberOfScoringThreads;
+	}
+
 	@StringGetter( SYNCHRONIZE_ON_SIMSTEPS )
 	public Boolean getSynchronizeOnSimSteps() {
 		return this.synchronizeOnSimSteps;
@@ -38,17 +38,20 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	public abstract static class NetworkRouteType {
 		public static final String LinkNetworkRoute = "LinkNetworkRoute";
 		public static final String CompressedNetworkRoute = "CompressedNetworkRoute";
+		public static final String CompactNetworkRoute = "CompactNetworkRoute";
 	}
 
 	public enum ActivityDurationInterpretation { minOfDurationAndEndTime, tryEndTimeThenDuration, @Deprecated endTimeOnly }
 	private static final String INPUT_FILE = "inputPlansFile";
 	private static final String INPUT_PERSON_ATTRIBUTES_FILE = "inputPersonAttributesFile";
 	private static final String NETWORK_ROUTE_TYPE = "networkRouteType";
+	private static final String COMPACT_PLANS = "compactPlans";
 //	private static final String SUBPOPULATION_ATTRIBUTE = "subpopulationAttributeName";
 	private static final String INPUT_CRS = "inputCRS";
 
 	private String inputFile = null;
 	private String networkRouteType = NetworkRouteType.LinkNetworkRoute;
+	private boolean compactPlans = false;
 	private String inputPersonAttributeFile = null;
 //	private String subpopulationAttributeName = "subpopulation";
 	private String inputCRS = null;
@@ -71,7 +74,10 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 				NETWORK_ROUTE_TYPE,
 				"Defines how routes are stored in memory. Currently supported: " +
 				NetworkRouteType.LinkNetworkRoute + ", " +
-				NetworkRouteType.CompressedNetworkRoute + ".");
+				NetworkRouteType.CompressedNetworkRoute + ", " +
+				NetworkRouteType.CompactNetworkRoute + ".");
+		comments.put(COMPACT_PLANS, "Default=false. If true, the activities and legs of each plan are stored in arrays instead of one object per " +
+				"plan element, which needs considerably less memory for large populations. Best combined with " + NetworkRouteType.CompactNetworkRoute + ".");
 //		comments.put(
 //				INPUT_PERSON_ATTRIBUTES_FILE,
 //				"Path to a file containing person attributes (required file format: ObjectAttributes).");
@@ -164,6 +170,16 @@ public final class PlansConfigGroup extends ReflectiveConfigGroup {
 	public void setNetworkRouteType(final String routeType) {
 		this.networkRouteType = routeType;
 	}
+
+	@StringGetter( COMPACT_PLANS )
+	public boolean isCompactPlans() {
+		return this.compactPlans;
+	}
+
+	@StringSetter( COMPACT_PLANS )
+	public void setCompactPlans(final boolean compactPlans) {
+		this.compactPlans = compactPlans;
+	}
 	// ---
 //	/**
 //	 * @deprecated -- use {@link org.matsim.core.population.PopulationUtils#getSubpopulation(Person, Config)}
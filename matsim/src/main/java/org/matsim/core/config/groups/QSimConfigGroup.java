@@ -56,6 +56,7 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 	private static final String STUCK_TIME = "stuckTime";
 	private static final String REMOVE_STUCK_VEHICLES = "removeStuckVehicles";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
+	private static final String NUMBER_OF_RUNNERS_PER_THREAD = "numberOfRunnersPerThread";
 	private static final String TRAFFIC_DYNAMICS = "trafficDynamics";
 	private static final String SIM_STARTTIME_INTERPRETATION = "simStarttimeInterpretation";
 	private static final String USE_PERSON_ID_FOR_MISSING_VEHICLE_ID = "usePersonIdForMissingVehicleId";
@@ -87,6 +88,8 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 	private boolean usePersonIdForMissingVehicleId = true;
 	@Positive
 	private int numberOfThreads = 1;
+	@Positive
+	private int numberOfRunnersPerThread = 4;
 	private TrafficDynamics trafficDynamics = TrafficDynamics.queue ;
 	
 	private StarttimeInterpretation simStarttimeInterpretation = StarttimeInterpretation.maxOfStarttimeAndEarliestActivityEnd;
@@ -243,6 +246,9 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS, "Number of threads used for the QSim.  "
 				+ "Note that this setting is independent from the \"global\" threads setting.  "
 				+ "In contrast to earlier versions, the non-parallel special version is no longer there." ) ;
+		map.put(NUMBER_OF_RUNNERS_PER_THREAD, "Only used with more than one thread. The nodes and links of the network are split into "
+				+ "numberOfThreads * numberOfRunnersPerThread parts. In every time step, the threads take these parts one after the other, "
+				+ "the busiest first, so that a thread with a congested part does not leave the others waiting. Default is 4." ) ;
 		map.put(REMOVE_STUCK_VEHICLES, REMOVE_STUCK_VEHICLES_STRING );
 		map.put(STUCK_TIME, STUCK_TIME_STRING );
 
@@ -424,6 +430,19 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 
+	@StringGetter(NUMBER_OF_RUNNERS_PER_THREAD)
+	public int getNumberOfRunnersPerThread() {
+		return this.numberOfRunnersPerThread;
+	}
+
+	@StringSetter(NUMBER_OF_RUNNERS_PER_THREAD)
+	public void setNumberOfRunnersPerThread(final int numberOfRunnersPerThread) {
+		if ( numberOfRunnersPerThread < 1 ) {
+			throw new IllegalArgumentException( "Number of runners per thread must be strictly positive, got "+numberOfRunnersPerThread );
+		}
+		this.numberOfRunnersPerThread = numberOfRunnersPerThread;
+	}
+
 	@StringGetter(SIM_STARTTIME_INTERPRETATION)
 	public StarttimeInterpretation getSimStarttimeInterpretation() {
 		return simStarttimeInterpretation;
@@ -42,7 +42,7 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 
 	public static final String GROUPNAME = "travelTimeCalculator";
 
-	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap}
+	public enum TravelTimeCalculatorType {TravelTimeCalculatorArray,TravelTimeCalculatorHashMap,TravelTimeCalculatorConcurrentArray}
 
 	private static final String TRAVEL_TIME_CALCULATOR = "travelTimeCalculator";
 	private static final String TRAVEL_TIME_BIN_SIZE = "travelTimeBinSize";
@@ -56,6 +56,8 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	private static final String ANALYZEDMODES = "analyzedModes";
 	private static final String FILTERMODES = "filterModes";
 	private static final String SEPARATEMODES = "separateModes";
+	private static final String USE_SNAPSHOTS = "useSnapshots";
+	private static final String SMOOTHING_ALPHA = "smoothingAlpha";
 
 	private TravelTimeCalculatorType travelTimeCalculator = TravelTimeCalculatorType.TravelTimeCalculatorArray;
 	private String travelTimeAggregator = "optimistic";
@@ -69,6 +71,8 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	private Set<String> analyzedModes = new LinkedHashSet<>(  ) ;
 	private boolean filterModes = false;
 	private boolean separateModes = true;
+	private boolean useSnapshots = false;
+	private double smoothingAlpha = 1.0;
 
 	public TravelTimeCalculatorConfigGroup() {
 		super(GROUPNAME);
@@ -90,7 +94,14 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 							 "respected by the travel time collector. 'car' is default which includes also buses from the pt simulation module.");
 		map.put(FILTERMODES, "(only for backwards compatiblity; only used if " + SEPARATEMODES + "==false)  Only modes included in analyzedModes are included." ) ;
 		map.put(SEPARATEMODES, "(only for backwards compatibility) If false, link travel times are measured and aggregated over all vehicles using the link." ) ;
-		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + Arrays.stream( TravelTimeCalculatorType.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) );
+		map.put(USE_SNAPSHOTS, "If true, the router gets the link travel times from an immutable snapshot that is taken after every mobsim, " +
+				"instead of directly from the travel time calculator. The snapshots can be kept by other users (e.g. analyses) as long as needed.") ;
+		map.put(SMOOTHING_ALPHA, "(only used if " + USE_SNAPSHOTS + "==true) Weight of the travel times of the last mobsim in the new snapshot, " +
+				"in (0,1]. The rest of the weight is given to the previous snapshot (exponential moving average), starting with the free speed travel times. " +
+				"1.0 means no smoothing.") ;
+		map.put( TRAVEL_TIME_CALCULATOR, "possible values: " + Arrays.stream( TravelTimeCalculatorType.values() ).map( type -> type.toString() + ' ' ).collect( Collectors.joining() ) +
+				". " + TravelTimeCalculatorType.TravelTimeCalculatorConcurrentArray + " allows several event handler threads, but needs 12 bytes of memory " +
+				"per link id and time bin, including link ids that are not part of the network (e.g. 1 million link ids with 15 minute bins over 30 hours: 1.4 GB)." );
 		return map;
 	}
 
@@ -213,5 +224,28 @@ public final class TravelTimeCalculatorConfigGroup extends ReflectiveConfigGroup
 	public void setSeparateModes(boolean separateModes) {
 		this.separateModes = separateModes;
 	}
+	// ---
+	@StringGetter(USE_SNAPSHOTS)
+	public boolean isUseSnapshots() {
+		return this.useSnapshots;
+	}
+
+	@StringSetter(USE_SNAPSHOTS)
+	public void setUseSnapshots(boolean useSnapshots) {
+		this.useSnapshots = useSnapshots;
+	}
+	// ---
+	@StringGetter(SMOOTHING_ALPHA)
+	public double getSmoothingAlpha() {
+		return this.smoothingAlpha;
+	}
+
+	@StringSetter(SMOOTHING_ALPHA)
+	public void setSmoothingAlpha(double smoothingAlpha) {
+		if (smoothingAlpha <= 0 || smoothingAlpha > 1) {
+			throw new IllegalArgumentException(SMOOTHING_ALPHA + " must be in (0,1], but is " + smoothingAlpha);
+		}
+		this.smoothingAlpha = smoothingAlpha;
+	}
 
 }
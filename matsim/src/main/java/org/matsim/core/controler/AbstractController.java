@@ -20,6 +20,7 @@
 package org.matsim.core.controler;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationProfiler;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.listener.ControlerListener;
@@ -37,6 +38,8 @@ import org.matsim.utils.MemoryObserver;
 
     private final IterationStopWatch stopwatch;
 
+    private final IterationProfiler profiler;
+
 
     /**
      * This is deliberately not even protected.  kai, jul'12
@@ -51,10 +54,15 @@ import org.matsim.utils.MemoryObserver;
     }
 
     AbstractController(ControlerListenerManagerImpl controlerListenerManager, IterationStopWatch stopWatch, MatsimServices matsimServices) {
+        this(controlerListenerManager, stopWatch, new IterationProfiler(), matsimServices);
+    }
+
+    AbstractController(ControlerListenerManagerImpl controlerListenerManager, IterationStopWatch stopWatch, IterationProfiler profiler, MatsimServices matsimServices) {
         log.info("Used Controler-Class: " + this.getClass().getCanonicalName());
         this.controlerListenerManagerImpl = controlerListenerManager;
         this.controlerListenerManagerImpl.setControler(matsimServices);
         this.stopwatch = stopWatch;
+        this.profiler = profiler;
     }
 
     private void resetRandomNumbers(long seed, int iteration) {
@@ -71,6 +79,10 @@ import org.matsim.utils.MemoryObserver;
 
     protected final void run(final Config config) {
         MemoryObserver.start(60);
+        if (config.controler().isProfiling()) {
+            this.profiler.setEnabled(true);
+            this.controlerListenerManagerImpl.setProfiler(this.profiler);
+        }
         MatsimRuntimeModifications.MyRunnable runnable = new MatsimRuntimeModifications.MyRunnable() {
             @Override
             public void run() throws MatsimRuntimeModifications.UnexpectedShutdownException {
@@ -129,6 +141,7 @@ import org.matsim.utils.MemoryObserver;
     private void iteration(final Config config, final int iteration, boolean isLastIteration) throws MatsimRuntimeModifications.UnexpectedShutdownException {
         this.thisIteration = iteration;
         this.getStopwatch().beginIteration(iteration);
+        this.profiler.beginIteration(iteration);
 
         log.info(Controler.DIVIDER);
         log.info(MARKER + "ITERATION " + iteration + " BEGINS");
@@ -178,6 +191,15 @@ import org.matsim.utils.MemoryObserver;
         if (config.controler().isCreateGraphs()) {
             this.getStopwatch().writeGraphFile(this.getControlerIO().getOutputFilename("stopwatch"));
         }
+        this.profiler.endIteration();
+        if (this.profiler.isEnabled()) {
+            try {
+                this.profiler.writeCsv(this.getControlerIO().getOutputFilename("profile.csv"), config.global().getDefaultDelimiter(), iteration);
+                this.profiler.writeSummary(this.getControlerIO().getOutputFilename("profile_summary.json"));
+            } catch (UncheckedIOException e) {
+                log.error("Could not write profile files.", e);
+            }
+        }
         log.info(MARKER + "ITERATION " + iteration + " ENDS");
         log.info(Controler.DIVIDER);
     }
@@ -240,7 +262,9 @@ import org.matsim.utils.MemoryObserver;
 
     private void iterationStep(String iterationStepName, Runnable iterationStep) throws MatsimRuntimeModifications.UnexpectedShutdownException {
         this.getStopwatch().beginOperation(iterationStepName);
+        IterationProfiler.Measurement measurement = this.profiler.start(iterationStepName, "");
         iterationStep.run();
+        this.profiler.stop(measurement);
         this.getStopwatch().endOperation(iterationStepName);
         if (Thread.interrupted()) {
             throw new MatsimRuntimeModifications.UnexpectedShutdownException();
@@ -275,4 +299,8 @@ import org.matsim.utils.MemoryObserver;
         return stopwatch;
     }
 
+    public final IterationProfiler getProfiler() {
+        return profiler;
+    }
+
 }
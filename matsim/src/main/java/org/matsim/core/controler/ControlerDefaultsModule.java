@@ -23,6 +23,7 @@
 package org.matsim.core.controler;
 
 import org.matsim.analysis.*;
+import org.matsim.core.events.EventHandlerProfilingModule;
 import org.matsim.core.events.EventsManagerModule;
 import org.matsim.core.mobsim.DefaultMobsimModule;
 import org.matsim.core.population.VspPlansCleanerModule;
@@ -41,6 +42,7 @@ public final class ControlerDefaultsModule extends AbstractModule {
     @Override
     public void install() {
         install(new EventsManagerModule());
+        install(new EventHandlerProfilingModule());
         install(new DefaultMobsimModule());
         install(new TravelTimeCalculatorModule());
         install(new TravelDisutilityModule());
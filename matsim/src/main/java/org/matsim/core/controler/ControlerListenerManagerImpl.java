@@ -21,6 +21,7 @@
 package org.matsim.core.controler;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationProfiler;
 import org.matsim.core.controler.events.*;
 import org.matsim.core.controler.listener.*;
 import org.matsim.core.utils.misc.ClassUtils;
@@ -38,10 +39,26 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 
     private MatsimServices controler = null;
 
+	private IterationProfiler profiler = null;
+
 	void setControler(MatsimServices controler) {
         this.controler = controler;
     }
 
+	void setProfiler(IterationProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	private IterationProfiler.Measurement start(String method, ControlerListener listener) {
+		return this.profiler == null ? null : this.profiler.start(method, listener.getClass().getName());
+	}
+
+	private void stop(IterationProfiler.Measurement measurement) {
+		if (this.profiler != null) {
+			this.profiler.stop(measurement);
+		}
+	}
+
 	/** The swing event listener list to manage ControlerListeners efficiently. First list manages core listeners
 	 * which are called first when a ControlerEvent is thrown. I.e. this list contains the listeners that are
 	 * always running in a predefined order to ensure correctness.
@@ -100,12 +117,16 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		StartupListener[] listener = this.coreListenerList.getListeners(StartupListener.class);
         for (StartupListener aListener : listener) {
             log.info("calling notifyStartup on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyStartup", aListener);
             aListener.notifyStartup(event);
+            stop(measurement);
         }
 		listener = this.listenerList.getListeners(StartupListener.class);
         for (StartupListener aListener : listener) {
             log.info("calling notifyStartup on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyStartup", aListener);
             aListener.notifyStartup(event);
+            stop(measurement);
         }
 		log.info("all ControlerStartupListeners called." );
 	}
@@ -119,12 +140,16 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
         ShutdownListener[] listener = this.coreListenerList.getListeners(ShutdownListener.class);
         for (ShutdownListener aListener : listener) {
             log.info("calling notifyShutdown on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyShutdown", aListener);
             aListener.notifyShutdown(event);
+            stop(measurement);
         }
         listener = this.listenerList.getListeners(ShutdownListener.class);
         for (ShutdownListener aListener : listener) {
             log.info("calling notifyShutdown on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyShutdown", aListener);
             aListener.notifyShutdown(event);
+            stop(measurement);
         }
         log.info("all ControlerShutdownListeners called.");
 	}
@@ -138,12 +163,16 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		IterationStartsListener[] listener = this.coreListenerList.getListeners(IterationStartsListener.class);
         for (IterationStartsListener aListener : listener) {
             log.info("calling notifyIterationStarts on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyIterationStarts", aListener);
             aListener.notifyIterationStarts(event);
+            stop(measurement);
         }
 		listener = this.listenerList.getListeners(IterationStartsListener.class);
         for (IterationStartsListener aListener : listener) {
             log.info("calling notifyIterationStarts on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyIterationStarts", aListener);
             aListener.notifyIterationStarts(event);
+            stop(measurement);
         }
 		log.info("[it." + iteration + "] all ControlerIterationStartsListeners called.");
 	}
@@ -158,14 +187,18 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 			IterationEndsListener[] listener = this.coreListenerList.getListeners(IterationEndsListener.class);
             for (IterationEndsListener aListener : listener) {
                 log.info("calling notifyIterationEnds on " + aListener.getClass().getName());
+                IterationProfiler.Measurement measurement = start("notifyIterationEnds", aListener);
                 aListener.notifyIterationEnds(event);
+                stop(measurement);
             }
 		}
 		{
 			IterationEndsListener[] listener = this.listenerList.getListeners(IterationEndsListener.class);
             for (IterationEndsListener aListener : listener) {
                 log.info("calling notifyIterationEnds on " + aListener.getClass().getName());
+                IterationProfiler.Measurement measurement = start("notifyIterationEnds", aListener);
                 aListener.notifyIterationEnds(event);
+                stop(measurement);
             }
 		}
 		log.info("[it." + iteration + "] all ControlerIterationEndsListeners called.");
@@ -181,14 +214,18 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 			ScoringListener[] listener = this.coreListenerList.getListeners(ScoringListener.class);
             for (ScoringListener aListener : listener) {
                 log.info("calling notifyScoring on " + aListener.getClass().getName());
+                IterationProfiler.Measurement measurement = start("notifyScoring", aListener);
                 aListener.notifyScoring(event);
+                stop(measurement);
             }
 		}
 		{
 			ScoringListener[] listener = this.listenerList.getListeners(ScoringListener.class);
             for (ScoringListener aListener : listener) {
                 log.info("calling notifyScoring on " + aListener.getClass().getName());
+                IterationProfiler.Measurement measurement = start("notifyScoring", aListener);
                 aListener.notifyScoring(event);
+                stop(measurement);
             }
 		}
 		log.info("[it." + iteration + "] all ControlerScoringListeners called.");
@@ -203,12 +240,16 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		ReplanningListener[] listener = this.coreListenerList.getListeners(ReplanningListener.class);
         for (ReplanningListener aListener : listener) {
             log.info("calling notifyReplanning on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyReplanning", aListener);
             aListener.notifyReplanning(event);
+            stop(measurement);
         }
 		listener = this.listenerList.getListeners(ReplanningListener.class);
         for (ReplanningListener aListener : listener) {
             log.info("calling notifyReplanning on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyReplanning", aListener);
             aListener.notifyReplanning(event);
+            stop(measurement);
         }
 		log.info("[it." + iteration + "] all ControlerReplanningListeners called.");
 	}
@@ -222,12 +263,16 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		BeforeMobsimListener[] listener = this.coreListenerList.getListeners(BeforeMobsimListener.class);
         for (BeforeMobsimListener aListener : listener) {
             log.info("calling notifyBeforeMobsim on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyBeforeMobsim", aListener);
             aListener.notifyBeforeMobsim(event);
+            stop(measurement);
         }
 		listener = this.listenerList.getListeners(BeforeMobsimListener.class);
         for (BeforeMobsimListener aListener : listener) {
             log.info("calling notifyBeforeMobsim on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyBeforeMobsim", aListener);
             aListener.notifyBeforeMobsim(event);
+            stop(measurement);
         }
 		log.info("[it." + iteration + "] all ControlerBeforeMobsimListeners called.");
 	}
@@ -241,12 +286,16 @@ public final class ControlerListenerManagerImpl implements ControlerListenerMana
 		AfterMobsimListener[] listener = this.coreListenerList.getListeners(AfterMobsimListener.class);
         for (AfterMobsimListener aListener : listener) {
             log.info("calling notifyAfterMobsim on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyAfterMobsim", aListener);
             aListener.notifyAfterMobsim(event);
+            stop(measurement);
         }
 		listener = this.listenerList.getListeners(AfterMobsimListener.class);
         for (AfterMobsimListener aListener : listener) {
             log.info("calling notifyAfterMobsim on " + aListener.getClass().getName());
+            IterationProfiler.Measurement measurement = start("notifyAfterMobsim", aListener);
             aListener.notifyAfterMobsim(event);
+            stop(measurement);
         }
 		log.info("[it." + iteration + "] all ControlerAfterMobsimListeners called.");
 	}
@@ -20,6 +20,7 @@ package org.matsim.core.controler;
 
 import com.google.inject.Provider;
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationProfiler;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.consistency.ConfigConsistencyCheckerImpl;
@@ -52,14 +53,14 @@ class NewControler extends AbstractController implements ControlerI {
 	
 	@Inject
 	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices,
-			 IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling,
+			 IterationStopWatch stopWatch, IterationProfiler profiler, PrepareForSim prepareForSim, EventsHandling eventsHandling,
 			 PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider,
 			 PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd,
 			 Set<ControlerListener> controlerListenersDeclaredByModules, ControlerConfigGroup controlerConfigGroup,
 			 OutputDirectoryHierarchy outputDirectoryHierarchy
 			, PrepareForMobsim prepareForMobsim
  ) {
-		super(controlerListenerManager, stopWatch, matsimServices);
+		super(controlerListenerManager, stopWatch, profiler, matsimServices);
 		this.config = config;
 		this.prepareForMobsim = prepareForMobsim;
 		this.config.addConfigConsistencyChecker(new ConfigConsistencyCheckerImpl());
@@ -29,8 +29,10 @@ import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.groups.GlobalConfigGroup;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.AbstractPersonAlgorithm;
 import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
 import org.matsim.core.population.algorithms.PersonPrepareForSim;
 import org.matsim.core.router.MainModeIdentifier;
 import org.matsim.core.router.PlanRouter;
@@ -103,6 +105,11 @@ public final class PrepareForMobsimImpl implements PrepareForMobsim {
 				}
 		);
 		
+		if (scenario.getConfig().plans().isCompactPlans()) {
+			// replanning and routing have created new plan elements, copy them into the arrays of the compact plans
+			ParallelPersonAlgorithmUtils.run(population, globalConfigGroup.getNumberOfThreads(), (PersonAlgorithm) PopulationUtils::compactPlans);
+		}
+
 		// yy Could now set the vehicle IDs in the routes.  But can as well also do this later (currently in PopulationAgentSource).  kai, jun'18
 		
 	}
@@ -145,6 +145,7 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 		for (ControlerConfigGroup.EventsFileFormat format : this.controlerConfigGroup.getEventsFileFormats()) {
 			try {
 				Controler.DefaultFiles file;
+				ControlerConfigGroup.CompressionType compression = this.controlerConfigGroup.getCompressionType();
 				switch (format) {
 					case xml:
 						file = Controler.DefaultFiles.events;
@@ -155,12 +156,16 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 					case json:
 						file = Controler.DefaultFiles.eventsJson;
 						break;
+					case binary:
+						file = Controler.DefaultFiles.eventsBinary;
+						compression = ControlerConfigGroup.CompressionType.none;
+						break;
 					default:
 						continue;
 				}
 
-				File toFile = new File(this.controlerIO.getOutputFilename(file));
-				File fromFile = new File(this.controlerIO.getIterationFilename(iteration, file));
+				File toFile = new File(this.controlerIO.getOutputFilename(file, compression));
+				File fromFile = new File(this.controlerIO.getIterationFilename(iteration, file, compression));
 				try {
 					Files.copy(fromFile.toPath(), toFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
 				} catch (IOException e) {
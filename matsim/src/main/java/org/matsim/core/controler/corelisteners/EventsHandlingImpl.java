@@ -42,6 +42,7 @@ import org.matsim.core.controler.listener.BeforeMobsimListener;
 import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.algorithms.EventWriterBinary;
 import org.matsim.core.events.algorithms.EventWriterJson;
 import org.matsim.core.events.algorithms.EventWriterXML;
 
@@ -108,6 +109,11 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 						this.eventWriters.add(new EventWriterJson(new File(controlerIO.getIterationFilename(event.getIteration(),
 								Controler.DefaultFiles.eventsJson))));
 						break;
+					case binary:
+						// the binary format compresses its blocks itself
+						this.eventWriters.add(new EventWriterBinary(controlerIO.getIterationFilename(event.getIteration(),
+								Controler.DefaultFiles.eventsBinary, ControlerConfigGroup.CompressionType.none)));
+						break;
 					default:
 						log.warn("Unknown events file format specified: " + format.toString() + ".");
 				}
@@ -23,6 +23,8 @@ package org.matsim.core.controler.corelisteners;
 import org.apache.log4j.Logger;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationWriter;
 import org.matsim.core.config.Config;
@@ -30,12 +32,18 @@ import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.io.ParallelPopulationWriter;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
 
 /**
  * {@link org.matsim.core.controler.listener.ControlerListener} that dumps the
@@ -43,11 +51,15 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
  * ({@link ControlerConfigGroup#getWritePlansInterval()} as well as in the first
  * iteration, just in case someone might check that the replanning worked
  * correctly in the first iteration.
+ * <p></p>
+ * With more than one global thread, the plans are formatted and compressed by several threads
+ * (see {@link ParallelPopulationWriter}). If {@link ControlerConfigGroup#isWritePlansAsynchronously()}
+ * is set, a copy of the selected plans is written by a background thread while the mobsim runs.
  *
  * @author mrieser
  */
 @Singleton
-final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
+final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener, ShutdownListener {
 
 	static final private Logger log = Logger.getLogger(PlansDumpingImpl.class);
 
@@ -60,10 +72,15 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 
 	private int writeMoreUntilIteration;
 
+	private final boolean writePlansAsynchronously;
+	private Thread dumpingThread = null;
+	private volatile Throwable dumpingException = null;
+
 	@Inject
 	PlansDumpingImpl(ControlerConfigGroup config) {
 		this.writePlansInterval = config.getWritePlansInterval();
 		this.writeMoreUntilIteration = config.getWritePlansUntilIteration() ;
+		this.writePlansAsynchronously = config.isWritePlansAsynchronously();
 	}
 
 	@Override
@@ -72,26 +89,94 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 		final boolean regularWritePlans = writingPlansAtAll && (event.getIteration()>0 && event.getIteration() % writePlansInterval== 0);
 		final boolean earlyIteration = event.getIteration() <= writeMoreUntilIteration ;
 		if ( writingPlansAtAll && (regularWritePlans || earlyIteration) ) {
-			stopwatch.beginOperation("dump all plans");
-			log.info("dumping plans...");
-			final String inputCRS = config.plans().getInputCRS();
-			final String internalCRS = config.global().getCoordinateSystem();
+			// only one dump at a time, also to keep only one copy of the plans in memory
+			waitForDumpingThread();
 
-			if ( inputCRS == null ) {
-				new PopulationWriter(population, network).write(controlerIO.getIterationFilename(event.getIteration(), Controler.DefaultFiles.population));
+			stopwatch.beginOperation("dump all plans");
+			final String filename = controlerIO.getIterationFilename(event.getIteration(), Controler.DefaultFiles.population);
+			if ( writePlansAsynchronously ) {
+				log.info("dumping plans in the background...");
+				final Population snapshot = createSelectedPlansSnapshot();
+				this.dumpingThread = new Thread(() -> {
+					try {
+						writePlans(snapshot, filename);
+						log.info("finished plans dump.");
+					} catch (Throwable e) {
+						this.dumpingException = e;
+					}
+				}, "PlansDumping");
+				this.dumpingThread.setDaemon(true);
+				this.dumpingThread.start();
+			} else {
+				log.info("dumping plans...");
+				writePlans(population, filename);
+				log.info("finished plans dump.");
 			}
-			else {
-				log.info( "re-projecting population from "+internalCRS+" back to "+inputCRS+" for export" );
+			stopwatch.endOperation("dump all plans");
+		}
+	}
+
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		waitForDumpingThread();
+	}
+
+	private void writePlans(final Population population, final String filename) {
+		final String inputCRS = config.plans().getInputCRS();
+		final String internalCRS = config.global().getCoordinateSystem();
+		final int numberOfThreads = config.global().getNumberOfThreads();
 
-				final CoordinateTransformation transformation =
-						TransformationFactory.getCoordinateTransformation(
-								internalCRS,
-								inputCRS );
+		CoordinateTransformation transformation = new IdentityTransformation();
+		if ( inputCRS != null ) {
+			log.info( "re-projecting population from "+internalCRS+" back to "+inputCRS+" for export" );
+			transformation = TransformationFactory.getCoordinateTransformation(
+							internalCRS,
+							inputCRS );
+		}
 
-				new PopulationWriter(transformation, population, network).write(controlerIO.getIterationFilename(event.getIteration(), Controler.DefaultFiles.population));
+		if ( numberOfThreads > 1 ) {
+			new ParallelPopulationWriter(transformation, population, numberOfThreads).write(filename);
+		} else {
+			new PopulationWriter(transformation, population, network).write(filename);
+		}
+	}
+
+	/**
+	 * Copies the persons with their selected plan, so that the copy can be written while the next
+	 * iteration modifies the population.
+	 */
+	private Population createSelectedPlansSnapshot() {
+		Population snapshot = PopulationUtils.createPopulation(config, network);
+		snapshot.setName(population.getName());
+		AttributesUtils.copyTo(population.getAttributes(), snapshot.getAttributes());
+		for (Person person : population.getPersons().values()) {
+			Person copy = snapshot.getFactory().createPerson(person.getId());
+			AttributesUtils.copyAttributesFromTo(person, copy);
+			Plan selectedPlan = person.getSelectedPlan();
+			if (selectedPlan != null) {
+				Plan planCopy = snapshot.getFactory().createPlan();
+				PopulationUtils.copyFromTo(selectedPlan, planCopy);
+				copy.addPlan(planCopy);
+				copy.setSelectedPlan(planCopy);
+			}
+			snapshot.addPerson(copy);
+		}
+		return snapshot;
+	}
+
+	private void waitForDumpingThread() {
+		if (this.dumpingThread != null) {
+			try {
+				this.dumpingThread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			this.dumpingThread = null;
+			if (this.dumpingException != null) {
+				Throwable e = this.dumpingException;
+				this.dumpingException = null;
+				throw new RuntimeException("dumping the plans failed", e);
 			}
-			log.info("finished plans dump.");
-			stopwatch.endOperation("dump all plans");
 		}
 	}
 
@@ -0,0 +1,282 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.gbl.Gbl;
+
+/**
+ * Hands batches of events from one producer thread to several handler threads. The batches are published
+ * into a ring buffer. Each handler thread has its own read position in the ring and passes all events of
+ * every batch to its {@link EventsManager}, so there is no synchronization per event, but only one volatile
+ * write per batch and thread.
+ * <p>
+ * Only one thread may publish batches. A batch must not be modified after it was published.
+ * The producer waits if the slowest handler thread is a full ring behind.
+ *
+ * @see EventsDispatchMetrics
+ */
+/*package*/ final class BatchedEventsDispatcher {
+
+	private final static Logger log = Logger.getLogger(BatchedEventsDispatcher.class);
+
+	// how often to busy-wait before parking the thread. Busy-waiting only blocks the other threads on a single core.
+	private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+
+	private final EventArray[] ring;
+	private final long[] publishTimes;
+	private final int mask;
+	private final HandlerThread[] handlerThreads;
+	private final AtomicReference<Throwable> exception = new AtomicReference<>();
+
+	// number of published batches
+	private volatile long published = 0;
+	private volatile boolean stopped = false;
+	private volatile boolean producerWaiting = false;
+	private volatile Thread producer = null;
+
+	// metrics, only written by the producer
+	private long publishedEvents = 0;
+	private long sumQueueDepth = 0;
+	private long maxQueueDepth = 0;
+
+	/**
+	 * @param capacity the number of batches in the ring, rounded up to the next power of two
+	 */
+	BatchedEventsDispatcher(EventsManager[] eventsManagers, int capacity, String threadName) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.ring = new EventArray[size];
+		this.publishTimes = new long[size];
+		this.mask = size - 1;
+		this.handlerThreads = new HandlerThread[eventsManagers.length];
+		for (int i = 0; i < eventsManagers.length; i++) {
+			this.handlerThreads[i] = new HandlerThread(eventsManagers[i], threadName + i);
+			this.handlerThreads[i].setDaemon(true);
+		}
+	}
+
+	void start() {
+		for (HandlerThread thread : this.handlerThreads) {
+			thread.start();
+		}
+	}
+
+	/**
+	 * Publishes the batch to all handler threads. Must only be called by the producer thread.
+	 */
+	void publish(EventArray batch) {
+		if (batch.size() == 0) {
+			return;
+		}
+		long sequence = this.published;
+		// wait until the slot is no longer used by any handler thread
+		waitForHandlers(sequence - this.ring.length + 1);
+		int slot = (int) (sequence & this.mask);
+		this.ring[slot] = batch;
+		this.publishTimes[slot] = System.nanoTime();
+		this.published = sequence + 1;
+		for (HandlerThread thread : this.handlerThreads) {
+			if (thread.waiting) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		long depth = sequence + 1 - minProcessed();
+		this.publishedEvents += batch.size();
+		this.sumQueueDepth += depth;
+		this.maxQueueDepth = Math.max(this.maxQueueDepth, depth);
+	}
+
+	/**
+	 * Waits until all handler threads have handled all published batches.
+	 */
+	void awaitProcessed() {
+		waitForHandlers(this.published);
+	}
+
+	/**
+	 * Waits until all published batches are handled and stops the handler threads.
+	 */
+	void stop() {
+		awaitProcessed();
+		this.stopped = true;
+		for (HandlerThread thread : this.handlerThreads) {
+			LockSupport.unpark(thread);
+		}
+		for (HandlerThread thread : this.handlerThreads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * @return whether the calling thread is one of the handler threads, i.e. if the caller is an event handler.
+	 */
+	boolean isHandlerThread() {
+		Thread thread = Thread.currentThread();
+		return thread instanceof HandlerThread && ((HandlerThread) thread).dispatcher() == this;
+	}
+
+	/**
+	 * @return the first exception thrown by an event handler, or <code>null</code>
+	 */
+	Throwable getException() {
+		return this.exception.get();
+	}
+
+	/**
+	 * @return the number of published batches not yet handled by all handler threads
+	 */
+	long getQueueDepth() {
+		return this.published - minProcessed();
+	}
+
+	/**
+	 * The metrics are only guaranteed to be complete after the dispatcher is stopped.
+	 */
+	EventsDispatchMetrics getMetrics() {
+		int n = this.handlerThreads.length;
+		long[] processedBatches = new long[n];
+		long[] sumLag = new long[n];
+		long[] maxLag = new long[n];
+		long[] busy = new long[n];
+		for (int i = 0; i < n; i++) {
+			HandlerThread thread = this.handlerThreads[i];
+			processedBatches[i] = thread.handledBatches;
+			sumLag[i] = thread.sumLagNanos;
+			maxLag[i] = thread.maxLagNanos;
+			busy[i] = thread.busyNanos;
+		}
+		return new EventsDispatchMetrics(this.published, this.publishedEvents, this.sumQueueDepth, this.maxQueueDepth,
+				processedBatches, sumLag, maxLag, busy);
+	}
+
+	private long minProcessed() {
+		long min = Long.MAX_VALUE;
+		for (HandlerThread thread : this.handlerThreads) {
+			min = Math.min(min, thread.processed);
+		}
+		return min;
+	}
+
+	private void waitForHandlers(long sequence) {
+		int spins = 0;
+		while (minProcessed() < sequence) {
+			if (spins < SPINS) {
+				Thread.onSpinWait();
+				spins++;
+			} else {
+				this.producer = Thread.currentThread();
+				this.producerWaiting = true;
+				if (minProcessed() < sequence) {
+					LockSupport.park(this);
+				}
+				this.producerWaiting = false;
+			}
+		}
+	}
+
+	private final class HandlerThread extends Thread {
+
+		private final EventsManager eventsManager;
+
+		// number of batches handled by this thread, read by the producer
+		private volatile long processed = 0;
+		private volatile boolean waiting = false;
+
+		// metrics, only written by this thread
+		private long handledBatches = 0;
+		private long sumLagNanos = 0;
+		private long maxLagNanos = 0;
+		private long busyNanos = 0;
+
+		HandlerThread(EventsManager eventsManager, String name) {
+			super(name);
+			this.eventsManager = eventsManager;
+		}
+
+		BatchedEventsDispatcher dispatcher() {
+			return BatchedEventsDispatcher.this;
+		}
+
+		@Override
+		public void run() {
+			try {
+				long sequence = 0;
+				while (awaitBatch(sequence)) {
+					int slot = (int) (sequence & mask);
+					EventArray batch = ring[slot];
+					long start = System.nanoTime();
+					batch.processEvents(this.eventsManager);
+					long end = System.nanoTime();
+					long lag = end - publishTimes[slot];
+					this.handledBatches++;
+					this.busyNanos += end - start;
+					this.sumLagNanos += lag;
+					this.maxLagNanos = Math.max(this.maxLagNanos, lag);
+
+					sequence++;
+					this.processed = sequence;
+					if (producerWaiting) {
+						LockSupport.unpark(producer);
+					}
+				}
+				Gbl.printCurrentThreadCpuTime();
+			} catch (Throwable t) {
+				log.error("Thread " + getName() + " died with exception while handling events.", t);
+				exception.compareAndSet(null, t);
+				// the producer must not wait for this thread anymore
+				this.processed = Long.MAX_VALUE;
+				LockSupport.unpark(producer);
+			}
+		}
+
+		/**
+		 * @return <code>false</code> if the dispatcher was stopped and all batches are handled
+		 */
+		private boolean awaitBatch(long sequence) {
+			int spins = 0;
+			while (published <= sequence) {
+				if (stopped && published <= sequence) {
+					return false;
+				}
+				if (spins < SPINS) {
+					Thread.onSpinWait();
+					spins++;
+				} else {
+					this.waiting = true;
+					if (published <= sequence && !stopped) {
+						LockSupport.park(this);
+					}
+					this.waiting = false;
+				}
+			}
+			return true;
+		}
+	}
+}
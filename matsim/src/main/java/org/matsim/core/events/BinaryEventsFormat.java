@@ -0,0 +1,70 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+/**
+ * Constants of the compact binary events format (file extension <code>.bin</code>), written by
+ * {@link org.matsim.core.events.algorithms.EventWriterBinary} and read by {@link EventsReaderBinary}.
+ *
+ * <p>A file starts with {@link #MAGIC} and the {@link #VERSION} byte, followed by a sequence of blocks. Each block
+ * consists of the uncompressed and the compressed length (both 4 byte big endian ints) and the LZ4 compressed
+ * block data. A block with uncompressed length 0 marks the end of the file. Events never span blocks.</p>
+ *
+ * <p>Each event starts with its type byte and the time. Times that are full seconds are stored as
+ * zig-zag encoded delta to the previous full-second time, shifted left by one bit. Other times are stored
+ * as the var-long <code>1</code>, followed by the 8 byte double. The remaining fields depend on the event type:
+ * well-known event types have a fixed layout, all other events are stored as type and attribute list
+ * ({@link #GENERIC}).</p>
+ *
+ * <p>Strings and ids are interned: the first occurrence is stored as var-long <code>(length &lt;&lt; 1) | 1</code>
+ * followed by the UTF-8 bytes and adds the string to the string table; later occurrences only store
+ * <code>(index + 1) &lt;&lt; 1</code>. <code>0</code> stands for <code>null</code>.</p>
+ */
+public final class BinaryEventsFormat {
+
+	public static final byte[] MAGIC = {'M', 'A', 'T', 'S', 'I', 'M', 'E', 'V'};
+	public static final int VERSION = 1;
+
+	/** events are collected in blocks of (at least) this size before they are compressed */
+	public static final int BLOCK_SIZE = 1 << 20;
+
+	public static final byte GENERIC = 0;
+	public static final byte LINK_ENTER = 1;
+	public static final byte LINK_LEAVE = 2;
+	public static final byte VEHICLE_ENTERS_TRAFFIC = 3;
+	public static final byte VEHICLE_LEAVES_TRAFFIC = 4;
+	public static final byte PERSON_ENTERS_VEHICLE = 5;
+	public static final byte PERSON_LEAVES_VEHICLE = 6;
+	public static final byte PERSON_DEPARTURE = 7;
+	public static final byte PERSON_ARRIVAL = 8;
+	public static final byte ACTIVITY_START = 9;
+	public static final byte ACTIVITY_END = 10;
+
+	private BinaryEventsFormat() {
+	}
+
+	public static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	public static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
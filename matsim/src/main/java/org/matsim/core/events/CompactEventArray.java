@@ -0,0 +1,234 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * An {@link EventArray} which stores the high-volume link events in parallel primitive arrays (type, time,
+ * vehicle and link index) instead of event objects. All other events are stored as objects.
+ *
+ * <p>Handlers implementing {@link org.matsim.core.events.handler.PrimitiveLinkEventHandler} get the link
+ * events without any event object being created. For all other handlers, the event object is created
+ * on the first call of {@link #get(int)} and then shared; this is safe if the array is read by several
+ * threads at once. Writing is not thread-safe.</p>
+ */
+public final class CompactEventArray extends EventArray {
+
+	/** the event is stored as object */
+	public static final byte OBJECT = 0;
+	public static final byte LINK_ENTER = 1;
+	public static final byte LINK_LEAVE = 2;
+
+	private byte[] types;
+	private double[] times;
+	private int[] vehicles;
+	private int[] links;
+	// events stored as object, and the lazily created objects of the other events
+	private AtomicReferenceArray<Event> objects;
+	private int size = 0;
+
+	public CompactEventArray(int capacity) {
+		super(0);
+		capacity = Math.max(capacity, 1);
+		this.types = new byte[capacity];
+		this.times = new double[capacity];
+		this.vehicles = new int[capacity];
+		this.links = new int[capacity];
+		this.objects = new AtomicReferenceArray<>(capacity);
+	}
+
+	public CompactEventArray() {
+		this(32);
+	}
+
+	@Override
+	public void add(Event element) {
+		int index = append(OBJECT);
+		this.times[index] = element.getTime();
+		this.objects.set(index, element);
+	}
+
+	public void addLinkEnter(double time, int vehicleIndex, int linkIndex) {
+		int index = append(LINK_ENTER);
+		this.times[index] = time;
+		this.vehicles[index] = vehicleIndex;
+		this.links[index] = linkIndex;
+	}
+
+	public void addLinkLeave(double time, int vehicleIndex, int linkIndex) {
+		int index = append(LINK_LEAVE);
+		this.times[index] = time;
+		this.vehicles[index] = vehicleIndex;
+		this.links[index] = linkIndex;
+	}
+
+	/**
+	 * Appends the event at the given index of the other array, without creating an event object.
+	 */
+	public void add(CompactEventArray source, int sourceIndex) {
+		int index = append(source.types[sourceIndex]);
+		this.times[index] = source.times[sourceIndex];
+		this.vehicles[index] = source.vehicles[sourceIndex];
+		this.links[index] = source.links[sourceIndex];
+		Event event = source.objects.get(sourceIndex);
+		if (event != null) {
+			this.objects.set(index, event);
+		}
+	}
+
+	private int append(byte type) {
+		if (this.size == this.types.length) {
+			int capacity = this.size + this.size / 2 + 1;
+			this.types = Arrays.copyOf(this.types, capacity);
+			this.times = Arrays.copyOf(this.times, capacity);
+			this.vehicles = Arrays.copyOf(this.vehicles, capacity);
+			this.links = Arrays.copyOf(this.links, capacity);
+			AtomicReferenceArray<Event> objects = new AtomicReferenceArray<>(capacity);
+			for (int i = 0; i < this.size; i++) {
+				objects.lazySet(i, this.objects.get(i));
+			}
+			this.objects = objects;
+		}
+		this.types[this.size] = type;
+		return this.size++;
+	}
+
+	@Override
+	public void removeLast() {
+		this.size--;
+		this.objects.set(this.size, null);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	public byte getType(int index) {
+		return this.types[index];
+	}
+
+	public double getTime(int index) {
+		Event event = this.types[index] == OBJECT ? this.objects.get(index) : null;
+		return event == null ? this.times[index] : event.getTime();
+	}
+
+	/**
+	 * Sets the time of the event, also if it is stored as object.
+	 */
+	public void setTime(int index, double time) {
+		this.times[index] = time;
+		if (this.types[index] == OBJECT) {
+			this.objects.get(index).setTime(time);
+		} else {
+			// a previously created object has the old time
+			this.objects.set(index, null);
+		}
+	}
+
+	/**
+	 * @return the index of the vehicle of a link event
+	 */
+	public int getVehicleIndex(int index) {
+		return this.vehicles[index];
+	}
+
+	/**
+	 * @return the index of the link of a link event
+	 */
+	public int getLinkIndex(int index) {
+		return this.links[index];
+	}
+
+	/**
+	 * @return the event, events stored in primitive form are converted into objects
+	 */
+	@Override
+	public Event get(int index) {
+		assert index < this.size;
+		Event event = this.objects.get(index);
+		if (event == null) {
+			event = createEvent(index);
+			if (!this.objects.compareAndSet(index, null, event)) {
+				// another thread was faster
+				event = this.objects.get(index);
+			}
+		}
+		return event;
+	}
+
+	private Event createEvent(int index) {
+		Id<Vehicle> vehicleId = Id.get(this.vehicles[index], Vehicle.class);
+		Id<Link> linkId = Id.get(this.links[index], Link.class);
+		switch (this.types[index]) {
+			case LINK_ENTER:
+				return new LinkEnterEvent(this.times[index], vehicleId, linkId);
+			case LINK_LEAVE:
+				return new LinkLeaveEvent(this.times[index], vehicleId, linkId);
+			default:
+				throw new IllegalStateException("unknown event type " + this.types[index]);
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.objects.set(i, null);
+		}
+		this.size = 0;
+	}
+
+	@Override
+	public Event[] array() {
+		Event[] array = new Event[this.size];
+		for (int i = 0; i < this.size; i++) {
+			array[i] = get(i);
+		}
+		return array;
+	}
+
+	@Override
+	/*package*/ void processEvents(EventsManager eventsManager) {
+		if (eventsManager instanceof EventsManagerImpl) {
+			EventsManagerImpl impl = (EventsManagerImpl) eventsManager;
+			for (int i = 0; i < this.size; i++) {
+				impl.processEvent(this, i);
+			}
+		} else if (eventsManager instanceof SingleHandlerEventsManager) {
+			SingleHandlerEventsManager single = (SingleHandlerEventsManager) eventsManager;
+			for (int i = 0; i < this.size; i++) {
+				single.processEvent(this, i);
+			}
+		} else {
+			super.processEvents(eventsManager);
+		}
+	}
+}
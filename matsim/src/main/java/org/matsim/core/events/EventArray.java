@@ -3,6 +3,7 @@ package org.matsim.core.events;
 import java.util.Arrays;
 
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
 
 public class EventArray {
 	private Event[] array;
@@ -48,4 +49,13 @@ public class EventArray {
 	public Event[] array() {
 		return array;
 	}
+
+	/**
+	 * Passes all events to the events manager, in order.
+	 */
+	/*package*/ void processEvents(EventsManager eventsManager) {
+		for (int i = 0; i < size(); i++) {
+			eventsManager.processEvent(get(i));
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Collects how often and how long the event handlers are called, per handler class and event class.
+ *
+ * <p>The invocations are always counted. To keep the overhead low, the time is only measured for every
+ * n-th call of a handler (the sample interval); the total time is extrapolated from the samples.
+ * The percentiles are taken from a histogram with a relative bucket width of 12.5%.</p>
+ *
+ * <p>The profiler is passed to an events manager with <code>setHandlerProfiler</code>. It can be shared
+ * by several events managers and threads.</p>
+ *
+ * @see EventHandlerProfilingModule
+ */
+public final class EventHandlerProfiler {
+
+	private final int sampleInterval;
+	private final ConcurrentMap<Key, HandlerStats> stats = new ConcurrentHashMap<>();
+
+	/**
+	 * @param sampleInterval the time is measured for every <code>sampleInterval</code>-th call of a handler,
+	 * 1 measures all calls.
+	 */
+	public EventHandlerProfiler(int sampleInterval) {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("sample interval must be at least 1, but is " + sampleInterval);
+		}
+		this.sampleInterval = sampleInterval;
+	}
+
+	public int getSampleInterval() {
+		return this.sampleInterval;
+	}
+
+	/*package*/ HandlerStats stats(Class<?> handlerClass, Class<? extends Event> eventClass) {
+		return this.stats.computeIfAbsent(new Key(handlerClass, eventClass), k -> new HandlerStats(handlerClass.getName(), eventClass.getName()));
+	}
+
+	/**
+	 * @return the statistics of the given handler class for the given event class, or <code>null</code> if
+	 * no such event was handled by that handler class.
+	 */
+	public HandlerStats getStats(Class<?> handlerClass, Class<? extends Event> eventClass) {
+		return this.stats.get(new Key(handlerClass, eventClass));
+	}
+
+	/**
+	 * @return the statistics of all handler and event classes, the most expensive first.
+	 */
+	public List<HandlerStats> getAllStats() {
+		List<HandlerStats> all = new ArrayList<>();
+		for (HandlerStats s : this.stats.values()) {
+			if (s.getInvocations() > 0) {
+				all.add(s);
+			}
+		}
+		all.sort(Comparator.comparingLong(HandlerStats::getTotalNanos).reversed()
+				.thenComparing(HandlerStats::getHandlerClassName)
+				.thenComparing(HandlerStats::getEventClassName));
+		return all;
+	}
+
+	/**
+	 * Sets all statistics back to zero, typically at the beginning of an iteration.
+	 */
+	public void reset() {
+		// the events managers keep references to the statistics, so they are cleared and not removed
+		for (HandlerStats s : this.stats.values()) {
+			s.reset();
+		}
+	}
+
+	/**
+	 * Writes the statistics as tab-separated table, times are in milliseconds.
+	 */
+	public void write(String filename) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("handler\tevent\tinvocations\tsampled\ttotal_ms\tmean_ms\tp50_ms\tp90_ms\tp99_ms\tmax_ms\n");
+			for (HandlerStats s : getAllStats()) {
+				writer.write(s.getHandlerClassName() + "\t" + s.getEventClassName() + "\t" + s.getInvocations() + "\t" + s.getSampledInvocations()
+						+ "\t" + millis(s.getTotalNanos()) + "\t" + millis(s.getMeanNanos()) + "\t" + millis(s.getPercentileNanos(0.5))
+						+ "\t" + millis(s.getPercentileNanos(0.9)) + "\t" + millis(s.getPercentileNanos(0.99)) + "\t" + millis(s.getMaxNanos()) + "\n");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String millis(double nanos) {
+		return String.format(Locale.ROOT, "%.6f", nanos / 1e6);
+	}
+
+	/**
+	 * Invocation count and sampled handling times of one handler class for one event class.
+	 */
+	public static final class HandlerStats {
+
+		// 16 linear buckets for 0..15ns, then 8 buckets per power of two
+		private static final int LINEAR = 16;
+		private static final int SUB_BUCKETS = 8;
+		private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS;
+
+		private final String handlerClassName;
+		private final String eventClassName;
+		private final LongAdder invocations = new LongAdder();
+		private final long[] histogram = new long[BUCKETS];
+		private long samples = 0;
+		private long sampledNanos = 0;
+		private long maxNanos = 0;
+
+		private HandlerStats(String handlerClassName, String eventClassName) {
+			this.handlerClassName = handlerClassName;
+			this.eventClassName = eventClassName;
+		}
+
+		/*package*/ void countInvocation() {
+			this.invocations.increment();
+		}
+
+		/*package*/ synchronized void addSample(long nanos) {
+			this.invocations.increment();
+			this.samples++;
+			this.sampledNanos += nanos;
+			this.maxNanos = Math.max(this.maxNanos, nanos);
+			this.histogram[bucket(nanos)]++;
+		}
+
+		private synchronized void reset() {
+			this.invocations.reset();
+			this.samples = 0;
+			this.sampledNanos = 0;
+			this.maxNanos = 0;
+			Arrays.fill(this.histogram, 0);
+		}
+
+		public String getHandlerClassName() {
+			return this.handlerClassName;
+		}
+
+		public String getEventClassName() {
+			return this.eventClassName;
+		}
+
+		public long getInvocations() {
+			return this.invocations.sum();
+		}
+
+		public synchronized long getSampledInvocations() {
+			return this.samples;
+		}
+
+		/**
+		 * @return the total time spent in the handler, extrapolated from the sampled calls.
+		 */
+		public synchronized long getTotalNanos() {
+			if (this.samples == 0) {
+				return 0;
+			}
+			return (long) (this.sampledNanos * ((double) getInvocations() / this.samples));
+		}
+
+		public synchronized double getMeanNanos() {
+			return this.samples == 0 ? 0 : (double) this.sampledNanos / this.samples;
+		}
+
+		public synchronized long getMaxNanos() {
+			return this.maxNanos;
+		}
+
+		/**
+		 * @param p the percentile, between 0 and 1
+		 * @return an upper bound of the given percentile of the sampled handling times
+		 */
+		public synchronized long getPercentileNanos(double p) {
+			if (p < 0 || p > 1) {
+				throw new IllegalArgumentException("percentile must be between 0 and 1, but is " + p);
+			}
+			if (this.samples == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(p * this.samples));
+			long count = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				count += this.histogram[i];
+				if (count >= rank) {
+					return Math.min(upperBound(i), this.maxNanos);
+				}
+			}
+			return this.maxNanos;
+		}
+
+		private static int bucket(long nanos) {
+			if (nanos < LINEAR) {
+				return (int) Math.max(0, nanos);
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+			int sub = (int) (nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+			return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+		}
+
+		private static long upperBound(int bucket) {
+			if (bucket < LINEAR) {
+				return bucket;
+			}
+			int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+			int sub = (bucket - LINEAR) % SUB_BUCKETS;
+			return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 3)) - 1;
+		}
+
+		@Override
+		public String toString() {
+			return this.handlerClassName + " / " + this.eventClassName + ": " + getInvocations() + " calls, "
+					+ millis(getTotalNanos()) + " ms";
+		}
+	}
+
+	private static final class Key {
+		private final Class<?> handlerClass;
+		private final Class<?> eventClass;
+
+		Key(Class<?> handlerClass, Class<?> eventClass) {
+			this.handlerClass = handlerClass;
+			this.eventClass = eventClass;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return this.handlerClass == other.handlerClass && this.eventClass == other.eventClass;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.handlerClass, this.eventClass);
+		}
+	}
+}
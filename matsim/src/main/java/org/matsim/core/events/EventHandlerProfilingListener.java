@@ -0,0 +1,61 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+
+/**
+ * Writes the statistics of the {@link EventHandlerProfiler} to <code>ITERS/it.N/N.eventHandlerProfile.txt</code>
+ * and logs the most expensive handlers.
+ */
+final class EventHandlerProfilingListener implements IterationStartsListener, IterationEndsListener {
+
+	private static final Logger log = Logger.getLogger(EventHandlerProfilingListener.class);
+
+	private static final int LOGGED_HANDLERS = 5;
+
+	@Inject private EventHandlerProfiler profiler;
+	@Inject private OutputDirectoryHierarchy controlerIO;
+
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		this.profiler.reset();
+	}
+
+	@Override
+	public void notifyIterationEnds(final IterationEndsEvent event) {
+		this.profiler.write(this.controlerIO.getIterationFilename(event.getIteration(), "eventHandlerProfile.txt"));
+		List<EventHandlerProfiler.HandlerStats> stats = this.profiler.getAllStats();
+		log.info("most expensive event handlers:");
+		for (EventHandlerProfiler.HandlerStats s : stats.subList(0, Math.min(LOGGED_HANDLERS, stats.size()))) {
+			log.info("  " + s);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import org.matsim.core.controler.AbstractModule;
+
+/**
+ * Profiles the event handlers if <code>parallelEventHandling.eventHandlerProfilingInterval</code> is set,
+ * and writes the statistics after each iteration.
+ *
+ * @see EventHandlerProfiler
+ */
+public final class EventHandlerProfilingModule extends AbstractModule {
+
+	@Override
+	public void install() {
+		int interval = getConfig().parallelEventHandling().getEventHandlerProfilingInterval();
+		if (interval > 0) {
+			bind(EventHandlerProfiler.class).toInstance(new EventHandlerProfiler(interval));
+			addControlerListenerBinding().to(EventHandlerProfilingListener.class);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.util.Locale;
+
+/**
+ * Statistics of the batched hand-over of events from the simulation to the events handling threads of the
+ * parallel events managers, collected during one iteration.
+ *
+ * <ul>
+ *     <li>The <em>queue depth</em> is the number of batches which were published, but not yet handled by all
+ *     handler threads. It is sampled every time a batch is published.</li>
+ *     <li>The <em>lag</em> of a handler thread is the time from publishing a batch until the handler thread
+ *     has passed all events of the batch to its event handlers.</li>
+ * </ul>
+ */
+public final class EventsDispatchMetrics {
+
+	private final long publishedBatches;
+	private final long publishedEvents;
+	private final long sumQueueDepth;
+	private final long maxQueueDepth;
+	private final long[] processedBatches;
+	private final long[] sumLagNanos;
+	private final long[] maxLagNanos;
+	private final long[] busyNanos;
+
+	EventsDispatchMetrics(long publishedBatches, long publishedEvents, long sumQueueDepth, long maxQueueDepth,
+			long[] processedBatches, long[] sumLagNanos, long[] maxLagNanos, long[] busyNanos) {
+		this.publishedBatches = publishedBatches;
+		this.publishedEvents = publishedEvents;
+		this.sumQueueDepth = sumQueueDepth;
+		this.maxQueueDepth = maxQueueDepth;
+		this.processedBatches = processedBatches;
+		this.sumLagNanos = sumLagNanos;
+		this.maxLagNanos = maxLagNanos;
+		this.busyNanos = busyNanos;
+	}
+
+	public long getPublishedBatches() {
+		return this.publishedBatches;
+	}
+
+	public long getPublishedEvents() {
+		return this.publishedEvents;
+	}
+
+	public double getMeanQueueDepth() {
+		return this.publishedBatches == 0 ? 0 : (double) this.sumQueueDepth / this.publishedBatches;
+	}
+
+	public long getMaxQueueDepth() {
+		return this.maxQueueDepth;
+	}
+
+	public int getNumberOfHandlerThreads() {
+		return this.processedBatches.length;
+	}
+
+	public long getProcessedBatches(int handlerThread) {
+		return this.processedBatches[handlerThread];
+	}
+
+	public double getMeanLagMillis(int handlerThread) {
+		long batches = this.processedBatches[handlerThread];
+		return batches == 0 ? 0 : this.sumLagNanos[handlerThread] / 1e6 / batches;
+	}
+
+	public double getMaxLagMillis(int handlerThread) {
+		return this.maxLagNanos[handlerThread] / 1e6;
+	}
+
+	/** @return the time the handler thread spent in event handlers */
+	public double getBusyMillis(int handlerThread) {
+		return this.busyNanos[handlerThread] / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		str.append(String.format(Locale.ROOT, "published %d events in %d batches, queue depth mean=%.1f max=%d batches",
+				this.publishedEvents, this.publishedBatches, getMeanQueueDepth(), this.maxQueueDepth));
+		for (int i = 0; i < this.processedBatches.length; i++) {
+			str.append(String.format(Locale.ROOT, "%n  handler thread %d: lag mean=%.2f ms max=%.2f ms, busy %.0f ms",
+					i, getMeanLagMillis(i), getMaxLagMillis(i), getBusyMillis(i)));
+		}
+		return str.toString();
+	}
+}
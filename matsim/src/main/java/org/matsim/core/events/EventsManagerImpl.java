@@ -64,6 +64,7 @@ import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityE
 import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.PrimitiveLinkEventHandler;
 
 /**
  * EventHandling
@@ -104,12 +105,20 @@ public final class EventsManagerImpl implements EventsManager {
 		protected final Class<? extends Event> eventClass;
 		protected final EventHandler eventHandler;
 		protected final Method method;
+		// only set if the handlers are profiled
+		protected final EventHandlerProfiler.HandlerStats stats;
+		protected int callsUntilSample = 1;
+		// whether link events in primitive form are passed to the handler without creating an object
+		protected final boolean primitive;
 
 		protected HandlerInfo(final Class<? extends Event> eventClass, final EventHandler eventHandler,
-				final Method method) {
+				final Method method, final EventHandlerProfiler.HandlerStats stats) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
 			this.method = method;
+			this.stats = stats;
+			this.primitive = eventHandler instanceof PrimitiveLinkEventHandler
+					&& (eventClass == LinkEnterEvent.class || eventClass == LinkLeaveEvent.class);
 		}
 	}
 
@@ -120,6 +129,8 @@ public final class EventsManagerImpl implements EventsManager {
 	private long counter = 0;
 	private long nextCounterMsg = 1;
 
+	private EventHandlerProfiler profiler = null;
+
 	private HandlerData findHandler(final Class<? extends Event> evklass) {
 		for (HandlerData handler : this.handlerData) {
 			if (handler.eventClass == evklass) {
@@ -131,27 +142,97 @@ public final class EventsManagerImpl implements EventsManager {
 
 	@Override
 	public void processEvent(final Event event) {
-		this.counter++;
-		if (this.counter == this.nextCounterMsg) {
-			this.nextCounterMsg *= 4;
-			log.info(" event # " + this.counter);
-		}
+		countEvent();
 		for (HandlerInfo info : getHandlersForClass( event.getClass() )) {
 			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler )) {
-					continue;
+				if (info.stats == null) {
+					callHandler(info, event);
+				} else if (--info.callsUntilSample > 0) {
+					info.stats.countInvocation();
+					callHandler(info, event);
+				} else {
+					info.callsUntilSample = this.profiler.getSampleInterval();
+					long start = System.nanoTime();
+					callHandler(info, event);
+					info.stats.addSample(System.nanoTime() - start);
 				}
-				try {
-					info.method.invoke(info.eventHandler, event );
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Processes the event at the given index. Link events stored in primitive form are passed to
+	 * {@link PrimitiveLinkEventHandler}s without creating an event object.
+	 */
+	public void processEvent(final CompactEventArray events, final int index) {
+		byte type = events.getType(index);
+		if (type == CompactEventArray.OBJECT) {
+			processEvent(events.get(index));
+			return;
+		}
+		countEvent();
+		Class<? extends Event> eventClass = type == CompactEventArray.LINK_ENTER ? LinkEnterEvent.class : LinkLeaveEvent.class;
+		for (HandlerInfo info : getHandlersForClass(eventClass)) {
+			synchronized(info.eventHandler) {
+				if (info.stats == null) {
+					callHandler(info, events, index);
+				} else if (--info.callsUntilSample > 0) {
+					info.stats.countInvocation();
+					callHandler(info, events, index);
+				} else {
+					info.callsUntilSample = this.profiler.getSampleInterval();
+					long start = System.nanoTime();
+					callHandler(info, events, index);
+					info.stats.addSample(System.nanoTime() - start);
 				}
 			}
 		}
 	}
 
+	private void countEvent() {
+		this.counter++;
+		if (this.counter == this.nextCounterMsg) {
+			this.nextCounterMsg *= 4;
+			log.info(" event # " + this.counter);
+		}
+	}
+
+	private static void callHandler(final HandlerInfo info, final CompactEventArray events, final int index) {
+		if (!info.primitive) {
+			callHandler(info, events.get(index));
+		} else if (events.getType(index) == CompactEventArray.LINK_ENTER) {
+			((PrimitiveLinkEventHandler) info.eventHandler).handleLinkEnter(events.getTime(index), events.getVehicleIndex(index), events.getLinkIndex(index));
+		} else {
+			((PrimitiveLinkEventHandler) info.eventHandler).handleLinkLeave(events.getTime(index), events.getVehicleIndex(index), events.getLinkIndex(index));
+		}
+	}
+
+	private static void callHandler(final HandlerInfo info, final Event event) {
+		if (callHandlerFast(info.eventClass, event, info.eventHandler )) {
+			return;
+		}
+		try {
+			info.method.invoke(info.eventHandler, event );
+		} catch (IllegalArgumentException | IllegalAccessException e) {
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
+		} catch (InvocationTargetException e) {
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+		}
+	}
+
+	/**
+	 * Measures the time spent in the event handlers with the given profiler, <code>null</code> switches
+	 * profiling off.
+	 */
+	public void setHandlerProfiler(final EventHandlerProfiler profiler) {
+		this.profiler = profiler;
+		this.cacheHandlers.clear();
+	}
+
+	public EventHandlerProfiler getHandlerProfiler() {
+		return this.profiler;
+	}
+
 
 	@Override
 	public void addHandler (final EventHandler handler) {
@@ -250,7 +331,8 @@ public final class EventsManagerImpl implements EventsManager {
 			HandlerData dat = findHandler(eventKlass);
 			if (dat != null) {
 				for (EventHandler handler : dat.handlerList) {
-					info.add(new HandlerInfo(eventKlass, handler, dat.method));
+					EventHandlerProfiler.HandlerStats stats = this.profiler == null ? null : this.profiler.stats(handler.getClass(), eventClass);
+					info.add(new HandlerInfo(eventKlass, handler, dat.method, stats));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -0,0 +1,332 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.MatsimEventsReader.CustomEventMapper;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Streaming reader for the binary events format described in {@link BinaryEventsFormat}. Events are
+ * decoded block by block and passed directly to the {@link EventsManager}. Ids are only created once
+ * per distinct id, afterwards they are looked up by their index in the string table.
+ */
+public final class EventsReaderBinary {
+
+	private final static Logger LOG = Logger.getLogger(EventsReaderBinary.class);
+
+	private final EventsManager events;
+	// events without a binary layout are handled like xml events
+	private final EventsReaderXMLv1 genericReader;
+	private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+	private byte[] block = new byte[BinaryEventsFormat.BLOCK_SIZE + 1024];
+	private byte[] compressed = new byte[0];
+	private int blockLength;
+	private int pos;
+
+	private String[] strings = new String[1024];
+	private int stringCount;
+	private Id<Link>[] linkIds = newIdArray(1024);
+	private Id<Vehicle>[] vehicleIds = newIdArray(1024);
+	private Id<Person>[] personIds = newIdArray(1024);
+	private Id<ActivityFacility>[] facilityIds = newIdArray(1024);
+
+	private long lastSeconds;
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.events = events;
+		this.genericReader = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.genericReader.addCustomEventMapper(eventType, cem);
+	}
+
+	public void parse(final String filename) throws UncheckedIOException {
+		LOG.info("starting to parse binary events from file " + filename + " ...");
+		parse(IOUtils.getInputStream(IOUtils.getFileUrl(filename)));
+	}
+
+	public void parse(final URL url) throws UncheckedIOException {
+		LOG.info("starting to parse binary events from url " + url + " ...");
+		parse(IOUtils.getInputStream(url));
+	}
+
+	public void parse(final InputStream stream) throws UncheckedIOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+			byte[] magic = new byte[BinaryEventsFormat.MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, BinaryEventsFormat.MAGIC)) {
+				throw new IllegalArgumentException("Not a binary MATSim events file.");
+			}
+			int version = in.readUnsignedByte();
+			if (version != BinaryEventsFormat.VERSION) {
+				throw new IllegalArgumentException("Unsupported binary events version " + version + ".");
+			}
+			while (readBlock(in)) {
+				parseBlock();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private boolean readBlock(DataInputStream in) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			LOG.warn("binary events file is not terminated properly, it might be incomplete.");
+			return false;
+		}
+		if (length == 0) {
+			return false;
+		}
+		int compressedLength = in.readInt();
+		if (this.compressed.length < compressedLength) {
+			this.compressed = new byte[compressedLength];
+		}
+		in.readFully(this.compressed, 0, compressedLength);
+		if (this.block.length < length) {
+			this.block = new byte[length];
+		}
+		this.decompressor.decompress(this.compressed, 0, this.block, 0, length);
+		this.pos = 0;
+		this.blockLength = length;
+		return true;
+	}
+
+	private void parseBlock() {
+		while (this.pos < this.blockLength) {
+			byte type = this.block[this.pos++];
+			double time = readTime();
+			switch (type) {
+				case BinaryEventsFormat.LINK_ENTER:
+					this.events.processEvent(new LinkEnterEvent(time, readVehicleId(), readLinkId()));
+					break;
+				case BinaryEventsFormat.LINK_LEAVE:
+					this.events.processEvent(new LinkLeaveEvent(time, readVehicleId(), readLinkId()));
+					break;
+				case BinaryEventsFormat.VEHICLE_ENTERS_TRAFFIC:
+					this.events.processEvent(new VehicleEntersTrafficEvent(time, readPersonId(), readLinkId(), readVehicleId(), readString(), readDouble()));
+					break;
+				case BinaryEventsFormat.VEHICLE_LEAVES_TRAFFIC:
+					this.events.processEvent(new VehicleLeavesTrafficEvent(time, readPersonId(), readLinkId(), readVehicleId(), readString(), readDouble()));
+					break;
+				case BinaryEventsFormat.PERSON_ENTERS_VEHICLE:
+					this.events.processEvent(new PersonEntersVehicleEvent(time, readPersonId(), readVehicleId()));
+					break;
+				case BinaryEventsFormat.PERSON_LEAVES_VEHICLE:
+					this.events.processEvent(new PersonLeavesVehicleEvent(time, readPersonId(), readVehicleId()));
+					break;
+				case BinaryEventsFormat.PERSON_DEPARTURE:
+					this.events.processEvent(new PersonDepartureEvent(time, readPersonId(), readLinkId(), readString()));
+					break;
+				case BinaryEventsFormat.PERSON_ARRIVAL:
+					this.events.processEvent(new PersonArrivalEvent(time, readPersonId(), readLinkId(), readString()));
+					break;
+				case BinaryEventsFormat.ACTIVITY_START:
+					this.events.processEvent(new ActivityStartEvent(time, readPersonId(), readLinkId(), readFacilityId(), readString(), readCoord()));
+					break;
+				case BinaryEventsFormat.ACTIVITY_END:
+					this.events.processEvent(new ActivityEndEvent(time, readPersonId(), readLinkId(), readFacilityId(), readString()));
+					break;
+				case BinaryEventsFormat.GENERIC:
+					parseGenericEvent(time);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown binary event type " + type + ".");
+			}
+		}
+	}
+
+	private void parseGenericEvent(double time) {
+		AttributesImpl atts = new AttributesImpl();
+		atts.addAttribute(null, "time", "time", null, Double.toString(time));
+		atts.addAttribute(null, "type", "type", null, readString());
+		int count = (int) readVarLong();
+		for (int i = 0; i < count; i++) {
+			String key = readString();
+			String value = readString();
+			atts.addAttribute(null, key, key, null, value);
+		}
+		this.genericReader.startEvent(atts);
+	}
+
+	private double readTime() {
+		long value = readVarLong();
+		if (value == 1) {
+			return readDouble();
+		}
+		this.lastSeconds += BinaryEventsFormat.unZigZag(value >>> 1);
+		return this.lastSeconds;
+	}
+
+	/** @return the string table index of the string, or -1 if it is null */
+	private int readStringIndex() {
+		long value = readVarLong();
+		if (value == 0) {
+			return -1;
+		}
+		if ((value & 1) == 0) {
+			return (int) (value >>> 1) - 1;
+		}
+		int length = (int) (value >>> 1);
+		String s = new String(this.block, this.pos, length, StandardCharsets.UTF_8);
+		this.pos += length;
+		if (this.stringCount == this.strings.length) {
+			this.strings = Arrays.copyOf(this.strings, this.strings.length * 2);
+		}
+		this.strings[this.stringCount] = s;
+		return this.stringCount++;
+	}
+
+	private String readString() {
+		int index = readStringIndex();
+		return index < 0 ? null : this.strings[index];
+	}
+
+	private Id<Link> readLinkId() {
+		int index = readStringIndex();
+		if (index < 0) {
+			return null;
+		}
+		if (index >= this.linkIds.length) {
+			this.linkIds = Arrays.copyOf(this.linkIds, this.strings.length);
+		}
+		Id<Link> id = this.linkIds[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], Link.class);
+			this.linkIds[index] = id;
+		}
+		return id;
+	}
+
+	private Id<Vehicle> readVehicleId() {
+		int index = readStringIndex();
+		if (index < 0) {
+			return null;
+		}
+		if (index >= this.vehicleIds.length) {
+			this.vehicleIds = Arrays.copyOf(this.vehicleIds, this.strings.length);
+		}
+		Id<Vehicle> id = this.vehicleIds[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], Vehicle.class);
+			this.vehicleIds[index] = id;
+		}
+		return id;
+	}
+
+	private Id<Person> readPersonId() {
+		int index = readStringIndex();
+		if (index < 0) {
+			return null;
+		}
+		if (index >= this.personIds.length) {
+			this.personIds = Arrays.copyOf(this.personIds, this.strings.length);
+		}
+		Id<Person> id = this.personIds[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], Person.class);
+			this.personIds[index] = id;
+		}
+		return id;
+	}
+
+	private Id<ActivityFacility> readFacilityId() {
+		int index = readStringIndex();
+		if (index < 0) {
+			return null;
+		}
+		if (index >= this.facilityIds.length) {
+			this.facilityIds = Arrays.copyOf(this.facilityIds, this.strings.length);
+		}
+		Id<ActivityFacility> id = this.facilityIds[index];
+		if (id == null) {
+			id = Id.create(this.strings[index], ActivityFacility.class);
+			this.facilityIds[index] = id;
+		}
+		return id;
+	}
+
+	private Coord readCoord() {
+		if (this.block[this.pos++] == 0) {
+			return null;
+		}
+		return new Coord(readDouble(), readDouble());
+	}
+
+	private double readDouble() {
+		long bits = 0;
+		for (int i = 0; i < 8; i++) {
+			bits = (bits << 8) | (this.block[this.pos++] & 0xFF);
+		}
+		return Double.longBitsToDouble(bits);
+	}
+
+	private long readVarLong() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = this.block[this.pos++];
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Id<T>[] newIdArray(int size) {
+		return (Id<T>[]) new Id[size];
+	}
+}
@@ -49,6 +49,7 @@ public final class MatsimEventsReader implements MatsimReader {
 	private final EventsManager events;
 
 	private final Map<String, CustomEventMapper> customEventMappers = new LinkedHashMap<>();
+	private boolean parallelXmlParsing = false;
 
 	public interface CustomEventMapper {
 		Event apply(GenericEvent event);
@@ -67,6 +68,15 @@ public final class MatsimEventsReader implements MatsimReader {
 		this.events = events;
 	}
 
+	/**
+	 * If set, xml events are read by the {@link ParallelEventsReaderXML}, which decompresses, parses and creates the events
+	 * on separate threads. The order of the events is not affected, but custom event mappers are not called on
+	 * the calling thread.  Default is <code>false</code>.
+	 */
+	public void setParallelXmlParsing(final boolean parallelXmlParsing) {
+		this.parallelXmlParsing = parallelXmlParsing;
+	}
+
 	/**
 	 * Parses the specified events file.
 	 *
@@ -76,11 +86,19 @@ public final class MatsimEventsReader implements MatsimReader {
 	public void readFile(final String filename) {
 		String lcFilename = filename.toLowerCase(Locale.ROOT);
 		if (lcFilename.endsWith(".xml") || lcFilename.endsWith(".xml.gz") || lcFilename.endsWith(".xml.zst") || lcFilename.endsWith(".xml.lz4")) {
-			new XmlEventsReader(this.events, this.customEventMappers).readFile(filename );
+			if (this.parallelXmlParsing) {
+				createParallelXmlReader().readFile(filename);
+			} else {
+				new XmlEventsReader(this.events, this.customEventMappers).readFile(filename);
+			}
 		} else if (lcFilename.endsWith(".ndjson") || lcFilename.endsWith(".ndjson.gz") || lcFilename.endsWith(".ndjson.zst")) {
 			EventsReaderJson reader = new EventsReaderJson(this.events);
 			customEventMappers.forEach(reader::addCustomEventMapper);
 			reader.parse(filename);
+		} else if (lcFilename.endsWith(".bin")) {
+			EventsReaderBinary reader = new EventsReaderBinary(this.events);
+			customEventMappers.forEach(reader::addCustomEventMapper);
+			reader.parse(filename);
 		} else if (lcFilename.endsWith(".txt") || lcFilename.endsWith(".txt.gz")) {
 			throw new RuntimeException("text events are no longer supported. Please use MATSim 0.6.1 or earlier to read text events.");
 		} else {
@@ -96,7 +114,11 @@ public final class MatsimEventsReader implements MatsimReader {
 	public void readStream(final InputStream stream, final ControlerConfigGroup.EventsFileFormat format) {
 		switch (format) {
 			case xml:
-				new XmlEventsReader(this.events, this.customEventMappers).parse(stream);
+				if (this.parallelXmlParsing) {
+					createParallelXmlReader().parse(stream);
+				} else {
+					new XmlEventsReader(this.events, this.customEventMappers).parse(stream);
+				}
 				break;
 			case pb:
 				throw new UnsupportedOperationException(
@@ -106,20 +128,39 @@ public final class MatsimEventsReader implements MatsimReader {
 				customEventMappers.forEach(reader::addCustomEventMapper);
 				reader.parse(stream);
 				break;
+			case binary:
+				EventsReaderBinary binaryReader = new EventsReaderBinary(this.events);
+				customEventMappers.forEach(binaryReader::addCustomEventMapper);
+				binaryReader.parse(stream);
+				break;
 		}
 	}
 
 	@Override
 	public void readURL( final URL url ) {
 		if (url.getFile().contains(".xml")) {
-			new XmlEventsReader( this.events, this.customEventMappers).readURL( url );
+			if (this.parallelXmlParsing) {
+				createParallelXmlReader().readURL(url);
+			} else {
+				new XmlEventsReader( this.events, this.customEventMappers).readURL( url );
+			}
 		} else if (url.getFile().contains(".ndjson")) {
 			EventsReaderJson reader = new EventsReaderJson(this.events);
 			customEventMappers.forEach(reader::addCustomEventMapper);
 			reader.parse(url);
+		} else if (url.getFile().endsWith(".bin")) {
+			EventsReaderBinary reader = new EventsReaderBinary(this.events);
+			customEventMappers.forEach(reader::addCustomEventMapper);
+			reader.parse(url);
 		}
 	}
 
+	private ParallelEventsReaderXML createParallelXmlReader() {
+		ParallelEventsReaderXML reader = new ParallelEventsReaderXML(this.events);
+		this.customEventMappers.forEach(reader::addCustomEventMapper);
+		return reader;
+	}
+
 	private static class XmlEventsReader extends MatsimXmlParser {
 
 		final EventsManager events;
@@ -56,6 +56,8 @@ public final class ParallelEventsManager implements EventsManager {
 	//private final int eventsQueueSize = 1048576 * 32;
 	private final int eventsArraySize;
 
+	private EventHandlerProfiler profiler = null;
+
 	@Inject
 	ParallelEventsManager(Config config) {
 		this(config.parallelEventHandling().getSynchronizeOnSimSteps() != null ? config.parallelEventHandling().getSynchronizeOnSimSteps() : true, config.parallelEventHandling().getEventsQueueSize());
@@ -94,12 +96,16 @@ public final class ParallelEventsManager implements EventsManager {
 		// create event managers
 		if (this.oneThreadPerHandler) {
 			for (int i = 0; i < this.eventsHandlers.size(); i++) {
-				this.eventsManagers.add(new SingleHandlerEventsManager(this.eventsHandlers.get(i)));
+				SingleHandlerEventsManager eventsManager = new SingleHandlerEventsManager(this.eventsHandlers.get(i));
+				eventsManager.setHandlerProfiler(this.profiler);
+				this.eventsManagers.add(eventsManager);
 			}
 		} else {
 			// TODO - check if this slow path is correct
 			for (int i = 0; i < this.numOfThreads; i++) {
-				this.eventsManagers.add(new EventsManagerImpl());
+				EventsManagerImpl eventsManager = new EventsManagerImpl();
+				eventsManager.setHandlerProfiler(this.profiler);
+				this.eventsManagers.add(eventsManager);
 			}
 			for (int i = 0; i < this.eventsHandlers.size(); i++) {
 				this.eventsManagers.get(i % numOfThreads).addHandler(this.eventsHandlers.get(i));
@@ -181,6 +187,15 @@ public final class ParallelEventsManager implements EventsManager {
 		}
 	}
 
+	/**
+	 * Measures the time spent in the event handlers with the given profiler, starting with the next call
+	 * of {@link #initProcessing()}. <code>null</code> switches profiling off.
+	 */
+	@com.google.inject.Inject(optional = true)
+	public void setHandlerProfiler(final EventHandlerProfiler profiler) {
+		this.profiler = profiler;
+	}
+
 	public boolean hadException() {
 		return this.uncaughtExceptionHandler.hadException;
 	}
@@ -311,7 +326,8 @@ public final class ParallelEventsManager implements EventsManager {
 					}
 
 					// this is an optimization, if we receive a large buffer, avoid copying it and send it directly.
-					if (earray.size() >= eventsArraySize) {
+					// compact arrays are never copied, this would create objects for all events.
+					if (earray.size() >= eventsArraySize || earray instanceof CompactEventArray) {
 						// make sure we don't miss events already buffered
 						if (events.size() > 0) {
 							distribute(events);
@@ -367,9 +383,7 @@ public final class ParallelEventsManager implements EventsManager {
 					EventArray events = this.eventsQueue.poll(50, TimeUnit.MICROSECONDS);
 
 					if (events != null) {
-						for (int i = 0; i < events.size(); i++) {
-							this.eventsManager.processEvent(events.get(i));
-						}
+						events.processEvents(this.eventsManager);
 					}
 
 					// If flush is over, then try to wake up distributor
@@ -18,8 +18,8 @@
 
 package org.matsim.core.events;
 
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.events.Event;
@@ -53,36 +53,46 @@ import javax.inject.Inject;
  * (not really needed, but can make performance slightly faster in larger
  * simulations).
  *
+ * Events are collected in batches, which are handed to the events handling threads at the end of each time step
+ * or when they are full. Events must be created by one thread only, see
+ * {@link EventsUtils#getParallelFeedableInstance(EventsManager)}.
+ *
  * @see <a href="http://www.matsim.org/node/238">http://www.matsim.org/node/238</a>
  * @author rashid_waraich
  *
  */
 public final class ParallelEventsManagerImpl implements EventsManager {
 
-	private boolean parallelMode = true;
+	private boolean parallelMode = false;
 	private int numberOfThreads;
 	private EventsManagerImpl[] events = null;
-	private ProcessEventThread[] eventsProcessThread = null;
-	private Thread[] threads = null;
+	private BatchedEventsDispatcher dispatcher = null;
+	private EventsDispatchMetrics metrics = null;
+	private EventArray batch = null;
+	// events created by the event handlers
+	private final Queue<Event> handlerEvents = new ConcurrentLinkedQueue<>();
 	private int numberOfAddedEventsHandler = 0;
-	private final AtomicBoolean hadException = new AtomicBoolean(false);
-	private final ExceptionHandler uncaughtExceptionHandler = new ExceptionHandler(hadException);
 
 	private final static Logger log = Logger.getLogger(ParallelEventsManagerImpl.class);
 
+	// number of batches the simulation may be ahead of the slowest events handling thread
+	private static final int RING_CAPACITY = 256;
+	private static final int MAX_BATCH_SIZE = 10000;
+
 	// this number should be set in the following way:
 	// if the number of events is estimated as x, then this number
 	// could be set to x/10
-	// the higher this parameter, the less locks are used, but
-	// the more the time buffer between the simulation and events handling
+	// the higher this parameter, the larger the batches handed to the
+	// events handling threads, but the more the time buffer between the
+	// simulation and events handling.
 	// for small simulations, the default value is ok and it even works
 	// quite well for larger simulations with 10 million events
-	private int preInputBufferMaxLength = 100000;
+	private int preInputBufferMaxLength = MAX_BATCH_SIZE;
 
 	@Inject
 	ParallelEventsManagerImpl(Config config) {
 		if (config.parallelEventHandling().getEstimatedNumberOfEvents() != null) {
-			preInputBufferMaxLength = (int) (config.parallelEventHandling().getEstimatedNumberOfEvents() / 10);
+			preInputBufferMaxLength = batchSize(config.parallelEventHandling().getEstimatedNumberOfEvents());
 		}
 		init(config.parallelEventHandling().getNumberOfThreads());
 	}
@@ -103,23 +113,43 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 	 *            events).
 	 */
 	public ParallelEventsManagerImpl(int numberOfThreads, long estimatedNumberOfEvents) {
-		preInputBufferMaxLength = (int) (estimatedNumberOfEvents / 10 );
+		preInputBufferMaxLength = batchSize(estimatedNumberOfEvents);
 		init(numberOfThreads);
 	}
 
+	private static int batchSize(long estimatedNumberOfEvents) {
+		// larger batches do not reduce the synchronization overhead noticeably anymore
+		return (int) Math.max(1, Math.min(estimatedNumberOfEvents / 10, MAX_BATCH_SIZE * 10));
+	}
+
 	@Override
 	public void processEvent(final Event event) {
 		if (parallelMode) {
-			for (int i = 0; i < eventsProcessThread.length; i++) {
-				eventsProcessThread[i].processEvent(event);
+			if (this.dispatcher.isHandlerThread()) {
+				this.handlerEvents.add(event);
+				return;
+			}
+			this.batch.add(event);
+			if (this.batch.size() >= this.preInputBufferMaxLength) {
+				publishBatch();
 			}
 		} else {
-			for (int i = 0; i < eventsProcessThread.length; i++) {
-				eventsProcessThread[i].getEvents().processEvent(event);
+			for (int i = 0; i < events.length; i++) {
+				events[i].processEvent(event);
 			}
 		}
 	}
 
+	private void publishBatch() {
+		for (Event event = this.handlerEvents.poll(); event != null; event = this.handlerEvents.poll()) {
+			this.batch.add(event);
+		}
+		if (this.batch.size() > 0) {
+			this.dispatcher.publish(this.batch);
+			this.batch = new EventArray(Math.min(this.preInputBufferMaxLength, 1024));
+		}
+	}
+
 	@Override
 	public void addHandler(final EventHandler handler) {
 		synchronized (this) {
@@ -159,9 +189,6 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 	private void init(int numberOfThreads) {
 		this.numberOfThreads = numberOfThreads;
 		this.events = new EventsManagerImpl[numberOfThreads];
-		this.eventsProcessThread = new ProcessEventThread[numberOfThreads];
-		this.threads = new Thread[numberOfThreads];
-		// the additional 1 is for the simulation barrier
 		for (int i = 0; i < numberOfThreads; i++) {
 			events[i] = new EventsManagerImpl();
 		}
@@ -175,18 +202,18 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 	// anymore
 	@Override
 	public void finishProcessing() {
-		for (int i = 0; i < eventsProcessThread.length; i++) {
-			eventsProcessThread[i].close();
+		// if there are more events generated after end of simulation
+		// (generated in events handler), process them before stopping events handling.
+		publishBatch();
+		this.dispatcher.awaitProcessed();
+		while (!this.handlerEvents.isEmpty() && this.dispatcher.getException() == null) {
+			publishBatch();
+			this.dispatcher.awaitProcessed();
 		}
+		this.dispatcher.stop();
+		this.metrics = this.dispatcher.getMetrics();
+		log.info("events processing: " + this.metrics);
 
-		try {
-			for (Thread t : this.threads) {
-				t.join();
-			}
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		
 		// list which threads had which handlers to debug performance issues
 		printEventHandlers();
 
@@ -199,8 +226,9 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 
 		parallelMode = false;
 
-		if (this.hadException.get()) {
-			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.");
+		if (this.dispatcher.getException() != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.",
+					this.dispatcher.getException());
 		}
 	}
 
@@ -210,38 +238,41 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 	public void initProcessing() {
 		// reset this class, so that it can be reused for the next iteration
 		for (int i = 0; i < numberOfThreads; i++) {
-			this.eventsProcessThread[i] = new ProcessEventThread(events[i], preInputBufferMaxLength);
-			this.threads[i] = new Thread(eventsProcessThread[i], "Events-" + i);
-			this.threads[i].setUncaughtExceptionHandler(this.uncaughtExceptionHandler);
-			this.threads[i].start();
+			events[i].initProcessing();
 		}
+		this.batch = new EventArray(Math.min(this.preInputBufferMaxLength, 1024));
+		this.handlerEvents.clear();
+		this.dispatcher = new BatchedEventsDispatcher(this.events, RING_CAPACITY, "Events-");
+		this.dispatcher.start();
 		
 		// (re-)activate parallel mode while the mobsim is running
 		this.parallelMode = true;
 	}
 
 	/**
-	 * @author mrieser
+	 * Measures the time spent in the event handlers with the given profiler, <code>null</code> switches
+	 * profiling off.
 	 */
-	private static class ExceptionHandler implements UncaughtExceptionHandler {
-
-		private final AtomicBoolean hadException;
-
-		public ExceptionHandler(final AtomicBoolean hadException) {
-			this.hadException = hadException;
-		}
-
-		@Override
-		public void uncaughtException(Thread t, Throwable e) {
-			log.error("Thread " + t.getName() + " died with exception while handling events.", e);
-			this.hadException.set(true);
+	@com.google.inject.Inject(optional = true)
+	public void setHandlerProfiler(final EventHandlerProfiler profiler) {
+		for (EventsManagerImpl eventsManager : this.events) {
+			eventsManager.setHandlerProfiler(profiler);
 		}
+	}
 
+	/**
+	 * @return the metrics of the events handling threads of the current iteration, complete after
+	 * {@link #finishProcessing()} was called
+	 */
+	public EventsDispatchMetrics getDispatchMetrics() {
+		return this.parallelMode ? this.dispatcher.getMetrics() : this.metrics;
 	}
 
 	@Override
 	public void afterSimStep(double time) {
-		// nothing to do in this implementation
+		if (this.parallelMode) {
+			publishBatch();
+		}
 	}
 
 }
@@ -0,0 +1,357 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.MatsimEventsReader.CustomEventMapper;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads xml events files in a pipeline of threads, connected by bounded queues:
+ * <ol>
+ *     <li>reading and decompressing the file into chunks of bytes,</li>
+ *     <li>tokenizing the xml into batches of event attributes,</li>
+ *     <li>creating the {@link Event} objects (including the custom event mappers),</li>
+ *     <li>passing the events to the {@link EventsManager}, on the calling thread.</li>
+ * </ol>
+ * Each stage runs on a single thread and the queues are FIFO, so the events are passed to the
+ * events manager in the order of the file. Every stage only uses one core, but as the stages run
+ * concurrently, reading is limited by the slowest stage instead of the sum of all of them.
+ *
+ * @see MatsimEventsReader#setParallelXmlParsing(boolean)
+ */
+public final class ParallelEventsReaderXML {
+
+	private final static Logger log = Logger.getLogger(ParallelEventsReaderXML.class);
+
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final int BATCH_SIZE = 1024;
+	private static final int QUEUE_CAPACITY = 16;
+
+	// end of stream markers, compared by identity
+	private static final byte[] END_OF_CHUNKS = new byte[0];
+	private static final List<Attributes> END_OF_TAGS = new ArrayList<>(0);
+	private static final List<Event> END_OF_EVENTS = new ArrayList<>(0);
+
+	private final EventsManager events;
+	private final Map<String, CustomEventMapper> customEventMappers = new LinkedHashMap<>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	// set before the stages are interrupted, they must not wait for the next stage anymore
+	private volatile boolean shutdown = false;
+
+	public ParallelEventsReaderXML(final EventsManager events) {
+		this.events = events;
+	}
+
+	/**
+	 * Note that the mappers are called on the thread creating the events, not on the calling thread.
+	 */
+	public void addCustomEventMapper(String eventType, CustomEventMapper cem) {
+		this.customEventMappers.put(eventType, cem);
+	}
+
+	public void readFile(final String filename) throws UncheckedIOException {
+		log.info("starting to parse xml events in parallel from file " + filename + " ...");
+		parse(IOUtils.getInputStream(IOUtils.getFileUrl(filename)));
+	}
+
+	public void readURL(final URL url) throws UncheckedIOException {
+		log.info("starting to parse xml events in parallel from url " + url + " ...");
+		parse(IOUtils.getInputStream(url));
+	}
+
+	public void parse(final InputStream stream) throws UncheckedIOException {
+		this.failure.set(null);
+		this.shutdown = false;
+		BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		BlockingQueue<List<Attributes>> tags = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		BlockingQueue<List<Event>> eventBatches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+		Thread[] threads = {
+				startStage("EventsReader", () -> read(stream, chunks), chunks, END_OF_CHUNKS),
+				startStage("EventsTokenizer", () -> tokenize(chunks, tags), tags, END_OF_TAGS),
+				startStage("EventsBuilder", () -> build(tags, eventBatches), eventBatches, END_OF_EVENTS)
+		};
+		try {
+			dispatch(eventBatches);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.failure.compareAndSet(null, e);
+		} catch (RuntimeException | Error e) {
+			this.failure.compareAndSet(null, e);
+		} finally {
+			// stops the stages in case the pipeline did not run to its end
+			this.shutdown = true;
+			for (Thread thread : threads) {
+				thread.interrupt();
+			}
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		Throwable t = this.failure.get();
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		} else if (t != null) {
+			throw new UncheckedIOException(t);
+		}
+	}
+
+	private interface Stage {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Runs the stage on a new thread. When the stage ends, normally or due to an exception, the end marker is
+	 * passed to the next stage so that one can end, too. When the pipeline is shut down, all stages are interrupted instead.
+	 */
+	private <T> Thread startStage(String name, Stage stage, BlockingQueue<T> output, T endMarker) {
+		Thread thread = new Thread(() -> {
+			try {
+				stage.run();
+			} catch (Throwable t) {
+				this.failure.compareAndSet(null, t);
+			} finally {
+				if (!this.shutdown) {
+					try {
+						output.put(endMarker);
+					} catch (InterruptedException e) {
+						// the pipeline is shut down
+					}
+				}
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private void read(InputStream stream, BlockingQueue<byte[]> chunks) throws IOException, InterruptedException {
+		try (InputStream in = stream) {
+			while (this.failure.get() == null) {
+				byte[] chunk = new byte[CHUNK_SIZE];
+				int length = in.readNBytes(chunk, 0, CHUNK_SIZE);
+				if (length == 0) {
+					return;
+				}
+				chunks.put(length == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, length));
+			}
+		}
+	}
+
+	private void tokenize(BlockingQueue<byte[]> chunks, BlockingQueue<List<Attributes>> tags)
+			throws ParserConfigurationException, SAXException, IOException {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setValidating(false); // events-files have no DTD, thus they cannot validate
+		factory.setNamespaceAware(true);
+		factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+		SAXParser parser = factory.newSAXParser();
+		TagCollector collector = new TagCollector(tags);
+		parser.parse(new InputSource(new ChunkInputStream(chunks)), collector);
+		collector.flush();
+	}
+
+	private void build(BlockingQueue<List<Attributes>> tags, BlockingQueue<List<Event>> eventBatches) throws InterruptedException {
+		EventsCollector collector = new EventsCollector();
+		EventsReaderXMLv1 reader = new EventsReaderXMLv1(collector);
+		this.customEventMappers.forEach(reader::addCustomEventMapper);
+		for (List<Attributes> batch = tags.take(); batch != END_OF_TAGS; batch = tags.take()) {
+			collector.batch = new ArrayList<>(batch.size());
+			for (Attributes atts : batch) {
+				reader.startEvent(atts);
+			}
+			eventBatches.put(collector.batch);
+		}
+	}
+
+	private void dispatch(BlockingQueue<List<Event>> eventBatches) throws InterruptedException {
+		for (List<Event> batch = eventBatches.take(); batch != END_OF_EVENTS; batch = eventBatches.take()) {
+			if (this.failure.get() != null) {
+				return;
+			}
+			for (Event event : batch) {
+				this.events.processEvent(event);
+			}
+		}
+	}
+
+	/**
+	 * Collects the attributes of all event tags, in batches.
+	 */
+	private static final class TagCollector extends DefaultHandler {
+
+		private final BlockingQueue<List<Attributes>> tags;
+		private List<Attributes> batch = new ArrayList<>(BATCH_SIZE);
+
+		TagCollector(BlockingQueue<List<Attributes>> tags) {
+			this.tags = tags;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+			String tag = (uri.length() == 0) ? qName : localName;
+			if (EventsReaderXMLv1.EVENT.equals(tag)) {
+				// the parser re-uses the attributes object, so it has to be copied
+				this.batch.add(new AttributesImpl(atts));
+				if (this.batch.size() == BATCH_SIZE) {
+					flush();
+				}
+			}
+		}
+
+		void flush() throws SAXException {
+			if (this.batch.isEmpty()) {
+				return;
+			}
+			try {
+				this.tags.put(this.batch);
+			} catch (InterruptedException e) {
+				throw new SAXException(e);
+			}
+			this.batch = new ArrayList<>(BATCH_SIZE);
+		}
+	}
+
+	/**
+	 * Passes the events created by {@link EventsReaderXMLv1} into the current batch instead of handling them.
+	 */
+	private static final class EventsCollector implements EventsManager {
+
+		private List<Event> batch;
+
+		@Override
+		public void processEvent(Event event) {
+			this.batch.add(event);
+		}
+
+		@Override
+		public void addHandler(EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeHandler(EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void resetHandlers(int iteration) {
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+
+	/**
+	 * Reads the chunks of the previous stage as one continuous stream.
+	 */
+	private static final class ChunkInputStream extends InputStream {
+
+		private final BlockingQueue<byte[]> chunks;
+		private byte[] chunk = new byte[0];
+		private int length = 0;
+		private int pos = 0;
+
+		ChunkInputStream(BlockingQueue<byte[]> chunks) {
+			this.chunks = chunks;
+		}
+
+		private boolean nextChunk() throws IOException {
+			while (this.pos == this.length) {
+				if (this.chunk == END_OF_CHUNKS) {
+					return false;
+				}
+				try {
+					this.chunk = this.chunks.take();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				this.pos = 0;
+				this.length = this.chunk == END_OF_CHUNKS ? 0 : this.chunk.length;
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!nextChunk()) {
+				return -1;
+			}
+			return this.chunk[this.pos++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!nextChunk()) {
+				return -1;
+			}
+			int n = Math.min(len, this.length - this.pos);
+			System.arraycopy(this.chunk, this.pos, b, off, n);
+			this.pos += n;
+			return n;
+		}
+	}
+}
@@ -25,45 +25,54 @@ import org.matsim.api.core.v01.events.Event;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
 import org.matsim.core.events.handler.EventHandler;
-import org.matsim.core.gbl.Gbl;
 
 import javax.inject.Inject;
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * An EventsHandler that handles all occurring Events in separate Threads.
  * When a Time Step of the QSim ends, all Events that have been created
  * in that Time Step are processed before the simulation can go on.
  * This is necessary e.g. when using Within-day Replanning.
+ * <p>
+ * Events may be created by several threads at the same time. Each thread collects its events in its own
+ * buffer, tagged with a global sequence number. At the end of the time step, the buffers are merged in the
+ * order of the sequence numbers and the resulting batch is handed to all events processing threads at once
+ * by a {@link BatchedEventsDispatcher}. Events created by event handlers are collected separately and
+ * processed in additional batches of the same time step.
  * 
  * @author cdobler
  */
 class SimStepParallelEventsManagerImpl implements EventsManager {
 
 	private final static Logger log = Logger.getLogger(SimStepParallelEventsManagerImpl.class);
-	
+
+	private static final int RING_CAPACITY = 16;
+
 	private final int numOfThreads;
-	private CyclicBarrier simStepEndBarrier;
-	private CyclicBarrier iterationEndBarrier;
-    private ProcessEventsRunnable[] runnables;
 	private EventsManagerImpl[] eventsManagers;
 	private EventsManagerImpl delegate;
-	private ProcessedEventsChecker processedEventsChecker;
+	private BatchedEventsDispatcher dispatcher;
+	private EventsDispatchMetrics metrics;
 	
 	private boolean parallelMode = false;
 	private int handlerCount = 0;
 	
 	private AtomicLong counter;
-	private AtomicReference<Throwable> hadException = new AtomicReference<>();
+
+	// buffers of all threads which created events during the current iteration
+	private final List<EventsBuffer> buffers = new CopyOnWriteArrayList<>();
+	private ThreadLocal<EventsBuffer> threadBuffer;
+	// events created by the event handlers while processing a batch
+	private final Queue<Event> handlerEvents = new ConcurrentLinkedQueue<>();
+	private double lastEventTime;
 
 	@Inject
 	SimStepParallelEventsManagerImpl(ParallelEventHandlingConfigGroup config) {
@@ -83,9 +92,6 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	private void init() {
 		this.counter = new AtomicLong(0);
 		
-		this.simStepEndBarrier = new CyclicBarrier(this.numOfThreads + 1);
-		this.iterationEndBarrier = new CyclicBarrier(this.numOfThreads + 1);
-		
 		this.delegate = new EventsManagerImpl();
 
 		this.eventsManagers = new EventsManagerImpl[this.numOfThreads];
@@ -94,11 +100,16 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 
 	@Override
 	public void processEvent(final Event event) {
-		this.counter.incrementAndGet();
-		
 		if (parallelMode) {
-			runnables[0].processEvent(event);
-		} else delegate.processEvent(event);
+			if (this.dispatcher.isHandlerThread()) {
+				this.handlerEvents.add(event);
+			} else {
+				this.threadBuffer.get().add(event, this.counter.incrementAndGet());
+			}
+		} else {
+			this.counter.incrementAndGet();
+			delegate.processEvent(event);
+		}
 	}
 
 	@Override
@@ -127,45 +138,17 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		delegate.initProcessing();
 		for (EventsManager eventsManager : this.eventsManagers) eventsManager.initProcessing();
 
-		Queue<Event>[] eventsQueuesArray = new Queue[this.numOfThreads];
-		List<Queue<Event>> eventsQueues = new ArrayList<Queue<Event>>();
-		for (int i = 0; i < numOfThreads; i++) {
-			Queue<Event> eventsQueue = new LinkedBlockingQueue<>();
-			eventsQueues.add(eventsQueue);
-			eventsQueuesArray[i] = eventsQueue;
-		}
-				
-		/*
-		 * Add a null entry to the list which will be set as nextEventsQueue in the last ProcessEventsThread. 
-		 */
-		eventsQueues.add(null);
-		
-		/*
-		 * Create a ProcessedEventsChecker that checks whether all Events of
-		 * a time step have been processed.
-		 */
-		processedEventsChecker = new ProcessedEventsChecker(this, eventsQueuesArray);
-		
-		/*
-		 *  Create a Barrier that the threads use to synchronize.
-		 */
-        CyclicBarrier waitForEmptyQueuesBarrier = new CyclicBarrier(this.numOfThreads, processedEventsChecker);
-		
-		hadException = new AtomicReference<>();
-        ExceptionHandler uncaughtExceptionHandler = new ExceptionHandler(hadException, waitForEmptyQueuesBarrier,
-                simStepEndBarrier, iterationEndBarrier);
-		
-		runnables = new ProcessEventsRunnable[numOfThreads];
-		for (int i = 0; i < numOfThreads; i++) {
-			ProcessEventsRunnable processEventsRunnable = new ProcessEventsRunnable(eventsManagers[i], processedEventsChecker,
-                    waitForEmptyQueuesBarrier, simStepEndBarrier, iterationEndBarrier, eventsQueues.get(i), eventsQueues.get(i + 1));
-			runnables[i] = processEventsRunnable;
-			Thread thread = new Thread(processEventsRunnable);
-			thread.setDaemon(true);
-			thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
-			thread.setName(ProcessEventsRunnable.class.toString() + i);
-			thread.start();
-		}		
+		this.buffers.clear();
+		this.handlerEvents.clear();
+		this.threadBuffer = ThreadLocal.withInitial(() -> {
+			EventsBuffer buffer = new EventsBuffer();
+			this.buffers.add(buffer);
+			return buffer;
+		});
+		this.lastEventTime = Double.NEGATIVE_INFINITY;
+
+		this.dispatcher = new BatchedEventsDispatcher(this.eventsManagers, RING_CAPACITY, "ProcessEventsThread");
+		this.dispatcher.start();
 		
 		/*
 		 * During the simulation Events are processed in
@@ -185,19 +168,14 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		
 		/*
 		 * If an exception occurred, at least one of the events processing threads
-		 * has crashed. As a result, also all other events processing threads have
-		 * been stopped.
-		 * If not, it is waited until all threads have ended processing events.
+		 * has crashed. The other threads are stopped after they processed their remaining events.
 		 */
-		Throwable throwable = this.hadException.get();
-		if (throwable == null) {
-			try {
-				this.processEvent(new LastEventOfIteration(Double.POSITIVE_INFINITY));
-				iterationEndBarrier.await();
-			} catch (InterruptedException | BrokenBarrierException e) {
-				this.hadException.set(e);
-			}
-        }
+		if (this.dispatcher.getException() == null) {
+			processPendingEvents();
+		}
+		this.dispatcher.stop();
+		this.metrics = this.dispatcher.getMetrics();
+		log.info("events processing: " + this.metrics);
 		
 		delegate.finishProcessing();
 		for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
@@ -208,6 +186,7 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		 */
 		this.parallelMode = false;
 
+		Throwable throwable = this.dispatcher.getException();
 		if (throwable != null) {
 			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", throwable);
 		}
@@ -218,216 +197,131 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		
 		/*
 		 * If an exception occurred, at least one of the events processing threads
-		 * has crashed. Therefore the remaining threads would get stuck at the
-		 * CyclicBarrier.
+		 * has crashed. The exception is reported at the end of the iteration.
 		 */
-		if (hadException.get() != null) {
+		if (this.dispatcher.getException() != null) {
 			return;
 		}
-		
-		try {
-			Gbl.assertNotNull( this.processedEventsChecker );
-			this.processedEventsChecker.setTime(time);
-			this.processEvent(new LastEventOfSimStep(time));
-			simStepEndBarrier.await();
-		} catch (InterruptedException | BrokenBarrierException e) {
-			throw new RuntimeException(e);
-		}
+		processPendingEvents();
     }
-	
-	private static class ProcessEventsRunnable implements Runnable {
-		
-		private final EventsManager eventsManager;
-		private final ProcessedEventsChecker processedEventsChecker;
-		private final CyclicBarrier waitForEmptyQueuesBarrier;
-		private final CyclicBarrier simStepEndBarrier;
-		private final CyclicBarrier iterationEndBarrier;
-		private final Queue<Event> eventsQueue;
-		private final Queue<Event> nextEventsQueue;
-		private double lastEventTime = 0.0;
 
-		public ProcessEventsRunnable(EventsManager eventsManager, ProcessedEventsChecker processedEventsChecker, 
-				CyclicBarrier waitForEmptyQueuesBarrier,CyclicBarrier simStepEndBarrier,
-				CyclicBarrier iterationEndBarrier, Queue<Event> eventsQueue, Queue<Event> nextEventsQueue) {
-			this.eventsManager = eventsManager;
-			this.processedEventsChecker = processedEventsChecker;
-			this.waitForEmptyQueuesBarrier = waitForEmptyQueuesBarrier;
-			this.simStepEndBarrier = simStepEndBarrier;
-			this.iterationEndBarrier = iterationEndBarrier;
-			this.eventsQueue = eventsQueue;
-			this.nextEventsQueue = nextEventsQueue;
-		}
+	/**
+	 * Measures the time spent in the event handlers with the given profiler, <code>null</code> switches
+	 * profiling off.
+	 */
+	@com.google.inject.Inject(optional = true)
+	public void setHandlerProfiler(final EventHandlerProfiler profiler) {
+		delegate.setHandlerProfiler(profiler);
+		for (EventsManagerImpl eventsManager : eventsManagers) eventsManager.setHandlerProfiler(profiler);
+	}
 
-		@Override
-		public void run() {
-			try {
-				/*
-				 * If the Simulation has ended we may still have some
-				 * Events left to process. So we continue until the
-				 * eventsQueue is empty.
-				 * 
-				 * The loop is ended by a break command when a LastEventOfIteration
-				 * event is found.
-				 */
-				lastEventTime = 0.0;
-				while (true) {
-					Event event = ((LinkedBlockingQueue<Event>) eventsQueue).take();
-					
-					/*
-					 * Check whether the events are ordered chronologically.
-					 */
-					if (event.getTime() < this.lastEventTime) {
-						throw new RuntimeException("Events in the queue are not ordered chronologically. " +
-								"This should never happen. Is the SimTimeStepParallelEventsManager registered " +
-								"as a MobsimAfterSimStepListener?");
-					} else this.lastEventTime = event.getTime();
-					
-					if (event instanceof LastEventOfSimStep) {
-						/*
-						 * Send the event to the next events processing thread, if this is not the last thread.
-						 */
-						if (nextEventsQueue != null) {
-							nextEventsQueue.add(event);
-						}
-						
-						/*
-						 * At the moment, this thread's queue is empty. However, one of the other threads
-						 * could create additional events for this time step. Therefore we have to wait
-						 * until all threads reach this barrier. Afterwards we can check whether still
-						 * all queues are empty. If this is true, the threads reach the sim step end barrier.
-						 */
-						waitForEmptyQueuesBarrier.await();
-						if (!processedEventsChecker.allEventsProcessed()) continue;
-						
-						/*
-						 * All event queues are empty, therefore finish current time step by
-						 * reaching the sim step end barrier.
-						 */
-						simStepEndBarrier.await();
-						continue;
-					} 
-					else {
-						/*
-						 * Handing the event over to the next events processing thread.
-						 * 
-						 * This could be added to the next EventHandlers queue here or in 
-						 * the processEvent(...) method. Doing it here might be a bit faster
-						 * since it is not done in the main thread.
-						 */
-						if (nextEventsQueue != null) {
-							nextEventsQueue.add(event);
-						}
-						
-						/*
-						 * If it is the last Event of the iteration, break the while loop
-						 * and end the parallel events processing.
-						 * TODO: Check whether still some events could be left in the queues...
-						 */
-						if (event instanceof LastEventOfIteration) {
-							break;
-						}
-					}
-					eventsManager.processEvent(event);
-				}
-				iterationEndBarrier.await();
-			} catch (InterruptedException | BrokenBarrierException e) {
-				throw new RuntimeException(e);
-			}
-            Gbl.printCurrentThreadCpuTime();
-		}
+	/**
+	 * @return the metrics of the events processing threads of the current iteration, complete after
+	 * {@link #finishProcessing()} was called
+	 */
+	public EventsDispatchMetrics getDispatchMetrics() {
+		return this.parallelMode ? this.dispatcher.getMetrics() : this.metrics;
+	}
 
-		public void processEvent(Event event) {
-			this.eventsQueue.add(event);
+	/**
+	 * Passes all events created so far to the events processing threads and waits until they are processed.
+	 * Event handlers might create additional events, so this is repeated until no new events are created.
+	 */
+	private void processPendingEvents() {
+		this.dispatcher.publish(collectEvents());
+		this.dispatcher.awaitProcessed();
+		for (EventsBuffer buffer : this.buffers) {
+			buffer.clear();
 		}
-		
-	}	// ProcessEventsRunnable
-	
-	private static class ProcessedEventsChecker implements Runnable {
 
-		private final EventsManager evenentsManger;
-		private final Queue<Event>[] eventQueues;
-		private boolean allEventsProcessed;
-		private double time;
-		
-		public ProcessedEventsChecker(EventsManager evenentsManger, Queue<Event>[] eventQueues) {
-			this.evenentsManger = evenentsManger;
-			this.eventQueues = eventQueues;
-			
-			this.allEventsProcessed = true;
+		while (!this.handlerEvents.isEmpty() && this.dispatcher.getException() == null) {
+			EventArray batch = new EventArray();
+			for (Event event = this.handlerEvents.poll(); event != null; event = this.handlerEvents.poll()) {
+				batch.add(event);
+			}
+			this.dispatcher.publish(batch);
+			this.dispatcher.awaitProcessed();
 		}
+	}
 
-		public void setTime(double time) {
-			this.time = time;
-		}
-		
-		public boolean allEventsProcessed() {
-			return this.allEventsProcessed;
-		}
-		
-		@Override
-		public void run() {
-			for (Queue<Event> eventsQueue : eventQueues) {
-				/*
-				 * Some EventHandlers might have created additional Events [1] which 
-				 * could be located in the list AFTER the LastEventOfSimStep, meaning 
-				 * that they would be processed while the simulation is already processing
-				 * the next time step. Therefore we check whether the eventsQueues are really
-				 * empty.
-				 * If at least one of the queues is not empty, this time steps
-				 * events processing has to go on. This is triggered by setting
-				 * allEventsProcessed to false. Additionally a last event of sim
-				 * step event is created. When all events processing threads
-				 * process that event, it is again checked whether there are
-				 * more events left.
-				 * 
-				 * [1] ... Such a behavior is NOT part of MATSim's default EventHandlers but it
-				 * still might occur.
-				 */
-				if (eventsQueue.size() > 0) {
-					allEventsProcessed = false;
-					evenentsManger.processEvent(new LastEventOfSimStep(time));
-					return;
+	/**
+	 * Merges the events of all threads in the order they were created.
+	 */
+	private EventArray collectEvents() {
+		EventArray batch;
+		if (this.buffers.size() == 1) {
+			batch = this.buffers.get(0).events;
+		} else {
+			int total = 0;
+			for (EventsBuffer buffer : this.buffers) {
+				total += buffer.events.size();
+			}
+			batch = new EventArray(Math.max(total, 1));
+			EventsBuffer[] sources = this.buffers.toArray(new EventsBuffer[0]);
+			int[] position = new int[sources.length];
+			// the buffers ordered by the sequence number of their next event, sequence numbers are unique
+			PriorityQueue<Integer> heads = new PriorityQueue<>(sources.length,
+					Comparator.comparingLong(i -> sources[i].sequences[position[i]]));
+			for (int i = 0; i < sources.length; i++) {
+				if (sources[i].events.size() > 0) {
+					heads.add(i);
+				}
+			}
+			while (!heads.isEmpty()) {
+				int source = heads.poll();
+				EventsBuffer buffer = sources[source];
+				batch.add(buffer.events.get(position[source]++));
+				// drain the buffer as long as it stays ahead of the other ones.
+				long nextHead = heads.isEmpty() ? Long.MAX_VALUE : sources[heads.peek()].sequences[position[heads.peek()]];
+				while (position[source] < buffer.events.size() && buffer.sequences[position[source]] < nextHead) {
+					batch.add(buffer.events.get(position[source]++));
+				}
+				if (position[source] < buffer.events.size()) {
+					heads.add(source);
 				}
 			}
-			
-			// otherwise
-			allEventsProcessed = true;
 		}
-		
-	}	// ProcessedEventsChecker
-	
+
+		/*
+		 * Check whether the events are ordered chronologically.
+		 */
+		for (int i = 0; i < batch.size(); i++) {
+			double time = batch.get(i).getTime();
+			if (time < this.lastEventTime) {
+				throw new RuntimeException("Events are not ordered chronologically. " +
+						"This should never happen. Is the SimTimeStepParallelEventsManager registered " +
+						"as a MobsimAfterSimStepListener?");
+			}
+			this.lastEventTime = time;
+		}
+		return batch;
+	}
+
 	/**
-	 * @author mrieser
+	 * The events created by one thread within the current time step.
 	 */
-	private static class ExceptionHandler implements UncaughtExceptionHandler {
+	private static final class EventsBuffer {
 
-		private final AtomicReference<Throwable> hadException;
-		private final CyclicBarrier simStepEndBarrier;
-		private final CyclicBarrier iterationEndBarrier;
-		private final CyclicBarrier waitForEmptyQueuesBarrier;
+		private EventArray events = new EventArray();
+		private long[] sequences = new long[32];
 
-		public ExceptionHandler(final AtomicReference<Throwable> hadException, CyclicBarrier waitForEmptyQueuesBarrier,
-				CyclicBarrier simStepEndBarrier, CyclicBarrier iterationEndBarrier) {
-			this.hadException = hadException;
-			this.waitForEmptyQueuesBarrier = waitForEmptyQueuesBarrier;
-			this.simStepEndBarrier = simStepEndBarrier;
-			this.iterationEndBarrier = iterationEndBarrier;
+		void add(Event event, long sequence) {
+			int index = this.events.size();
+			if (index == this.sequences.length) {
+				this.sequences = Arrays.copyOf(this.sequences, index * 2);
+			}
+			this.sequences[index] = sequence;
+			this.events.add(event);
 		}
 
-		@Override
-		public void uncaughtException(Thread t, Throwable e) {
-			this.hadException.set(e);
-			log.error("Thread " + t.getName() + " died with exception while handling events.", e);
-
-			/*
-			 * By reseting the barriers, they will throw a BrokenBarrierException
-			 * which again will stop the events processing threads.
-			 */
-			this.simStepEndBarrier.reset();
-			this.iterationEndBarrier.reset();
-			this.waitForEmptyQueuesBarrier.reset();
+		/**
+		 * The published events might still be referenced by the dispatcher, so a new array is used.
+		 */
+		void clear() {
+			if (this.events.size() > 0) {
+				this.events = new EventArray(Math.max(this.events.size(), 32));
+			}
 		}
-
 	}
 
 }
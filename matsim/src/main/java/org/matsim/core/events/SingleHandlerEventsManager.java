@@ -70,6 +70,7 @@ import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityE
 import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.PrimitiveLinkEventHandler;
 import org.matsim.core.utils.misc.ClassUtils;
 
 /**
@@ -111,11 +112,16 @@ public final class SingleHandlerEventsManager implements EventsManager {
 	private final boolean isVehicleLeavesTrafficHandler;
 	private final boolean isVehicleAbortsHandler;
 	private final boolean isBasicEventHandler;
+	private final boolean isPrimitiveLinkHandler;
 	
 	private long counter = 0;
 	private long nextCounterMsg = 1;
 
 	private boolean isActive = true;
+
+	private EventHandlerProfiler profiler = null;
+	private final Map<Class<?>, EventHandlerProfiler.HandlerStats> stats = new HashMap<>();
+	private int callsUntilSample = 1;
 	
 	public SingleHandlerEventsManager(EventHandler eventHandler) {
 		this.eventHandler = eventHandler;
@@ -140,6 +146,7 @@ public final class SingleHandlerEventsManager implements EventsManager {
 		this.isVehicleLeavesTrafficHandler = this.eventHandler instanceof VehicleLeavesTrafficEventHandler;
 		this.isVehicleAbortsHandler = this.eventHandler instanceof VehicleAbortsEventHandler;
 		this.isBasicEventHandler = this.eventHandler instanceof BasicEventHandler;
+		this.isPrimitiveLinkHandler = this.eventHandler instanceof PrimitiveLinkEventHandler;
 
 		// identify the implemented Handler Interfaces
 		Set<Class<?>> addedHandlers = new HashSet<Class<?>>();
@@ -174,12 +181,91 @@ public final class SingleHandlerEventsManager implements EventsManager {
 		
 		if (!this.isActive) return;
 		
+		countEvent();
+		if (this.profiler == null) {
+			computeEvent(event);
+		} else if (--this.callsUntilSample > 0) {
+			if (computeEvent(event)) {
+				getStats(event.getClass()).countInvocation();
+			} else {
+				// only the events passed to the handler count for the sampling
+				this.callsUntilSample++;
+			}
+		} else {
+			long start = System.nanoTime();
+			if (computeEvent(event)) {
+				getStats(event.getClass()).addSample(System.nanoTime() - start);
+				this.callsUntilSample = this.profiler.getSampleInterval();
+			} else {
+				this.callsUntilSample++;
+			}
+		}
+	}
+
+	/**
+	 * Processes the event at the given index. Link events stored in primitive form are passed to a
+	 * {@link PrimitiveLinkEventHandler} without creating an event object, and not at all to a handler
+	 * which does not handle them.
+	 */
+	public void processEvent(final CompactEventArray events, final int index) {
+		byte type = events.getType(index);
+		if (type == CompactEventArray.OBJECT) {
+			processEvent(events.get(index));
+			return;
+		}
+		Class<? extends Event> eventClass = type == CompactEventArray.LINK_ENTER ? LinkEnterEvent.class : LinkLeaveEvent.class;
+		boolean handled = type == CompactEventArray.LINK_ENTER ? this.isLinkEnterHandler : this.isLeaveLinkHandler;
+		if (!handled || !this.isPrimitiveLinkHandler) {
+			if (handled || this.isBasicEventHandler || getHandlersForClass(eventClass) != null) {
+				processEvent(events.get(index));
+			}
+			return;
+		}
+
+		if (!this.isActive) return;
+
+		countEvent();
+		if (this.profiler == null) {
+			callPrimitiveHandler(events, index);
+		} else if (--this.callsUntilSample > 0) {
+			callPrimitiveHandler(events, index);
+			getStats(eventClass).countInvocation();
+		} else {
+			long start = System.nanoTime();
+			callPrimitiveHandler(events, index);
+			getStats(eventClass).addSample(System.nanoTime() - start);
+			this.callsUntilSample = this.profiler.getSampleInterval();
+		}
+	}
+
+	private void callPrimitiveHandler(final CompactEventArray events, final int index) {
+		PrimitiveLinkEventHandler handler = (PrimitiveLinkEventHandler) this.eventHandler;
+		if (events.getType(index) == CompactEventArray.LINK_ENTER) {
+			handler.handleLinkEnter(events.getTime(index), events.getVehicleIndex(index), events.getLinkIndex(index));
+		} else {
+			handler.handleLinkLeave(events.getTime(index), events.getVehicleIndex(index), events.getLinkIndex(index));
+		}
+	}
+
+	private void countEvent() {
 		this.counter++;
 		if (this.counter == this.nextCounterMsg) {
 			this.nextCounterMsg *= 4;
 			log.info(" event # " + this.counter);
 		}
-		computeEvent(event);
+	}
+
+	private EventHandlerProfiler.HandlerStats getStats(final Class<? extends Event> eventClass) {
+		return this.stats.computeIfAbsent(eventClass, k -> this.profiler.stats(this.eventHandler.getClass(), eventClass));
+	}
+
+	/**
+	 * Measures the time spent in the event handler with the given profiler, <code>null</code> switches
+	 * profiling off.
+	 */
+	public void setHandlerProfiler(final EventHandlerProfiler profiler) {
+		this.profiler = profiler;
+		this.stats.clear();
 	}
 
 	@Override
@@ -225,11 +311,16 @@ public final class SingleHandlerEventsManager implements EventsManager {
 		return this.eventHandler.getClass().toString();
 	}
 	
-	private void computeEvent(final Event event) {
-		if (callHandlerFast(event)) return;
+	/**
+	 * @return whether the event was passed to the handler
+	 */
+	private boolean computeEvent(final Event event) {
+		if (callHandlerFast(event)) return true;
 		try {
 			Method method = this.getHandlersForClass(event.getClass());
-			if (method != null) method.invoke(this.eventHandler, event);
+			if (method == null) return false;
+			method.invoke(this.eventHandler, event);
+			return true;
 		} catch(InvocationTargetException e) {
 			throw new RuntimeException("problem invoking EventHandler " + this.eventHandler.getClass().getCanonicalName() + " for event-class " + event.getClass().getCanonicalName(), e.getTargetException());
 		}
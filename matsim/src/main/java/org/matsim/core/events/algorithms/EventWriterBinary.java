@@ -0,0 +1,321 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.core.events.BinaryEventsFormat;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events in the compact binary format described in {@link BinaryEventsFormat}.
+ */
+public final class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	private static final int LINK = 0;
+	private static final int VEHICLE = 1;
+	private static final int PERSON = 2;
+	private static final int FACILITY = 3;
+
+	private final OutputStream out;
+	private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+
+	private byte[] block = new byte[BinaryEventsFormat.BLOCK_SIZE + 1024];
+	private int pos = 0;
+	private byte[] compressed = new byte[0];
+
+	// string table: every string and id gets an index when it is written the first time
+	private int stringCount = 0;
+	private final Map<String, Integer> strings = new HashMap<>();
+	// string table index + 1 of ids per id type, indexed by Id.index(). 0 means the id was not yet written.
+	private final int[][] idRefs = new int[4][];
+
+	private long lastSeconds = 0;
+
+	public EventWriterBinary(final String filename) {
+		try {
+			this.out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		writeHeader();
+	}
+
+	public EventWriterBinary(final OutputStream stream) {
+		this.out = stream;
+		writeHeader();
+	}
+
+	private void writeHeader() {
+		try {
+			this.out.write(BinaryEventsFormat.MAGIC);
+			this.out.write(BinaryEventsFormat.VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		try {
+			flushBlock();
+			writeInt(0);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		Class<? extends Event> clazz = event.getClass();
+		if (clazz == LinkEnterEvent.class) {
+			LinkEnterEvent e = (LinkEnterEvent) event;
+			writeHead(BinaryEventsFormat.LINK_ENTER, e.getTime());
+			writeId(e.getVehicleId(), VEHICLE);
+			writeId(e.getLinkId(), LINK);
+		} else if (clazz == LinkLeaveEvent.class) {
+			LinkLeaveEvent e = (LinkLeaveEvent) event;
+			writeHead(BinaryEventsFormat.LINK_LEAVE, e.getTime());
+			writeId(e.getVehicleId(), VEHICLE);
+			writeId(e.getLinkId(), LINK);
+		} else if (clazz == VehicleEntersTrafficEvent.class) {
+			VehicleEntersTrafficEvent e = (VehicleEntersTrafficEvent) event;
+			writeHead(BinaryEventsFormat.VEHICLE_ENTERS_TRAFFIC, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getLinkId(), LINK);
+			writeId(e.getVehicleId(), VEHICLE);
+			writeString(e.getNetworkMode());
+			writeDouble(e.getRelativePositionOnLink());
+		} else if (clazz == VehicleLeavesTrafficEvent.class) {
+			VehicleLeavesTrafficEvent e = (VehicleLeavesTrafficEvent) event;
+			writeHead(BinaryEventsFormat.VEHICLE_LEAVES_TRAFFIC, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getLinkId(), LINK);
+			writeId(e.getVehicleId(), VEHICLE);
+			writeString(e.getNetworkMode());
+			writeDouble(e.getRelativePositionOnLink());
+		} else if (clazz == PersonEntersVehicleEvent.class) {
+			PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+			writeHead(BinaryEventsFormat.PERSON_ENTERS_VEHICLE, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getVehicleId(), VEHICLE);
+		} else if (clazz == PersonLeavesVehicleEvent.class) {
+			PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+			writeHead(BinaryEventsFormat.PERSON_LEAVES_VEHICLE, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getVehicleId(), VEHICLE);
+		} else if (clazz == PersonDepartureEvent.class) {
+			PersonDepartureEvent e = (PersonDepartureEvent) event;
+			writeHead(BinaryEventsFormat.PERSON_DEPARTURE, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getLinkId(), LINK);
+			writeString(e.getLegMode());
+		} else if (clazz == PersonArrivalEvent.class) {
+			PersonArrivalEvent e = (PersonArrivalEvent) event;
+			writeHead(BinaryEventsFormat.PERSON_ARRIVAL, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getLinkId(), LINK);
+			writeString(e.getLegMode());
+		} else if (clazz == ActivityStartEvent.class) {
+			ActivityStartEvent e = (ActivityStartEvent) event;
+			writeHead(BinaryEventsFormat.ACTIVITY_START, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getLinkId(), LINK);
+			writeId(e.getFacilityId(), FACILITY);
+			writeString(e.getActType());
+			writeCoord(e.getCoord());
+		} else if (clazz == ActivityEndEvent.class) {
+			ActivityEndEvent e = (ActivityEndEvent) event;
+			writeHead(BinaryEventsFormat.ACTIVITY_END, e.getTime());
+			writeId(e.getPersonId(), PERSON);
+			writeId(e.getLinkId(), LINK);
+			writeId(e.getFacilityId(), FACILITY);
+			writeString(e.getActType());
+		} else {
+			writeHead(BinaryEventsFormat.GENERIC, event.getTime());
+			writeString(event.getEventType());
+			// some events return their internal map, so time and type are skipped instead of removed
+			Map<String, String> attributes = event.getAttributes();
+			int count = attributes.size();
+			if (attributes.containsKey(Event.ATTRIBUTE_TIME)) {
+				count--;
+			}
+			if (attributes.containsKey(Event.ATTRIBUTE_TYPE)) {
+				count--;
+			}
+			writeVarLong(count);
+			for (Map.Entry<String, String> entry : attributes.entrySet()) {
+				String key = entry.getKey();
+				if (!key.equals(Event.ATTRIBUTE_TIME) && !key.equals(Event.ATTRIBUTE_TYPE)) {
+					writeString(key);
+					writeString(entry.getValue());
+				}
+			}
+		}
+		if (this.pos >= BinaryEventsFormat.BLOCK_SIZE) {
+			try {
+				flushBlock();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private void flushBlock() throws IOException {
+		if (this.pos == 0) {
+			return;
+		}
+		int maxLength = this.compressor.maxCompressedLength(this.pos);
+		if (this.compressed.length < maxLength) {
+			this.compressed = new byte[maxLength];
+		}
+		int length = this.compressor.compress(this.block, 0, this.pos, this.compressed, 0, maxLength);
+		writeInt(this.pos);
+		writeInt(length);
+		this.out.write(this.compressed, 0, length);
+		this.pos = 0;
+	}
+
+	private void writeInt(int value) throws IOException {
+		this.out.write(value >>> 24);
+		this.out.write(value >>> 16);
+		this.out.write(value >>> 8);
+		this.out.write(value);
+	}
+
+	/** event type, followed by the time as delta to the previous event if it is a full second. */
+	private void writeHead(byte type, double time) {
+		ensureCapacity(1);
+		this.block[this.pos++] = type;
+		long seconds = (long) time;
+		if (seconds == time) {
+			writeVarLong(BinaryEventsFormat.zigZag(seconds - this.lastSeconds) << 1);
+			this.lastSeconds = seconds;
+		} else {
+			writeVarLong(1);
+			writeDouble(time);
+		}
+	}
+
+	private void writeId(Id<?> id, int type) {
+		if (id == null) {
+			writeVarLong(0);
+			return;
+		}
+		int[] refs = this.idRefs[type];
+		int index = id.index();
+		if (refs == null || index >= refs.length) {
+			refs = refs == null ? new int[Math.max(index + 1, 1024)] : Arrays.copyOf(refs, Math.max(index + 1, refs.length * 2));
+			this.idRefs[type] = refs;
+		}
+		int ref = refs[index];
+		if (ref == 0) {
+			refs[index] = writeNewString(id.toString()) + 1;
+		} else {
+			writeVarLong((long) ref << 1);
+		}
+	}
+
+	private void writeString(String s) {
+		if (s == null) {
+			writeVarLong(0);
+			return;
+		}
+		Integer ref = this.strings.get(s);
+		if (ref == null) {
+			this.strings.put(s, writeNewString(s) + 1);
+		} else {
+			writeVarLong((long) ref << 1);
+		}
+	}
+
+	/** @return the index of the string in the string table */
+	private int writeNewString(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(((long) bytes.length << 1) | 1);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, this.block, this.pos, bytes.length);
+		this.pos += bytes.length;
+		return this.stringCount++;
+	}
+
+	private void writeCoord(Coord coord) {
+		if (coord == null) {
+			ensureCapacity(1);
+			this.block[this.pos++] = 0;
+		} else {
+			ensureCapacity(1);
+			this.block[this.pos++] = 1;
+			writeDouble(coord.getX());
+			writeDouble(coord.getY());
+		}
+	}
+
+	private void writeDouble(double value) {
+		ensureCapacity(8);
+		long bits = Double.doubleToRawLongBits(value);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			this.block[this.pos++] = (byte) (bits >>> shift);
+		}
+	}
+
+	private void writeVarLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			this.block[this.pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		this.block[this.pos++] = (byte) value;
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (this.pos + bytes > this.block.length) {
+			this.block = Arrays.copyOf(this.block, Math.max(this.block.length * 2, this.pos + bytes));
+		}
+	}
+}
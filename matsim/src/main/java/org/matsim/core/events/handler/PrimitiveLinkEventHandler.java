@@ -0,0 +1,38 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events.handler;
+
+/**
+ * Receives link events in primitive form, without event objects. Used for the link events of a
+ * {@link org.matsim.core.events.CompactEventArray}.
+ *
+ * <p>A handler implementing {@link org.matsim.api.core.v01.events.handler.LinkEnterEventHandler} or
+ * {@link org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler} in addition to this interface
+ * gets the compactly stored link events through these methods <em>instead</em> of <code>handleEvent</code>,
+ * so both must do the same. The methods are only called for events the handler is registered for.
+ * Ids are passed by their index, see {@link org.matsim.api.core.v01.Id#index()}.</p>
+ */
+public interface PrimitiveLinkEventHandler extends EventHandler {
+
+	void handleLinkEnter(double time, int vehicleIndex, int linkIndex);
+
+	void handleLinkLeave(double time, int vehicleIndex, int linkIndex);
+}
@@ -120,13 +120,14 @@ class HLink {
 
 				@Override
 				public boolean hasNext() {
-					return left-- > 0;
+					return left > 0;
 				}
 
 				@Override
 				public Agent next() {
 					Agent agent = array[idx];
 					idx = inc(idx);
+					left--;
 					return agent;
 				}
 			};
@@ -241,6 +242,11 @@ class HLink {
     	}
     }
 
+    // Gives back the flow taken in this time step by a vehicle that could not leave the link after all.
+    public void returnFlow(float requestedFlow) {
+        flowLeftInTimestep += requestedFlow;
+    }
+
     public int velocity() {
         return this.velocity;
     }
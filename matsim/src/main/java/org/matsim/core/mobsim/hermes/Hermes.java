@@ -24,14 +24,16 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonStuckEvent;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.CompactEventArray;
 import org.matsim.core.events.ParallelEventsManager;
 import org.matsim.core.mobsim.framework.Mobsim;
 
 final class Hermes implements Mobsim {
 
 	final private static Logger log = Logger.getLogger(Hermes.class);
-	private Realm realm;
+	private Realm[] realms;
 	private Agent[] agents;
+	private CompactEventArray sortedEvents;
 	private ScenarioImporter si;
 	private final Scenario scenario;
 	private final ParallelEventsManager eventsManager;
@@ -44,12 +46,23 @@ final class Hermes implements Mobsim {
 	private void importScenario() throws Exception {
 		si = ScenarioImporter.instance(scenario, eventsManager);
 		si.generate();
-		this.realm = si.realm;
+		this.realms = si.realms;
 		this.agents = si.hermes_agents;
 	}
 
+	private void runRealms() throws Exception {
+		if (realms.length == 1) {
+			realms[0].run();
+			sortedEvents = realms[0].getSortedEvents();
+		} else {
+			ParallelRealms parallelRealms = new ParallelRealms(realms, eventsManager);
+			parallelRealms.run();
+			sortedEvents = parallelRealms.getSortedEvents();
+		}
+	}
+
 	private void processEvents() {
-        eventsManager.processEvents(realm.getSortedEvents());
+        eventsManager.processEvents(sortedEvents);
 
 		for (Agent agent : agents) {
 			if (agent != null && !agent.finished() && !agent.isTransitVehicle()) {
@@ -72,9 +85,9 @@ final class Hermes implements Mobsim {
 			eventsManager.initProcessing();
 
 			time = System.currentTimeMillis();
-			realm.run();
+			runRealms();
 			log.info(String.format(
-					"Hermes took %d ms", System.currentTimeMillis() - time));
+					"Hermes took %d ms (%d realms)", System.currentTimeMillis() - time, realms.length));
 
 			time = System.currentTimeMillis();
 			processEvents();
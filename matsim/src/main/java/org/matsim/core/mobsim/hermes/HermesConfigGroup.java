@@ -59,6 +59,10 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
     private static final String MAINMODESPARAMDESC = "[comma-separated list] Modes that are handled in the mobsim along links. By default: car";
     private Set<String> mainModes = Set.of(TransportMode.car);
 
+    private static final String NUMBER_OF_REALMS = "numberOfRealms";
+    private static final String NUMBER_OF_REALMSDESC = "Number of realms the network is spatially partitioned into. Each realm advances its own links and agents on a separate thread."
+            + " Agents crossing realm borders are exchanged once per time step. Use 1 (default) for the sequential simulation.";
+
     private static final String DETPTDESC = "treats PT as deterministic. PT vehicles will run with a steady speed. Should be used with separate network layers for PT and other network modes.";
     private boolean deterministicPt = false;
     public static final boolean DEBUG_REALMS = false;
@@ -74,6 +78,9 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
     @Positive
     private int stuckTime = 10;
 
+    @Positive
+    private int numberOfRealms = 1;
+
     public Set<String> getMainModes() {
         return mainModes;
     }
@@ -120,6 +127,16 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
         this.stuckTime = stuckTime;
     }
 
+    @StringGetter(NUMBER_OF_REALMS)
+    public int getNumberOfRealms() {
+        return numberOfRealms;
+    }
+
+    @StringSetter(NUMBER_OF_REALMS)
+    public void setNumberOfRealms(int numberOfRealms) {
+        this.numberOfRealms = numberOfRealms;
+    }
+
     @StringSetter(FLOW_CAPACITY_FACTOR)
     public void setFlowCapacityFactor(double flowCapacityFactor) {
         this.flowCapacityFactor = flowCapacityFactor;
@@ -156,6 +173,7 @@ public final class HermesConfigGroup extends ReflectiveConfigGroup {
         comments.put(END_TIME, "Simulation End Time");
         comments.put(STUCKTIMEPARAM, STUCKTIMEPARAMDESC);
         comments.put(DETPT, DETPTDESC);
+        comments.put(NUMBER_OF_REALMS, NUMBER_OF_REALMSDESC);
         return comments;
     }
 
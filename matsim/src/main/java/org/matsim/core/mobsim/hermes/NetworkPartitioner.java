@@ -0,0 +1,78 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.hermes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+/**
+ * Splits the network into spatially compact realms of (roughly) the same number of links
+ * using recursive coordinate bisection on the link from-nodes. Compact realms keep the
+ * number of links on realm borders, and thus the number of agents exchanged between
+ * realms, low.
+ */
+final class NetworkPartitioner {
+
+	private NetworkPartitioner() {
+	}
+
+	/**
+	 * @return the realm of each link, indexed by link id index. Array positions without a link are assigned to realm 0.
+	 */
+	static int[] partition(Network network, int numberOfLinkIds, int realms) {
+		int[] realm_of_link = new int[numberOfLinkIds];
+		Link[] links = network.getLinks().values().toArray(new Link[0]);
+		bisect(links, 0, links.length, 0, realms, realm_of_link);
+		return realm_of_link;
+	}
+
+	private static void bisect(Link[] links, int from, int to, int firstRealm, int realms, int[] realm_of_link) {
+		if (realms == 1) {
+			for (int i = from; i < to; i++) {
+				realm_of_link[links[i].getId().index()] = firstRealm;
+			}
+			return;
+		}
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = from; i < to; i++) {
+			Coord c = links[i].getFromNode().getCoord();
+			minX = Math.min(minX, c.getX());
+			maxX = Math.max(maxX, c.getX());
+			minY = Math.min(minY, c.getY());
+			maxY = Math.max(maxY, c.getY());
+		}
+		// cut perpendicular to the longer side of the bounding box
+		Comparator<Link> comparator = (maxX - minX) >= (maxY - minY)
+				? Comparator.comparingDouble(l -> l.getFromNode().getCoord().getX())
+				: Comparator.comparingDouble(l -> l.getFromNode().getCoord().getY());
+		Arrays.sort(links, from, to, comparator.thenComparingInt(l -> l.getId().index()));
+
+		int leftRealms = realms / 2;
+		int split = from + (int) ((long) (to - from) * leftRealms / realms);
+		bisect(links, from, split, firstRealm, leftRealms, realm_of_link);
+		bisect(links, split, to, firstRealm + leftRealms, realms - leftRealms, realm_of_link);
+	}
+}
@@ -0,0 +1,159 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.hermes;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.matsim.core.events.CompactEventArray;
+import org.matsim.core.events.ParallelEventsManager;
+
+/**
+ * Runs several {@link Realm}s in lockstep, one thread per realm. Every time step consists of three phases
+ * separated by barriers:
+ * <ol>
+ *     <li>each realm processes its own agents and links, agents entering a link of another realm are queued as transfers;</li>
+ *     <li>each realm pushes the agents transferred to it into its links, if there is enough space;</li>
+ *     <li>each realm removes the accepted agents from its links and re-schedules the rejected ones.</li>
+ * </ol>
+ * Each realm records its events in time order. Events of the first phase are merged before the events of the
+ * second phase of the same time step, which keeps the event stream ordered by time and per agent.
+ */
+final class ParallelRealms {
+
+	private final Realm[] realms;
+	private final ParallelEventsManager eventsManager;
+	private final CyclicBarrier phaseBarrier;
+	private final CyclicBarrier transferBarrier;
+	private final CyclicBarrier stepBarrier;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	// only changed by the step barrier, so all realms see the same value when starting a time step.
+	private volatile boolean stop = false;
+
+	ParallelRealms(Realm[] realms, ParallelEventsManager eventsManager) {
+		this.realms = realms;
+		this.eventsManager = eventsManager;
+		this.phaseBarrier = new CyclicBarrier(realms.length);
+		// events are only generated in the first two phases, so they can be flushed before the third one.
+		this.transferBarrier = new CyclicBarrier(realms.length, this::flushEventsIfNecessary);
+		this.stepBarrier = new CyclicBarrier(realms.length, () -> stop = failure.get() != null);
+	}
+
+	void run() throws Exception {
+		Thread[] threads = new Thread[realms.length];
+		for (int i = 0; i < realms.length; i++) {
+			Realm realm = realms[i];
+			threads[i] = new Thread(() -> runRealm(realm), "HermesRealm" + i);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new RuntimeException("Hermes realm failed", failure.get());
+		}
+	}
+
+	private void runRealm(Realm realm) {
+		try {
+			// a failing realm keeps joining the barriers until all realms stop at the end of the time step.
+			while (realm.time() != HermesConfigGroup.SIM_STEPS && !stop) {
+				runPhase(realm::processTimestep);
+				phaseBarrier.await();
+				runPhase(realm::processIncomingTransfers);
+				transferBarrier.await();
+				runPhase(realm::processTransferReplies);
+				stepBarrier.await();
+				realm.advanceTime();
+			}
+		} catch (BrokenBarrierException e) {
+			// flushing the events failed in another realm thread, its exception is reported.
+		} catch (Throwable t) {
+			failure.compareAndSet(null, t);
+		}
+	}
+
+	private void runPhase(Runnable phase) {
+		if (failure.get() == null) {
+			try {
+				phase.run();
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			}
+		}
+	}
+
+	private void flushEventsIfNecessary() {
+		int secs = realms[0].time();
+		if (HermesConfigGroup.CONCURRENT_EVENT_PROCESSING && secs % 3600 == 0) {
+			CompactEventArray events = getSortedEvents();
+			if (events.size() > 0) {
+				eventsManager.processEvents(events);
+			}
+		}
+	}
+
+	/**
+	 * Merges the pending events of all realms into one time-ordered array and clears them in the realms.
+	 * Ties are broken by phase first and realm second.
+	 */
+	CompactEventArray getSortedEvents() {
+		CompactEventArray[] sources = new CompactEventArray[2 * realms.length];
+		int total = 0;
+		for (int i = 0; i < realms.length; i++) {
+			sources[i] = realms[i].getSortedEvents();
+			sources[realms.length + i] = realms[i].getBorderEvents();
+			total += sources[i].size() + sources[realms.length + i].size();
+		}
+		CompactEventArray merged = new CompactEventArray(Math.max(total, 1));
+		int[] position = new int[sources.length];
+		PriorityQueue<Integer> heads = new PriorityQueue<>(sources.length, (a, b) -> {
+			int cmp = Double.compare(sources[a].getTime(position[a]), sources[b].getTime(position[b]));
+			return cmp != 0 ? cmp : Integer.compare(a, b);
+		});
+		for (int i = 0; i < sources.length; i++) {
+			if (sources[i].size() > 0) {
+				heads.add(i);
+			}
+		}
+		while (!heads.isEmpty()) {
+			int source = heads.poll();
+			merged.add(sources[source], position[source]++);
+			// drain the source as long as it stays ahead of the other ones.
+			while (position[source] < sources[source].size() && (heads.isEmpty() || precedes(sources, position, source, heads.peek()))) {
+				merged.add(sources[source], position[source]++);
+			}
+			if (position[source] < sources[source].size()) {
+				heads.add(source);
+			}
+		}
+		for (CompactEventArray source : sources) {
+			source.clear();
+		}
+		return merged;
+	}
+
+	private static boolean precedes(CompactEventArray[] sources, int[] position, int a, int b) {
+		double timeA = sources[a].getTime(position[a]);
+		double timeB = sources[b].getTime(position[b]);
+		return timeA < timeB || (timeA == timeB && a < b);
+	}
+}
@@ -28,7 +28,7 @@ import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
-import org.matsim.core.events.EventArray;
+import org.matsim.core.events.CompactEventArray;
 import org.matsim.core.events.ParallelEventsManager;
 import org.matsim.core.utils.collections.IntArrayMap;
 import org.matsim.core.utils.misc.Time;
@@ -37,9 +37,38 @@ import org.matsim.vehicles.Vehicle;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 
 class Realm {
+
+	// An agent handed over to another realm because its next link is owned by that realm.
+	static final class Transfer {
+		final Agent agent;
+		// Link the agent is leaving, or -1 if the agent is not on a link (e.g. ending an activity).
+		final int fromLink;
+		// Transfer of the agent ahead on the same link, which must be accepted first, or null.
+		final Transfer previous;
+		// Set by the receiving realm.
+		boolean accepted;
+
+		Transfer(Agent agent, int fromLink, Transfer previous) {
+			this.agent = agent;
+			this.fromLink = fromLink;
+			this.previous = previous;
+		}
+	}
+
 	private final ScenarioImporter si;
+	// Id of this realm (index in the realms array).
+	private final int id;
+	// Realm owning each link (indexed by link id), or null if this is the only realm.
+	private final int[] realm_of_link;
+	// All realms of the simulation (including this one).
+	private final Realm[] realms;
+	// Agents to be handed over to other realms in the current time step, indexed by destination realm.
+	private final ArrayList<ArrayList<Transfer>> outgoing;
+	// Set when the last processed agent was handed over to another realm.
+	private boolean transferred;
     // Global array of links.
     // Note: the id of the link is its index in the array.
     private final HLink[] links;
@@ -56,7 +85,11 @@ class Realm {
     // line id of a particular route
     private final int[] line_of_route;
     // queue of sorted events by time
-    private EventArray sorted_events;
+    private CompactEventArray sorted_events;
+    // events generated while accepting agents from other realms (see processIncomingTransfers)
+    private CompactEventArray border_events;
+    // queue new events are added to (either sorted_events or border_events)
+    private CompactEventArray target_events;
     // MATSim event manager.
     private final ParallelEventsManager eventsManager;
     // Current timestamp
@@ -64,7 +97,20 @@ class Realm {
     Logger log = Logger.getLogger(Realm.class);
 
     public Realm(ScenarioImporter scenario, EventsManager eventsManager) throws Exception {
+        this(scenario, eventsManager, 0, null, null);
+    }
+
+    public Realm(ScenarioImporter scenario, EventsManager eventsManager, int id, int[] realm_of_link, Realm[] realms) throws Exception {
     	this.si = scenario;
+    	this.id = id;
+    	this.realm_of_link = realm_of_link;
+    	this.realms = realms;
+    	this.outgoing = new ArrayList<>();
+    	if (realms != null) {
+    	    for (int i = 0; i < realms.length; i++) {
+    	        outgoing.add(new ArrayList<>());
+    	    }
+    	}
         this.links = scenario.hermes_links;
         // The plus one is necessary because we peek into the next slot on each tick.
         this.delayedLinksByWakeupTime = new ArrayList<>();
@@ -72,13 +118,16 @@ class Realm {
         this.agent_stops = scenario.agent_stops;
         this.route_stops_by_route_no = scenario.route_stops_by_route_no;
         this.line_of_route = scenario.line_of_route;
-        this.sorted_events = new EventArray();
+        this.sorted_events = new CompactEventArray();
+        this.border_events = new CompactEventArray();
+        this.target_events = sorted_events;
         this.eventsManager = (ParallelEventsManager)eventsManager;
 
 	// the last position is to store events that will not happen...
+	// queues are only allocated when something is delayed until that time step.
         for (int i = 0; i <= HermesConfigGroup.SIM_STEPS + 1; i++) {
-            delayedLinksByWakeupTime.add(new ArrayDeque<>());
-            delayedAgentsByWakeupTime.add(new ArrayDeque<>());
+            delayedLinksByWakeupTime.add(null);
+            delayedAgentsByWakeupTime.add(null);
         }
     }
 
@@ -88,15 +137,25 @@ class Realm {
         }
     }
 
-    private void add_delayed_agent(Agent agent, int until) {
+    private static <T> ArrayDeque<T> delayed(ArrayList<ArrayDeque<T>> delayedByWakeupTime, int until) {
+        int time = Math.min(until, HermesConfigGroup.SIM_STEPS + 1);
+        ArrayDeque<T> queue = delayedByWakeupTime.get(time);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            delayedByWakeupTime.set(time, queue);
+        }
+        return queue;
+    }
+
+    void add_delayed_agent(Agent agent, int until) {
         if (HermesConfigGroup.DEBUG_REALMS) log(secs, String.format("agent %d delayed until %d", agent.id, until));
-        delayedAgentsByWakeupTime.get(Math.min(until, HermesConfigGroup.SIM_STEPS + 1)).add(agent);
+        delayed(delayedAgentsByWakeupTime, until).add(agent);
     }
 
-    private void add_delayed_link(HLink link, int until) {
+    void add_delayed_link(HLink link, int until) {
         if (HermesConfigGroup.DEBUG_REALMS)
             log(secs, String.format("link %d delayed until %d size %d peek agent %d", link.id(), until, link.queue().size(), link.queue().peek().id));
-        delayedLinksByWakeupTime.get(Math.min(until, HermesConfigGroup.SIM_STEPS + 1)).add(link);
+        delayed(delayedLinksByWakeupTime, until).add(link);
     }
 
     private void advanceAgentandSetEventTime(Agent agent) {
@@ -119,6 +178,13 @@ class Realm {
 
     protected boolean processAgentLink(Agent agent, long planentry, int currLinkId) {
         int linkid = Agent.getLinkPlanEntry(planentry);
+        if (realm_of_link != null && realm_of_link[linkid] != id) {
+            // The next link belongs to another realm, which decides in processIncomingTransfers
+            // whether the agent can enter it. The result is handled in processTransferReplies.
+            outgoing.get(realm_of_link[linkid]).add(new Transfer(agent, currLinkId, null));
+            transferred = true;
+            return false;
+        }
         int velocity = Agent.getVelocityPlanEntry(planentry);
         HLink next = links[linkid];
         int prev_finishtime = agent.linkFinishTime;
@@ -281,7 +347,11 @@ class Realm {
         }
         // -1 is used in the processAgent because the agent is not in a link currently.
         if (!finished && !processAgent(agent, -1)) {
-            add_delayed_agent(agent, secs + 1);
+            if (transferred) {
+                transferred = false;
+            } else {
+                add_delayed_agent(agent, secs + 1);
+            }
             return 0;
         }
         return 1;
@@ -309,66 +379,165 @@ class Realm {
         }
         // If there is at least one agent in the link that could not be processed
         // In addition we check if this agent was not added in this tick.
-        if (agent != null) {
+        // A link whose head agent is being transferred is re-scheduled in processTransferReplies.
+        if (transferred) {
+            transferred = false;
+            transferFollowers(link, agent);
+        } else if (agent != null) {
             add_delayed_link(link, Math.max(agent.linkFinishTime, secs + 1));
         }
         return routed;
     }
 
+    /**
+     * Hands over the agents behind a transferred head agent, as long as the flow capacity of the link
+     * allows and they enter a link of the same realm. That realm accepts them in queue order and stops
+     * at the first agent that does not fit (see processIncomingTransfers), so a border link moves as
+     * many agents per time step as any other link. The agents stay in the link until processTransferReplies.
+     */
+    private void transferFollowers(HLink link, Agent head) {
+        int realm = realm_of_link[Agent.getLinkPlanEntry(head.plan.get(head.planIndex + 1))];
+        ArrayList<Transfer> transfers = outgoing.get(realm);
+        Transfer previous = transfers.get(transfers.size() - 1);
+        Iterator<Agent> queue = link.queue().iterator();
+        // skip the head agent
+        queue.next();
+        while (queue.hasNext()) {
+            Agent agent = queue.next();
+            if (agent.linkFinishTime > secs || agent.finished()) {
+                break;
+            }
+            long planentry = agent.plan.get(agent.planIndex + 1);
+            if (Agent.getPlanHeader(planentry) != Agent.LinkType || realm_of_link[Agent.getLinkPlanEntry(planentry)] != realm
+                    || !link.flow(secs, agent.getFlowCapacityPCUE())) {
+                break;
+            }
+            previous = new Transfer(agent, link.id(), previous);
+            transfers.add(previous);
+        }
+    }
+
     public void run() throws Exception {
-    	int routed = 0;
+        while (secs != HermesConfigGroup.SIM_STEPS) {
+            processTimestep();
+            if (HermesConfigGroup.CONCURRENT_EVENT_PROCESSING && secs % 3600 == 0 && sorted_events.size() > 0) {
+                eventsManager.processEvents(sorted_events);
+                sorted_events = new CompactEventArray();
+                target_events = sorted_events;
+            }
+            secs += 1;
+        }
+    }
+
+    /**
+     * Processes all agents and links of this realm that wake up in the current time step.
+     */
+    void processTimestep() {
+        int routed = 0;
         Agent agent = null;
         HLink link = null;
 
-        while (secs != HermesConfigGroup.SIM_STEPS) {
-            if (secs % 3600 == 0) {
-                log.info("Hermes running at " + Time.writeTime(secs));
+        if (secs % 3600 == 0 && id == 0) {
+            log.info("Hermes running at " + Time.writeTime(secs));
+        }
+        ArrayDeque<Agent> agents = delayedAgentsByWakeupTime.get(secs);
+        while (agents != null && (agent = agents.poll()) != null) {
+            if (HermesConfigGroup.DEBUG_REALMS) {
+                log(secs, String.format("Processing agent %d", agent.id));
             }
-            while ((agent = delayedAgentsByWakeupTime.get(secs).poll()) != null) {
-                if (HermesConfigGroup.DEBUG_REALMS) {
-                    log(secs, String.format("Processing agent %d", agent.id));
-                }
-                routed += processAgentActivities(agent);
+            routed += processAgentActivities(agent);
 
+        }
+        delayedAgentsByWakeupTime.set(secs, null);
+        if (si.isDeterministicPt()) {
+            for (Event e : si.getDeterministicPtEvents().get(secs)) {
+                sorted_events.add(e);
             }
-            delayedAgentsByWakeupTime.set(secs, null);
-            if (si.isDeterministicPt()) {
-                for (Event e : si.getDeterministicPtEvents().get(secs)) {
-                    sorted_events.add(e);
-                }
-                si.getDeterministicPtEvents().get(secs).clear();
-            }
+            si.getDeterministicPtEvents().get(secs).clear();
+        }
 
-            while ((link = delayedLinksByWakeupTime.get(secs).poll()) != null) {
-                if (HermesConfigGroup.DEBUG_REALMS) {
-                    log(secs, String.format("Processing link %d", link.id()));
-                }
-                routed += processLinks(link);
-            }
-            delayedLinksByWakeupTime.set(secs, null);
-            if (HermesConfigGroup.DEBUG_REALMS && routed > 0) {
-                log(secs, String.format("Processed %d agents", routed));
+        ArrayDeque<HLink> links = delayedLinksByWakeupTime.get(secs);
+        while (links != null && (link = links.poll()) != null) {
+            if (HermesConfigGroup.DEBUG_REALMS) {
+                log(secs, String.format("Processing link %d", link.id()));
             }
-            if (HermesConfigGroup.CONCURRENT_EVENT_PROCESSING && secs % 3600 == 0 && sorted_events.size() > 0) {
-                eventsManager.processEvents(sorted_events);
-                sorted_events = new EventArray();
+            routed += processLinks(link);
+        }
+        delayedLinksByWakeupTime.set(secs, null);
+        if (HermesConfigGroup.DEBUG_REALMS && routed > 0) {
+            log(secs, String.format("Processed %d agents", routed));
+        }
+    }
+
+    /**
+     * Tries to push the agents handed over by other realms in the current time step into the
+     * links of this realm. Transfers are processed in realm order, which keeps the result
+     * independent of thread scheduling. Must only be called after all realms finished
+     * {@link #processTimestep()}.
+     */
+    void processIncomingTransfers() {
+        target_events = border_events;
+        for (Realm sender : realms) {
+            for (Transfer transfer : sender.outgoing.get(id)) {
+                Agent agent = transfer.agent;
+                // agents leaving the same link keep their order
+                transfer.accepted = (transfer.previous == null || transfer.previous.accepted)
+                        && processAgentLink(agent, agent.plan.get(agent.planIndex + 1), transfer.fromLink);
             }
+        }
+        target_events = sorted_events;
+    }
 
-            routed = 0;
-            secs += 1;
+    /**
+     * Completes the transfers sent by this realm in the current time step. Accepted agents are
+     * removed from the link they left, rejected agents retry in the next time step. Must only
+     * be called after all realms finished {@link #processIncomingTransfers()}.
+     */
+    void processTransferReplies() {
+        for (ArrayList<Transfer> transfers : outgoing) {
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                if (transfer.fromLink >= 0) {
+                    HLink link = links[transfer.fromLink];
+                    if (transfer.accepted) {
+                        link.pop(transfer.agent.getStorageCapacityPCUE());
+                    } else if (transfer.previous != null && !transfer.previous.accepted) {
+                        // in a single realm, the agents behind the first rejected one would not have tried to leave
+                        link.returnFlow(transfer.agent.getFlowCapacityPCUE());
+                    }
+                    // the transfers of one link follow each other, the link is re-scheduled after the last one
+                    boolean last = i + 1 == transfers.size() || transfers.get(i + 1).previous != transfer;
+                    Agent head = link.queue().peek();
+                    if (last && head != null) {
+                        add_delayed_link(link, Math.max(head.linkFinishTime, secs + 1));
+                    }
+                } else if (!transfer.accepted) {
+                    add_delayed_agent(transfer.agent, secs + 1);
+                }
+            }
+            transfers.clear();
         }
     }
 
+    int time() {
+        return secs;
+    }
+
+    void advanceTime() {
+        secs += 1;
+    }
+
     public void setEventTime(Agent agent, int eventid, int time, boolean lastevent) {
         if (eventid != 0) {
-        	EventArray agentevents = agent.events();
-            Event event = agentevents.get(eventid);
+        	CompactEventArray agentevents = agent.events();
+        	// link events are not stored as objects, creating them here would defeat the compact representation
+            Event event = agentevents.getType(eventid) == CompactEventArray.OBJECT ? agentevents.get(eventid) : null;
 
             for (; agent.eventsIndex <= eventid; agent.eventsIndex++) {
-            	agentevents.get(agent.eventsIndex).setTime(time);
+            	agentevents.setTime(agent.eventsIndex, time);
                 if (HermesConfigGroup.DEBUG_REALMS)
                     log(secs, String.format("agent %d setEventTime (eventsIndex=%d) %s", agent.id, agent.eventsIndex, agentevents.get(agent.eventsIndex).toString()));
-                sorted_events.add(agentevents.get(agent.eventsIndex));
+                target_events.add(agentevents, agent.eventsIndex);
             }
 
             // Fix delay for PT events.
@@ -383,7 +552,7 @@ class Realm {
 		    }
 		    // This removes actend that is not issued by QSim.
 		    else if (lastevent && event instanceof ActivityEndEvent) {
-		        sorted_events.removeLast();
+		        target_events.removeLast();
 		    }
         }
     }
@@ -403,7 +572,6 @@ class Realm {
         }
     }
 
-    ArrayList<ArrayDeque<HLink>> delayedLinks() { return this.delayedLinksByWakeupTime; }
-    ArrayList<ArrayDeque<Agent>> delayedAgents() { return this.delayedAgentsByWakeupTime; }
-    EventArray getSortedEvents() { return this.sorted_events; }
+    CompactEventArray getSortedEvents() { return this.sorted_events; }
+    CompactEventArray getBorderEvents() { return this.border_events; }
 }
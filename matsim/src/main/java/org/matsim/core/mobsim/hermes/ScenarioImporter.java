@@ -49,7 +49,7 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
-import org.matsim.core.events.EventArray;
+import org.matsim.core.events.CompactEventArray;
 import org.matsim.core.mobsim.hermes.Agent.PlanArray;
 import org.matsim.core.population.routes.GenericRouteImpl;
 import org.matsim.core.population.routes.NetworkRoute;
@@ -114,7 +114,10 @@ class ScenarioImporter {
 	// Note: in order to make MATSim Agent ids, some positions in the array might be null.
 	protected Agent[] hermes_agents;
 
-	protected Realm realm;
+	// Realms of the simulation. Only contains one realm unless hermes.numberOfRealms > 1.
+	protected Realm[] realms;
+	// Realm owning each link (indexed by link id), null if there is only one realm.
+	protected int[] realm_of_link;
 	private final boolean deterministicPt;
 	// Agents waiting in pt stations. Should be used as follows:
 	// agent_stops.get(curr station id).get(line id) -> queue of agents
@@ -144,9 +147,36 @@ class ScenarioImporter {
 		generateLinks();
 		generatePT();
 		generateAgents();
+		partitionNetwork();
 
 	}
 
+	private void partitionNetwork() {
+		int numberOfRealms = scenario.getConfig().hermes().getNumberOfRealms();
+		if (numberOfRealms > 1 && !scenario.getTransitSchedule().getTransitLines().isEmpty()) {
+			// agents waiting at stops are shared between realms, which is not supported yet.
+			log.warn("Hermes does not support multiple realms with a transit schedule, using a single realm.");
+			numberOfRealms = 1;
+		}
+		if (numberOfRealms > 1) {
+			realm_of_link = NetworkPartitioner.partition(scenario.getNetwork(), hermes_links.length, numberOfRealms);
+		}
+		realms = new Realm[numberOfRealms];
+	}
+
+	// Realm that initially holds the agent: the owner of the first link of its plan.
+	private Realm initialRealm(Agent agent) {
+		if (realm_of_link != null) {
+			for (int i = 0; i < agent.plan().size(); i++) {
+				long planentry = agent.plan().get(i);
+				if (Agent.getPlanHeader(planentry) == Agent.LinkType) {
+					return realms[realm_of_link[Agent.getLinkPlanEntry(planentry)]];
+				}
+			}
+		}
+		return realms[0];
+	}
+
 	private void generateVehicleCategories() {
 		int vehicleTypes = scenario.getVehicles().getVehicleTypes().size();
 		if (vehicleTypes >= HermesConfigGroup.MAX_VEHICLE_PCETYPES) {
@@ -308,7 +338,13 @@ class ScenarioImporter {
 	}
 
 	private void generateRealms() throws Exception {
-		realm = new Realm(this, eventsManager);
+		if (realms.length == 1) {
+			realms[0] = new Realm(this, eventsManager);
+		} else {
+			for (int i = 0; i < realms.length; i++) {
+				realms[i] = new Realm(this, eventsManager, i, realm_of_link, realms);
+			}
+		}
 
 		// Put agents in their initial location (link or activity center)
 		for (Agent agent : hermes_agents) {
@@ -330,7 +366,7 @@ class ScenarioImporter {
 				case Agent.SleepForType:
 				case Agent.SleepUntilType:
 					int sleep = Agent.getSleepPlanEntry(planentry);
-					realm.delayedAgents().get(Math.min(sleep, scenario.getConfig().hermes().getEndTime() + 1)).add(agent);
+					initialRealm(agent).add_delayed_agent(agent, sleep);
 					break;
 				default:
 					Logger.getLogger(getClass()).error(String.format("ERROR -> unknown plan element type %d", type));
@@ -341,7 +377,7 @@ class ScenarioImporter {
 			if (link != null) {
 				int nextwakeup = link.nexttime();
 				if (nextwakeup > 0) {
-					realm.delayedLinks().get(nextwakeup).add(link);
+					realms[realm_of_link == null ? 0 : realm_of_link[link.id()]].add_delayed_link(link, nextwakeup);
 				}
 			}
 		}
@@ -350,7 +386,7 @@ class ScenarioImporter {
 	private void processPlanActivity(
 			Id<Person> id,
 			PlanArray flatplan,
-			EventArray events,
+			CompactEventArray events,
 			Activity act) {
 		int time = 0;
 		int eventid = 0;
@@ -396,7 +432,7 @@ class ScenarioImporter {
 	private void processPlanNetworkRoute(
 			Person person,
 			PlanArray flatplan,
-			EventArray events,
+			CompactEventArray events,
 			Leg leg,
 			NetworkRoute netroute,
 			Agent agent) {
@@ -422,16 +458,16 @@ class ScenarioImporter {
 		events.add(new PersonEntersVehicleEvent(0, id, vid));
 		events.add(new VehicleEntersTrafficEvent(0, id, startLId, vid, leg.getMode(), 1));
 		if (netroute.getLinkIds().size() > 1 || !startLId.equals(endLId)) {
-			events.add(new LinkLeaveEvent(0, vid, startLId));
+			events.addLinkLeave(0, vid.index(), startLId.index());
 		}
 		for (Id<org.matsim.api.core.v01.network.Link> linkid : netroute.getLinkIds()) {
 			int linkId = linkid.index();
-			events.add(new LinkEnterEvent(0, vid, linkid));
+			events.addLinkEnter(0, vid.index(), linkId);
 			flatplan.add(Agent.prepareLinkEntry(events.size() - 1, linkId, velocity, pcuCategory));
-			events.add(new LinkLeaveEvent(0, vid, linkid));
+			events.addLinkLeave(0, vid.index(), linkId);
 		}
 		if (netroute.getLinkIds().size() > 1 || !startLId.equals(endLId)) {
-			events.add(new LinkEnterEvent(0, vid, endLId));
+			events.addLinkEnter(0, vid.index(), egressId);
 			flatplan.add(Agent.prepareLinkEntry(events.size() - 1, egressId, velocity, pcuCategory));
 		}
 		events.add(new VehicleLeavesTrafficEvent(0, id, endLId, vid, leg.getMode(), 1));
@@ -446,7 +482,7 @@ class ScenarioImporter {
 	private void processPlanTransitRoute(
 			Id<Person> id,
 			PlanArray flatplan,
-			EventArray events,
+			CompactEventArray events,
 			TransitPassengerRoute troute) {
 		Id<TransitStopFacility> access = troute.getAccessStopId();
 		Id<TransitStopFacility> egress = troute.getEgressStopId();
@@ -471,7 +507,7 @@ class ScenarioImporter {
 	private void processPlanElement(
 			Person person,
 			PlanArray flatplan,
-			EventArray events,
+			CompactEventArray events,
 			PlanElement element,
 			Agent agent) {
 		var id = person.getId();
@@ -509,7 +545,7 @@ class ScenarioImporter {
 		}
 	}
 
-	private void processTeleport(Id<Person> id, PlanArray flatplan, EventArray events, Leg element, Route route, String mode) {
+	private void processTeleport(Id<Person> id, PlanArray flatplan, CompactEventArray events, Leg element, Route route, String mode) {
 		double routeTravelTime = route.getTravelTime().orElse(0.0);
 		double legTravelTime = element.getTravelTime().orElse(0.0);
 		int time = Math.max(0, (int) Math.round(Math.max(routeTravelTime, legTravelTime)) - 2);
@@ -522,7 +558,7 @@ class ScenarioImporter {
 			int agent_id,
 			int capacity,
 			PlanArray flatplan,
-			EventArray events) {
+			CompactEventArray events) {
 
 		if (events.size() >= HermesConfigGroup.MAX_EVENTS_AGENT) {
 			throw new RuntimeException("exceeded maximum number of agent events");
@@ -552,7 +588,7 @@ class ScenarioImporter {
 	private static class TransitRouteContext {
 		final Agent agent;
 		final PlanArray flatplan;
-		final EventArray flatevents;
+		final CompactEventArray flatevents;
 		final TransitLine tl;
 		final TransitRoute tr;
 		final int routeNo;
@@ -741,7 +777,7 @@ class ScenarioImporter {
 
 		TransitRouteContext context = new TransitRouteContext(agent, tl, tr, routeNo, depart, this.scenario.getNetwork());
 		PlanArray flatplan = agent.plan;
-		EventArray flatevents = agent.events;
+		CompactEventArray flatevents = agent.events;
 
 		VehicleType vt = v.getType();
 		NetworkRoute nr = tr.getRoute();
@@ -779,7 +815,7 @@ class ScenarioImporter {
 
 	private void generateNondeterministicVehicleOnLink(TransitRouteContext c, Id<Link> linkId, boolean generateLinkEnterEvent, boolean generateLinkLeaveEvent, int velocity, int pcuCategory) {
 		if (generateLinkEnterEvent) {
-			c.flatevents.add(new LinkEnterEvent(0, c.vehId, linkId));
+			c.flatevents.addLinkEnter(0, c.vehId.index(), linkId.index());
 			c.flatplan.add(Agent.prepareLinkEntry(c.flatevents.size() - 1, linkId.index(), velocity, pcuCategory));
 		}
 
@@ -812,7 +848,7 @@ class ScenarioImporter {
 		}
 
 		if (generateLinkLeaveEvent) {
-			c.flatevents.add(new LinkLeaveEvent(0, c.vehId, linkId));
+			c.flatevents.addLinkLeave(0, c.vehId.index(), linkId.index());
 		}
 	}
 
@@ -825,7 +861,7 @@ class ScenarioImporter {
 		int routeNo = this.route_numbers.get(tl.getId()).get(tr.getId());
 		TransitRouteContext context = new TransitRouteContext(agent, tl, tr, routeNo, depart, this.scenario.getNetwork());
 		PlanArray flatplan = agent.plan;
-		EventArray flatevents = agent.events;
+		CompactEventArray flatevents = agent.events;
 		Vehicle v = this.scenario.getTransitVehicles().getVehicles().get(depart.getVehicleId());
 		VehicleType vt = v.getType();
 		NetworkRoute nr = tr.getRoute();
@@ -887,7 +923,7 @@ class ScenarioImporter {
 		population.getPersons().values().parallelStream().forEach((person) -> {
 			int hermes_id = hermes_id(person.getId().index(), false);
 			PlanArray plan = hermes_agents[hermes_id].plan();
-			EventArray events = hermes_agents[hermes_id].events();
+			CompactEventArray events = hermes_agents[hermes_id].events();
 			for (PlanElement element : person.getSelectedPlan().getPlanElements()) {
 				processPlanElement(person, plan, events, element, hermes_agents[hermes_id]);
 			}
@@ -905,7 +941,7 @@ class ScenarioImporter {
 		for (Person person : population.getPersons().values()) {
 			int hermes_id = hermes_id(person.getId().index(), false);
 			assert hermes_agents[hermes_id] == null;
-			generateAgent(hermes_id, 0, new PlanArray(), new EventArray());
+			generateAgent(hermes_id, 0, new PlanArray(), new CompactEventArray());
 		}
 
 		// Generate vehicles
@@ -914,7 +950,7 @@ class ScenarioImporter {
 			int capacity = vc.getSeats() + vc.getStandingRoom();
 			int hermes_id = hermes_id(vehicle.getId().index(), true);
 			assert hermes_agents[hermes_id] == null;
-			generateAgent(hermes_id, capacity, new PlanArray(), new EventArray());
+			generateAgent(hermes_id, capacity, new PlanArray(), new CompactEventArray());
 		}
 	}
 
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.matsim.core.mobsim.qsim.QSim;
 
@@ -50,6 +51,12 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 	 */
 	private final Queue<QNodeI> nodesQueue = new ConcurrentLinkedQueue<>();
 
+	/*
+	 * The size() method of the ConcurrentLinkedQueue is O(n), so the number of active nodes
+	 * is counted separately. It is used for the load balancing in every time step.
+	 */
+	private final AtomicInteger numberOfActiveNodes = new AtomicInteger();
+
 	/*
 	 * Needs not to be thread-safe since links are only activated from nodes which
 	 * are handled (by design) from links handled by the same thread. Therefore,
@@ -91,7 +98,10 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 		while (simNodes.hasNext()) {
 			node = simNodes.next();
 			remainsActive = node.doSimStep(time);
-			if (!remainsActive) simNodes.remove();
+			if (!remainsActive) {
+				simNodes.remove();
+				this.numberOfActiveNodes.decrementAndGet();
+			}
 		}
 		this.lockNodes = false;
 	}
@@ -134,19 +144,16 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 	 */
 	@Override
 	protected final void registerNodeAsActive(QNodeI node) {
-		if (!this.lockNodes) this.nodesQueue.add(node);
+		if (!this.lockNodes) {
+			this.nodesQueue.add(node);
+			this.numberOfActiveNodes.incrementAndGet();
+		}
 		else throw new RuntimeException("Tried to activate a QNode at a time where this was not allowed. Aborting!");
 	}
 
-	/*
-	 * Note that the size() method is O(n) for a ConcurrentLinkedQueue as used
-	 * for the nodesQueue. However, this method is only called once every simulated
-	 * hour for the log message. Therefore, it should be okay.
-	 * cdobler, sep'14
-	 */
 	@Override
 	public final int getNumberOfSimulatedNodes() {
-		return this.nodesQueue.size();
+		return this.numberOfActiveNodes.get();
 	}
 
 	protected final void startMeasure() {
@@ -60,4 +60,11 @@ final class QNetsimEngineRunnerForThreadpool extends AbstractQNetsimEngineRunner
 	public final void setMovingNodes(boolean movingNodes) {
 		this.movingNodes = movingNodes;
 	}
+
+	/**
+	 * @return the number of active nodes or links, depending on what is moved next.
+	 */
+	/*package*/ final int getWorkload() {
+		return this.movingNodes ? getNumberOfSimulatedNodes() : getNumberOfSimulatedLinks();
+	}
 }
\ No newline at end of file
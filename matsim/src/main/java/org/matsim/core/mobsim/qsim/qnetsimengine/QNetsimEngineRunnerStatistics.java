@@ -0,0 +1,157 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetsimEngineRunnerStatistics.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Locale;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Measures how evenly the {@link QNetsimEngineWithThreadpool} spreads the work of a time step over its threads.
+ *
+ * For each phase of a time step (moving the nodes, moving the links), the time until the last thread is done
+ * is compared with the time each thread was busy. The <i>imbalance</i> is the busy time of the busiest thread
+ * divided by the mean busy time, 1 meaning perfectly balanced. The <i>wait time</i> is the time the threads
+ * spent waiting for the slowest thread, summed over all threads.
+ *
+ * The values of each time step are only kept if {@link QSim#analyzeRunTimes} is set.
+ */
+final class QNetsimEngineRunnerStatistics {
+
+	private static final Logger log = Logger.getLogger(QNetsimEngineRunnerStatistics.class);
+
+	/*package*/ static final int NODES = 0;
+	/*package*/ static final int LINKS = 1;
+
+	private final int numOfThreads;
+	private final int numOfRunners;
+
+	private final long[] steps = new long[2];
+	private final long[] wallNanos = new long[2];
+	private final long[] busyNanos = new long[2];
+	private final long[] maxBusyNanos = new long[2];
+
+	private final double[] lastImbalance = new double[2];
+	private final long[] lastWaitNanos = new long[2];
+
+	private final double[][] stepImbalance;
+	private final long[][] stepWaitNanos;
+
+	QNetsimEngineRunnerStatistics(int numOfThreads, int numOfRunners) {
+		this.numOfThreads = numOfThreads;
+		this.numOfRunners = numOfRunners;
+		if (QSim.analyzeRunTimes) {
+			this.stepImbalance = new double[2][AbstractQNetsimEngine.numObservedTimeSteps];
+			this.stepWaitNanos = new long[2][AbstractQNetsimEngine.numObservedTimeSteps];
+		} else {
+			this.stepImbalance = null;
+			this.stepWaitNanos = null;
+		}
+	}
+
+	/**
+	 * @param phase {@link #NODES} or {@link #LINKS}
+	 * @param wall the time from starting the phase until all threads were done
+	 * @param threadBusyNanos the time each thread spent moving nodes or links
+	 */
+	/*package*/ void addPhase(int phase, double time, long wall, long[] threadBusyNanos) {
+		long busy = 0;
+		long maxBusy = 0;
+		for (long b : threadBusyNanos) {
+			busy += b;
+			maxBusy = Math.max(maxBusy, b);
+		}
+		this.steps[phase]++;
+		this.wallNanos[phase] += wall;
+		this.busyNanos[phase] += busy;
+		this.maxBusyNanos[phase] += maxBusy;
+
+		this.lastImbalance[phase] = imbalance(maxBusy, busy);
+		this.lastWaitNanos[phase] = Math.max(0, wall * threadBusyNanos.length - busy);
+		if (this.stepImbalance != null) {
+			int bin = (int) time;
+			if (bin >= 0 && bin < this.stepImbalance[phase].length) {
+				this.stepImbalance[phase][bin] = this.lastImbalance[phase];
+				this.stepWaitNanos[phase][bin] = this.lastWaitNanos[phase];
+			}
+		}
+	}
+
+	private double imbalance(long maxBusy, long busy) {
+		return busy == 0 ? 1.0 : maxBusy / ((double) busy / this.numOfThreads);
+	}
+
+	/**
+	 * @return the imbalance of all time steps so far, weighted with the time spent in each step.
+	 */
+	/*package*/ double getImbalance(int phase) {
+		return imbalance(this.maxBusyNanos[phase], this.busyNanos[phase]);
+	}
+
+	/*package*/ long getWaitNanos(int phase) {
+		return Math.max(0, this.wallNanos[phase] * this.numOfThreads - this.busyNanos[phase]);
+	}
+
+	/*package*/ long getBusyNanos(int phase) {
+		return this.busyNanos[phase];
+	}
+
+	/*package*/ long getWallNanos(int phase) {
+		return this.wallNanos[phase];
+	}
+
+	/*package*/ double getLastImbalance(int phase) {
+		return this.lastImbalance[phase];
+	}
+
+	/*package*/ long getLastWaitNanos(int phase) {
+		return this.lastWaitNanos[phase];
+	}
+
+	/*package*/ void printStatistics() {
+		if (this.steps[NODES] == 0) {
+			return;
+		}
+		log.info(this.numOfRunners + " QNetsimEngine runners on " + this.numOfThreads + " threads:");
+		log.info("  moving nodes: " + toString(NODES));
+		log.info("  moving links: " + toString(LINKS));
+
+		if (this.stepImbalance != null && AbstractQNetsimEngine.printRunTimesPerTimeStep) {
+			log.info("imbalance and wait time [ms] of the QNetsimEngine threads per time step:");
+			log.info("\ttime\tnodes_imbalance\tnodes_wait\tlinks_imbalance\tlinks_wait");
+			for (int i = 0; i < this.stepImbalance[NODES].length; i++) {
+				if (this.stepImbalance[NODES][i] == 0 && this.stepImbalance[LINKS][i] == 0) {
+					continue;
+				}
+				log.info(String.format(Locale.ROOT, "\t%s\t%.3f\t%.3f\t%.3f\t%.3f", Time.writeTime(i),
+						this.stepImbalance[NODES][i], this.stepWaitNanos[NODES][i] / 1e6,
+						this.stepImbalance[LINKS][i], this.stepWaitNanos[LINKS][i] / 1e6));
+			}
+		}
+	}
+
+	private String toString(int phase) {
+		return String.format(Locale.ROOT, "wall time %.1f ms, busy %.1f ms, waiting %.1f ms, imbalance %.3f",
+				this.wallNanos[phase] / 1e6, this.busyNanos[phase] / 1e6, getWaitNanos(phase) / 1e6, getImbalance(phase));
+	}
+}
@@ -22,11 +22,13 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
@@ -36,6 +38,13 @@ import org.matsim.core.mobsim.qsim.QSim;
  * Coordinates the movement of vehicles on the links and the nodes.
  * Split Up the old {@code QNetsimEngineRunner} which was implementing
  * 2 different approaches parallel.
+ * <p></p>
+ * With more than one thread, the network is split into more runners than there are threads
+ * (see {@link org.matsim.core.config.groups.QSimConfigGroup#getNumberOfRunnersPerThread()}).
+ * In every phase of a time step, the runners are sorted by their number of active nodes or links,
+ * and each thread takes the next runner from this list until all are done. A runner is only ever
+ * handled by one thread at a time, so the rules of the runners about activating nodes and links
+ * still hold.
  *
  * @author droeder@Senozon after
  * 
@@ -47,6 +56,12 @@ final class QNetsimEngineWithThreadpool extends AbstractQNetsimEngine<QNetsimEng
 
 	private final int numOfRunners;
 	private ExecutorService pool;
+
+	private QNetsimEngineRunnerForThreadpool[] runnerOrder;
+	private final AtomicInteger nextRunner = new AtomicInteger();
+	private final List<Callable<Long>> workers = new ArrayList<>();
+	private final long[] workerBusyNanos;
+	private QNetsimEngineRunnerStatistics statistics;
 	
 	public QNetsimEngineWithThreadpool(final QSim sim) {
 		this(sim, null);
@@ -55,12 +70,18 @@ final class QNetsimEngineWithThreadpool extends AbstractQNetsimEngine<QNetsimEng
 	@Inject
 	public QNetsimEngineWithThreadpool(final QSim sim, QNetworkFactory netsimNetworkFactory) {
 		super(sim, netsimNetworkFactory);
-		this.numOfRunners = this.numOfThreads;
+		this.numOfRunners = this.numOfThreads > 1 ?
+				this.numOfThreads * sim.getScenario().getConfig().qsim().getNumberOfRunnersPerThread() : 1;
+		this.workerBusyNanos = new long[this.numOfThreads];
+		for (int i = 0; i < this.numOfThreads; i++) {
+			this.workers.add(this::runRunners);
+		}
 	}
 
 	@Override
 	public void finishMultiThreading() {
 		this.pool.shutdown();
+		this.statistics.printStatistics();
 	}
 
 	protected void run(double time) {
@@ -93,25 +114,73 @@ final class QNetsimEngineWithThreadpool extends AbstractQNetsimEngine<QNetsimEng
 			engine.setTime(time);
 		}
 
+		// (d) Dynamic load balancing as a cheap variant of (c): there are more runners than threads, the busiest runners
+		// are started first, and a thread that is done takes the next runner.  This does not help if a single runner
+		// takes longer than all others together.
+
 		try {
-			for (AbstractQNetsimEngineRunner engine : this.getQnetsimEngineRunner()) {
-				((QNetsimEngineRunnerForThreadpool) engine).setMovingNodes(true);
-			}
-			for (Future<Boolean> future : pool.invokeAll(this.getQnetsimEngineRunner())) {
-				future.get();
-			}
-			for (AbstractQNetsimEngineRunner engine : this.getQnetsimEngineRunner()) {
-				((QNetsimEngineRunnerForThreadpool) engine).setMovingNodes(false);
-			}
-			for (Future<Boolean> future : pool.invokeAll(this.getQnetsimEngineRunner())) {
-				future.get();
-			}
+			runPhase(true, time);
+			runPhase(false, time);
 		} catch (InterruptedException e) {
 			throw new RuntimeException(e) ;
 		} catch (ExecutionException e) {
 			throw new RuntimeException(e.getCause());
 		}
 	}
+
+	private void runPhase(boolean movingNodes, double time) throws InterruptedException, ExecutionException {
+		for (QNetsimEngineRunnerForThreadpool runner : this.runnerOrder) {
+			runner.setMovingNodes(movingNodes);
+		}
+		sortByWorkload(this.runnerOrder);
+		this.nextRunner.set(0);
+
+		long start = System.nanoTime();
+		List<Future<Long>> futures = this.pool.invokeAll(this.workers);
+		for (int i = 0; i < futures.size(); i++) {
+			this.workerBusyNanos[i] = futures.get(i).get();
+		}
+		long wall = System.nanoTime() - start;
+		this.statistics.addPhase(movingNodes ? QNetsimEngineRunnerStatistics.NODES : QNetsimEngineRunnerStatistics.LINKS,
+				time, wall, this.workerBusyNanos);
+	}
+
+	/**
+	 * Executed by each thread: handles runners until there are none left.
+	 *
+	 * @return the time the thread was busy
+	 */
+	private Long runRunners() {
+		long busy = 0;
+		int index;
+		while ((index = this.nextRunner.getAndIncrement()) < this.runnerOrder.length) {
+			long start = System.nanoTime();
+			this.runnerOrder[index].call();
+			busy += System.nanoTime() - start;
+		}
+		return busy;
+	}
+
+	/**
+	 * Sorts the runners by descending workload. Insertion sort, as the workloads change little
+	 * between time steps, so the array is mostly sorted already.
+	 */
+	/*package*/ static void sortByWorkload(QNetsimEngineRunnerForThreadpool[] runners) {
+		for (int i = 1; i < runners.length; i++) {
+			QNetsimEngineRunnerForThreadpool runner = runners[i];
+			int workload = runner.getWorkload();
+			int j = i - 1;
+			while (j >= 0 && runners[j].getWorkload() < workload) {
+				runners[j + 1] = runners[j];
+				j--;
+			}
+			runners[j + 1] = runner;
+		}
+	}
+
+	/*package*/ QNetsimEngineRunnerStatistics getStatistics() {
+		return this.statistics;
+	}
 	
 	private static class NamedThreadFactory implements ThreadFactory {
 		private int count = 0;
@@ -134,6 +203,8 @@ final class QNetsimEngineWithThreadpool extends AbstractQNetsimEngine<QNetsimEng
 
 	@Override
 	protected void initMultiThreading() {
+		this.runnerOrder = this.getQnetsimEngineRunner().toArray(new QNetsimEngineRunnerForThreadpool[0]);
+		this.statistics = new QNetsimEngineRunnerStatistics(this.numOfThreads, this.numOfRunners);
 		this.pool = Executors.newFixedThreadPool(
 				this.numOfThreads,
 				new NamedThreadFactory());		
@@ -0,0 +1,783 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Customizable;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.CustomizableUtils;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * Implementation of {@link Plan} which stores its activities and legs in primitive arrays instead of one object
+ * per plan element. Ids are stored as {@link Id#index() index}, coordinates and times as <code>double</code> values,
+ * types and modes as interned strings, and attributes are only created when they are accessed.
+ * <p></p>
+ * The activities and legs returned by {@link #getPlanElements()} are small views on these arrays, which are created on
+ * access and then kept until the plan is {@link #compact() compacted}, so the same view is returned while the plan
+ * is being worked on. Plan elements of other implementations, e.g. from {@link PopulationUtils#createActivityFromLinkId},
+ * can be added as well; they are stored as they are and only copied into the arrays when the plan is compacted.
+ * <p></p>
+ * Compacting the plan makes the views invalid, they throw an exception when they are used afterwards. Thus, plan
+ * elements must not be kept over a call to {@link PopulationUtils#compactPlans}, which the controler does before
+ * the mobsim.
+ *
+ * @see CompactPopulationFactoryImpl
+ */
+/* deliberately package */ final class CompactPlanImpl implements Plan {
+
+	private static final byte ACTIVITY = 1;
+	private static final byte LEG = 2;
+	private static final byte OTHER = 3; // plan element of another implementation, kept as object until the plan is compacted
+
+	private static final int TIMES_PER_ELEMENT = 3;
+	private static final int INITIAL_CAPACITY = 5;
+
+	private final boolean holder; // holds a single plan element which is not part of a plan
+	private Person person = null;
+	private Double score = null;
+	private String type = null;
+	private Attributes attributes = null;
+	private Customizable customizableDelegate = null;
+
+	private int size = 0;
+	private byte[] kinds;
+	private String[] types; // activity type or leg mode
+	private int[] linkIndices; // activity link
+	private int[] facilityIndices; // activity facility
+	private double[] coords; // x and y of activities, NaN if there is no coordinate
+	private double[] zs = null; // only allocated when a coordinate with z value is stored
+	private double[] times; // start time, end time and maximum duration of activities, departure and travel time of legs. NaN if undefined.
+	private Object[] objects = null; // routes of legs and plan elements of kind OTHER
+	private Attributes[] elementAttributes = null;
+	private PlanElement[] views = null;
+	private ElementList elementList = null;
+
+	/* package */ CompactPlanImpl() {
+		this(INITIAL_CAPACITY, false);
+	}
+
+	private CompactPlanImpl(int capacity, boolean holder) {
+		this.holder = holder;
+		this.kinds = new byte[capacity];
+		this.types = new String[capacity];
+		this.linkIndices = new int[capacity];
+		this.facilityIndices = new int[capacity];
+		this.coords = new double[2 * capacity];
+		this.times = new double[TIMES_PER_ELEMENT * capacity];
+	}
+
+	/* package */ static Activity createActivity(String type) {
+		CompactPlanImpl holder = new CompactPlanImpl(1, true);
+		holder.addElement(ACTIVITY, type);
+		return (Activity) holder.getElement(0);
+	}
+
+	/* package */ static Leg createLeg(String mode) {
+		CompactPlanImpl holder = new CompactPlanImpl(1, true);
+		holder.addElement(LEG, mode);
+		return (Leg) holder.getElement(0);
+	}
+
+	@Override
+	public Attributes getAttributes() {
+		if (this.attributes == null) {
+			this.attributes = new Attributes();
+		}
+		return this.attributes;
+	}
+
+	@Override
+	public Person getPerson() {
+		return this.person;
+	}
+
+	@Override
+	public void setPerson(final Person person) {
+		this.person = person;
+	}
+
+	@Override
+	public Double getScore() {
+		return this.score;
+	}
+
+	@Override
+	public void setScore(final Double score) {
+		this.score = score;
+	}
+
+	@Override
+	public String getType() {
+		return this.type;
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.type = type;
+	}
+
+	@Override
+	public List<PlanElement> getPlanElements() {
+		if (this.elementList == null) {
+			this.elementList = new ElementList();
+		}
+		return this.elementList;
+	}
+
+	@Override
+	public void addLeg(final Leg leg) {
+		getPlanElements().add(leg);
+	}
+
+	@Override
+	public void addActivity(final Activity act) {
+		getPlanElements().add(act);
+	}
+
+	@Override
+	public Map<String, Object> getCustomAttributes() {
+		if (this.customizableDelegate == null) {
+			this.customizableDelegate = CustomizableUtils.createCustomizable();
+		}
+		return this.customizableDelegate.getCustomAttributes();
+	}
+
+	/**
+	 * Copies all plan elements into the arrays, invalidates the views, removes empty attributes and
+	 * shrinks the arrays to the number of plan elements.
+	 */
+	/* package */ void compact() {
+		for (int i = 0; i < this.size; i++) {
+			if (this.kinds[i] == OTHER) {
+				PlanElement pe = (PlanElement) this.objects[i];
+				if (pe instanceof Activity) {
+					this.kinds[i] = ACTIVITY;
+					this.objects[i] = null;
+					copyActivity((Activity) pe, i);
+				} else if (pe instanceof Leg) {
+					this.kinds[i] = LEG;
+					this.objects[i] = null;
+					copyLeg((Leg) pe, i);
+				}
+			}
+		}
+		if (this.views != null) {
+			for (PlanElement view : this.views) {
+				if (view instanceof Element) {
+					((Element) view).plan = null;
+				}
+			}
+			this.views = null;
+		}
+		this.elementList = null;
+		if (this.attributes != null && this.attributes.isEmpty()) {
+			this.attributes = null;
+		}
+		if (this.elementAttributes != null) {
+			boolean hasAttributes = false;
+			for (int i = 0; i < this.size; i++) {
+				if (this.elementAttributes[i] != null && this.elementAttributes[i].isEmpty()) {
+					this.elementAttributes[i] = null;
+				}
+				hasAttributes |= this.elementAttributes[i] != null;
+			}
+			this.elementAttributes = hasAttributes ? this.elementAttributes : null;
+		}
+		if (this.objects != null && Arrays.stream(this.objects).allMatch(o -> o == null)) {
+			this.objects = null;
+		}
+		resize(this.size);
+	}
+
+	private PlanElement getElement(int index) {
+		if (this.kinds[index] == OTHER) {
+			return (PlanElement) this.objects[index];
+		}
+		if (this.views == null) {
+			this.views = new PlanElement[this.kinds.length];
+		}
+		PlanElement view = this.views[index];
+		if (view == null) {
+			view = this.kinds[index] == ACTIVITY ? new ActivityView(this, index) : new LegView(this, index);
+			this.views[index] = view;
+		}
+		return view;
+	}
+
+	private void addElement(byte kind, String typeOrMode) {
+		openGap(this.size);
+		this.kinds[this.size - 1] = kind;
+		this.types[this.size - 1] = intern(typeOrMode);
+	}
+
+	private void insertElement(int index, PlanElement pe) {
+		if (pe instanceof Element && ((Element) pe).plan() == this) {
+			throw new IllegalArgumentException("The plan element is already part of this plan: " + pe);
+		}
+		openGap(index);
+		if (pe instanceof Element) {
+			Element element = (Element) pe;
+			CompactPlanImpl source = element.plan();
+			copyElement(source, element.index, index);
+			if (source.holder) {
+				// a plan element which is not part of a plan yet, so the view can be moved to this plan
+				element.plan = this;
+				element.index = index;
+				if (this.views == null) {
+					this.views = new PlanElement[this.kinds.length];
+				}
+				this.views[index] = element;
+			}
+		} else {
+			this.kinds[index] = OTHER;
+			setObject(index, pe);
+		}
+	}
+
+	private PlanElement removeElement(int index) {
+		PlanElement removed = getElement(index);
+		if (removed instanceof Element) {
+			// the removed view keeps its data in a plan of its own
+			Element element = (Element) removed;
+			CompactPlanImpl holder = new CompactPlanImpl(1, true);
+			holder.openGap(0);
+			holder.copyElement(this, index, 0);
+			holder.views = new PlanElement[] { element };
+			element.plan = holder;
+			element.index = 0;
+		}
+		closeGap(index);
+		return removed;
+	}
+
+	private void openGap(int index) {
+		if (this.size == this.kinds.length) {
+			resize(Math.max(INITIAL_CAPACITY, this.size + (this.size >> 1) + 1));
+		}
+		int moved = this.size - index;
+		if (moved > 0) {
+			System.arraycopy(this.kinds, index, this.kinds, index + 1, moved);
+			System.arraycopy(this.types, index, this.types, index + 1, moved);
+			System.arraycopy(this.linkIndices, index, this.linkIndices, index + 1, moved);
+			System.arraycopy(this.facilityIndices, index, this.facilityIndices, index + 1, moved);
+			System.arraycopy(this.coords, 2 * index, this.coords, 2 * index + 2, 2 * moved);
+			System.arraycopy(this.times, TIMES_PER_ELEMENT * index, this.times, TIMES_PER_ELEMENT * (index + 1), TIMES_PER_ELEMENT * moved);
+			if (this.zs != null) {
+				System.arraycopy(this.zs, index, this.zs, index + 1, moved);
+			}
+			if (this.objects != null) {
+				System.arraycopy(this.objects, index, this.objects, index + 1, moved);
+			}
+			if (this.elementAttributes != null) {
+				System.arraycopy(this.elementAttributes, index, this.elementAttributes, index + 1, moved);
+			}
+			if (this.views != null) {
+				System.arraycopy(this.views, index, this.views, index + 1, moved);
+				updateViewIndices(index + 1, this.size + 1);
+			}
+		}
+		this.size++;
+		clearElement(index);
+	}
+
+	private void closeGap(int index) {
+		int moved = this.size - index - 1;
+		if (moved > 0) {
+			System.arraycopy(this.kinds, index + 1, this.kinds, index, moved);
+			System.arraycopy(this.types, index + 1, this.types, index, moved);
+			System.arraycopy(this.linkIndices, index + 1, this.linkIndices, index, moved);
+			System.arraycopy(this.facilityIndices, index + 1, this.facilityIndices, index, moved);
+			System.arraycopy(this.coords, 2 * index + 2, this.coords, 2 * index, 2 * moved);
+			System.arraycopy(this.times, TIMES_PER_ELEMENT * (index + 1), this.times, TIMES_PER_ELEMENT * index, TIMES_PER_ELEMENT * moved);
+			if (this.zs != null) {
+				System.arraycopy(this.zs, index + 1, this.zs, index, moved);
+			}
+			if (this.objects != null) {
+				System.arraycopy(this.objects, index + 1, this.objects, index, moved);
+			}
+			if (this.elementAttributes != null) {
+				System.arraycopy(this.elementAttributes, index + 1, this.elementAttributes, index, moved);
+			}
+			if (this.views != null) {
+				System.arraycopy(this.views, index + 1, this.views, index, moved);
+				this.views[this.size - 1] = null;
+				updateViewIndices(index, this.size - 1);
+			}
+		}
+		this.size--;
+		clearElement(this.size);
+	}
+
+	private void updateViewIndices(int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (this.views[i] instanceof Element) {
+				((Element) this.views[i]).index = i;
+			}
+		}
+	}
+
+	private void clearElement(int index) {
+		this.kinds[index] = 0;
+		this.types[index] = null;
+		this.linkIndices[index] = -1;
+		this.facilityIndices[index] = -1;
+		this.coords[2 * index] = Double.NaN;
+		this.coords[2 * index + 1] = Double.NaN;
+		Arrays.fill(this.times, TIMES_PER_ELEMENT * index, TIMES_PER_ELEMENT * (index + 1), Double.NaN);
+		if (this.zs != null) {
+			this.zs[index] = Double.NaN;
+		}
+		if (this.objects != null) {
+			this.objects[index] = null;
+		}
+		if (this.elementAttributes != null) {
+			this.elementAttributes[index] = null;
+		}
+		if (this.views != null) {
+			this.views[index] = null;
+		}
+	}
+
+	private void resize(int capacity) {
+		this.kinds = Arrays.copyOf(this.kinds, capacity);
+		this.types = Arrays.copyOf(this.types, capacity);
+		this.linkIndices = Arrays.copyOf(this.linkIndices, capacity);
+		this.facilityIndices = Arrays.copyOf(this.facilityIndices, capacity);
+		this.coords = Arrays.copyOf(this.coords, 2 * capacity);
+		this.times = Arrays.copyOf(this.times, TIMES_PER_ELEMENT * capacity);
+		if (this.zs != null) {
+			this.zs = Arrays.copyOf(this.zs, capacity);
+		}
+		if (this.objects != null) {
+			this.objects = Arrays.copyOf(this.objects, capacity);
+		}
+		if (this.elementAttributes != null) {
+			this.elementAttributes = Arrays.copyOf(this.elementAttributes, capacity);
+		}
+		if (this.views != null) {
+			this.views = Arrays.copyOf(this.views, capacity);
+		}
+	}
+
+	private void copyElement(CompactPlanImpl source, int from, int to) {
+		this.kinds[to] = source.kinds[from];
+		this.types[to] = source.types[from];
+		this.linkIndices[to] = source.linkIndices[from];
+		this.facilityIndices[to] = source.facilityIndices[from];
+		this.coords[2 * to] = source.coords[2 * from];
+		this.coords[2 * to + 1] = source.coords[2 * from + 1];
+		System.arraycopy(source.times, TIMES_PER_ELEMENT * from, this.times, TIMES_PER_ELEMENT * to, TIMES_PER_ELEMENT);
+		if (source.zs != null && !Double.isNaN(source.zs[from])) {
+			setZ(to, source.zs[from]);
+		}
+		if (source.objects != null && source.objects[from] != null) {
+			setObject(to, source.objects[from]);
+		}
+		if (source.elementAttributes != null && source.elementAttributes[from] != null) {
+			elementAttributes(to);
+			this.elementAttributes[to] = source.elementAttributes[from];
+		}
+	}
+
+	private void copyActivity(Activity act, int index) {
+		this.types[index] = intern(act.getType());
+		this.linkIndices[index] = act.getLinkId() == null ? -1 : act.getLinkId().index();
+		this.facilityIndices[index] = act.getFacilityId() == null ? -1 : act.getFacilityId().index();
+		setCoord(index, act.getCoord());
+		setTime(index, 0, act.getStartTime());
+		setTime(index, 1, act.getEndTime());
+		setTime(index, 2, act.getMaximumDuration());
+		setElementAttributes(index, act.getAttributes());
+	}
+
+	private void copyLeg(Leg leg, int index) {
+		this.types[index] = intern(leg.getMode());
+		setTime(index, 0, leg.getDepartureTime());
+		setTime(index, 1, leg.getTravelTime());
+		setObject(index, leg.getRoute());
+		setElementAttributes(index, leg.getAttributes());
+	}
+
+	private void setElementAttributes(int index, Attributes attributes) {
+		if (!attributes.isEmpty()) {
+			elementAttributes(index);
+			this.elementAttributes[index] = attributes;
+		}
+	}
+
+	private Attributes elementAttributes(int index) {
+		if (this.elementAttributes == null) {
+			this.elementAttributes = new Attributes[this.kinds.length];
+		}
+		Attributes a = this.elementAttributes[index];
+		if (a == null) {
+			a = new Attributes();
+			this.elementAttributes[index] = a;
+		}
+		return a;
+	}
+
+	private void setObject(int index, Object object) {
+		if (this.objects == null) {
+			if (object == null) {
+				return;
+			}
+			this.objects = new Object[this.kinds.length];
+		}
+		this.objects[index] = object;
+	}
+
+	private void setCoord(int index, Coord coord) {
+		if (coord == null) {
+			this.coords[2 * index] = Double.NaN;
+			this.coords[2 * index + 1] = Double.NaN;
+			setZ(index, Double.NaN);
+		} else {
+			this.coords[2 * index] = coord.getX();
+			this.coords[2 * index + 1] = coord.getY();
+			setZ(index, coord.hasZ() ? coord.getZ() : Double.NaN);
+		}
+	}
+
+	private Coord getCoord(int index) {
+		double x = this.coords[2 * index];
+		if (Double.isNaN(x)) {
+			return null;
+		}
+		double y = this.coords[2 * index + 1];
+		if (this.zs != null && !Double.isNaN(this.zs[index])) {
+			return new Coord(x, y, this.zs[index]);
+		}
+		return new Coord(x, y);
+	}
+
+	private void setZ(int index, double z) {
+		if (this.zs == null) {
+			if (Double.isNaN(z)) {
+				return;
+			}
+			this.zs = new double[this.kinds.length];
+			Arrays.fill(this.zs, Double.NaN);
+		}
+		this.zs[index] = z;
+	}
+
+	private void setTime(int index, int field, OptionalTime time) {
+		this.times[TIMES_PER_ELEMENT * index + field] = time.isDefined() ? time.seconds() : Double.NaN;
+	}
+
+	private OptionalTime getTime(int index, int field) {
+		double time = this.times[TIMES_PER_ELEMENT * index + field];
+		return Double.isNaN(time) ? OptionalTime.undefined() : OptionalTime.defined(time);
+	}
+
+	private void setTime(int index, int field, double seconds) {
+		// OptionalTime checks the value, e.g. that it is not NaN
+		this.times[TIMES_PER_ELEMENT * index + field] = OptionalTime.defined(seconds).seconds();
+	}
+
+	private void setTimeUndefined(int index, int field) {
+		this.times[TIMES_PER_ELEMENT * index + field] = Double.NaN;
+	}
+
+	private static String intern(String s) {
+		return s == null ? null : s.intern();
+	}
+
+	@Override
+	public String toString() {
+		String scoreString = "undefined";
+		if (this.getScore() != null) {
+			scoreString = this.getScore().toString();
+		}
+		String personIdString = "undefined" ;
+		if ( this.getPerson() != null ) {
+			personIdString = this.getPerson().getId().toString() ;
+		}
+
+		return "[score=" + scoreString + "]" +
+				"[nof_acts_legs=" + this.size + "]" +
+				"[type=" + this.type + "]" +
+				"[personId=" + personIdString + "]" ;
+	}
+
+	private final class ElementList extends AbstractList<PlanElement> {
+
+		@Override
+		public PlanElement get(int index) {
+			checkIndex(index, CompactPlanImpl.this.size);
+			return getElement(index);
+		}
+
+		@Override
+		public int size() {
+			return CompactPlanImpl.this.size;
+		}
+
+		@Override
+		public PlanElement set(int index, PlanElement element) {
+			checkIndex(index, CompactPlanImpl.this.size);
+			PlanElement old = removeElement(index);
+			insertElement(index, element);
+			return old;
+		}
+
+		@Override
+		public void add(int index, PlanElement element) {
+			checkIndex(index, CompactPlanImpl.this.size + 1);
+			insertElement(index, element);
+			this.modCount++;
+		}
+
+		@Override
+		public PlanElement remove(int index) {
+			checkIndex(index, CompactPlanImpl.this.size);
+			this.modCount++;
+			return removeElement(index);
+		}
+
+		private void checkIndex(int index, int size) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + CompactPlanImpl.this.size);
+			}
+		}
+	}
+
+	/**
+	 * Base class of the views on the arrays of a plan.
+	 */
+	private static abstract class Element implements PlanElement {
+
+		CompactPlanImpl plan;
+		int index;
+
+		Element(CompactPlanImpl plan, int index) {
+			this.plan = plan;
+			this.index = index;
+		}
+
+		final CompactPlanImpl plan() {
+			if (this.plan == null) {
+				throw new IllegalStateException("The plan of this plan element was compacted, the plan element must be fetched from the plan again.");
+			}
+			return this.plan;
+		}
+
+		@Override
+		public final Attributes getAttributes() {
+			return plan().elementAttributes(this.index);
+		}
+	}
+
+	private static final class ActivityView extends Element implements Activity {
+
+		ActivityView(CompactPlanImpl plan, int index) {
+			super(plan, index);
+		}
+
+		@Override
+		public OptionalTime getEndTime() {
+			return plan().getTime(this.index, 1);
+		}
+
+		@Override
+		public void setEndTime(double seconds) {
+			plan().setTime(this.index, 1, seconds);
+		}
+
+		@Override
+		public void setEndTimeUndefined() {
+			plan().setTimeUndefined(this.index, 1);
+		}
+
+		@Override
+		public String getType() {
+			return plan().types[this.index];
+		}
+
+		@Override
+		public void setType(String type) {
+			plan().types[this.index] = intern(type);
+		}
+
+		@Override
+		public Coord getCoord() {
+			return plan().getCoord(this.index);
+		}
+
+		@Override
+		public void setCoord(Coord coord) {
+			plan().setCoord(this.index, coord);
+		}
+
+		@Override
+		public OptionalTime getStartTime() {
+			return plan().getTime(this.index, 0);
+		}
+
+		@Override
+		public void setStartTime(double seconds) {
+			plan().setTime(this.index, 0, seconds);
+		}
+
+		@Override
+		public void setStartTimeUndefined() {
+			plan().setTimeUndefined(this.index, 0);
+		}
+
+		@Override
+		public OptionalTime getMaximumDuration() {
+			return plan().getTime(this.index, 2);
+		}
+
+		@Override
+		public void setMaximumDuration(double seconds) {
+			plan().setTime(this.index, 2, seconds);
+		}
+
+		@Override
+		public void setMaximumDurationUndefined() {
+			plan().setTimeUndefined(this.index, 2);
+		}
+
+		@Override
+		public Id<Link> getLinkId() {
+			int linkIndex = plan().linkIndices[this.index];
+			return linkIndex < 0 ? null : Id.get(linkIndex, Link.class);
+		}
+
+		@Override
+		public void setLinkId(Id<Link> id) {
+			plan().linkIndices[this.index] = id == null ? -1 : id.index();
+		}
+
+		@Override
+		public Id<ActivityFacility> getFacilityId() {
+			int facilityIndex = plan().facilityIndices[this.index];
+			return facilityIndex < 0 ? null : Id.get(facilityIndex, ActivityFacility.class);
+		}
+
+		@Override
+		public void setFacilityId(Id<ActivityFacility> id) {
+			plan().facilityIndices[this.index] = id == null ? -1 : id.index();
+		}
+
+		@Override
+		public String toString() {
+			return "act [type=" + getType() + "]"
+					+ "[coord=" + getCoord() + "]"
+					+ "[linkId=" + getLinkId() + "]"
+					+ "[startTime=" + Time.writeTime(getStartTime()) + "]"
+					+ "[endTime=" + Time.writeTime(getEndTime()) + "]"
+					+ "[duration=" + Time.writeTime(getMaximumDuration()) + "]"
+					+ "[facilityId=" + getFacilityId() + "]";
+		}
+	}
+
+	private static final class LegView extends Element implements Leg {
+
+		LegView(CompactPlanImpl plan, int index) {
+			super(plan, index);
+		}
+
+		@Override
+		public String getMode() {
+			return plan().types[this.index];
+		}
+
+		@Override
+		public void setMode(String mode) {
+			plan().types[this.index] = intern(mode);
+			TripStructureUtils.setRoutingMode(this, null);
+		}
+
+		@Override
+		public Route getRoute() {
+			CompactPlanImpl plan = plan();
+			return plan.objects == null ? null : (Route) plan.objects[this.index];
+		}
+
+		@Override
+		public void setRoute(Route route) {
+			plan().setObject(this.index, route);
+		}
+
+		@Override
+		public OptionalTime getDepartureTime() {
+			return plan().getTime(this.index, 0);
+		}
+
+		@Override
+		public void setDepartureTime(double seconds) {
+			plan().setTime(this.index, 0, seconds);
+		}
+
+		@Override
+		public void setDepartureTimeUndefined() {
+			plan().setTimeUndefined(this.index, 0);
+		}
+
+		@Override
+		public OptionalTime getTravelTime() {
+			return plan().getTime(this.index, 1);
+		}
+
+		@Override
+		public void setTravelTime(double seconds) {
+			plan().setTime(this.index, 1, seconds);
+		}
+
+		@Override
+		public void setTravelTimeUndefined() {
+			plan().setTimeUndefined(this.index, 1);
+		}
+
+		@Override
+		public String toString() {
+			OptionalTime depTime = getDepartureTime();
+			OptionalTime travTime = getTravelTime();
+			return "leg [mode=" + getMode() + "]"
+					+ "[depTime=" + Time.writeTime(depTime) + "]"
+					+ "[travTime=" + Time.writeTime(travTime) + "]"
+					+ "[arrTime=" + (depTime.isDefined() && travTime.isDefined() ?
+					Time.writeTime(depTime.seconds() + travTime.seconds()) :
+					Time.writeTime(OptionalTime.undefined())) + "]"
+					+ "[route=" + getRoute() + "]";
+		}
+	}
+}
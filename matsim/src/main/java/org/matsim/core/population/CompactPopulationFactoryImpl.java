@@ -0,0 +1,90 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPopulationFactoryImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.facilities.ActivityFacility;
+
+/**
+ * Creates plans which store their plan elements in arrays, see {@link CompactPlanImpl}. The activities and legs
+ * created by this factory are moved into the arrays of the plan they are added to, so they can be used further
+ * after they were added.
+ *
+ * @see org.matsim.core.config.groups.PlansConfigGroup#isCompactPlans()
+ */
+/* deliberately package */ final class CompactPopulationFactoryImpl implements PopulationFactory {
+
+	private final RouteFactories routeFactory;
+
+	CompactPopulationFactoryImpl(RouteFactories routeFactory) {
+		this.routeFactory = routeFactory;
+	}
+
+	@Override
+	public Person createPerson(final Id<Person> id) {
+		return new PersonImpl(id);
+	}
+
+	@Override
+	public Plan createPlan() {
+		return new CompactPlanImpl();
+	}
+
+	@Override
+	public Activity createActivityFromCoord(final String actType, final Coord coord) {
+		Activity act = CompactPlanImpl.createActivity(actType);
+		act.setCoord(coord);
+		return act;
+	}
+
+	@Override
+	public Activity createActivityFromLinkId(final String actType, final Id<Link> linkId) {
+		Activity act = CompactPlanImpl.createActivity(actType);
+		act.setLinkId(linkId);
+		return act;
+	}
+
+	@Override
+	public Activity createActivityFromActivityFacilityId(final String actType, final Id<ActivityFacility> activityFacilityId) {
+		Activity act = CompactPlanImpl.createActivity(actType);
+		act.setFacilityId(activityFacilityId);
+		return act;
+	}
+
+	@Override
+	public Leg createLeg(final String legMode) {
+		return CompactPlanImpl.createLeg(legMode);
+	}
+
+	@Override
+	public RouteFactories getRouteFactories() {
+		return this.routeFactory;
+	}
+
+}
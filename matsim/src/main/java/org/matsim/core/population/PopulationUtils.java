@@ -58,6 +58,7 @@ import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.population.io.PopulationReader;
 import org.matsim.core.population.io.PopulationWriter;
 import org.matsim.core.population.io.StreamingPopulationReader;
+import org.matsim.core.population.routes.CompactNetworkRouteFactory;
 import org.matsim.core.population.routes.CompressedNetworkRouteFactory;
 import org.matsim.core.population.routes.LinkNetworkRouteFactory;
 import org.matsim.core.population.routes.NetworkRoute;
@@ -133,13 +134,31 @@ public final class PopulationUtils {
 			factory = new LinkNetworkRouteFactory();
 		} else if (PlansConfigGroup.NetworkRouteType.CompressedNetworkRoute.equals(networkRouteType) && network != null) {
 			factory = new CompressedNetworkRouteFactory(network);
+		} else if (PlansConfigGroup.NetworkRouteType.CompactNetworkRoute.equals(networkRouteType)) {
+			factory = new CompactNetworkRouteFactory();
 		} else {
 			throw new IllegalArgumentException("The type \"" + networkRouteType + "\" is not a supported type for network routes.");
 		}
 		routeFactory.setRouteFactory(NetworkRoute.class, factory);
+		if (plansConfigGroup.isCompactPlans()) {
+			return new PopulationImpl(new CompactPopulationFactoryImpl(routeFactory));
+		}
 		return new PopulationImpl(new PopulationFactoryImpl(routeFactory));
 	}
 
+	/**
+	 * Copies the plan elements of all plans created with {@link org.matsim.core.config.groups.PlansConfigGroup#isCompactPlans()}
+	 * into their arrays and releases the objects used while the plans were modified. Plan elements fetched from these
+	 * plans before must not be used afterwards. Other plans are not changed.
+	 */
+	public static void compactPlans(Person person) {
+		for (Plan plan : person.getPlans()) {
+			if (plan instanceof CompactPlanImpl) {
+				((CompactPlanImpl) plan).compact();
+			}
+		}
+	}
+
 	//	public static Population createStreamingPopulation(PlansConfigGroup plansConfigGroup, Network network) {
 	//		// yyyy my intuition would be to rather get this out of a standard scenario. kai, jun'16
 	//		RouteFactories routeFactory = new RouteFactories();
@@ -0,0 +1,297 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.vehicles.Vehicle;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Parallel implementation of the {@link PopulationReaderMatsimV6}. The main thread parses the
+ * file, creates the persons and collects the tags of each person. The plans, routes and attributes
+ * of the persons are built from these tags by worker threads. The finished persons are added to the
+ * population by the main thread in the order of the file, so the population is the same as with the
+ * sequential reader, and this also works with population streaming.
+ * <p></p>
+ * The index of an {@link Id} depends on the order in which the ids are created, and defines the iteration
+ * order of e.g. {@link org.matsim.api.core.v01.IdMap}. The main thread thus also creates the ids of the links,
+ * facilities, vehicles and routes of the persons, in the same order as the sequential reader, so the workers
+ * only look them up. Ids created by attribute converters are not covered by this.
+ *
+ * @see ParallelPopulationReaderMatsimV4
+ */
+/* deliberately package */ class ParallelPopulationReaderMatsimV6 extends PopulationReaderMatsimV6 {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationReaderMatsimV6.class);
+
+	private final static String PERSON = "person";
+	private final static String ACT = "activity";
+	private final static String LEG = "leg";
+	private final static String ROUTE = "route";
+	/*package*/ final static int MAX_PENDING_PERSONS_PER_THREAD = 1000;
+
+	private final Scenario scenario;
+	private final int numberOfThreads;
+	private final Map<Class<?>, AttributeConverter<?>> attributeConverters = new HashMap<>();
+	private final Deque<Future<Person>> pendingPersons = new ArrayDeque<>();
+
+	private ExecutorService executor = null;
+	private ThreadLocal<PersonReader> personReaders = null;
+	private Person currentPerson = null;
+	private List<Tag> currentPersonTags = null;
+	private Stack<String> currentPersonContext = null;
+	private String currentLegMode = null;
+	private Route currentRoute = null;
+
+	ParallelPopulationReaderMatsimV6(
+			final String inputCRS,
+			final String targetCRS,
+			final Scenario scenario,
+			final int numberOfThreads) {
+		super(inputCRS, targetCRS, scenario);
+		this.scenario = scenario;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	@Override
+	public void putAttributeConverter(final Class<?> clazz, final AttributeConverter<?> converter) {
+		super.putAttributeConverter(clazz, converter);
+		this.attributeConverters.put(clazz, converter);
+	}
+
+	@Override
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		super.putAttributeConverters(converters);
+		this.attributeConverters.putAll(converters);
+	}
+
+	@Override
+	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+		if (this.currentPersonTags == null && PERSON.equals(name)) {
+			if (this.executor == null) {
+				initThreads();
+			}
+			this.currentPerson = createPerson(atts);
+			this.currentPersonTags = new ArrayList<>();
+			this.currentPersonContext = new Stack<>();
+			this.currentPersonContext.addAll(context);
+		} else if (this.currentPersonTags != null) {
+			createIds(name, atts);
+		}
+		if (this.currentPersonTags != null) {
+			// the attributes have to be copied because the object is re-used by the parser
+			this.currentPersonTags.add(new Tag(name, new AttributesImpl(atts), null));
+		} else {
+			super.startTag(name, atts, context);
+		}
+	}
+
+	@Override
+	public void endTag(final String name, final String content, final Stack<String> context) {
+		if (this.currentPersonTags != null) {
+			this.currentPersonTags.add(new Tag(name, null, content));
+			if (ROUTE.equals(name) && this.currentRoute != null) {
+				// creates the ids of the route description, e.g. the links of a network route
+				this.currentRoute.setRouteDescription(content.trim());
+				this.currentRoute = null;
+			}
+			if (PERSON.equals(name) && context.size() == this.currentPersonContext.size()) {
+				final Person person = this.currentPerson;
+				final List<Tag> tags = this.currentPersonTags;
+				final Stack<String> personContext = this.currentPersonContext;
+				this.pendingPersons.add(this.executor.submit(() -> this.personReaders.get().read(person, tags, personContext)));
+				this.currentPerson = null;
+				this.currentPersonTags = null;
+				this.currentPersonContext = null;
+				addFinishedPersons(false);
+			}
+		} else {
+			super.endTag(name, content, context);
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		if (this.executor != null) {
+			try {
+				addFinishedPersons(true);
+			} finally {
+				this.executor.shutdownNow();
+				this.executor = null;
+			}
+			log.info("Finished parallel population reading...");
+		}
+		super.endDocument();
+	}
+
+	/**
+	 * Creates the ids of a tag within a person in the same order as {@link PopulationReaderMatsimV6}.
+	 */
+	private void createIds(final String name, final Attributes atts) {
+		switch (name) {
+			case ACT:
+				if (atts.getValue("link") != null) {
+					Id.create(atts.getValue("link"), Link.class);
+				}
+				if (atts.getValue("facility") != null) {
+					Id.create(atts.getValue("facility"), ActivityFacility.class);
+				}
+				break;
+			case LEG:
+				this.currentLegMode = atts.getValue("mode");
+				break;
+			case ROUTE:
+				String routeType = atts.getValue("type");
+				if (routeType == null) {
+					routeType = "pt".equals(this.currentLegMode) ? "experimentalPt1" : "car".equals(this.currentLegMode) ? "links" : "generic";
+				}
+				RouteFactories factories = this.scenario.getPopulation().getFactory().getRouteFactories();
+				Class<? extends Route> routeClass = factories.getRouteClassForType(routeType);
+				String startLinkId = atts.getValue("start_link");
+				String endLinkId = atts.getValue("end_link");
+				// a route only used for creating the ids of its description, see endTag
+				this.currentRoute = factories.createRoute(routeClass, startLinkId == null ? null : Id.create(startLinkId, Link.class),
+						endLinkId == null ? null : Id.create(endLinkId, Link.class));
+				String vehicleRefId = atts.getValue("vehicleRefId");
+				if (vehicleRefId != null && !vehicleRefId.equals("null") && this.currentRoute instanceof NetworkRoute) {
+					Id.create(vehicleRefId, Vehicle.class);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void initThreads() {
+		log.info("Start parallel population reading with " + this.numberOfThreads + " threads...");
+		// the population attributes, which may define the coordinate transformation, are read before the first person
+		final CoordinateTransformation coordinateTransformation = getCoordinateTransformation();
+		this.personReaders = ThreadLocal.withInitial(() -> new PersonReader(this.scenario, coordinateTransformation, this.attributeConverters));
+		this.executor = Executors.newFixedThreadPool(this.numberOfThreads, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.setName(ParallelPopulationReaderMatsimV6.class.getSimpleName() + "-" + thread.getId());
+			return thread;
+		});
+	}
+
+	/**
+	 * Adds the persons which are finished, in the order of the file. Waits for the persons if
+	 * too many are pending, or if <code>all</code> is true.
+	 */
+	private void addFinishedPersons(boolean all) {
+		while (!this.pendingPersons.isEmpty() && (all || this.pendingPersons.peek().isDone()
+				|| this.pendingPersons.size() > this.numberOfThreads * MAX_PENDING_PERSONS_PER_THREAD)) {
+			try {
+				addPerson(this.pendingPersons.poll().get());
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	private static final class Tag {
+		private final String name;
+		private final Attributes atts; // null for end tags
+		private final String content;
+
+		Tag(String name, Attributes atts, String content) {
+			this.name = name;
+			this.atts = atts;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Builds the plans and attributes of one person at a time from its tags. There is one instance per worker thread.
+	 */
+	private static final class PersonReader extends PopulationReaderMatsimV6 {
+
+		private Person createdPerson = null;
+		private Person person = null;
+
+		PersonReader(Scenario scenario, CoordinateTransformation coordinateTransformation, Map<Class<?>, AttributeConverter<?>> attributeConverters) {
+			super(null, null, scenario);
+			setCoordinateTransformation(coordinateTransformation);
+			putAttributeConverters(attributeConverters);
+		}
+
+		Person read(Person createdPerson, List<Tag> tags, Stack<String> personContext) {
+			this.createdPerson = createdPerson;
+			// replays the tags with the same context as the parser would pass
+			Stack<String> context = new Stack<>();
+			context.addAll(personContext);
+			for (Tag tag : tags) {
+				if (tag.atts != null) {
+					startTag(tag.name, tag.atts, context);
+					context.push(tag.name);
+				} else {
+					context.pop();
+					endTag(tag.name, tag.content, context);
+				}
+			}
+			Person read = this.person;
+			this.person = null;
+			this.createdPerson = null;
+			return read;
+		}
+
+		@Override
+		Person createPerson(Attributes atts) {
+			// the person is created by the main thread
+			return this.createdPerson;
+		}
+
+		@Override
+		void addPerson(Person person) {
+			this.person = person;
+		}
+	}
+}
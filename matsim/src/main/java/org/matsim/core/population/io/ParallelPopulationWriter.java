@@ -0,0 +1,222 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.api.internal.MatsimWriter;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.core.utils.misc.Counter;
+import org.matsim.utils.objectattributes.AttributeConverter;
+
+/**
+ * Writes a population in the format of population_v6.dtd using several threads.
+ *
+ * <p>The persons are split into blocks of consecutive persons, which are formatted by worker threads.
+ * If the file name ends with <code>.gz</code>, every block is also compressed by the worker thread
+ * into an independent gzip member. A file of concatenated gzip members is a valid gzip file, which
+ * can be read by {@link java.util.zip.GZIPInputStream} and thus by all MATSim readers. For other
+ * extensions, the formatted blocks are passed to the stream from {@link IOUtils#getOutputStream},
+ * so only the formatting is done in parallel.</p>
+ *
+ * <p>The blocks are written in order, so the (uncompressed) output is identical to the one of the
+ * {@link PopulationWriter}. At most {@link #MAX_PENDING_BLOCKS_PER_THREAD} blocks per thread are held
+ * in memory at any time.</p>
+ */
+public final class ParallelPopulationWriter implements MatsimWriter {
+
+	private static final Logger log = Logger.getLogger(ParallelPopulationWriter.class);
+
+	/*package*/ static final int PERSONS_PER_BLOCK = 500;
+	/*package*/ static final int MAX_PENDING_BLOCKS_PER_THREAD = 4;
+
+	private final CoordinateTransformation coordinateTransformation;
+	private final Population population;
+	private final int numberOfThreads;
+	private final Map<Class<?>, AttributeConverter<?>> converters = new HashMap<>();
+
+	public ParallelPopulationWriter(final Population population, final int numberOfThreads) {
+		this(new IdentityTransformation(), population, numberOfThreads);
+	}
+
+	/**
+	 * @param coordinateTransformation transformation from the internal CRS to the CRS in which the file should be written
+	 * @param population the population to write to file
+	 * @param numberOfThreads the number of threads formatting and compressing the persons
+	 */
+	public ParallelPopulationWriter(final CoordinateTransformation coordinateTransformation, final Population population, final int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("number of threads must be at least 1, but is " + numberOfThreads);
+		}
+		this.coordinateTransformation = coordinateTransformation;
+		this.population = population;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.converters.putAll(converters);
+	}
+
+	public void putAttributeConverter(Class<?> key, AttributeConverter<?> converter) {
+		this.converters.put(key, converter);
+	}
+
+	/**
+	 * Writes all persons to the file.
+	 */
+	@Override
+	public void write(final String filename) {
+		final boolean gzip = filename.toLowerCase(Locale.ROOT).endsWith(".gz");
+		try {
+			OutputStream out = gzip
+					? new BufferedOutputStream(new FileOutputStream(new File(filename)))
+					: IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false);
+			write(out, gzip);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info("Population written to: " + filename);
+	}
+
+	/**
+	 * Writes all persons uncompressed to the output stream and closes it.
+	 */
+	public void write(final OutputStream stream) {
+		write(stream, false);
+	}
+
+	private void write(final OutputStream out, final boolean gzip) {
+		Counter counter = new Counter("[" + this.getClass().getSimpleName() + "] dumped person # ");
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			thread.setName(ParallelPopulationWriter.class.getSimpleName() + "-" + thread.getId());
+			return thread;
+		});
+		ThreadLocal<PopulationWriterHandler> handlers = ThreadLocal.withInitial(this::createHandler);
+		Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+		int maxPendingBlocks = this.numberOfThreads * MAX_PENDING_BLOCKS_PER_THREAD;
+		try (OutputStream o = out) {
+			PopulationWriterHandler handler = createHandler();
+			o.write(toBytes(gzip, writer -> {
+				handler.writeHeaderAndStartElement(writer);
+				handler.startPlans(this.population, writer);
+				handler.writeSeparator(writer);
+			}));
+
+			List<Person> block = new ArrayList<>(PERSONS_PER_BLOCK);
+			for (Person person : PopulationUtils.getSortedPersons(this.population).values()) {
+				block.add(person);
+				counter.incCounter();
+				if (block.size() == PERSONS_PER_BLOCK) {
+					pendingBlocks.add(submitBlock(executor, handlers, block, gzip));
+					block = new ArrayList<>(PERSONS_PER_BLOCK);
+					writeFinishedBlocks(o, pendingBlocks, maxPendingBlocks);
+				}
+			}
+			if (!block.isEmpty()) {
+				pendingBlocks.add(submitBlock(executor, handlers, block, gzip));
+			}
+			writeFinishedBlocks(o, pendingBlocks, 0);
+
+			o.write(toBytes(gzip, handler::endPlans));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			executor.shutdownNow();
+			counter.printCounter();
+		}
+	}
+
+	private PopulationWriterHandler createHandler() {
+		PopulationWriterHandler handler = new PopulationWriterHandlerImplV6(this.coordinateTransformation);
+		handler.putAttributeConverters(this.converters);
+		return handler;
+	}
+
+	private static Future<byte[]> submitBlock(ExecutorService executor, ThreadLocal<PopulationWriterHandler> handlers, List<Person> persons, boolean gzip) {
+		return executor.submit(() -> toBytes(gzip, writer -> {
+			PopulationWriterHandler handler = handlers.get();
+			for (Person person : persons) {
+				handler.writePerson(person, writer);
+			}
+		}));
+	}
+
+	/**
+	 * Writes the finished blocks in order, and waits for blocks until at most <code>maxPendingBlocks</code> are pending.
+	 */
+	private static void writeFinishedBlocks(OutputStream out, Deque<Future<byte[]>> pendingBlocks, int maxPendingBlocks) throws IOException {
+		while (!pendingBlocks.isEmpty() && (pendingBlocks.peek().isDone() || pendingBlocks.size() > maxPendingBlocks)) {
+			try {
+				out.write(pendingBlocks.poll().get());
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof UncheckedIOException) {
+					throw (UncheckedIOException) e.getCause();
+				}
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	private static byte[] toBytes(boolean gzip, BlockWriter blockWriter) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(gzip ? new GZIPOutputStream(bytes, 1 << 16) : bytes, IOUtils.CHARSET_UTF8))) {
+			blockWriter.write(writer);
+		}
+		return bytes.toByteArray();
+	}
+
+	private interface BlockWriter {
+		void write(BufferedWriter writer) throws IOException;
+	}
+}
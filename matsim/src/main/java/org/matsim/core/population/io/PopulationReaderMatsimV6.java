@@ -197,7 +197,7 @@ import com.google.inject.Inject;
 	public void endTag(final String name, final String content, final Stack<String> context) {
 		switch ( name ) {
 			case PERSON:
-				this.plans.addPerson(this.currperson);
+				addPerson(this.currperson);
 				this.currperson = null;
 				break;
 			case ATTRIBUTE:
@@ -233,12 +233,31 @@ import com.google.inject.Inject;
 		}
 	}
 
+	/**
+	 * Called for every completely read person.
+	 */
+	/*package*/ void addPerson(final Person person) {
+		this.plans.addPerson(person);
+	}
+
+	/*package*/ CoordinateTransformation getCoordinateTransformation() {
+		return this.coordinateTransformation;
+	}
+
+	/*package*/ void setCoordinateTransformation(final CoordinateTransformation coordinateTransformation) {
+		this.coordinateTransformation = coordinateTransformation;
+	}
+
 	private void startPopulation(final Attributes atts) {
 		this.plans.setName(atts.getValue(ATTR_POPULATION_DESC));
 	}
 
 	private void startPerson(final Attributes atts) {
-		this.currperson = PopulationUtils.getFactory().createPerson(Id.create(atts.getValue(ATTR_PERSON_ID), Person.class));
+		this.currperson = createPerson(atts);
+	}
+
+	/*package*/ Person createPerson(final Attributes atts) {
+		return PopulationUtils.getFactory().createPerson(Id.create(atts.getValue(ATTR_PERSON_ID), Person.class));
 	}
 
 	private void startPlan(final Attributes atts) {
@@ -0,0 +1,265 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactNetworkRouteImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Implementation of {@link NetworkRoute} which stores the links as <code>int</code> array of
+ * {@link Id#index() link indices}, and the times and distances as primitive values. Compared to
+ * {@link LinkNetworkRouteImpl}, this saves the list objects and the travel time object.
+ *
+ * @see CompactNetworkRouteFactory
+ */
+final class CompactNetworkRouteImpl implements NetworkRoute, Cloneable {
+
+	private static final int[] NO_LINKS = new int[0];
+
+	private int startLinkIndex;
+	private int endLinkIndex;
+	private int[] linkIndices = NO_LINKS;
+	private double distance = Double.NaN;
+	private double travelTime = Double.NaN; // NaN means undefined
+	private double travelCost = Double.NaN;
+	private Id<Vehicle> vehicleId = null;
+
+	CompactNetworkRouteImpl(final Id<Link> startLinkId, final Id<Link> endLinkId) {
+		this.startLinkIndex = index(startLinkId);
+		this.endLinkIndex = index(endLinkId);
+	}
+
+	private static int index(Id<Link> linkId) {
+		return linkId == null ? -1 : linkId.index();
+	}
+
+	private static Id<Link> linkId(int index) {
+		return index < 0 ? null : Id.get(index, Link.class);
+	}
+
+	@Override
+	public double getDistance() {
+		return this.distance;
+	}
+
+	@Override
+	public void setDistance(final double distance) {
+		this.distance = distance;
+	}
+
+	@Override
+	public OptionalTime getTravelTime() {
+		return Double.isNaN(this.travelTime) ? OptionalTime.undefined() : OptionalTime.defined(this.travelTime);
+	}
+
+	@Override
+	public void setTravelTime(final double travelTime) {
+		this.travelTime = OptionalTime.defined(travelTime).seconds();
+	}
+
+	@Override
+	public void setTravelTimeUndefined() {
+		this.travelTime = Double.NaN;
+	}
+
+	@Override
+	public Id<Link> getStartLinkId() {
+		return linkId(this.startLinkIndex);
+	}
+
+	@Override
+	public Id<Link> getEndLinkId() {
+		return linkId(this.endLinkIndex);
+	}
+
+	@Override
+	public void setStartLinkId(final Id<Link> linkId) {
+		this.startLinkIndex = index(linkId);
+	}
+
+	@Override
+	public void setEndLinkId(final Id<Link> linkId) {
+		this.endLinkIndex = index(linkId);
+	}
+
+	@Override
+	public void setLinkIds(final Id<Link> startLinkId, final List<Id<Link>> linkIds, final Id<Link> endLinkId) {
+		setStartLinkId(startLinkId);
+		setEndLinkId(endLinkId);
+		if (linkIds == null || linkIds.isEmpty()) {
+			this.linkIndices = NO_LINKS;
+		} else {
+			int[] indices = new int[linkIds.size()];
+			int i = 0;
+			for (Id<Link> linkId : linkIds) {
+				indices[i++] = linkId.index();
+			}
+			this.linkIndices = indices;
+		}
+	}
+
+	/**
+	 * @return an unmodifiable view of the links, without start and end link
+	 */
+	@Override
+	public List<Id<Link>> getLinkIds() {
+		final int[] indices = this.linkIndices;
+		return new AbstractList<Id<Link>>() {
+			@Override
+			public Id<Link> get(int index) {
+				return Id.get(indices[index], Link.class);
+			}
+
+			@Override
+			public int size() {
+				return indices.length;
+			}
+		};
+	}
+
+	@Override
+	public NetworkRoute getSubRoute(final Id<Link> fromLinkId, final Id<Link> toLinkId) {
+		// same semantics as LinkNetworkRouteImpl.getSubRoute, but on the link indices
+		final int from = fromLinkId.index();
+		final int to = toLinkId.index();
+		final int[] route = this.linkIndices;
+		int fromIndex = -1;
+		int toIndex = -1;
+
+		if (from == this.startLinkIndex) {
+			fromIndex = 0;
+		} else {
+			for (int i = 0; (i < route.length) && (fromIndex < 0); i++) {
+				if (from == route[i]) {
+					fromIndex = i + 1;
+				}
+			}
+			if (fromIndex < 0 && from == this.endLinkIndex) {
+				fromIndex = route.length;
+			}
+			if (fromIndex < 0) {
+				throw new IllegalArgumentException("Cannot create subroute because fromLinkId is not part of the route.");
+			}
+		}
+
+		if (from == to) {
+			toIndex = fromIndex - 1;
+		} else {
+			for (int i = fromIndex; (i < route.length) && (toIndex < 0); i++) {
+				if (from == route[i]) {
+					fromIndex = i + 1; // in case of a loop, cut it short
+				}
+				if (to == route[i]) {
+					toIndex = i;
+				}
+			}
+			if (toIndex < 0 && to == this.endLinkIndex) {
+				toIndex = route.length;
+			}
+			if (toIndex < 0) {
+				throw new IllegalArgumentException("Cannot create subroute because toLinkId is not part of the route.");
+			}
+		}
+		CompactNetworkRouteImpl ret = new CompactNetworkRouteImpl(fromLinkId, toLinkId);
+		if (toIndex > fromIndex) {
+			ret.linkIndices = Arrays.copyOfRange(route, fromIndex, toIndex);
+		}
+		return ret;
+	}
+
+	@Override
+	public double getTravelCost() {
+		return this.travelCost;
+	}
+
+	@Override
+	public void setTravelCost(final double travelCost) {
+		this.travelCost = travelCost;
+	}
+
+	@Override
+	public Id<Vehicle> getVehicleId() {
+		return this.vehicleId;
+	}
+
+	@Override
+	public void setVehicleId(final Id<Vehicle> vehicleId) {
+		this.vehicleId = vehicleId;
+	}
+
+	@Override
+	public String getRouteDescription() {
+		StringBuilder desc = new StringBuilder(100);
+		desc.append(this.getStartLinkId().toString());
+		for (int index : this.linkIndices) {
+			desc.append(" ");
+			desc.append(linkId(index).toString());
+		}
+		// If the start links equals the end link additionally check if its is a round trip.
+		if (this.endLinkIndex != this.startLinkIndex || this.linkIndices.length > 0) {
+			desc.append(" ");
+			desc.append(this.getEndLinkId().toString());
+		}
+		return desc.toString();
+	}
+
+	@Override
+	public void setRouteDescription(final String routeDescription) {
+		List<Id<Link>> linkIds = NetworkUtils.getLinkIds(routeDescription);
+		Id<Link> startLinkId = getStartLinkId();
+		Id<Link> endLinkId = getEndLinkId();
+		if (linkIds.size() > 0) {
+			startLinkId = linkIds.remove(0);
+		}
+		if (linkIds.size() > 0) {
+			endLinkId = linkIds.remove(linkIds.size() - 1);
+		}
+		this.setLinkIds(startLinkId, linkIds, endLinkId);
+	}
+
+	@Override
+	public String getRouteType() {
+		return LinkNetworkRouteImpl.ROUTE_TYPE;
+	}
+
+	@Override
+	public CompactNetworkRouteImpl clone() {
+		try {
+			// the link array is never modified, only replaced, so it can be shared
+			return (CompactNetworkRouteImpl) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return " startLinkId=" + getStartLinkId() + " endLinkId=" + getEndLinkId() + " travTime=" + getTravelTime()
+				+ " dist=" + this.distance + " linkIds=" + getLinkIds() + " travelCost=" + this.travelCost;
+	}
+}
@@ -22,12 +22,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationProfiler;
 import org.matsim.api.core.v01.population.BasicPlan;
 import org.matsim.api.core.v01.population.HasPlansAndId;
 import org.matsim.api.core.v01.population.Population;
@@ -72,11 +74,20 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 
 	private PlanSelector<PL, AG> removalPlanSelector = new GenericWorstPlanForRemovalSelector<>();
 
+	private IterationProfiler profiler = null;
+
 //	private String subpopulationAttributeName = null;
 	
 	public GenericStrategyManager() {
 	}
 
+	/**
+	 * Measures how long each strategy needs to finish its work, i.e. to run its modules.
+	 */
+	public final void setProfiler(IterationProfiler profiler) {
+		this.profiler = profiler;
+	}
+
 //	/**
 //	 * @param name the name of the subpopulation attribute
 //	 * in the person's object attributes.
@@ -194,6 +205,12 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 			strategy.init(replanningContext);
 		}
 
+		// the time of a strategy is the time of its calls for every person and of finishing it
+		Map<GenericPlanStrategy<PL, AG>, IterationProfiler.Accumulator> runTimes = null;
+		if (this.profiler != null && this.profiler.isRecording()) {
+			runTimes = new IdentityHashMap<>();
+		}
+
 		// then go through the population and ...
 		for (HasPlansAndId<PL, AG> person : persons ) {
 
@@ -215,12 +232,23 @@ public class GenericStrategyManager<PL extends BasicPlan, AG extends HasPlansAnd
 			}
 			
 			// ... and run the strategy:
-			strategy.run(person);
+			if (runTimes == null) {
+				strategy.run(person);
+			} else {
+				IterationProfiler.Accumulator runTime = runTimes.computeIfAbsent(strategy, s -> this.profiler.createAccumulator());
+				runTime.begin();
+				strategy.run(person);
+				runTime.end();
+			}
 		}
 
 		// finally make sure all strategies have finished there work
 		for (GenericPlanStrategy<PL, AG> strategy : distinctStrategies()) {
+			IterationProfiler.Measurement measurement = this.profiler == null ? null : this.profiler.start("replanningStrategy", strategy.toString());
 			strategy.finish();
+			if (this.profiler != null) {
+				this.profiler.stop(measurement, runTimes == null ? null : runTimes.get(strategy));
+			}
 		}
 
 	}
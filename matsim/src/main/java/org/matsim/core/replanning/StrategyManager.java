@@ -21,6 +21,7 @@
 package org.matsim.core.replanning;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.IterationProfiler;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
@@ -91,6 +92,11 @@ public class StrategyManager implements MatsimManager {
 		this.delegate = new GenericStrategyManager<>();
 	}
 
+	@com.google.inject.Inject(optional = true)
+	void setProfiler(IterationProfiler profiler) {
+		this.delegate.setProfiler(profiler);
+	}
+
 //	/**
 //	 * @param name the name of the subpopulation attribute
 //	 * in the person's object attributes.
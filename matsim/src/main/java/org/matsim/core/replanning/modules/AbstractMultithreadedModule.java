@@ -24,13 +24,20 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.replanning.PlanStrategyModule;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningPlanDistribution;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
-import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -40,15 +47,31 @@ import java.util.concurrent.atomic.AtomicReference;
  * Just overwrite getPlanAlgoInstance() to return an instance of your plan
  * algorithm.
  * <p></p>
- * <code>initThreads()</code> creates the threads, but does not yet start them.
+ * <code>prepareReplanning()</code> creates one plan algorithm instance per thread.
  * <p></p>
- * <code>handlePlan(Plan)</code> distributes the plans equally to all threads.
+ * <code>handlePlan(Plan)</code> collects the plans.
  * <p></p>
- * <code>finishReplanning()</code> finally starts the threads and waits for all threads to be finished.
+ * <code>finishReplanning()</code> finally hands the plans to the threads and waits until all plans are handled.
  * <p></p>
- * While this approach does not lead to optimal performance gains ("slow threads" vs.
- * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
- * started after all to-be-handled plans are added, we can use unsynchronized data structures.
+ * The threads are taken from a pool shared by all modules with the same number of threads, which is kept
+ * over the iterations (see {@link ReplanningExecutor}).  How the plans are distributed over the plan algorithm
+ * instances depends on {@link GlobalConfigGroup#getReplanningPlanDistribution()}:<ul>
+ * <li> <code>roundRobin</code> (default): the plans are distributed equally to all instances.  While this
+ * approach does not lead to optimal performance gains ("slow threads" vs. "fast threads"), it helps building
+ * reproducible runs.</li>
+ * <li> <code>workStealing</code>: the plans are split into small chunks, every chunk is handled by an instance
+ * that is currently not in use.  Idle threads steal chunks from busy ones, so expensive plans no longer
+ * delay the whole module, but which instance handles a plan differs from run to run.</li>
+ * <li> <code>pipelined</code>: the plans are assigned to the instances as with <code>roundRobin</code>, so runs stay
+ * reproducible, but every instance starts handling its plans as soon as they arrive in <code>handlePlan(Plan)</code>.
+ * For the first module of a strategy, this overlaps the module with the plan selection of the other persons.
+ * This requires that the plan algorithms only look at the plan they are given and at its person.</li>
+ * </ul>
+ * In all cases, an instance is only used by one thread at a time.  Except in the pipelined mode, the plans are only
+ * handed to the threads after all to-be-handled plans are added, so unsynchronized data structures can be used.
+ * <p></p>
+ * After every run, the throughput and the imbalance (the busy time of the busiest instance divided by the
+ * average busy time) are written to the log.
  * <p></p>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
@@ -58,20 +81,33 @@ import java.util.concurrent.atomic.AtomicReference;
  * @author mrieser
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
+	/**
+	 * In work stealing mode, the plans are split into about this many chunks per thread, but not into
+	 * chunks larger than {@link #MAX_CHUNK_SIZE}.
+	 */
+	private static final int CHUNKS_PER_THREAD = 8;
+	private static final int MAX_CHUNK_SIZE = 100;
+
 	private final int numOfThreads;
+	private final ReplanningPlanDistribution planDistribution;
 
-	private PlanAlgoThread[] algothreads = null;
-	private Thread[] threads = null;
+	private PlanAlgorithm[] algos = null;
+	private List<Plan> plans = null;
+	private Counter counter = null;
 	private PlanAlgorithm directAlgo = null;
 	private String name = null;
 
-	private int count = 0;
+	private PipelinedInstance[] pipelinedInstances = null;
+	private final Object pipelineLock = new Object();
+	private int pendingPlans = 0;
+	private long pipelineStartNanos = 0;
 
 	private final AtomicReference<Throwable> hadException = new AtomicReference<>(null);
-	private final ExceptionHandler exceptionHandler = new ExceptionHandler(this.hadException);
 
 	private ReplanningContext replanningContext;
 
+	private long[] lastBusyNanos = null;
+
 	static final private Logger log = Logger.getLogger(AbstractMultithreadedModule.class);
 
 	/**
@@ -83,11 +119,16 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	abstract public PlanAlgorithm getPlanAlgoInstance();
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
-		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this(globalConfigGroup.getNumberOfThreads(), globalConfigGroup.getReplanningPlanDistribution());
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, ReplanningPlanDistribution.roundRobin);
+	}
+
+	public AbstractMultithreadedModule(final int numOfThreads, final ReplanningPlanDistribution planDistribution) {
 		this.numOfThreads = numOfThreads;
+		this.planDistribution = planDistribution;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -106,7 +147,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 			// it seems, no threads are desired :(
 			this.directAlgo = getPlanAlgoInstance();
 		} else {
-			initThreads();
+			initAlgos();
 		}
 		this.afterPrepareReplanningHook(replanningContextTmp);
 	}
@@ -117,9 +158,14 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	@Override
 	public final void handlePlan(final Plan plan) {
-		if (this.directAlgo == null) {
-			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
-			this.count++;
+		if (this.pipelinedInstances != null) {
+			synchronized (this.pipelineLock) {
+				this.pendingPlans++;
+			}
+			this.pipelinedInstances[this.plans.size() % this.numOfThreads].add(plan);
+			this.plans.add(plan);
+		} else if (this.directAlgo == null) {
+			this.plans.add(plan);
 		} else {
 			this.directAlgo.run(plan);
 		}
@@ -137,59 +183,122 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		this.beforeFinishReplanningHook();
 		
 		if (this.directAlgo == null) {
-			// only try to start threads if we did not directly work on all the plans
-			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
-
-			// start threads
-			for (Thread thread : this.threads) {
-				thread.start();
-			}
-
-			// wait until each thread is finished
-			try {
-				for (Thread thread : this.threads) {
-					thread.join();
+			// only use the threads if we did not directly work on all the plans
+			log.info("[" + this.name + "] handling " + this.plans.size() + " plans with " + this.numOfThreads + " threads (" + this.planDistribution + ")");
+
+			long[] busyNanos = new long[this.numOfThreads];
+			long start = System.nanoTime();
+			if (this.pipelinedInstances != null) {
+				start = this.pipelineStartNanos;
+				waitForPipelinedPlans();
+				for (int i = 0; i < this.numOfThreads; i++) {
+					busyNanos[i] = this.pipelinedInstances[i].busyNanos;
+				}
+			} else {
+				ForkJoinPool pool = ReplanningExecutor.getPool(this.numOfThreads);
+				if (this.planDistribution == ReplanningPlanDistribution.workStealing) {
+					pool.invoke(new ChunkedTask(busyNanos));
+				} else {
+					pool.invoke(new RoundRobinTask(busyNanos));
 				}
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e);
 			}
-			log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
+			long wallNanos = System.nanoTime() - start;
+			logStatistics(busyNanos, wallNanos);
+
 			Throwable throwable = this.hadException.get();
 			if (throwable != null) {
 				throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
 			}
 		}
 		// reset
-		this.algothreads = null;
-		this.threads = null;
+		this.algos = null;
+		this.plans = null;
+		this.pipelinedInstances = null;
+		this.counter = null;
 		this.replanningContext = null;
-		this.count = 0;
 		
 		this.afterFinishReplanningHook();
 	}
 
-	private void initThreads() {
-		if (this.threads != null) {
+	private void initAlgos() {
+		if (this.algos != null) {
 			throw new RuntimeException("threads are already initialized");
 		}
 
 		this.hadException.set(null);
-		this.threads = new Thread[this.numOfThreads];
-		this.algothreads = new PlanAlgoThread[this.numOfThreads];
+		this.algos = new PlanAlgorithm[this.numOfThreads];
+		this.plans = new ArrayList<>();
 
-		Counter counter = null;
-		// setup threads
 		for (int i = 0; i < this.numOfThreads; i++) {
 			PlanAlgorithm algo = getPlanAlgoInstance();
 			if (i == 0) {
 				this.name = algo.getClass().getSimpleName();
-				counter = new Counter("[" + this.name + "] handled plan # ");
+				this.counter = new Counter("[" + this.name + "] handled plan # ");
+			}
+			this.algos[i] = algo;
+		}
+
+		if (this.planDistribution == ReplanningPlanDistribution.pipelined) {
+			ForkJoinPool pool = ReplanningExecutor.getPool(this.numOfThreads);
+			this.pipelinedInstances = new PipelinedInstance[this.numOfThreads];
+			for (int i = 0; i < this.numOfThreads; i++) {
+				this.pipelinedInstances[i] = new PipelinedInstance(i, pool);
+			}
+			this.pendingPlans = 0;
+			this.pipelineStartNanos = System.nanoTime();
+		}
+	}
+
+	private void waitForPipelinedPlans() {
+		synchronized (this.pipelineLock) {
+			while (this.pendingPlans > 0) {
+				try {
+					this.pipelineLock.wait();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	private void pipelinedPlanDone() {
+		synchronized (this.pipelineLock) {
+			this.pendingPlans--;
+			if (this.pendingPlans == 0) {
+				this.pipelineLock.notifyAll();
 			}
-			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
-			Thread thread = new Thread(algothread, this.name + "." + i);
-			thread.setUncaughtExceptionHandler(this.exceptionHandler);
-			this.threads[i] = thread;
-			this.algothreads[i] = algothread;
+		}
+	}
+
+	private void logStatistics(long[] busyNanos, long wallNanos) {
+		long sum = 0;
+		long max = 0;
+		for (long nanos : busyNanos) {
+			sum += nanos;
+			max = Math.max(max, nanos);
+		}
+		double avg = (double) sum / busyNanos.length;
+		this.lastBusyNanos = busyNanos;
+		double imbalance = avg > 0 ? max / avg : 1.0;
+		double seconds = wallNanos / 1e9;
+		log.info(String.format(Locale.ROOT, "[%s] all %d threads finished: %d plans in %.3f s (%.1f plans/s), busy time per thread avg %.3f s, max %.3f s, imbalance %.2f",
+				this.name, this.numOfThreads, this.plans.size(), seconds, seconds > 0 ? this.plans.size() / seconds : 0.0,
+				avg / 1e9, max / 1e9, imbalance));
+	}
+
+	private void handlePlans(int algoIndex, int fromIndex, int toIndex, int step, long[] busyNanos) {
+		PlanAlgorithm algo = this.algos[algoIndex];
+		long start = System.nanoTime();
+		try {
+			for (int i = fromIndex; i < toIndex && this.hadException.get() == null; i += step) {
+				algo.run(this.plans.get(i));
+				this.counter.incCounter();
+			}
+		} catch (Throwable e) {
+			log.error("Thread " + Thread.currentThread().getName() + " died with exception. Will stop after all threads finished.", e);
+			this.hadException.compareAndSet(null, e);
+		} finally {
+			busyNanos[algoIndex] += System.nanoTime() - start;
 		}
 	}
 
@@ -197,43 +306,134 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		return numOfThreads;
 	}
 
-	private final static class ExceptionHandler implements UncaughtExceptionHandler {
+	/* package (for a test) */ final long[] getLastBusyNanos() {
+		return this.lastBusyNanos;
+	}
 
-		private final AtomicReference<Throwable> hadException;
+	/**
+	 * The plans of one plan algorithm instance in the pipelined mode.  As long as there are plans in the queue,
+	 * one task in the shared pool handles them in the order they were added; when the queue is empty, the task ends,
+	 * so waiting instances do not block any thread of the pool.
+	 */
+	private final class PipelinedInstance implements Runnable {
+		private final int algoIndex;
+		private final ForkJoinPool pool;
+		private final ConcurrentLinkedQueue<Plan> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		private long busyNanos = 0;
+
+		PipelinedInstance(int algoIndex, ForkJoinPool pool) {
+			this.algoIndex = algoIndex;
+			this.pool = pool;
+		}
 
-		public ExceptionHandler(final AtomicReference<Throwable> hadException) {
-			this.hadException = hadException;
+		void add(Plan plan) {
+			this.queue.add(plan);
+			if (this.scheduled.compareAndSet(false, true)) {
+				this.pool.execute(this);
+			}
 		}
 
 		@Override
-		public void uncaughtException(Thread t, Throwable e) {
-			log.error("Thread " + t.getName() + " died with exception. Will stop after all threads finished.", e);
-			this.hadException.set(e);
+		public void run() {
+			PlanAlgorithm algo = algos[this.algoIndex];
+			do {
+				Plan plan;
+				while ((plan = this.queue.poll()) != null) {
+					long start = System.nanoTime();
+					try {
+						// after an exception, the remaining plans are only taken from the queue
+						if (hadException.get() == null) {
+							algo.run(plan);
+							counter.incCounter();
+						}
+					} catch (Throwable e) {
+						log.error("Thread " + Thread.currentThread().getName() + " died with exception. Will stop after all threads finished.", e);
+						hadException.compareAndSet(null, e);
+					} finally {
+						this.busyNanos += System.nanoTime() - start;
+						pipelinedPlanDone();
+					}
+				}
+				this.scheduled.set(false);
+				// a plan may have been added after the last poll, but before the flag was reset
+			} while (!this.queue.isEmpty() && this.scheduled.compareAndSet(false, true));
 		}
-
 	}
 
-	private final static class PlanAlgoThread implements Runnable {
+	/**
+	 * Hands every <code>numOfThreads</code>-th plan to the same plan algorithm instance, as the plans were handed to
+	 * the threads before.
+	 */
+	private final class RoundRobinTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final long[] busyNanos;
 
-		private final PlanAlgorithm planAlgo;
-		private final List<Plan> plans = new LinkedList<>();
-		private final Counter counter;
+		RoundRobinTask(long[] busyNanos) {
+			this.busyNanos = busyNanos;
+		}
 
-		public PlanAlgoThread(final PlanAlgorithm algo, final Counter counter) {
-			this.planAlgo = algo;
-			this.counter = counter;
+		@Override
+		protected void compute() {
+			int size = plans.size();
+			List<RecursiveAction> tasks = new ArrayList<>(numOfThreads);
+			for (int i = 0; i < numOfThreads; i++) {
+				final int algoIndex = i;
+				tasks.add(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+					@Override
+					protected void compute() {
+						handlePlans(algoIndex, algoIndex, size, numOfThreads, busyNanos);
+					}
+				});
+			}
+			invokeAll(tasks);
 		}
+	}
 
-		public void addPlanToThread(final Plan plan) {
-			this.plans.add(plan);
+	/**
+	 * Splits the plans into chunks of consecutive plans. Every chunk borrows a plan algorithm instance that is not in use,
+	 * so the instances are reused over the chunks but never run concurrently.
+	 */
+	private final class ChunkedTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final long[] busyNanos;
+
+		ChunkedTask(long[] busyNanos) {
+			this.busyNanos = busyNanos;
 		}
 
 		@Override
-		public void run() {
-			for (Plan plan : this.plans) {
-				this.planAlgo.run(plan);
-				this.counter.incCounter();
+		protected void compute() {
+			int size = plans.size();
+			int chunkSize = Math.max(1, Math.min(MAX_CHUNK_SIZE, size / (numOfThreads * CHUNKS_PER_THREAD)));
+			BlockingQueue<Integer> idleAlgos = new ArrayBlockingQueue<>(numOfThreads);
+			for (int i = 0; i < numOfThreads; i++) {
+				idleAlgos.add(i);
+			}
+			List<RecursiveAction> tasks = new ArrayList<>(size / chunkSize + 1);
+			for (int from = 0; from < size; from += chunkSize) {
+				final int fromIndex = from;
+				final int toIndex = Math.min(size, from + chunkSize);
+				tasks.add(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+					@Override
+					protected void compute() {
+						Integer algoIndex;
+						try {
+							algoIndex = idleAlgos.take();
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+						try {
+							handlePlans(algoIndex, fromIndex, toIndex, 1, busyNanos);
+						} finally {
+							idleAlgos.add(algoIndex);
+						}
+					}
+				});
 			}
+			invokeAll(tasks);
 		}
 	}
 }
@@ -0,0 +1,48 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ReplanningExecutor.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.replanning.modules;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Provides the thread pools used by {@link AbstractMultithreadedModule}. All strategy modules with the same
+ * number of threads share one work-stealing pool, which is kept over the iterations instead of starting new
+ * threads for every module in every iteration. The worker threads are daemon threads, so they do not keep
+ * the JVM alive after the controler has finished.
+ */
+/* deliberately package */ final class ReplanningExecutor {
+
+	private static final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+	private ReplanningExecutor() {
+	}
+
+	static synchronized ForkJoinPool getPool(int numberOfThreads) {
+		return pools.computeIfAbsent(numberOfThreads, n -> new ForkJoinPool(n, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("Replanning." + n + "." + thread.getPoolIndex());
+			return thread;
+		}, null, false));
+	}
+
+}
@@ -0,0 +1,208 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CCH.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.priorityqueue.BinaryMinHeap;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Least cost path calculator using a customizable contraction hierarchy (CCH).
+ *
+ * <p>The route is searched on the metric of the time bin of the departure, computed without
+ * person and vehicle (see {@link CCHCustomization}). So, in contrast to {@link Dijkstra}, the costs
+ * of later links are not taken from later time bins, and person specific costs (e.g. randomized
+ * disutilities) do not influence the route. The travel time and cost of the returned path are
+ * computed along the path with the given person and vehicle, like the other routers do.</p>
+ *
+ * <p>Instances are not thread-safe; create one per thread with {@link CCHFactory}.</p>
+ */
+public class CCH implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(CCH.class);
+
+	private final CCHGraph graph;
+	private final CCHCustomization customization;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+
+	private final double[] forwardCost;
+	private final double[] backwardCost;
+	// the edge over which a node was reached
+	private final int[] forwardEdge;
+	private final int[] backwardEdge;
+	// the query in which a node was reached, so the arrays need not be cleared
+	private final int[] forwardQuery;
+	private final int[] backwardQuery;
+	private int query = 0;
+
+	private final BinaryMinHeap<ArrayRoutingNetworkNode> forwardQueue;
+	private final BinaryMinHeap<ArrayRoutingNetworkNode> backwardQueue;
+	private final TIntArrayList pathLinks = new TIntArrayList();
+
+	/*package*/ CCH(CCHCustomization customization, TravelDisutility travelDisutility, TravelTime travelTime) {
+		this.graph = customization.getGraph();
+		this.customization = customization;
+		this.travelDisutility = travelDisutility;
+		this.travelTime = travelTime;
+		int nodeCount = this.graph.getNodeCount();
+		this.forwardCost = new double[nodeCount];
+		this.backwardCost = new double[nodeCount];
+		this.forwardEdge = new int[nodeCount];
+		this.backwardEdge = new int[nodeCount];
+		this.forwardQuery = new int[nodeCount];
+		this.backwardQuery = new int[nodeCount];
+		this.forwardQueue = new BinaryMinHeap<>(nodeCount);
+		this.backwardQueue = new BinaryMinHeap<>(nodeCount);
+	}
+
+	@Override
+	public Path calcLeastCostPath(Node fromNode, Node toNode, double starttime, Person person, Vehicle vehicle) {
+		int from = getIndex(fromNode);
+		int to = getIndex(toNode);
+		if (from == to) {
+			return new Path(Collections.singletonList(fromNode), Collections.emptyList(), 0.0, 0.0);
+		}
+		CCHMetric metric = this.customization.getMetric(starttime);
+		startQuery();
+
+		reach(from, 0, -1, this.forwardCost, this.forwardEdge, this.forwardQuery, this.forwardQueue);
+		reach(to, 0, -1, this.backwardCost, this.backwardEdge, this.backwardQuery, this.backwardQueue);
+		double bestCost = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		boolean forwardDone = false;
+		boolean backwardDone = false;
+		while (!forwardDone || !backwardDone) {
+			if (!forwardDone) {
+				ArrayRoutingNetworkNode node = this.forwardQueue.poll();
+				if (node == null || this.forwardCost[node.getArrayIndex()] >= bestCost) {
+					forwardDone = true;
+				} else {
+					int n = node.getArrayIndex();
+					if (this.backwardQuery[n] == this.query && this.forwardCost[n] + this.backwardCost[n] < bestCost) {
+						bestCost = this.forwardCost[n] + this.backwardCost[n];
+						meetingNode = n;
+					}
+					for (int edge = this.graph.upStart[n]; edge < this.graph.upStart[n + 1]; edge++) {
+						reach(this.graph.upTarget[edge], this.forwardCost[n] + metric.up[edge], edge,
+								this.forwardCost, this.forwardEdge, this.forwardQuery, this.forwardQueue);
+					}
+				}
+			}
+			if (!backwardDone) {
+				ArrayRoutingNetworkNode node = this.backwardQueue.poll();
+				if (node == null || this.backwardCost[node.getArrayIndex()] >= bestCost) {
+					backwardDone = true;
+				} else {
+					int n = node.getArrayIndex();
+					if (this.forwardQuery[n] == this.query && this.forwardCost[n] + this.backwardCost[n] < bestCost) {
+						bestCost = this.forwardCost[n] + this.backwardCost[n];
+						meetingNode = n;
+					}
+					for (int edge = this.graph.upStart[n]; edge < this.graph.upStart[n + 1]; edge++) {
+						reach(this.graph.upTarget[edge], this.backwardCost[n] + metric.down[edge], edge,
+								this.backwardCost, this.backwardEdge, this.backwardQuery, this.backwardQueue);
+					}
+				}
+			}
+		}
+
+		if (meetingNode < 0) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Returning null.");
+			return null;
+		}
+		return constructPath(metric, fromNode, meetingNode, to, starttime, person, vehicle);
+	}
+
+	private void startQuery() {
+		this.query++;
+		if (this.query == Integer.MAX_VALUE) {
+			java.util.Arrays.fill(this.forwardQuery, 0);
+			java.util.Arrays.fill(this.backwardQuery, 0);
+			this.query = 1;
+		}
+		this.forwardQueue.reset();
+		this.backwardQueue.reset();
+	}
+
+	private void reach(int node, double cost, int edge, double[] costs, int[] edges, int[] queries,
+			BinaryMinHeap<ArrayRoutingNetworkNode> queue) {
+		if (cost == Double.POSITIVE_INFINITY) {
+			return;
+		}
+		if (queries[node] != this.query) {
+			queries[node] = this.query;
+		} else if (cost >= costs[node]) {
+			return;
+		}
+		costs[node] = cost;
+		edges[node] = edge;
+		queue.decreaseKey(this.graph.nodes[node], cost);
+	}
+
+	private Path constructPath(CCHMetric metric, Node fromNode, int meetingNode, int to, double starttime,
+			Person person, Vehicle vehicle) {
+		this.pathLinks.resetQuick();
+
+		// the forward edges are collected from the meeting node back to the start
+		TIntArrayList forwardEdges = new TIntArrayList();
+		for (int node = meetingNode; this.forwardEdge[node] >= 0; node = this.graph.edgeLow[this.forwardEdge[node]]) {
+			forwardEdges.add(this.forwardEdge[node]);
+		}
+		for (int i = forwardEdges.size() - 1; i >= 0; i--) {
+			metric.unpack(forwardEdges.get(i), true, this.pathLinks);
+		}
+		for (int node = meetingNode; node != to; node = this.graph.edgeLow[this.backwardEdge[node]]) {
+			metric.unpack(this.backwardEdge[node], false, this.pathLinks);
+		}
+
+		List<Node> nodes = new ArrayList<>(this.pathLinks.size() + 1);
+		List<Link> links = new ArrayList<>(this.pathLinks.size());
+		nodes.add(fromNode);
+		double time = starttime;
+		double cost = 0.0;
+		for (int i = 0; i < this.pathLinks.size(); i++) {
+			Link link = this.graph.links[this.pathLinks.get(i)];
+			links.add(link);
+			nodes.add(link.getToNode());
+			cost += this.travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+			time += this.travelTime.getLinkTravelTime(link, time, person, vehicle);
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+	private int getIndex(Node node) {
+		return ((ArrayRoutingNetworkNode) this.graph.routingNetwork.getNodes().get(node.getId())).getArrayIndex();
+	}
+}
@@ -0,0 +1,68 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CCHCustomization.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The customized metrics of a {@link CCHGraph} for one travel disutility, one per time bin.
+ * A metric is only computed when the first route departing in its time bin is searched,
+ * and is then shared by all routers using this customization.
+ */
+final class CCHCustomization {
+
+	private final CCHGraph graph;
+	private final TravelDisutility travelDisutility;
+	private final int timeBinSize;
+	private final AtomicReferenceArray<CCHMetric> metrics;
+
+	CCHCustomization(CCHGraph graph, TravelDisutility travelDisutility, int timeBinSize, int numberOfTimeBins) {
+		this.graph = graph;
+		this.travelDisutility = travelDisutility;
+		this.timeBinSize = timeBinSize;
+		this.metrics = new AtomicReferenceArray<>(numberOfTimeBins);
+	}
+
+	CCHGraph getGraph() {
+		return this.graph;
+	}
+
+	/**
+	 * @return the metric of the time bin containing <code>time</code>. Times after the last bin
+	 * use the last bin.
+	 */
+	CCHMetric getMetric(double time) {
+		int bin = Math.max(0, Math.min((int) (time / this.timeBinSize), this.metrics.length() - 1));
+		CCHMetric metric = this.metrics.get(bin);
+		if (metric == null) {
+			synchronized (this) {
+				metric = this.metrics.get(bin);
+				if (metric == null) {
+					metric = new CCHMetric(this.graph, this.travelDisutility, (double) bin * this.timeBinSize);
+					this.metrics.set(bin, metric);
+				}
+			}
+		}
+		return metric;
+	}
+}
@@ -0,0 +1,177 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CCHFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
+import org.matsim.core.router.util.ArrayRoutingNetworkFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link CCH} routers. The contraction of a network is only done once and shared by all
+ * routers. The customization with the travel disutilities is shared by all routers for the same
+ * network, travel time and travel disutility factory (or travel disutility instance, if the routers
+ * are created with one), and is computed again in every iteration, as the travel times change.
+ *
+ * <p>The metrics are computed without a person and vehicle, so the travel disutility must not depend
+ * on them. Only the cost of the final route is computed for the person. Randomized routing (see
+ * {@link org.matsim.core.config.groups.PlansCalcRouteConfigGroup#getRoutingRandomness()}) is thus not
+ * supported and must be switched off.</p>
+ *
+ * <p>When used outside of the controler, {@link #resetCustomizations()} must be called after the
+ * travel times were changed.</p>
+ */
+@Singleton
+public class CCHFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	public static final int DEFAULT_TIME_BIN_SIZE = 3600;
+	public static final int DEFAULT_MAX_TIME = 30 * 3600;
+
+	private final int timeBinSize;
+	private final int numberOfTimeBins;
+	private final Map<Network, CCHGraph> graphs = new HashMap<>();
+	private final Map<CustomizationKey, CCHCustomization> customizations = new HashMap<>();
+
+	@Inject
+	public CCHFactory() {
+		this(DEFAULT_TIME_BIN_SIZE, DEFAULT_MAX_TIME);
+	}
+
+	/**
+	 * @param timeBinSize the length of the time bins, for each of which a metric is computed
+	 * @param maxTime routes departing later use the metric of the last time bin before <code>maxTime</code>
+	 */
+	public CCHFactory(int timeBinSize, int maxTime) {
+		if (timeBinSize <= 0) {
+			throw new IllegalArgumentException("time bin size must be positive, but is " + timeBinSize);
+		}
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = Math.max(1, (maxTime + timeBinSize - 1) / timeBinSize);
+	}
+
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		// instances of the same travel disutility class may use different parameters, so only the same instance shares a customization
+		CCHCustomization customization = getCustomization(network, travelTimes, travelCosts, () -> travelCosts);
+		return new CCH(customization, travelCosts, travelTimes);
+	}
+
+	/**
+	 * Creates a router whose customization is shared with all routers of the same travel disutility
+	 * factory. The customization uses a travel disutility of its own, so the travel disutility of the
+	 * router, used for the cost of the final route, is not accessed concurrently.
+	 */
+	@Override
+	public synchronized LeastCostPathCalculator createPathCalculator(final Network network,
+			final TravelDisutilityFactory travelDisutilityFactory, final TravelTime travelTimes) {
+		CCHCustomization customization = getCustomization(network, travelTimes, travelDisutilityFactory,
+				() -> travelDisutilityFactory.createTravelDisutility(travelTimes));
+		return new CCH(customization, travelDisutilityFactory.createTravelDisutility(travelTimes), travelTimes);
+	}
+
+	private CCHCustomization getCustomization(Network network, TravelTime travelTimes, Object travelDisutilitySource,
+			Supplier<TravelDisutility> travelCostsSupplier) {
+		CCHGraph graph = this.graphs.computeIfAbsent(network,
+				n -> new CCHGraph(new ArrayRoutingNetworkFactory().createRoutingNetwork(n)));
+		CustomizationKey key = new CustomizationKey(network, travelTimes, travelDisutilitySource);
+		return this.customizations.computeIfAbsent(key,
+				k -> {
+					TravelDisutility travelCosts = travelCostsSupplier.get();
+					checkPersonIndependent(graph, travelCosts);
+					return new CCHCustomization(graph, travelCosts, this.timeBinSize, this.numberOfTimeBins);
+				});
+	}
+
+	/*package*/ synchronized int getNumberOfCustomizations() {
+		return this.customizations.size();
+	}
+
+	/**
+	 * Fails early if the travel disutility cannot be computed without a person, instead of failing
+	 * with a less helpful message when the first metric is customized.
+	 */
+	private static void checkPersonIndependent(CCHGraph graph, TravelDisutility travelCosts) {
+		if (graph.links.length == 0) {
+			return;
+		}
+		try {
+			travelCosts.getLinkTravelDisutility(graph.links[0], 0.0, null, null);
+		} catch (RuntimeException e) {
+			throw new RuntimeException("CCH routing computes the travel disutilities of the network without a person, but "
+					+ travelCosts.getClass().getName() + " failed without one. If randomized routing is used, set the "
+					+ "routingRandomness in the plansCalcRoute config group to zero, or use another routing algorithm.", e);
+		}
+	}
+
+	/**
+	 * Discards all customizations, so the metrics are computed again from the current travel times.
+	 * Routers created before keep using the old metrics.
+	 */
+	public synchronized void resetCustomizations() {
+		this.customizations.clear();
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		resetCustomizations();
+	}
+
+	private static final class CustomizationKey {
+		private final Network network;
+		private final TravelTime travelTime;
+		private final Object travelDisutilitySource;
+
+		CustomizationKey(Network network, TravelTime travelTime, Object travelDisutilitySource) {
+			this.network = network;
+			this.travelTime = travelTime;
+			this.travelDisutilitySource = travelDisutilitySource;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof CustomizationKey)) {
+				return false;
+			}
+			CustomizationKey other = (CustomizationKey) o;
+			return this.network == other.network && this.travelTime == other.travelTime
+					&& this.travelDisutilitySource == other.travelDisutilitySource;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * System.identityHashCode(this.network) + System.identityHashCode(this.travelTime))
+					+ System.identityHashCode(this.travelDisutilitySource);
+		}
+	}
+}
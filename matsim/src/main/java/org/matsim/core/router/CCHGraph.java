@@ -0,0 +1,238 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CCHGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.router.util.ArrayRoutingNetwork;
+import org.matsim.core.router.util.ArrayRoutingNetworkNode;
+import org.matsim.core.router.util.RoutingNetworkLink;
+import org.matsim.core.router.util.RoutingNetworkNode;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * The metric-independent part of a customizable contraction hierarchy (CCH): the node order and
+ * the edges of the contracted graph. It depends only on the topology of the network and is
+ * computed once per network.
+ *
+ * <p>The nodes are ordered with the minimum degree heuristic, i.e. the node with the fewest
+ * remaining neighbors is contracted next. Contracting a node connects all its remaining neighbors
+ * (without witness search), so the edges do not depend on the travel costs. Each edge connects a
+ * lower ranked node with a higher ranked one; the edges are stored in the upward adjacency
+ * list of the lower node, sorted by the rank of the higher node, and in the downward adjacency
+ * list of the higher node, sorted by the rank of the lower node.</p>
+ *
+ * <p>Nodes are identified by their index in the {@link ArrayRoutingNetwork}.</p>
+ *
+ * @see CCHMetric
+ */
+final class CCHGraph {
+
+	private final static Logger log = Logger.getLogger(CCHGraph.class);
+
+	final ArrayRoutingNetwork routingNetwork;
+	final ArrayRoutingNetworkNode[] nodes;
+	final int[] rank;
+	final int[] nodeByRank;
+
+	// upward adjacency: the edges of node n are upStart[n] .. upStart[n+1]-1, the edge id is the position
+	final int[] upStart;
+	final int[] upTarget;
+	final int[] edgeLow;
+
+	// downward adjacency of node n: downStart[n] .. downStart[n+1]-1
+	final int[] downStart;
+	final int[] downSource;
+	final int[] downEdge;
+
+	// the original links, with the edge they belong to and whether they lead from the lower to the higher node
+	final Link[] links;
+	final int[] linkEdge;
+	final boolean[] linkUpward;
+
+	CCHGraph(ArrayRoutingNetwork routingNetwork) {
+		this.routingNetwork = routingNetwork;
+		int nodeCount = routingNetwork.getNodes().size();
+		this.nodes = new ArrayRoutingNetworkNode[nodeCount];
+		for (RoutingNetworkNode node : routingNetwork.getNodes().values()) {
+			ArrayRoutingNetworkNode arrayNode = (ArrayRoutingNetworkNode) node;
+			this.nodes[arrayNode.getArrayIndex()] = arrayNode;
+		}
+
+		// undirected adjacency of the network, without self loops
+		TIntHashSet[] neighbors = new TIntHashSet[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			neighbors[i] = new TIntHashSet();
+		}
+		int linkCount = 0;
+		for (ArrayRoutingNetworkNode node : this.nodes) {
+			for (RoutingNetworkLink link : node.getOutLinksArray()) {
+				int from = node.getArrayIndex();
+				int to = ((ArrayRoutingNetworkNode) link.getToNode()).getArrayIndex();
+				if (from != to) {
+					neighbors[from].add(to);
+					neighbors[to].add(from);
+					linkCount++;
+				}
+			}
+		}
+
+		// contract the nodes in minimum degree order
+		this.rank = new int[nodeCount];
+		this.nodeByRank = new int[nodeCount];
+		int[][] upwardNeighbors = new int[nodeCount][];
+		boolean[] contracted = new boolean[nodeCount];
+		PriorityQueue<long[]> queue = new PriorityQueue<>(Math.max(1, nodeCount),
+				(a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		for (int i = 0; i < nodeCount; i++) {
+			queue.add(new long[] {neighbors[i].size(), i});
+		}
+		int nextRank = 0;
+		long edgeCount = 0;
+		while (!queue.isEmpty()) {
+			long[] entry = queue.poll();
+			int node = (int) entry[1];
+			if (contracted[node] || neighbors[node].size() != entry[0]) {
+				continue; // outdated entry
+			}
+			contracted[node] = true;
+			this.rank[node] = nextRank;
+			this.nodeByRank[nextRank] = node;
+			nextRank++;
+
+			int[] remaining = neighbors[node].toArray();
+			upwardNeighbors[node] = remaining;
+			edgeCount += remaining.length;
+			for (int i = 0; i < remaining.length; i++) {
+				TIntHashSet set = neighbors[remaining[i]];
+				set.remove(node);
+				for (int j = 0; j < remaining.length; j++) {
+					if (i != j) {
+						set.add(remaining[j]);
+					}
+				}
+			}
+			for (int neighbor : remaining) {
+				queue.add(new long[] {neighbors[neighbor].size(), neighbor});
+			}
+			neighbors[node] = null;
+		}
+		if (edgeCount > Integer.MAX_VALUE) {
+			throw new IllegalStateException("The contracted network has too many edges: " + edgeCount);
+		}
+
+		// upward adjacency, sorted by the rank of the target
+		this.upStart = new int[nodeCount + 1];
+		this.upTarget = new int[(int) edgeCount];
+		this.edgeLow = new int[(int) edgeCount];
+		int pos = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			this.upStart[node] = pos;
+			int[] targets = upwardNeighbors[node];
+			long[] byRank = new long[targets.length];
+			for (int i = 0; i < targets.length; i++) {
+				byRank[i] = ((long) this.rank[targets[i]] << 32) | targets[i];
+			}
+			Arrays.sort(byRank);
+			for (long target : byRank) {
+				this.upTarget[pos] = (int) target;
+				this.edgeLow[pos] = node;
+				pos++;
+			}
+		}
+		this.upStart[nodeCount] = pos;
+
+		// downward adjacency, sorted by the rank of the source
+		this.downStart = new int[nodeCount + 1];
+		for (int edge = 0; edge < this.upTarget.length; edge++) {
+			this.downStart[this.upTarget[edge] + 1]++;
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			this.downStart[node + 1] += this.downStart[node];
+		}
+		this.downSource = new int[this.upTarget.length];
+		this.downEdge = new int[this.upTarget.length];
+		int[] fill = Arrays.copyOf(this.downStart, nodeCount);
+		for (int r = 0; r < nodeCount; r++) {
+			int low = this.nodeByRank[r];
+			for (int edge = this.upStart[low]; edge < this.upStart[low + 1]; edge++) {
+				int high = this.upTarget[edge];
+				this.downSource[fill[high]] = low;
+				this.downEdge[fill[high]] = edge;
+				fill[high]++;
+			}
+		}
+
+		// assign the links to the edges
+		this.links = new Link[linkCount];
+		this.linkEdge = new int[linkCount];
+		this.linkUpward = new boolean[linkCount];
+		int l = 0;
+		for (ArrayRoutingNetworkNode node : this.nodes) {
+			for (RoutingNetworkLink link : node.getOutLinksArray()) {
+				int from = node.getArrayIndex();
+				int to = ((ArrayRoutingNetworkNode) link.getToNode()).getArrayIndex();
+				if (from != to) {
+					this.links[l] = link.getLink();
+					this.linkUpward[l] = this.rank[from] < this.rank[to];
+					this.linkEdge[l] = this.linkUpward[l] ? findEdge(from, to) : findEdge(to, from);
+					l++;
+				}
+			}
+		}
+
+		log.info("contracted " + nodeCount + " nodes with " + linkCount + " links into " + edgeCount + " edges.");
+	}
+
+	int getNodeCount() {
+		return this.nodes.length;
+	}
+
+	int getEdgeCount() {
+		return this.upTarget.length;
+	}
+
+	/**
+	 * @return the edge between <code>low</code> and <code>high</code>, or -1 if there is none.
+	 * <code>low</code> must have the lower rank.
+	 */
+	int findEdge(int low, int high) {
+		int highRank = this.rank[high];
+		int from = this.upStart[low];
+		int to = this.upStart[low + 1] - 1;
+		while (from <= to) {
+			int mid = (from + to) >>> 1;
+			int midRank = this.rank[this.upTarget[mid]];
+			if (midRank < highRank) {
+				from = mid + 1;
+			} else if (midRank > highRank) {
+				to = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+}
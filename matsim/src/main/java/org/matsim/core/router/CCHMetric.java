@@ -0,0 +1,147 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CCHMetric.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.matsim.core.router.util.TravelDisutility;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * The travel costs of the edges of a {@link CCHGraph} at one point in time.
+ *
+ * <p>The customization first sets the cost of each edge to the cheapest link it represents, and then
+ * goes through the nodes from the lowest to the highest rank. For each pair of upward neighbors
+ * <code>u</code>, <code>w</code> of node <code>v</code>, the edge <code>u-w</code> is set to the path
+ * over <code>v</code> if that is cheaper. Afterwards, a bidirectional upward search finds the
+ * shortest paths of the network.</p>
+ *
+ * <p>Shortcuts are unpacked by looking for the lower triangle that yields the cost of the shortcut,
+ * so no additional data per edge is needed for that.</p>
+ */
+final class CCHMetric {
+
+	private final CCHGraph graph;
+
+	// costs from the lower to the higher node of each edge, and back
+	final double[] up;
+	final double[] down;
+	// the link of the edge if it is cheaper than all shortcuts, otherwise -1
+	final int[] upLink;
+	final int[] downLink;
+
+	CCHMetric(CCHGraph graph, TravelDisutility travelDisutility, double time) {
+		this.graph = graph;
+		int edgeCount = graph.getEdgeCount();
+		this.up = new double[edgeCount];
+		this.down = new double[edgeCount];
+		this.upLink = new int[edgeCount];
+		this.downLink = new int[edgeCount];
+		Arrays.fill(this.up, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.down, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.upLink, -1);
+		Arrays.fill(this.downLink, -1);
+
+		for (int l = 0; l < graph.links.length; l++) {
+			double cost = travelDisutility.getLinkTravelDisutility(graph.links[l], time, null, null);
+			int edge = graph.linkEdge[l];
+			if (graph.linkUpward[l]) {
+				if (cost < this.up[edge]) {
+					this.up[edge] = cost;
+					this.upLink[edge] = l;
+				}
+			} else if (cost < this.down[edge]) {
+				this.down[edge] = cost;
+				this.downLink[edge] = l;
+			}
+		}
+
+		for (int r = 0; r < graph.getNodeCount(); r++) {
+			int v = graph.nodeByRank[r];
+			int end = graph.upStart[v + 1];
+			for (int vu = graph.upStart[v]; vu < end; vu++) {
+				int u = graph.upTarget[vu];
+				for (int vw = vu + 1; vw < end; vw++) {
+					// w has a higher rank than u, as the upward edges are sorted by rank
+					int uw = graph.findEdge(u, graph.upTarget[vw]);
+					double viaV = this.down[vu] + this.up[vw];
+					if (viaV < this.up[uw]) {
+						this.up[uw] = viaV;
+						this.upLink[uw] = -1;
+					}
+					viaV = this.down[vw] + this.up[vu];
+					if (viaV < this.down[uw]) {
+						this.down[uw] = viaV;
+						this.downLink[uw] = -1;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the links of the edge to the given list, in driving order.
+	 *
+	 * @param upward whether the edge is used from the lower to the higher node
+	 */
+	void unpack(int edge, boolean upward, TIntArrayList links) {
+		int link = upward ? this.upLink[edge] : this.downLink[edge];
+		if (link >= 0) {
+			links.add(link);
+			return;
+		}
+		// find the lower triangle low - v - high the shortcut was built from
+		int low = this.graph.edgeLow[edge];
+		int high = this.graph.upTarget[edge];
+		double cost = upward ? this.up[edge] : this.down[edge];
+		int i = this.graph.downStart[low];
+		int iEnd = this.graph.downStart[low + 1];
+		int j = this.graph.downStart[high];
+		int jEnd = this.graph.downStart[high + 1];
+		while (i < iEnd && j < jEnd) {
+			int rankI = this.graph.rank[this.graph.downSource[i]];
+			int rankJ = this.graph.rank[this.graph.downSource[j]];
+			if (rankI < rankJ) {
+				i++;
+			} else if (rankI > rankJ) {
+				j++;
+			} else {
+				int vLow = this.graph.downEdge[i];
+				int vHigh = this.graph.downEdge[j];
+				if (upward && this.down[vLow] + this.up[vHigh] == cost) {
+					unpack(vLow, false, links);
+					unpack(vHigh, true, links);
+					return;
+				}
+				if (!upward && this.down[vHigh] + this.up[vLow] == cost) {
+					unpack(vHigh, false, links);
+					unpack(vLow, true, links);
+					return;
+				}
+				i++;
+				j++;
+			}
+		}
+		throw new IllegalStateException("Could not unpack the shortcut between nodes " + this.graph.nodes[low].getId()
+				+ " and " + this.graph.nodes[high].getId() + ".");
+	}
+}
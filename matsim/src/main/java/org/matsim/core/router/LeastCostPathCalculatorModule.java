@@ -25,6 +25,7 @@ package org.matsim.core.router;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
 import org.matsim.core.router.util.*;
 
 public class LeastCostPathCalculatorModule extends AbstractModule {
@@ -44,6 +45,11 @@ public class LeastCostPathCalculatorModule extends AbstractModule {
             bind(LeastCostPathCalculatorFactory.class).to(FastDijkstraFactory.class);
         } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.FastAStarLandmarks)) {
             bind(LeastCostPathCalculatorFactory.class).to(FastAStarLandmarksFactory.class);
+        } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.SpeedyALT)) {
+            bind(LeastCostPathCalculatorFactory.class).to(SpeedyALTFactory.class);
+        } else if (config.controler().getRoutingAlgorithmType().equals(ControlerConfigGroup.RoutingAlgorithmType.CCH)) {
+            bind(LeastCostPathCalculatorFactory.class).to(CCHFactory.class);
+            addControlerListenerBinding().to(CCHFactory.class);
         }
     }
 
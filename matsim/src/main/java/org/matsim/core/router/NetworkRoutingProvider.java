@@ -119,7 +119,7 @@ public class NetworkRoutingProvider implements Provider<RoutingModule> {
 		LeastCostPathCalculator routeAlgo =
 				leastCostPathCalculatorFactory.createPathCalculator(
 						filteredNetwork,
-						travelDisutilityFactory.createTravelDisutility(travelTime),
+						travelDisutilityFactory,
 						travelTime);
 
 		// the following again refers to the (transport)mode, since it will determine the mode of the leg on the network:
@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * NodeMinHeap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of node indices with <code>double</code> keys, backed by primitive arrays.
+ * A node can be contained at most once.
+ */
+/*package*/ final class NodeMinHeap {
+
+	private final int[] heap;
+	private final int[] position;
+	private final double[] key;
+	private int size = 0;
+
+	/*package*/ NodeMinHeap(int nodeCount) {
+		this.heap = new int[nodeCount];
+		this.position = new int[nodeCount];
+		this.key = new double[nodeCount];
+		Arrays.fill(this.position, -1);
+	}
+
+	/*package*/ boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/*package*/ boolean contains(int node) {
+		return this.position[node] >= 0;
+	}
+
+	/*package*/ double getKey(int node) {
+		return this.key[node];
+	}
+
+	/**
+	 * Inserts the node, or decreases its key if it is already contained and the new key is smaller.
+	 */
+	/*package*/ void insertOrDecrease(int node, double newKey) {
+		int i = this.position[node];
+		if (i < 0) {
+			i = this.size++;
+		} else if (newKey >= this.key[node]) {
+			return;
+		}
+		this.key[node] = newKey;
+		siftUp(i, node);
+	}
+
+	/*package*/ int poll() {
+		int min = this.heap[0];
+		this.position[min] = -1;
+		this.size--;
+		if (this.size > 0) {
+			siftDown(this.heap[this.size]);
+		}
+		return min;
+	}
+
+	/*package*/ void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.position[this.heap[i]] = -1;
+		}
+		this.size = 0;
+	}
+
+	private void siftUp(int i, int node) {
+		double nodeKey = this.key[node];
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			int parentNode = this.heap[parent];
+			if (this.key[parentNode] <= nodeKey) {
+				break;
+			}
+			this.heap[i] = parentNode;
+			this.position[parentNode] = i;
+			i = parent;
+		}
+		this.heap[i] = node;
+		this.position[node] = i;
+	}
+
+	private void siftDown(int node) {
+		double nodeKey = this.key[node];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && this.key[this.heap[child + 1]] < this.key[this.heap[child]]) {
+				child++;
+			}
+			int childNode = this.heap[child];
+			if (this.key[childNode] >= nodeKey) {
+				break;
+			}
+			this.heap[i] = childNode;
+			this.position[childNode] = i;
+			i = child;
+		}
+		this.heap[i] = node;
+		this.position[node] = i;
+	}
+}
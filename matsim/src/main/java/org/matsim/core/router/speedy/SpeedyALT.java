@@ -0,0 +1,202 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALT.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A* with landmarks on a shared {@link SpeedyGraph} and {@link SpeedyALTData}.
+ *
+ * <p>All search state is kept in primitive arrays, which are allocated once per router and reused
+ * for all queries. A query only touches the entries of the nodes it visits. Instances are not
+ * thread-safe; create one per thread with {@link SpeedyALTFactory}.</p>
+ */
+public class SpeedyALT implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(SpeedyALT.class);
+
+	/*package*/ static final int ACTIVE_LANDMARK_COUNT = 4;
+
+	private final SpeedyGraph graph;
+	private final SpeedyALTData altData;
+	private final TravelDisutility travelDisutility;
+	private final TravelTime travelTime;
+
+	private final double[] cost;
+	private final double[] time;
+	private final double[] estimate;
+	private final int[] comingFrom;
+	// the query in which a node was reached, so the arrays need not be cleared
+	private final int[] reachedInQuery;
+	private int query = 0;
+	private final NodeMinHeap heap;
+	private final int[] activeLandmarks;
+	private final double[] activeLandmarkEstimates;
+	private int activeLandmarkCount = 0;
+
+	public SpeedyALT(SpeedyALTData altData, TravelDisutility travelDisutility, TravelTime travelTime) {
+		this.graph = altData.getGraph();
+		this.altData = altData;
+		this.travelDisutility = travelDisutility;
+		this.travelTime = travelTime;
+		int nodeCount = this.graph.getNodeCount();
+		this.cost = new double[nodeCount];
+		this.time = new double[nodeCount];
+		this.estimate = new double[nodeCount];
+		this.comingFrom = new int[nodeCount];
+		this.reachedInQuery = new int[nodeCount];
+		this.heap = new NodeMinHeap(nodeCount);
+		this.activeLandmarks = new int[Math.min(ACTIVE_LANDMARK_COUNT, altData.getLandmarkCount())];
+		this.activeLandmarkEstimates = new double[this.activeLandmarks.length];
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int from = this.graph.getNodeIndex(fromNode);
+		int to = this.graph.getNodeIndex(toNode);
+		if (from < 0 || to < 0) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "
+					+ getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		if (from == to) {
+			return new Path(Collections.singletonList(fromNode), Collections.emptyList(), 0.0, 0.0);
+		}
+
+		startQuery();
+		selectActiveLandmarks(from, to);
+		reach(from, to, 0.0, starttime, -1);
+
+		boolean found = false;
+		while (!this.heap.isEmpty()) {
+			int node = this.heap.poll();
+			if (node == to) {
+				found = true;
+				break;
+			}
+			double nodeCost = this.cost[node];
+			double nodeTime = this.time[node];
+			for (int i = this.graph.getOutStart(node), end = this.graph.getOutStart(node + 1); i < end; i++) {
+				int link = this.graph.getOutLink(i);
+				int next = this.graph.getToNodeIndex(link);
+				if (this.reachedInQuery[next] == this.query && !this.heap.contains(next)) {
+					// already settled, with a consistent estimate the cost cannot be improved
+					continue;
+				}
+				Link l = this.graph.getLink(link);
+				double linkTime = this.travelTime.getLinkTravelTime(l, nodeTime, person, vehicle);
+				double linkCost = this.travelDisutility.getLinkTravelDisutility(l, nodeTime, person, vehicle);
+				reach(next, to, nodeCost + linkCost, nodeTime + linkTime, link);
+			}
+		}
+
+		if (!found) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Some possible reasons:");
+			log.warn("  * Network is not connected.  Run NetworkCleaner().") ;
+			log.warn("  * Network for considered mode does not even exist.  Modes need to be entered for each link in network.xml.");
+			log.warn("  * Network for considered mode is not connected to starting or ending point of route.  Setting insertingAccessEgressWalk to true may help.");
+			log.warn("This will now return null, but it may fail later with a null pointer exception.");
+			return null;
+		}
+		return constructPath(fromNode, to, starttime);
+	}
+
+	private void startQuery() {
+		this.query++;
+		if (this.query == Integer.MAX_VALUE) {
+			java.util.Arrays.fill(this.reachedInQuery, 0);
+			this.query = 1;
+		}
+		this.heap.clear();
+	}
+
+	/*
+	 * Selects the landmarks giving the best estimate from the start to the target node, as in AStarLandmarks.
+	 */
+	private void selectActiveLandmarks(int from, int to) {
+		int landmarkCount = this.altData.getLandmarkCount();
+		double[] best = this.activeLandmarkEstimates;
+		this.activeLandmarkCount = 0;
+		for (int l = 0; l < landmarkCount; l++) {
+			double value = this.altData.estimate(from, to, l);
+			int i = this.activeLandmarkCount;
+			if (i < this.activeLandmarks.length) {
+				this.activeLandmarkCount++;
+			} else if (value > best[i - 1]) {
+				i--;
+			} else {
+				continue;
+			}
+			while (i > 0 && best[i - 1] < value) {
+				best[i] = best[i - 1];
+				this.activeLandmarks[i] = this.activeLandmarks[i - 1];
+				i--;
+			}
+			best[i] = value;
+			this.activeLandmarks[i] = l;
+		}
+	}
+
+	private void reach(int node, int to, double nodeCost, double nodeTime, int link) {
+		if (this.reachedInQuery[node] != this.query) {
+			this.reachedInQuery[node] = this.query;
+			this.estimate[node] = estimate(node, to);
+		} else if (nodeCost >= this.cost[node]) {
+			return;
+		}
+		this.cost[node] = nodeCost;
+		this.time[node] = nodeTime;
+		this.comingFrom[node] = link;
+		this.heap.insertOrDecrease(node, nodeCost + this.estimate[node]);
+	}
+
+	private double estimate(int node, int to) {
+		double estimate = 0.0;
+		for (int i = 0; i < this.activeLandmarkCount; i++) {
+			estimate = Math.max(estimate, this.altData.estimate(node, to, this.activeLandmarks[i]));
+		}
+		return estimate;
+	}
+
+	private Path constructPath(Node fromNode, int to, double starttime) {
+		List<Link> links = new ArrayList<>();
+		for (int link = this.comingFrom[to]; link >= 0; link = this.comingFrom[this.graph.getFromNodeIndex(link)]) {
+			links.add(this.graph.getLink(link));
+		}
+		Collections.reverse(links);
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(fromNode);
+		for (Link link : links) {
+			nodes.add(link.getToNode());
+		}
+		return new Path(nodes, links, this.time[to] - starttime, this.cost[to]);
+	}
+}
@@ -0,0 +1,180 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALTData.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.Landmarker;
+import org.matsim.core.router.util.PieSlicesLandmarker;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The landmarks of a {@link SpeedyGraph} and the minimal travel disutilities from and to all of them,
+ * as needed for A* with landmarks (ALT). The data is immutable and shared by all routers.
+ *
+ * <p>The disutilities of node <code>n</code> and landmark <code>l</code> are stored at
+ * <code>n * landmarkCount + l</code>, so the values needed for one node are next to each other.</p>
+ *
+ * @see org.matsim.core.router.util.PreProcessLandmarks
+ */
+public final class SpeedyALTData {
+
+	private static final Logger log = Logger.getLogger(SpeedyALTData.class);
+
+	private final SpeedyGraph graph;
+	private final int[] landmarks;
+	private final double[] fromLandmark;
+	private final double[] toLandmark;
+
+	public SpeedyALTData(SpeedyGraph graph, int landmarkCount, TravelDisutility travelDisutility, int numberOfThreads) {
+		this(graph, new PieSlicesLandmarker(new Rectangle2D.Double()), landmarkCount, travelDisutility, numberOfThreads);
+	}
+
+	public SpeedyALTData(SpeedyGraph graph, Landmarker landmarker, int landmarkCount, TravelDisutility travelDisutility, int numberOfThreads) {
+		this.graph = graph;
+		log.info("Putting landmarks on network...");
+		Node[] landmarkNodes = graph.getNodeCount() == 0 ? new Node[0] : landmarker.identifyLandmarks(landmarkCount, graph.getNetwork());
+		this.landmarks = new int[landmarkNodes.length];
+		for (int l = 0; l < landmarkNodes.length; l++) {
+			this.landmarks[l] = graph.getNodeIndex(landmarkNodes[l]);
+		}
+
+		int size = graph.getNodeCount() * this.landmarks.length;
+		this.fromLandmark = new double[size];
+		this.toLandmark = new double[size];
+		double[] minDisutilities = new double[graph.getLinkCount()];
+		for (int i = 0; i < minDisutilities.length; i++) {
+			minDisutilities[i] = travelDisutility.getLinkMinimumTravelDisutility(graph.getLink(i));
+		}
+
+		log.info("Calculating distance from and to each of the " + this.landmarks.length + " landmarks using " + numberOfThreads + " threads...");
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numberOfThreads, this.landmarks.length)));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int l = 0; l < this.landmarks.length; l++) {
+				final int landmark = l;
+				futures.add(executor.submit(() -> {
+					calcLandmarkDisutilities(landmark, true, minDisutilities);
+					calcLandmarkDisutilities(landmark, false, minDisutilities);
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdown();
+		}
+		log.info("done in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/*
+	 * Dijkstra from (forward) or to (backward) the landmark. Every landmark writes its own entries
+	 * of the shared arrays, so the landmarks can be calculated in parallel.
+	 */
+	private void calcLandmarkDisutilities(int landmark, boolean forward, double[] minDisutilities) {
+		int landmarkCount = this.landmarks.length;
+		double[] data = forward ? this.fromLandmark : this.toLandmark;
+		double[] cost = new double[this.graph.getNodeCount()];
+		Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		boolean[] settled = new boolean[this.graph.getNodeCount()];
+		NodeMinHeap heap = new NodeMinHeap(this.graph.getNodeCount());
+
+		cost[this.landmarks[landmark]] = 0.0;
+		heap.insertOrDecrease(this.landmarks[landmark], 0.0);
+		while (!heap.isEmpty()) {
+			int node = heap.poll();
+			settled[node] = true;
+			int end = forward ? this.graph.getOutStart(node + 1) : this.graph.getInStart(node + 1);
+			for (int i = forward ? this.graph.getOutStart(node) : this.graph.getInStart(node); i < end; i++) {
+				int link = forward ? this.graph.getOutLink(i) : this.graph.getInLink(i);
+				int next = forward ? this.graph.getToNodeIndex(link) : this.graph.getFromNodeIndex(link);
+				double nextCost = cost[node] + minDisutilities[link];
+				if (!settled[next] && nextCost < cost[next]) {
+					cost[next] = nextCost;
+					heap.insertOrDecrease(next, nextCost);
+				}
+			}
+		}
+		for (int n = 0; n < cost.length; n++) {
+			data[n * landmarkCount + landmark] = cost[n];
+		}
+	}
+
+	public SpeedyGraph getGraph() {
+		return this.graph;
+	}
+
+	public int getLandmarkCount() {
+		return this.landmarks.length;
+	}
+
+	public int getLandmarkNodeIndex(int landmark) {
+		return this.landmarks[landmark];
+	}
+
+	/**
+	 * @return the minimal travel disutility from the landmark to the node, infinite if the node cannot be reached.
+	 */
+	public double getFromLandmark(int node, int landmark) {
+		return this.fromLandmark[node * this.landmarks.length + landmark];
+	}
+
+	/**
+	 * @return the minimal travel disutility from the node to the landmark, infinite if the landmark cannot be reached.
+	 */
+	public double getToLandmark(int node, int landmark) {
+		return this.toLandmark[node * this.landmarks.length + landmark];
+	}
+
+	/**
+	 * @return a lower bound of the travel disutility from <code>node</code> to <code>target</code> given by one landmark,
+	 * by the triangle inequality.
+	 */
+	/*package*/ double estimate(int node, int target, int landmark) {
+		int offset = this.landmarks.length;
+		double estimate = 0.0;
+		// d(l, target) - d(l, node)
+		double fromNode = this.fromLandmark[node * offset + landmark];
+		double fromTarget = this.fromLandmark[target * offset + landmark];
+		if (fromNode != Double.POSITIVE_INFINITY && fromTarget != Double.POSITIVE_INFINITY) {
+			estimate = fromTarget - fromNode;
+		}
+		// d(node, l) - d(target, l)
+		double toNode = this.toLandmark[node * offset + landmark];
+		double toTarget = this.toLandmark[target * offset + landmark];
+		if (toNode != Double.POSITIVE_INFINITY && toTarget != Double.POSITIVE_INFINITY) {
+			estimate = Math.max(estimate, toNode - toTarget);
+		}
+		return estimate;
+	}
+}
@@ -0,0 +1,76 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALTFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link SpeedyALT} routers. The {@link SpeedyGraph} and the landmarks are created once per
+ * network and shared by all routers created afterwards, so a new router only allocates its search state.
+ */
+@Singleton
+public class SpeedyALTFactory implements LeastCostPathCalculatorFactory {
+
+	public static final int DEFAULT_LANDMARK_COUNT = 16;
+
+	private final Map<Network, SpeedyALTData> altData = new HashMap<>();
+	private final int landmarkCount;
+	private final int nThreads;
+
+	@Inject
+	public SpeedyALTFactory(final GlobalConfigGroup globalConfigGroup) {
+		this(DEFAULT_LANDMARK_COUNT, globalConfigGroup.getNumberOfThreads());
+	}
+
+	public SpeedyALTFactory(int landmarkCount, int numberOfThreads) {
+		this.landmarkCount = landmarkCount;
+		this.nThreads = numberOfThreads;
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		return new SpeedyALT(getALTData(network, travelCosts), travelCosts, travelTimes);
+	}
+
+	/**
+	 * @return the shared graph and landmarks of the network. The landmarks are calculated with the minimal
+	 * travel disutilities of the first travel disutility passed for the network.
+	 */
+	public synchronized SpeedyALTData getALTData(final Network network, final TravelDisutility travelCosts) {
+		SpeedyALTData data = this.altData.get(network);
+		if (data == null) {
+			data = new SpeedyALTData(new SpeedyGraph(network), this.landmarkCount, travelCosts, this.nThreads);
+			this.altData.put(network, data);
+		}
+		return data;
+	}
+}
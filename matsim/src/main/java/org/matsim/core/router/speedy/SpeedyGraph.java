@@ -0,0 +1,153 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * A compact, immutable representation of a network for routing. The nodes and links are numbered
+ * consecutively, and the outgoing and incoming links of each node are stored in plain int arrays.
+ *
+ * <p>As the graph is never modified after its creation, one instance can be shared by all routers
+ * and threads using the same network; only the search state is held per router.</p>
+ *
+ * @see SpeedyALTFactory
+ */
+public final class SpeedyGraph {
+
+	private final Network network;
+	private final Node[] nodes;
+	private final Link[] links;
+	private final int[] nodeIndexByIdIndex;
+	private final int[] linkFromNode;
+	private final int[] linkToNode;
+	// the out links of node i are outLinks[outStart[i]] until outLinks[outStart[i+1] - 1]
+	private final int[] outStart;
+	private final int[] outLinks;
+	private final int[] inStart;
+	private final int[] inLinks;
+
+	public SpeedyGraph(Network network) {
+		this.network = network;
+		int nodeCount = network.getNodes().size();
+		int linkCount = network.getLinks().size();
+		this.nodes = new Node[nodeCount];
+		this.links = new Link[linkCount];
+		this.nodeIndexByIdIndex = new int[Id.getNumberOfIds(Node.class)];
+		Arrays.fill(this.nodeIndexByIdIndex, -1);
+
+		int index = 0;
+		for (Node node : network.getNodes().values()) {
+			this.nodes[index] = node;
+			this.nodeIndexByIdIndex[node.getId().index()] = index;
+			index++;
+		}
+
+		this.linkFromNode = new int[linkCount];
+		this.linkToNode = new int[linkCount];
+		this.outStart = new int[nodeCount + 1];
+		this.inStart = new int[nodeCount + 1];
+		index = 0;
+		for (Link link : network.getLinks().values()) {
+			this.links[index] = link;
+			this.linkFromNode[index] = this.nodeIndexByIdIndex[link.getFromNode().getId().index()];
+			this.linkToNode[index] = this.nodeIndexByIdIndex[link.getToNode().getId().index()];
+			this.outStart[this.linkFromNode[index] + 1]++;
+			this.inStart[this.linkToNode[index] + 1]++;
+			index++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			this.outStart[i + 1] += this.outStart[i];
+			this.inStart[i + 1] += this.inStart[i];
+		}
+		this.outLinks = new int[linkCount];
+		this.inLinks = new int[linkCount];
+		int[] outFill = Arrays.copyOf(this.outStart, nodeCount);
+		int[] inFill = Arrays.copyOf(this.inStart, nodeCount);
+		for (int l = 0; l < linkCount; l++) {
+			this.outLinks[outFill[this.linkFromNode[l]]++] = l;
+			this.inLinks[inFill[this.linkToNode[l]]++] = l;
+		}
+	}
+
+	public Network getNetwork() {
+		return this.network;
+	}
+
+	public int getNodeCount() {
+		return this.nodes.length;
+	}
+
+	public int getLinkCount() {
+		return this.links.length;
+	}
+
+	public Node getNode(int nodeIndex) {
+		return this.nodes[nodeIndex];
+	}
+
+	public Link getLink(int linkIndex) {
+		return this.links[linkIndex];
+	}
+
+	/**
+	 * @return the index of the node with the same id as the given node, or -1 if the graph has no such node.
+	 */
+	public int getNodeIndex(Node node) {
+		int idIndex = node.getId().index();
+		return idIndex < this.nodeIndexByIdIndex.length ? this.nodeIndexByIdIndex[idIndex] : -1;
+	}
+
+	public int getFromNodeIndex(int linkIndex) {
+		return this.linkFromNode[linkIndex];
+	}
+
+	public int getToNodeIndex(int linkIndex) {
+		return this.linkToNode[linkIndex];
+	}
+
+	/**
+	 * The out links of a node are <code>getOutLink(i)</code> for <code>getOutStart(node) &lt;= i &lt; getOutStart(node + 1)</code>.
+	 */
+	public int getOutStart(int nodeIndex) {
+		return this.outStart[nodeIndex];
+	}
+
+	public int getOutLink(int i) {
+		return this.outLinks[i];
+	}
+
+	/**
+	 * The in links of a node are <code>getInLink(i)</code> for <code>getInStart(node) &lt;= i &lt; getInStart(node + 1)</code>.
+	 */
+	public int getInStart(int nodeIndex) {
+		return this.inStart[nodeIndex];
+	}
+
+	public int getInLink(int i) {
+		return this.inLinks[i];
+	}
+}
@@ -23,6 +23,7 @@ package org.matsim.core.router.util;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.api.internal.MatsimExtensionPoint;
 import org.matsim.core.api.internal.MatsimFactory;
+import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 
 /**
  * Example(s):<ul>
@@ -38,4 +39,13 @@ public interface LeastCostPathCalculatorFactory extends MatsimFactory, MatsimExt
 	
 	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes);
 
+	/**
+	 * Creates a router with a new travel disutility from the given factory. Factories which share
+	 * preprocessed data between routers may override this to recognize routers of the same travel
+	 * disutility factory, as every router gets its own travel disutility instance.
+	 */
+	public default LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutilityFactory travelDisutilityFactory, final TravelTime travelTimes) {
+		return createPathCalculator(network, travelDisutilityFactory.createTravelDisutility(travelTimes), travelTimes);
+	}
+
 }
@@ -22,6 +22,7 @@ package org.matsim.core.scoring;
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.events.handler.*;
@@ -46,9 +47,7 @@ import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.vehicles.Vehicle;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Converts a stream of Events into a stream of Legs. Passes Legs to a single LegHandler which must be registered with this class.
@@ -137,17 +136,17 @@ public final class EventsToLegs
 		this.transitSchedule = transitSchedule;
 	}
 
-	private Map<Id<Person>, Leg> legs = new HashMap<>();
-	private Map<Id<Person>, List<Id<Link>>> experiencedRoutes = new HashMap<>();
-	private Map<Id<Person>, Double> relPosOnDepartureLinkPerPerson = new HashMap<>();
-	private Map<Id<Person>, Double> relPosOnArrivalLinkPerPerson = new HashMap<>();
+	private final IdMap<Person, Leg> legs = new IdMap<>(Person.class);
+	private final IdMap<Person, List<Id<Link>>> experiencedRoutes = new IdMap<>(Person.class);
+	private final IdMap<Person, Double> relPosOnDepartureLinkPerPerson = new IdMap<>(Person.class);
+	private final IdMap<Person, Double> relPosOnArrivalLinkPerPerson = new IdMap<>(Person.class);
 
-	private Map<Id<Person>, TeleportationArrivalEvent> routelessTravels = new HashMap<>();
-	private Map<Id<Person>, PendingTransitTravel> transitTravels = new HashMap<>();
-	private Map<Id<Person>, PendingVehicleTravel> vehicleTravels = new HashMap<>();
+	private final IdMap<Person, TeleportationArrivalEvent> routelessTravels = new IdMap<>(Person.class);
+	private final IdMap<Person, PendingTransitTravel> transitTravels = new IdMap<>(Person.class);
+	private final IdMap<Person, PendingVehicleTravel> vehicleTravels = new IdMap<>(Person.class);
 
-	private Map<Id<Vehicle>, LineAndRoute> transitVehicle2currentRoute = new HashMap<>();
-	private Map<Id<Vehicle>, VehicleRoute> vehicle2route = new HashMap<>();
+	private final IdMap<Vehicle, LineAndRoute> transitVehicle2currentRoute = new IdMap<>(Vehicle.class);
+	private final IdMap<Vehicle, VehicleRoute> vehicle2route = new IdMap<>(Vehicle.class);
 
 	private List<LegHandler> legHandlers = new ArrayList<>();
 
@@ -41,6 +41,7 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationStartsListener;
@@ -54,8 +55,11 @@ import org.matsim.vehicles.Vehicle;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.matsim.core.router.TripStructureUtils.Trip;
@@ -92,9 +96,30 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	
 	private Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
 
+	private static final int SHARD_QUEUE_CAPACITY = 16384;
+	private static final Object END_OF_SCORING = new Object();
+	private static final Object FINISH_SCORING = new Object();
+	private final int numberOfScoringThreads;
+	private volatile ScoringShard[] shards = null;
+
 	@Inject
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, ParallelEventHandlingConfigGroup parallelEventHandlingConfig) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, parallelEventHandlingConfig.getNumberOfScoringThreads());
+	}
+
 	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 						 Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, 0);
+	}
+
+	/**
+	 * @param numberOfScoringThreads if larger than 0, the persons are distributed by their id index over this number of
+	 * threads, which call the scoring functions. Otherwise, the scoring functions are called by the threads passing in the
+	 * events, legs and activities, synchronized over all persons.
+	 */
+	ScoringFunctionsForPopulation( ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+						 Population population, ScoringFunctionFactory scoringFunctionFactory, int numberOfScoringThreads) {
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
@@ -103,47 +128,53 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		});
 		this.population = population;
 		this.scoringFunctionFactory = scoringFunctionFactory;
+		this.numberOfScoringThreads = numberOfScoringThreads;
 		eventsManager.addHandler(this);
 		eventsToActivities.addActivityHandler(this);
 		eventsToLegs.addLegHandler(this);
 	}
 
 	private void init() {
+		// the shards of the last iteration are normally already stopped by finishScoringFunctions()
+		stopShards(END_OF_SCORING);
+		this.exception.set(null);
 		for (Person person : this.population.getPersons().values()) {
 			ScoringFunction data = this.scoringFunctionFactory.createNewScoringFunction(person);
 			this.agentScorers.put(person.getId(), data);
 			this.partialScores.put(person.getId(), new TDoubleArrayList());
 			this.tripRecords.put(person.getId(), PopulationUtils.createPlan());
 		}
+		if (this.numberOfScoringThreads > 0) {
+			ScoringShard[] newShards = new ScoringShard[this.numberOfScoringThreads];
+			for (int i = 0; i < newShards.length; i++) {
+				newShards[i] = new ScoringShard(i, newShards.length);
+				newShards[i].start();
+			}
+			this.shards = newShards;
+		}
 	}
 
 	@Override
-	synchronized public void handleEvent(Event o) {
+	public void handleEvent(Event o) {
 		// this is for the stuff that is directly based on events.
 		// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
 		// for the time being, not all PersonEvents may "implement HasPersonId".
 		// link enter/leave events are NOT passed on, for performance reasons.
 		// kai/dominik, dec'12
 		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
-			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} else if (o instanceof PersonScoreEvent) {
-					scoringFunction.addScore(((PersonScoreEvent) o).getAmount());
+			Id<Person> personId = ((HasPersonId) o).getPersonId();
+			ScoringShard shard = getShard(personId);
+			if (shard != null) {
+				shard.add(o);
+			} else {
+				synchronized (this) {
+					scoreEvent(getScoringFunctionForAgent(personId), o);
 				}
-//				else {
-					scoringFunction.handleEvent(o);
-					// passing this on in any case, see comment above.  kai, mar'17
-//				}
 			}
 		}
 
 		// Establish and end connection between driver and vehicle
+		// (all events are passed in by the same events handler thread, so this needs no synchronization)
 		if (o instanceof VehicleEntersTrafficEvent) {
 			this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
 		}
@@ -161,16 +192,51 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		if ( o instanceof LinkEnterEvent ) {
 			Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId();
 			Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId);
-			ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
 			// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
-			if (scoringFunction != null) {
-				scoringFunction.handleEvent(o);
+			if (driverId != null) {
+				ScoringShard shard = getShard(driverId);
+				if (shard != null) {
+					shard.add(new DriverLinkEnterEvent(driverId, (LinkEnterEvent) o));
+				} else {
+					synchronized (this) {
+						scoreEvent(getScoringFunctionForAgent(driverId), o);
+					}
+				}
+			}
+		}
+	}
+
+	private static void scoreEvent(ScoringFunction scoringFunction, Event o) {
+		if (scoringFunction != null) {
+			if (o instanceof PersonStuckEvent) {
+				scoringFunction.agentStuck(o.getTime());
+			} else if (o instanceof PersonMoneyEvent) {
+				scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+				// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+				// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
+			} else if (o instanceof PersonScoreEvent) {
+				scoringFunction.addScore(((PersonScoreEvent) o).getAmount());
 			}
+//			else {
+				scoringFunction.handleEvent(o);
+				// passing this on in any case, see comment above.  kai, mar'17
+//			}
 		}
 	}
 
 	@Override
-	synchronized public void handleLeg(PersonExperiencedLeg o) {
+	public void handleLeg(PersonExperiencedLeg o) {
+		ScoringShard shard = getShard(o.getAgentId());
+		if (shard != null) {
+			shard.add(o);
+		} else {
+			synchronized (this) {
+				scoreLeg(o);
+			}
+		}
+	}
+
+	private void scoreLeg(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -186,7 +252,18 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	}
 
 	@Override
-	synchronized public void handleActivity(PersonExperiencedActivity o) {
+	public void handleActivity(PersonExperiencedActivity o) {
+		ScoringShard shard = getShard(o.getAgentId());
+		if (shard != null) {
+			shard.add(o);
+		} else {
+			synchronized (this) {
+				scoreActivity(o);
+			}
+		}
+	}
+
+	private void scoreActivity(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -242,7 +319,40 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		return this.agentScorers.get(agentId);
 	}
 
+	private ScoringShard getShard(Id<Person> personId) {
+		ScoringShard[] shards = this.shards;
+		return shards == null ? null : shards[personId.index() % shards.length];
+	}
+
+	/**
+	 * Waits until the shards have scored everything passed to them so far, and stops them.
+	 *
+	 * @param marker {@link #FINISH_SCORING} lets every shard also finish the scoring functions of its persons before it stops.
+	 * @return <code>true</code> if there were shards to stop
+	 */
+	private boolean stopShards(Object marker) {
+		ScoringShard[] shards = this.shards;
+		if (shards == null) {
+			return false;
+		}
+		for (ScoringShard shard : shards) {
+			shard.add(marker);
+		}
+		try {
+			for (ScoringShard shard : shards) {
+				shard.join();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		this.shards = null;
+		return true;
+	}
+
 	public void finishScoringFunctions() {
+		// with shards, the scoring functions are finished in parallel in the shards, the score of a person is final
+		// as soon as its shard is done with it
+		boolean finishedInShards = stopShards(FINISH_SCORING);
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = this.exception.get();
 		if (throwable != null) {
@@ -252,8 +362,10 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 				throw new RuntimeException(throwable);
 			}
 		}
-		for (ScoringFunction sf : this.agentScorers.values()) {
-			sf.finish();
+		if (!finishedInShards) {
+			for (ScoringFunction sf : this.agentScorers.values()) {
+				sf.finish();
+			}
 		}
 		for (Entry<Id<Person>, TDoubleCollection> entry : this.partialScores.entrySet()) {
 			entry.getValue().add(this.getScoringFunctionForAgent(entry.getKey()).getScore());
@@ -281,4 +393,100 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	}
 
+	/**
+	 * Calls the scoring functions of the persons with <code>personId.index() % numberOfShards == shardIndex</code>.
+	 * Everything for one person is passed through the same queue, so the order in which the events, legs and
+	 * activities arrive from one thread is kept.
+	 */
+	private final class ScoringShard extends Thread {
+
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(SHARD_QUEUE_CAPACITY);
+		private final int shardIndex;
+		private final int numberOfShards;
+
+		ScoringShard(int shardIndex, int numberOfShards) {
+			super("ScoringShard-" + shardIndex);
+			setDaemon(true);
+			this.shardIndex = shardIndex;
+			this.numberOfShards = numberOfShards;
+		}
+
+		void add(Object o) {
+			try {
+				this.queue.put(o);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			List<Object> batch = new ArrayList<>(SHARD_QUEUE_CAPACITY);
+			try {
+				while (true) {
+					batch.add(this.queue.take());
+					this.queue.drainTo(batch);
+					for (Object o : batch) {
+						if (o == END_OF_SCORING) {
+							return;
+						}
+						if (o == FINISH_SCORING) {
+							if (exception.get() == null) {
+								finishScoringFunctions();
+							}
+							return;
+						}
+						// after an exception, the remaining items are only taken from the queue, so the producers do not block
+						if (exception.get() == null) {
+							score(o);
+						}
+					}
+					batch.clear();
+				}
+			} catch (InterruptedException e) {
+				exception.compareAndSet(null, e);
+			}
+		}
+
+		private void finishScoringFunctions() {
+			try {
+				for (Person person : population.getPersons().values()) {
+					if (person.getId().index() % this.numberOfShards == this.shardIndex) {
+						getScoringFunctionForAgent(person.getId()).finish();
+					}
+				}
+			} catch (Throwable t) {
+				exception.compareAndSet(null, t);
+			}
+		}
+
+		private void score(Object o) {
+			try {
+				if (o instanceof PersonExperiencedLeg) {
+					scoreLeg((PersonExperiencedLeg) o);
+				} else if (o instanceof PersonExperiencedActivity) {
+					scoreActivity((PersonExperiencedActivity) o);
+				} else if (o instanceof DriverLinkEnterEvent) {
+					DriverLinkEnterEvent e = (DriverLinkEnterEvent) o;
+					scoreEvent(getScoringFunctionForAgent(e.driverId), e.event);
+				} else {
+					Event event = (Event) o;
+					scoreEvent(getScoringFunctionForAgent(((HasPersonId) event).getPersonId()), event);
+				}
+			} catch (Throwable t) {
+				exception.compareAndSet(null, t);
+			}
+		}
+	}
+
+	private static final class DriverLinkEnterEvent {
+		private final Id<Person> driverId;
+		private final LinkEnterEvent event;
+
+		DriverLinkEnterEvent(Id<Person> driverId, LinkEnterEvent event) {
+			this.driverId = driverId;
+			this.event = event;
+		}
+	}
+
 }
@@ -33,28 +33,42 @@ import java.util.Map;
  *  the Link, which is possible if routing networks are used (there, link implement
  *  the HasIndex interface).
  *  
- *  If regular network are used, calls are forwarded to a MapBasedDataContainerProvider,
- *  which represents the lookup approach used so far.
+ *  If regular network are used, the position is taken from the index of the link id.
+ *  Links whose id was created after this provider are forwarded to a
+ *  MapBasedDataContainerProvider, which represents the lookup approach used so far.
  *  
  * @author cdobler
  */
 class ArrayBasedDataContainerProvider implements DataContainerProvider {
 
 	private final TravelTimeData[] arrayLinkData;
+	private final TravelTimeData[] idIndexLinkData;
 	private final DataContainerProvider delegate;
 	
 	public ArrayBasedDataContainerProvider(Map<Id<Link>, TravelTimeData> linkData, TravelTimeDataFactory ttDataFactory,
 			Network network) {
 		this.arrayLinkData = new TravelTimeData[network.getLinks().size()];
+		this.idIndexLinkData = new TravelTimeData[Id.getNumberOfIds(Link.class)];
 		this.delegate = new MapBasedDataContainerProvider(linkData, ttDataFactory);
 	}
 	
 	/*
 	 * This method is called from the EventHandler part of the TravelTimeCalculator.
-	 * There, only link ids are available. We cannot optimize this. 
+	 * There, only link ids are available, so the index of the id is used.
+	 * The array is not resized, as several threads might use it. The data is always taken
+	 * from the delegate first, so a lost write only costs another map lookup.
 	 */
 	@Override
 	public TravelTimeData getTravelTimeData(final Id<Link> linkId, final boolean createIfMissing) {
+		int index = linkId.index();
+		if (index < this.idIndexLinkData.length) {
+			TravelTimeData data = this.idIndexLinkData[index];
+			if (data == null) {
+				data = this.delegate.getTravelTimeData(linkId, createIfMissing);
+				this.idIndexLinkData[index] = data;
+			}
+			return data;
+		}
 		return this.delegate.getTravelTimeData(linkId, createIfMissing);
 	}
 	
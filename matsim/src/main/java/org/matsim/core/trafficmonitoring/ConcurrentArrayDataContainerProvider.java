@@ -0,0 +1,181 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ConcurrentArrayDataContainerProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
+
+/**
+ * Stores the travel times of all links in flat arrays, indexed by the index of the link id and the time slot.
+ * Per time slot, the sum and the number of the travel times are kept, so a travel time can be added with two
+ * atomic operations and without any lock. This allows several event handler threads to pass link leave events
+ * to the same {@link TravelTimeCalculator}.
+ * <p></p>
+ * For the travel time getters and the consolidation, every link of the network gets one {@link TravelTimeData}
+ * object that reads and writes the arrays. These objects are created once, so the event path does not create,
+ * box or hash anything.
+ * <p></p>
+ * Links whose id was created after this provider are not stored; their travel time is the free speed travel time.
+ * <p></p>
+ * The arrays are dense: they take 12 bytes per link id and time slot, also for link ids that are not part of the network.
+ *
+ * @see org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType#TravelTimeCalculatorConcurrentArray
+ */
+final class ConcurrentArrayDataContainerProvider implements DataContainerProvider {
+
+	private static final VarHandle DOUBLE_ARRAY = MethodHandles.arrayElementVarHandle(double[].class);
+	private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private final int numSlots;
+	private final int numLinks;
+	private final double[] travelTimeSums;
+	private final int[] travelTimeCounts;
+	private final boolean[] needsConsolidation;
+	private final LinkData[] linkData;
+
+	ConcurrentArrayDataContainerProvider(Network network, int numSlots) {
+		this.numSlots = numSlots;
+		this.numLinks = Id.getNumberOfIds(Link.class);
+		long size = (long) this.numLinks * numSlots;
+		if (size > Integer.MAX_VALUE) {
+			throw new RuntimeException("Too many link ids (" + this.numLinks + ") and time slots (" + numSlots + ") for "
+					+ TravelTimeCalculatorType.TravelTimeCalculatorConcurrentArray + ": " + size + " entries would be required, at most "
+					+ Integer.MAX_VALUE + " are supported. Use a larger time bin size or another travel time calculator type.");
+		}
+		this.travelTimeSums = new double[(int) size];
+		this.travelTimeCounts = new int[(int) size];
+		this.needsConsolidation = new boolean[this.numLinks];
+		this.linkData = new LinkData[this.numLinks];
+		for (Link link : network.getLinks().values()) {
+			this.linkData[link.getId().index()] = new LinkData(link, link.getId().index());
+		}
+	}
+
+	/**
+	 * Adds a travel time to the given time slot of a link. Can be called concurrently by several threads.
+	 */
+	void addTravelTime(int linkIndex, int timeSlot, double travelTime) {
+		if (linkIndex >= this.numLinks) {
+			return;
+		}
+		int index = linkIndex * this.numSlots + timeSlot;
+		double sum;
+		do {
+			sum = (double) DOUBLE_ARRAY.getVolatile(this.travelTimeSums, index);
+		} while (!DOUBLE_ARRAY.weakCompareAndSet(this.travelTimeSums, index, sum, sum + travelTime));
+		INT_ARRAY.getAndAdd(this.travelTimeCounts, index, 1);
+		this.needsConsolidation[linkIndex] = true;
+	}
+
+	void setNeedsConsolidation(int linkIndex) {
+		if (linkIndex < this.numLinks) {
+			this.needsConsolidation[linkIndex] = true;
+		}
+	}
+
+	void reset() {
+		Arrays.fill(this.travelTimeSums, 0.0);
+		Arrays.fill(this.travelTimeCounts, 0);
+		Arrays.fill(this.needsConsolidation, false);
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(Id<Link> linkId, boolean createIfMissing) {
+		int index = linkId.index();
+		return index < this.numLinks ? this.linkData[index] : null;
+	}
+
+	@Override
+	public TravelTimeData getTravelTimeData(Link link, boolean createIfMissing) {
+		TravelTimeData data = getTravelTimeData(link.getId(), createIfMissing);
+		if (data == null) {
+			// e.g. a link added to the network after the provider was created
+			return new LinkData(link, -1);
+		}
+		return data;
+	}
+
+	/**
+	 * The travel times of one link, as seen by the travel time getters.
+	 */
+	private final class LinkData extends TravelTimeData {
+		private final Link link;
+		private final int linkIndex;
+		private final int offset;
+
+		LinkData(Link link, int linkIndex) {
+			this.link = link;
+			this.linkIndex = linkIndex;
+			this.offset = linkIndex * numSlots;
+		}
+
+		@Override
+		public void resetTravelTimes() {
+			if (this.linkIndex >= 0) {
+				Arrays.fill(travelTimeSums, this.offset, this.offset + numSlots, 0.0);
+				Arrays.fill(travelTimeCounts, this.offset, this.offset + numSlots, 0);
+			}
+		}
+
+		@Override
+		void addTravelTime(int timeSlot, double traveltime) {
+			if (this.linkIndex >= 0) {
+				ConcurrentArrayDataContainerProvider.this.addTravelTime(this.linkIndex, timeSlot, traveltime);
+			}
+		}
+
+		@Override
+		void setTravelTime(int timeSlot, double traveltime) {
+			if (this.linkIndex >= 0) {
+				travelTimeSums[this.offset + timeSlot] = traveltime;
+				travelTimeCounts[this.offset + timeSlot] = 1;
+			}
+		}
+
+		@Override
+		double getTravelTime(int timeSlot, double now) {
+			if (this.linkIndex >= 0) {
+				int count = travelTimeCounts[this.offset + timeSlot];
+				if (count > 0) {
+					return travelTimeSums[this.offset + timeSlot] / count;
+				}
+			}
+			return this.link.getLength() / this.link.getFreespeed(now);
+		}
+
+		@Override
+		void setNeedsConsolidation(boolean flag) {
+			if (this.linkIndex >= 0) {
+				needsConsolidation[this.linkIndex] = flag;
+			}
+		}
+
+		@Override
+		boolean isNeedingConsolidation() {
+			return this.linkIndex >= 0 && needsConsolidation[this.linkIndex];
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * LinkEnterTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+
+/**
+ * The link currently entered by each vehicle and the time it entered it, indexed by the index of the vehicle id.
+ * <p></p>
+ * The data is stored in pages of fixed size that are never moved, so different vehicles can be updated
+ * concurrently by several threads without locking. Only adding a page for vehicle ids that were created later
+ * takes a lock.
+ */
+final class LinkEnterTimes {
+
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	// the page directories are replaced, but never modified after they are published
+	private volatile int[][] linkPages = new int[0][];
+	private volatile double[][] timePages = new double[0][];
+
+	LinkEnterTimes(int initialNumberOfVehicles) {
+		if (initialNumberOfVehicles > 0) {
+			addPage((initialNumberOfVehicles - 1) >>> PAGE_BITS);
+		}
+	}
+
+	/**
+	 * @return the index of the link the vehicle has entered, or -1
+	 */
+	int getLink(int vehicleIndex) {
+		int[][] pages = this.linkPages;
+		int page = vehicleIndex >>> PAGE_BITS;
+		if (page >= pages.length) {
+			return -1;
+		}
+		return pages[page][vehicleIndex & PAGE_MASK];
+	}
+
+	/**
+	 * @return the time the vehicle entered its link, only valid if {@link #getLink(int)} returns a link
+	 */
+	double getEnterTime(int vehicleIndex) {
+		double[][] pages = this.timePages;
+		int page = vehicleIndex >>> PAGE_BITS;
+		if (page >= pages.length) {
+			return Double.NaN;
+		}
+		return pages[page][vehicleIndex & PAGE_MASK];
+	}
+
+	void set(int vehicleIndex, int linkIndex, double enterTime) {
+		int page = vehicleIndex >>> PAGE_BITS;
+		if (page >= this.linkPages.length) {
+			addPage(page);
+		}
+		// linkPages is published after timePages, so if it contains the page, timePages does as well
+		int[][] links = this.linkPages;
+		double[][] times = this.timePages;
+		times[page][vehicleIndex & PAGE_MASK] = enterTime;
+		links[page][vehicleIndex & PAGE_MASK] = linkIndex;
+	}
+
+	/**
+	 * @return the index of the link the vehicle had entered, or -1
+	 */
+	int remove(int vehicleIndex) {
+		int[][] pages = this.linkPages;
+		int page = vehicleIndex >>> PAGE_BITS;
+		if (page >= pages.length) {
+			return -1;
+		}
+		int linkIndex = pages[page][vehicleIndex & PAGE_MASK];
+		pages[page][vehicleIndex & PAGE_MASK] = -1;
+		return linkIndex;
+	}
+
+	void clear() {
+		for (int[] page : this.linkPages) {
+			Arrays.fill(page, -1);
+		}
+	}
+
+	private synchronized void addPage(int page) {
+		int oldLength = this.linkPages.length;
+		if (page < oldLength) {
+			return;
+		}
+		int newLength = Math.max(page + 1, oldLength * 2);
+		int[][] links = Arrays.copyOf(this.linkPages, newLength);
+		double[][] times = Arrays.copyOf(this.timePages, newLength);
+		for (int i = oldLength; i < newLength; i++) {
+			links[i] = new int[PAGE_SIZE];
+			Arrays.fill(links[i], -1);
+			times[i] = new double[PAGE_SIZE];
+		}
+		this.timePages = times;
+		this.linkPages = links;
+	}
+}
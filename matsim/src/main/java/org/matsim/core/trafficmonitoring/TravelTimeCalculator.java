@@ -40,6 +40,7 @@ import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.events.handler.PrimitiveLinkEventHandler;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
@@ -48,7 +49,6 @@ import org.matsim.core.utils.collections.Tuple;
 import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleType;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -64,13 +64,16 @@ import java.util.concurrent.ConcurrentHashMap;
  * use {@link TravelTimeDataHashMap},}
  * as that one does not use any memory to time bins where no traffic occurred. By default,
  * {@link TravelTimeDataArray} is used.
+ * <br>
+ * With {@link ConcurrentArrayDataContainerProvider}, the travel times of all links are stored in flat arrays
+ * and updated without locks, so the link enter and leave events may be passed in by several threads.
  *
  * @author dgrether
  * @author mrieser
  */
 public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEventHandler,
 									     VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler, VehicleArrivesAtFacilityEventHandler,
-									     VehicleAbortsEventHandler {
+									     VehicleAbortsEventHandler, PrimitiveLinkEventHandler {
 	private static final Logger log = Logger.getLogger(TravelTimeCalculator.class);
 
 	private static final String ERROR_STUCK_AND_LINKTOLINK = "Using the stuck feature with turning move travel times is not available. As the next link of a stucked" +
@@ -85,9 +88,12 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	private Map<Tuple<Id<Link>, Id<Link>>, TravelTimeData> linkToLinkData;
 
-	private final DataContainerProvider dataContainerProvider;
+	private DataContainerProvider dataContainerProvider;
+	// only set if the travel times are stored in flat arrays, to bypass the data objects when handling events
+	private ConcurrentArrayDataContainerProvider concurrentDataContainerProvider = null;
 
-	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents;
+	// link currently entered by each vehicle and the enter time
+	private final LinkEnterTimes linkEnterTimes = new LinkEnterTimes(Id.getNumberOfIds(Vehicle.class));
 
 	private final Set<Id<Vehicle>> vehiclesToIgnore;
 	private final Set<String> analyzedModes;
@@ -122,6 +128,13 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			case TravelTimeCalculatorHashMap:
 				calculator.ttDataFactory = new TravelTimeDataHashMapFactory(network);
 				break;
+			case TravelTimeCalculatorConcurrentArray:
+				calculator.ttDataFactory = new TravelTimeDataArrayFactory(network, calculator.numSlots);
+				if (calculator.calculateLinkTravelTimes) {
+					calculator.concurrentDataContainerProvider = new ConcurrentArrayDataContainerProvider(network, calculator.numSlots);
+					calculator.dataContainerProvider = calculator.concurrentDataContainerProvider;
+				}
+				break;
 			default:
 				throw new RuntimeException(config.getTravelTimeCalculatorType() + " is unknown!");
 		}
@@ -255,11 +268,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 			// assume that every link has 2 outgoing links as default
 			this.linkToLinkData = new ConcurrentHashMap<>((int) (network.getLinks().size() * 1.4 * 2));
 		}
-		this.linkEnterEvents = new ConcurrentHashMap<>();
-
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
-		this.vehiclesToIgnore = new HashSet<>();
+		this.vehiclesToIgnore = ConcurrentHashMap.newKeySet();
 
 
 		this.reset(0);
@@ -268,37 +279,57 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 
 	@Override
 	public void handleEvent(final LinkEnterEvent e) {
+		handleLinkEnter(e.getTime(), e.getVehicleId().index(), e.getLinkId().index());
+	}
+
+	@Override
+	public void handleLinkEnter(final double time, final int vehicleIndex, final int linkIndex) {
 		/* if only some modes are analyzed, we check whether the vehicles
 		 * performs a trip with one of those modes. if not, we skip the event. */
-		if (filterAnalyzedModes && vehiclesToIgnore.contains(e.getVehicleId())) return;
+		if (filterAnalyzedModes && vehiclesToIgnore.contains(Id.get(vehicleIndex, Vehicle.class))) return;
 
-		LinkEnterEvent oldEvent = this.linkEnterEvents.put(e.getVehicleId(), e);
-		if ((oldEvent != null) && this.calculateLinkToLinkTravelTimes) {
-			Tuple<Id<Link>, Id<Link>> fromToLink = new Tuple<>(oldEvent.getLinkId(), e.getLinkId());
+		int oldLink = this.linkEnterTimes.getLink(vehicleIndex);
+		double enterTime = this.linkEnterTimes.getEnterTime(vehicleIndex);
+		this.linkEnterTimes.set(vehicleIndex, linkIndex, time);
+		if ((oldLink >= 0) && this.calculateLinkToLinkTravelTimes) {
+			Tuple<Id<Link>, Id<Link>> fromToLink = new Tuple<>(Id.get(oldLink, Link.class), Id.get(linkIndex, Link.class));
 			TravelTimeData data = getLinkToLinkTravelTimeData(fromToLink );
-			double enterTime = oldEvent.getTime();
 
 			final int timeSlot = this.aggregator.getTimeSlotIndex(enterTime );
-			data.addTravelTime(timeSlot, e.getTime() - enterTime );
+			data.addTravelTime(timeSlot, time - enterTime );
 			data.setNeedsConsolidation( true );
 		}
 	}
 
 	@Override
 	public void handleEvent(final LinkLeaveEvent e) {
-		if (this.calculateLinkTravelTimes) {
-			LinkEnterEvent oldEvent = this.linkEnterEvents.get(e.getVehicleId());
-			if (oldEvent != null) {
-				TravelTimeData data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
-				double enterTime = oldEvent.getTime();
+		handleLinkLeave(e.getTime(), e.getVehicleId().index(), e.getLinkId().index());
+	}
 
+	@Override
+	public void handleLinkLeave(final double time, final int vehicleIndex, final int linkIndex) {
+		if (this.calculateLinkTravelTimes) {
+			if (this.linkEnterTimes.getLink(vehicleIndex) >= 0) {
+				double enterTime = this.linkEnterTimes.getEnterTime(vehicleIndex);
 				final int timeSlot = this.aggregator.getTimeSlotIndex(enterTime );
-				data.addTravelTime(timeSlot, e.getTime() - enterTime );
-				data.setNeedsConsolidation( true );
+				if (this.concurrentDataContainerProvider != null) {
+					this.concurrentDataContainerProvider.addTravelTime(linkIndex, timeSlot, time - enterTime);
+				} else {
+					TravelTimeData data = this.dataContainerProvider.getTravelTimeData(Id.get(linkIndex, Link.class), true);
+					data.addTravelTime(timeSlot, time - enterTime );
+					data.setNeedsConsolidation( true );
+				}
 			}
 		}
 	}
 
+	/**
+	 * @return the index of the link the vehicle had entered, or -1
+	 */
+	private int removeEnteredLink(final Id<Vehicle> vehicleId) {
+		return this.linkEnterTimes.remove(vehicleId.index());
+	}
+
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		/* if filtering transport modes is enabled and the vehicles
@@ -314,7 +345,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		/* remove EnterEvents from list when a vehicle arrives.
 		 * otherwise, the activity duration would counted as travel time, when the
 		 * vehicle departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		removeEnteredLink(event.getVehicleId());
 
 		// try to remove vehicles from set with filtered vehicles
 		if (filterAnalyzedModes) this.vehiclesToIgnore.remove(event.getVehicleId());
@@ -325,15 +356,19 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 		/* remove EnterEvents from list when a bus stops on a link.
 		 * otherwise, the stop time would counted as travel time, when the
 		 * bus departs again and leaves the link! */
-		this.linkEnterEvents.remove(event.getVehicleId());
+		removeEnteredLink(event.getVehicleId());
 	}
 
 	@Override
 	public void handleEvent(VehicleAbortsEvent event) {
-		LinkEnterEvent e = this.linkEnterEvents.remove(event.getVehicleId());
-		if (e != null) {
-			TravelTimeData data = this.dataContainerProvider.getTravelTimeData(e.getLinkId(), true);
-			data.setNeedsConsolidation( true );
+		int link = removeEnteredLink(event.getVehicleId());
+		if (link >= 0) {
+			if (this.concurrentDataContainerProvider != null) {
+				this.concurrentDataContainerProvider.setNeedsConsolidation(link);
+			} else {
+				TravelTimeData data = this.dataContainerProvider.getTravelTimeData(Id.get(link, Link.class), true);
+				data.setNeedsConsolidation( true );
+			}
 
 			//			this.aggregator.addStuckEventTravelTime(data, e.getTime(), event.getTime());
 			// this functionality is no longer there.
@@ -407,6 +442,33 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 								    "if calculation is switched off by config option!");
 	}
 
+	/**
+	 * @return the consolidated travel time of the given time slot of the link, without interpolation
+	 */
+	/* package */ double getLinkTravelTimeOfTimeSlot(final Link link, final int timeSlot) {
+		if (!this.calculateLinkTravelTimes) {
+			throw new IllegalStateException("No link travel time is available " +
+									    "if calculation is switched off by config option!");
+		}
+		TravelTimeData data = this.dataContainerProvider.getTravelTimeData(link, true);
+		if ( data.isNeedingConsolidation() ) {
+			consolidateData(data);
+		}
+		return data.getTravelTime(timeSlot, timeSlot * this.timeSlice);
+	}
+
+	/* package */ int getNumberOfTimeSlots() {
+		return this.numSlots;
+	}
+
+	/* package */ int getTimeSlice() {
+		return this.timeSlice;
+	}
+
+	/* package */ boolean isInterpolatingTravelTimes() {
+		return this.travelTimeGetter instanceof LinearInterpolatingTravelTimeGetter;
+	}
+
 	private double getLinkToLinkTravelTime(final Id<Link> fromLinkId, final Id<Link> toLinkId, double time) {
 		if (!this.calculateLinkToLinkTravelTimes) {
 			throw new IllegalStateException("No link to link travel time is available " +
@@ -426,6 +488,9 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 				data.resetTravelTimes();
 				data.setNeedsConsolidation( false );
 			}
+			if (this.concurrentDataContainerProvider != null) {
+				this.concurrentDataContainerProvider.reset();
+			}
 		}
 		if (this.calculateLinkToLinkTravelTimes){
 			for (TravelTimeData data : this.linkToLinkData.values()){
@@ -433,7 +498,7 @@ public final class TravelTimeCalculator implements LinkEnterEventHandler, LinkLe
 				data.setNeedsConsolidation( false );
 			}
 		}
-		this.linkEnterEvents.clear();
+		this.linkEnterTimes.clear();
 		this.vehiclesToIgnore.clear();
 	}
 
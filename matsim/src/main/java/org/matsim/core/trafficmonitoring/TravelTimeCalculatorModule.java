@@ -65,6 +65,14 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 				// generate and bind the observer:
 				bind(TravelTimeCalculator.class).annotatedWith(Names.named(mode)).toProvider(new SingleModeTravelTimeCalculatorProvider(mode)).in(Singleton.class);
 
+				if (getConfig().travelTimeCalculator().isUseSnapshots()) {
+					// the router reads immutable snapshots, which are taken after every mobsim:
+					bind(TravelTimeSnapshotService.class).annotatedWith(Names.named(mode)).toProvider(new TravelTimeSnapshotServiceProvider(Key.get(TravelTimeCalculator.class, Names.named(mode)))).in(Singleton.class);
+					addControlerListenerBinding().to(Key.get(TravelTimeSnapshotService.class, Names.named(mode)));
+					addTravelTimeBinding(mode).toProvider(new SnapshotTravelTimes(Key.get(TravelTimeSnapshotService.class, Names.named(mode)))).in(Singleton.class);
+					continue;
+				}
+
 				// bind the observer to travel time provider (for router):
 				addTravelTimeBinding(mode).toProvider(new Provider<TravelTime>() {
 					@Inject Injector injector;
@@ -87,7 +95,13 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 			bind(TravelTimeCalculator.class).in(Singleton.class);
 			
 			// bind the TravelTime objects.  In this case, this just passes on the same information from TravelTimeCalculator to each individual mode:
-			if (getConfig().travelTimeCalculator().isCalculateLinkTravelTimes()) {
+			if (getConfig().travelTimeCalculator().isCalculateLinkTravelTimes() && getConfig().travelTimeCalculator().isUseSnapshots()) {
+				bind(TravelTimeSnapshotService.class).toProvider(new TravelTimeSnapshotServiceProvider(Key.get(TravelTimeCalculator.class))).in(Singleton.class);
+				addControlerListenerBinding().to(TravelTimeSnapshotService.class);
+				for ( String mode : getConfig().plansCalcRoute().getNetworkModes() ) {
+					addTravelTimeBinding(mode).toProvider(new SnapshotTravelTimes(Key.get(TravelTimeSnapshotService.class)));
+				}
+			} else if (getConfig().travelTimeCalculator().isCalculateLinkTravelTimes()) {
 //				for (String mode : CollectionUtils.stringToSet(getConfig().travelTimeCalculator().getAnalyzedModesAsString() )) {
 				for ( String mode : getConfig().plansCalcRoute().getNetworkModes() ) {
 					addTravelTimeBinding(mode).toProvider(ObservedLinkTravelTimes.class);
@@ -144,6 +158,40 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 
 	}
 
+	private static class TravelTimeSnapshotServiceProvider implements Provider<TravelTimeSnapshotService> {
+
+		@Inject Injector injector;
+		@Inject TravelTimeCalculatorConfigGroup config;
+		@Inject Network network;
+
+		private final Key<TravelTimeCalculator> calculatorKey;
+
+		TravelTimeSnapshotServiceProvider(Key<TravelTimeCalculator> calculatorKey) {
+			this.calculatorKey = calculatorKey;
+		}
+
+		@Override
+		public TravelTimeSnapshotService get() {
+			return new TravelTimeSnapshotService(injector.getInstance(calculatorKey), network, config.getSmoothingAlpha());
+		}
+	}
+
+	private static class SnapshotTravelTimes implements Provider<TravelTime> {
+
+		@Inject Injector injector;
+
+		private final Key<TravelTimeSnapshotService> serviceKey;
+
+		SnapshotTravelTimes(Key<TravelTimeSnapshotService> serviceKey) {
+			this.serviceKey = serviceKey;
+		}
+
+		@Override
+		public TravelTime get() {
+			return injector.getInstance(serviceKey).getTravelTime();
+		}
+	}
+
 	private static class ObservedLinkToLinkTravelTimes implements Provider<LinkToLinkTravelTime> {
 
 		@Inject
@@ -0,0 +1,148 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeSnapshot.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Immutable link travel times of one iteration, taken from a {@link TravelTimeCalculator} after the mobsim.
+ * A snapshot can be read by any number of threads without locking and can be kept as long as needed,
+ * e.g. by analyses that compare iterations.
+ * <p></p>
+ * The travel times are stored per link and time bin. Links without observed traffic do not store anything
+ * and return the free speed travel time. If the travel times of a link did not change compared to the previous
+ * snapshot, the array of the previous snapshot is shared, so taking a snapshot only copies what changed.
+ *
+ * @see TravelTimeSnapshotService
+ */
+public final class TravelTimeSnapshot implements TravelTime {
+
+	private final int iteration;
+	private final int binSize;
+	private final int numSlots;
+	private final double halfBinSize;
+	private final boolean interpolate;
+	// indexed by the index of the link id, null if there are no observations
+	private final double[][] linkTravelTimes;
+
+	private TravelTimeSnapshot(int iteration, int binSize, int numSlots, boolean interpolate, double[][] linkTravelTimes) {
+		this.iteration = iteration;
+		this.binSize = binSize;
+		this.numSlots = numSlots;
+		this.halfBinSize = binSize / 2.0;
+		this.interpolate = interpolate;
+		this.linkTravelTimes = linkTravelTimes;
+	}
+
+	/**
+	 * @return a snapshot with the free speed travel times for all links, with the time bins of the calculator
+	 */
+	static TravelTimeSnapshot createFreeSpeedSnapshot(int iteration, TravelTimeCalculator calculator) {
+		return new TravelTimeSnapshot(iteration, calculator.getTimeSlice(), calculator.getNumberOfTimeSlots(),
+				calculator.isInterpolatingTravelTimes(), new double[Id.getNumberOfIds(Link.class)][]);
+	}
+
+	/**
+	 * Takes the current travel times of the calculator. With an <code>alpha</code> smaller than 1, the new travel times
+	 * are the exponential moving average <code>alpha * observed + (1 - alpha) * previous</code>.
+	 */
+	static TravelTimeSnapshot create(int iteration, TravelTimeCalculator calculator, Network network, TravelTimeSnapshot previous, double alpha) {
+		int numSlots = calculator.getNumberOfTimeSlots();
+		int binSize = calculator.getTimeSlice();
+		if (previous.numSlots != numSlots || previous.binSize != binSize) {
+			throw new IllegalArgumentException("the previous snapshot has different time bins than the travel time calculator");
+		}
+		double[][] linkTravelTimes = new double[Math.max(Id.getNumberOfIds(Link.class), previous.linkTravelTimes.length)][];
+		double[] travelTimes = new double[numSlots];
+		for (Link link : network.getLinks().values()) {
+			int index = link.getId().index();
+			double[] previousTravelTimes = index < previous.linkTravelTimes.length ? previous.linkTravelTimes[index] : null;
+			boolean isFreeSpeed = previousTravelTimes == null;
+			for (int slot = 0; slot < numSlots; slot++) {
+				double freeSpeedTravelTime = link.getLength() / link.getFreespeed(slot * binSize);
+				double observed = calculator.getLinkTravelTimeOfTimeSlot(link, slot);
+				double old = previousTravelTimes == null ? freeSpeedTravelTime : previousTravelTimes[slot];
+				travelTimes[slot] = alpha * observed + (1 - alpha) * old;
+				isFreeSpeed = isFreeSpeed && travelTimes[slot] == freeSpeedTravelTime;
+			}
+			if (isFreeSpeed) {
+				continue;
+			}
+			if (previousTravelTimes != null && Arrays.equals(previousTravelTimes, travelTimes)) {
+				linkTravelTimes[index] = previousTravelTimes;
+			} else {
+				linkTravelTimes[index] = travelTimes.clone();
+			}
+		}
+		return new TravelTimeSnapshot(iteration, binSize, numSlots, calculator.isInterpolatingTravelTimes(), linkTravelTimes);
+	}
+
+	/**
+	 * @return the iteration after whose mobsim this snapshot was taken
+	 */
+	public int getIteration() {
+		return this.iteration;
+	}
+
+	@Override
+	public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+		double travelTime = getObservedTravelTime(link, Math.max(0, time));
+		if (vehicle != null) {
+			// as in the travel time calculator, vehicles cannot be faster than their maximum velocity
+			VehicleType vehicleType = vehicle.getType();
+			if (vehicleType != null) {
+				travelTime = Math.max(travelTime, link.getLength() / vehicleType.getMaximumVelocity());
+			}
+		}
+		return travelTime;
+	}
+
+	private double getObservedTravelTime(Link link, double time) {
+		int index = link.getId().index();
+		double[] travelTimes = index < this.linkTravelTimes.length ? this.linkTravelTimes[index] : null;
+		if (travelTimes == null) {
+			return link.getLength() / link.getFreespeed(time);
+		}
+		int slot = TimeBinUtils.getTimeBinIndex(time, this.binSize, this.numSlots);
+		if (!this.interpolate || time <= this.halfBinSize || time >= this.numSlots * this.binSize - this.halfBinSize) {
+			return travelTimes[slot];
+		}
+		// the same interpolation between the midpoints of the time bins as in LinearInterpolatingTravelTimeGetter
+		int firstSlot = (slot * this.binSize + this.halfBinSize > time) ? slot - 1 : slot;
+		double first = travelTimes[firstSlot];
+		double second = travelTimes[Math.min(firstSlot + 1, this.numSlots - 1)];
+		double dx = time - (firstSlot * this.binSize + this.halfBinSize);
+		return first + (second - first) * dx / this.binSize;
+	}
+
+	/* package (for tests) */ boolean sharesTravelTimesWith(TravelTimeSnapshot other, Link link) {
+		int index = link.getId().index();
+		return index < this.linkTravelTimes.length && index < other.linkTravelTimes.length
+				&& this.linkTravelTimes[index] != null && this.linkTravelTimes[index] == other.linkTravelTimes[index];
+	}
+}
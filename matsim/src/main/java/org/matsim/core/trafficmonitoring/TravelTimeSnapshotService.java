@@ -0,0 +1,98 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeSnapshotService.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Takes a {@link TravelTimeSnapshot} of a {@link TravelTimeCalculator} after every mobsim, optionally smoothed over
+ * the iterations with an exponential moving average (as in the dvrp offline travel time estimator).
+ * <p></p>
+ * {@link #getTravelTime()} always reads the latest snapshot. As a new snapshot is only taken after the mobsim, the
+ * routers see the same travel times during the whole replanning, while the calculator already collects the
+ * data of the next iteration. Users that need the travel times of one iteration for longer keep the snapshot
+ * from {@link #getCurrentSnapshot()}.
+ *
+ * @see org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup#isUseSnapshots()
+ */
+public final class TravelTimeSnapshotService implements AfterMobsimListener {
+
+	private static final Logger log = Logger.getLogger(TravelTimeSnapshotService.class);
+
+	private final TravelTimeCalculator calculator;
+	private final Network network;
+	private final double alpha;
+	private volatile TravelTimeSnapshot currentSnapshot;
+
+	private final TravelTime travelTime = new TravelTime() {
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			return TravelTimeSnapshotService.this.currentSnapshot.getLinkTravelTime(link, time, person, vehicle);
+		}
+	};
+
+	/**
+	 * @param alpha the weight of the travel times of the last mobsim, in (0,1]; 1 means no smoothing.
+	 */
+	public TravelTimeSnapshotService(TravelTimeCalculator calculator, Network network, double alpha) {
+		if (alpha <= 0 || alpha > 1) {
+			throw new IllegalArgumentException("alpha must be in (0,1], but is " + alpha);
+		}
+		this.calculator = calculator;
+		this.network = network;
+		this.alpha = alpha;
+		// before the first mobsim, the calculator only knows the free speed travel times
+		this.currentSnapshot = TravelTimeSnapshot.createFreeSpeedSnapshot(-1, calculator);
+	}
+
+	@Override
+	public void notifyAfterMobsim(AfterMobsimEvent event) {
+		takeSnapshot(event.getIteration());
+	}
+
+	/**
+	 * Takes a new snapshot of the calculator, smoothed with the current one, and makes it the current snapshot.
+	 */
+	public TravelTimeSnapshot takeSnapshot(int iteration) {
+		long start = System.nanoTime();
+		TravelTimeSnapshot snapshot = TravelTimeSnapshot.create(iteration, this.calculator, this.network, this.currentSnapshot, this.alpha);
+		this.currentSnapshot = snapshot;
+		log.info("took travel time snapshot of iteration " + iteration + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+		return snapshot;
+	}
+
+	public TravelTimeSnapshot getCurrentSnapshot() {
+		return this.currentSnapshot;
+	}
+
+	/**
+	 * @return travel times that always read the current snapshot.
+	 */
+	public TravelTime getTravelTime() {
+		return this.travelTime;
+	}
+}
@@ -0,0 +1,66 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ConvertEvents.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.run;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.events.algorithms.EventWriterJson;
+import org.matsim.core.events.algorithms.EventWriterXML;
+
+import java.io.File;
+
+/**
+ * Converts an events file from one format into another, e.g. to convert the compact binary events
+ * (<code>.bin</code>) into xml events for tools not supporting the binary format. The formats are detected
+ * from the file names.
+ */
+public class ConvertEvents {
+
+	public static void run(final String inputEventsFile, final String outputEventsFile) {
+		EventWriter writer;
+		String lcOutput = outputEventsFile.toLowerCase();
+		if (lcOutput.endsWith(".bin")) {
+			writer = new EventWriterBinary(outputEventsFile);
+		} else if (lcOutput.endsWith(".ndjson") || lcOutput.endsWith(".ndjson.gz")) {
+			writer = new EventWriterJson(new File(outputEventsFile));
+		} else {
+			writer = new EventWriterXML(outputEventsFile);
+		}
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(writer);
+		events.initProcessing();
+		new MatsimEventsReader(events).readFile(inputEventsFile);
+		events.finishProcessing();
+		writer.closeFile();
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("usage: ConvertEvents input-events-file output-events-file");
+			System.exit(1);
+		}
+		run(args[0], args[1]);
+	}
+
+}
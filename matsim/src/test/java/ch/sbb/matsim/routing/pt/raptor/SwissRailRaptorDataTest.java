@@ -4,9 +4,15 @@
 
 package ch.sbb.matsim.routing.pt.raptor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 /**
@@ -82,4 +88,75 @@ public class SwissRailRaptorDataTest {
         Assert.assertEquals("number of transfers should have stayed the same.", data2.transfers.length, data4.transfers.length);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testIncrementalUpdate() {
+        Fixture f = new Fixture();
+        f.init();
+
+        f.config.transitRouter().setMaxBeelineWalkConnectionDistance(1000);
+        RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(f.config);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.schedule, null, raptorConfig, f.network, null);
+        List<String> originalTransfers = getTransfers(data);
+        Assert.assertFalse(originalTransfers.isEmpty());
+
+        // remove a line
+        f.schedule.removeTransitLine(f.greenLine);
+        SwissRailRaptorData data2 = SwissRailRaptorData.update(data, f.schedule, null, raptorConfig, f.network, null);
+        assertSameData(SwissRailRaptorData.create(f.schedule, null, raptorConfig, f.network, null), data2);
+        Assert.assertEquals("the previous data must not be modified.", originalTransfers, getTransfers(data));
+
+        // add the line again
+        f.schedule.addTransitLine(f.greenLine);
+        SwissRailRaptorData data3 = SwissRailRaptorData.update(data2, f.schedule, null, raptorConfig, f.network, null);
+        assertSameData(data, data3);
+
+        // change the departures of a route
+        TransitRoute blueRoute = f.blueLine.getRoutes().values().iterator().next();
+        Departure lastDeparture = null;
+        for (Departure dep : blueRoute.getDepartures().values()) {
+            if (lastDeparture == null || dep.getDepartureTime() > lastDeparture.getDepartureTime()) {
+                lastDeparture = dep;
+            }
+        }
+        blueRoute.removeDeparture(lastDeparture);
+        SwissRailRaptorData data4 = SwissRailRaptorData.update(data3, f.schedule, null, raptorConfig, f.network, null);
+        assertSameData(SwissRailRaptorData.create(f.schedule, null, raptorConfig, f.network, null), data4);
+
+        // changed minimal transfer times lead to a full update
+        f.schedule.getMinimalTransferTimes().set(Id.create(19, TransitStopFacility.class), Id.create(9, TransitStopFacility.class), 345);
+        SwissRailRaptorData data5 = SwissRailRaptorData.update(data4, f.schedule, null, raptorConfig, f.network, null);
+        assertSameData(SwissRailRaptorData.create(f.schedule, null, raptorConfig, f.network, null), data5);
+    }
+
+    private static void assertSameData(SwissRailRaptorData expected, SwissRailRaptorData actual) {
+        Assert.assertEquals(expected.countStops, actual.countStops);
+        Assert.assertEquals(expected.countRouteStops, actual.countRouteStops);
+        Assert.assertArrayEquals(expected.departures, actual.departures);
+        for (int i = 0; i < expected.countRouteStops; i++) {
+            Assert.assertSame(expected.routeStops[i].routeStop, actual.routeStops[i].routeStop);
+        }
+        Assert.assertEquals(getTransfers(expected), getTransfers(actual));
+    }
+
+    private static List<String> getTransfers(SwissRailRaptorData data) {
+        List<String> transfers = new ArrayList<>();
+        for (int i = 0; i < data.countRouteStops; i++) {
+            SwissRailRaptorData.RRouteStop routeStop = data.routeStops[i];
+            for (int t = routeStop.indexFirstTransfer; t < routeStop.indexFirstTransfer + routeStop.countTransfers; t++) {
+                SwissRailRaptorData.RTransfer transfer = data.transfers[t];
+                Assert.assertEquals(i, transfer.fromRouteStop);
+                transfers.add(toString(data, transfer.fromRouteStop) + " > " + toString(data, transfer.toRouteStop)
+                        + " " + transfer.transferTime + " " + transfer.transferDistance);
+            }
+        }
+        Collections.sort(transfers);
+        return transfers;
+    }
+
+    private static String toString(SwissRailRaptorData data, int routeStopIndex) {
+        SwissRailRaptorData.RRouteStop routeStop = data.routeStops[routeStopIndex];
+        int stopPosition = routeStopIndex - data.routes[routeStop.transitRouteIndex].indexFirstRouteStop;
+        return routeStop.line.getId() + "/" + routeStop.route.getId() + "/" + stopPosition;
+    }
+
+}
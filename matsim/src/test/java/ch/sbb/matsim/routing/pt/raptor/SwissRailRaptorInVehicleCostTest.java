@@ -105,6 +105,62 @@ public class SwissRailRaptorInVehicleCostTest {
 		runTest(f, new CapacityDependentInVehicleCostCalculator(1.0, 0.3, 0.6, 2.0), f.slowLineId);
 	}
 
+	@Test
+	public void testPaxCountAtDeparture_matchesDepartureData() {
+		Fixture f = new Fixture();
+		OccupancyData occupancyData = new OccupancyData();
+		OccupancyTracker tracker = new OccupancyTracker(occupancyData, f.scenario, new DefaultRaptorInVehicleCostCalculator(), EventsUtils.createEventsManager(), new SubpopulationScoringParameters(f.scenario));
+		fillExecutionTracker(f, tracker);
+
+		SwissRailRaptorData raptorData = SwissRailRaptorData.create(
+				f.scenario.getTransitSchedule(), f.scenario.getTransitVehicles(),
+				RaptorUtils.createStaticConfig(f.config),
+				f.scenario.getNetwork(),
+				occupancyData);
+
+		int totalPaxCount = 0;
+		for (SwissRailRaptorData.RRouteStop routeStop : raptorData.routeStops) {
+			SwissRailRaptorData.RRoute route = raptorData.routes[routeStop.transitRouteIndex];
+			for (int depIndex = route.indexFirstDeparture; depIndex < route.indexFirstDeparture + route.countDepartures; depIndex++) {
+				OccupancyData.DepartureData depData = occupancyData.getDepartureData(routeStop.line.getId(), routeStop.route.getId(), routeStop.routeStop.getStopFacility().getId(), raptorData.departureIds[depIndex]);
+				int expected = depData == null ? 0 : depData.paxCountAtDeparture;
+				Assert.assertEquals(expected, occupancyData.getPaxCountAtDeparture(raptorData, routeStop.index, depIndex));
+				totalPaxCount += expected;
+			}
+		}
+		// f0: 1 pax at A, B, C; f1: 4 pax at A, B, C; f2: 4 pax at A
+		Assert.assertEquals(19, totalPaxCount);
+	}
+
+	@Test
+	public void testPaxCountAtDeparture_alternatingRaptorData() {
+		Fixture f = new Fixture();
+		OccupancyData occupancyData = new OccupancyData();
+		OccupancyTracker tracker = new OccupancyTracker(occupancyData, f.scenario, new DefaultRaptorInVehicleCostCalculator(), EventsUtils.createEventsManager(), new SubpopulationScoringParameters(f.scenario));
+		fillExecutionTracker(f, tracker);
+
+		// e.g. an old and an updated snapshot of the raptor data, both still used by routers
+		SwissRailRaptorData raptorData1 = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), f.scenario.getTransitVehicles(),
+				RaptorUtils.createStaticConfig(f.config), f.scenario.getNetwork(), occupancyData);
+		SwissRailRaptorData raptorData2 = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), f.scenario.getTransitVehicles(),
+				RaptorUtils.createStaticConfig(f.config), f.scenario.getNetwork(), occupancyData);
+
+		int totalPaxCount1 = 0;
+		int totalPaxCount2 = 0;
+		for (SwissRailRaptorData.RRouteStop routeStop : raptorData1.routeStops) {
+			SwissRailRaptorData.RRoute route = raptorData1.routes[routeStop.transitRouteIndex];
+			for (int depIndex = route.indexFirstDeparture; depIndex < route.indexFirstDeparture + route.countDepartures; depIndex++) {
+				int paxCount1 = occupancyData.getPaxCountAtDeparture(raptorData1, routeStop.index, depIndex);
+				int paxCount2 = occupancyData.getPaxCountAtDeparture(raptorData2, routeStop.index, depIndex);
+				Assert.assertEquals(paxCount1, paxCount2);
+				totalPaxCount1 += paxCount1;
+				totalPaxCount2 += paxCount2;
+			}
+		}
+		Assert.assertEquals(19, totalPaxCount1);
+		Assert.assertEquals(19, totalPaxCount2);
+	}
+
 	private void runTest(Fixture f, RaptorInVehicleCostCalculator inVehCostCalcualtor, Id<TransitLine> expectedTransitLine) {
 		OccupancyData occupancyData = new OccupancyData();
 		OccupancyTracker tracker = new OccupancyTracker(occupancyData, f.scenario, new DefaultRaptorInVehicleCostCalculator(), EventsUtils.createEventsManager(), new SubpopulationScoringParameters(f.scenario));
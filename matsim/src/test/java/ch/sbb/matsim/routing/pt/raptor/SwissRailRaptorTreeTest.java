@@ -13,6 +13,7 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -401,6 +402,84 @@ public class SwissRailRaptorTreeTest {
         Assert.assertNull(stage5.line); // egress_walk
     }
 
+    @Test
+    public void testProfile_atLeastAsGoodAsTrees() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig config = RaptorUtils.createStaticConfig(f.config);
+        config.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), null, config, f.scenario.getNetwork(), null);
+        DefaultRaptorStopFinder stopFinder = new DefaultRaptorStopFinder(new DefaultRaptorIntermodalAccessEgress(), null);
+        SwissRailRaptor raptor = new SwissRailRaptor(data, new DefaultRaptorParametersForPerson(f.scenario.getConfig()),
+                new LeastCostRaptorRouteSelector(), stopFinder, new DefaultRaptorInVehicleCostCalculator());
+
+        RaptorParameters raptorParams = RaptorUtils.createParameters(f.config);
+
+        TransitStopFacility fromStop = f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class));
+        double earliestDepTime = 7*3600;
+        double latestDepTime = 8*3600;
+        Map<Id<TransitStopFacility>, List<TravelInfo>> profiles = raptor.calcTreeProfile(Collections.singletonList(fromStop), earliestDepTime, latestDepTime, raptorParams, null);
+
+        Assert.assertFalse(profiles.containsKey(fromStop.getId())); // walk-only connections are not part of the profile
+
+        for (double depTime = earliestDepTime; depTime <= latestDepTime; depTime += 60) {
+            Map<Id<TransitStopFacility>, TravelInfo> tree = raptor.calcTree(fromStop, depTime, raptorParams, null);
+            for (Map.Entry<Id<TransitStopFacility>, TravelInfo> e : tree.entrySet()) {
+                TravelInfo treeInfo = e.getValue();
+                if (treeInfo.isWalkOnly()) {
+                    continue;
+                }
+                List<TravelInfo> profile = profiles.get(e.getKey());
+                Assert.assertNotNull("Stop " + e.getKey() + " is not in the profile.", profile);
+                double bestArrivalTime = Double.POSITIVE_INFINITY;
+                for (TravelInfo info : profile) {
+                    if (info.ptDepartureTime >= depTime) {
+                        bestArrivalTime = Math.min(bestArrivalTime, info.ptArrivalTime);
+                    }
+                }
+                // the tree contains the least-cost connection, the profile might also know a more expensive, but faster one
+                Assert.assertTrue("late arrival at stop " + e.getKey() + " for departure at " + Time.writeTime(depTime), bestArrivalTime <= treeInfo.ptArrivalTime);
+            }
+        }
+    }
+
+    @Test
+    public void testProfile_paretoSets() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig config = RaptorUtils.createStaticConfig(f.config);
+        config.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), null, config, f.scenario.getNetwork(), null);
+        DefaultRaptorStopFinder stopFinder = new DefaultRaptorStopFinder(new DefaultRaptorIntermodalAccessEgress(), null);
+        SwissRailRaptor raptor = new SwissRailRaptor(data, new DefaultRaptorParametersForPerson(f.scenario.getConfig()),
+                new LeastCostRaptorRouteSelector(), stopFinder, new DefaultRaptorInVehicleCostCalculator());
+
+        RaptorParameters raptorParams = RaptorUtils.createParameters(f.config);
+
+        List<TransitStopFacility> fromStops = new ArrayList<>();
+        fromStops.add(f.schedule.getFacilities().get(Id.create(2, TransitStopFacility.class)));
+        fromStops.add(f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class)));
+        Map<Id<TransitStopFacility>, List<TravelInfo>> profiles = raptor.calcTreeProfile(fromStops, 7*3600, 9*3600, raptorParams, null);
+
+        Assert.assertFalse(profiles.isEmpty());
+        for (Map.Entry<Id<TransitStopFacility>, List<TravelInfo>> e : profiles.entrySet()) {
+            List<TravelInfo> profile = e.getValue();
+            Assert.assertFalse(profile.isEmpty());
+            TravelInfo previous = null;
+            for (TravelInfo info : profile) {
+                Assert.assertFalse(info.isWalkOnly());
+                if (previous != null) {
+                    // ordered by departure time, and a later departure must also arrive later, otherwise the earlier one is dominated
+                    Assert.assertTrue("stop " + e.getKey() + ": departures not ordered", info.ptDepartureTime > previous.ptDepartureTime);
+                    Assert.assertTrue("stop " + e.getKey() + ": dominated connection", info.ptArrivalTime > previous.ptArrivalTime);
+                }
+                previous = info;
+            }
+        }
+    }
+
     private void assertTravelInfo(Map<Id<TransitStopFacility>, TravelInfo> map, int stopId, String expectedDepartureStop, int expectedTransfers, String expectedDepartureTime, String expectedArrivalTime) {
         TravelInfo info = map.get(Id.create(stopId, TransitStopFacility.class));
         Assert.assertNotNull("Stop " + stopId + " is not reachable.", info);
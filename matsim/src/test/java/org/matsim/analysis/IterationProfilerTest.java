@@ -0,0 +1,166 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IterationProfilerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class IterationProfilerTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSections() {
+		IterationProfiler profiler = new IterationProfiler();
+		Assert.assertNull("disabled profiler should not measure", profiler.start("phase", ""));
+
+		profiler.setEnabled(true);
+		Assert.assertNull("profiler should only measure within iterations", profiler.start("phase", ""));
+
+		profiler.beginIteration(3);
+		IterationProfiler.Measurement outer = profiler.start("phase", "");
+		IterationProfiler.Measurement inner = profiler.start("phase", "inner");
+		long[] data = new long[100000];
+		profiler.stop(inner);
+		profiler.stop(outer);
+		profiler.stop(null);
+		profiler.endIteration();
+		Assert.assertNull("profiler should only measure within iterations", profiler.start("phase", ""));
+
+		List<IterationProfiler.Section> sections = profiler.getSections(3);
+		Assert.assertEquals(3, sections.size());
+		Assert.assertEquals("inner", sections.get(0).getName());
+		Assert.assertEquals("", sections.get(1).getName());
+		Assert.assertEquals(IterationProfiler.PHASE_ITERATION, sections.get(2).getPhase());
+		Assert.assertTrue(sections.get(1).getWallNanos() >= sections.get(0).getWallNanos());
+		Assert.assertTrue(sections.get(2).getWallNanos() >= sections.get(1).getWallNanos());
+		if (sections.get(0).getThreadAllocatedBytes() > 0) {
+			// only if the JVM supports measuring the allocated memory
+			Assert.assertTrue(sections.get(0).getThreadAllocatedBytes() >= 8 * data.length);
+		}
+		Assert.assertTrue(profiler.getSections(2).isEmpty());
+	}
+
+	@Test
+	public void testAccumulatedCalls() {
+		IterationProfiler profiler = new IterationProfiler();
+		Assert.assertNull("disabled profiler should not accumulate", profiler.createAccumulator());
+		profiler.setEnabled(true);
+		profiler.beginIteration(0);
+
+		IterationProfiler.Accumulator accumulator = profiler.createAccumulator();
+		long[][] data = new long[10][];
+		for (int i = 0; i < data.length; i++) {
+			accumulator.begin();
+			data[i] = new long[10000];
+			accumulator.end();
+		}
+		IterationProfiler.Measurement measurement = profiler.start("phase", "accumulated");
+		profiler.stop(measurement, accumulator);
+		IterationProfiler.Measurement single = profiler.start("phase", "single");
+		profiler.stop(single, null);
+		profiler.endIteration();
+
+		List<IterationProfiler.Section> sections = profiler.getSections(0);
+		Assert.assertEquals("accumulated", sections.get(0).getName());
+		Assert.assertEquals("single", sections.get(1).getName());
+		if (sections.get(0).getThreadAllocatedBytes() > 0) {
+			// only if the JVM supports measuring the allocated memory
+			Assert.assertTrue(sections.get(0).getThreadAllocatedBytes() >= 8L * 10000 * data.length);
+			Assert.assertTrue(sections.get(1).getThreadAllocatedBytes() < 8L * 10000);
+		}
+	}
+
+	@Test
+	public void testWriteCsv_appendsIterations() throws IOException {
+		IterationProfiler profiler = new IterationProfiler();
+		profiler.setEnabled(true);
+		String filename = this.utils.getOutputDirectory() + "profile.csv";
+		for (int iteration = 0; iteration < 3; iteration++) {
+			profiler.beginIteration(iteration);
+			profiler.stop(profiler.start("phase", "name"));
+			profiler.endIteration();
+			profiler.writeCsv(filename, ";", iteration);
+		}
+
+		List<String> lines;
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			lines = reader.lines().collect(Collectors.toList());
+		}
+		// a header and two sections per iteration
+		Assert.assertEquals(7, lines.size());
+		Assert.assertTrue(lines.get(0).startsWith("iteration;phase;name;wall_ms"));
+		Assert.assertTrue(lines.get(1).startsWith("0;phase;name;"));
+		Assert.assertTrue(lines.get(2).startsWith("0;" + IterationProfiler.PHASE_ITERATION + ";;"));
+		Assert.assertTrue(lines.get(5).startsWith("2;phase;name;"));
+	}
+
+	@Test
+	public void testControlerWritesProfile() throws IOException {
+		Config config = this.utils.loadConfig("test/scenarios/equil/config_plans1.xml");
+		config.controler().setLastIteration(1);
+		config.controler().setWritePlansInterval(0);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setCreateGraphs(false);
+		config.controler().setDumpDataAtEnd(false);
+		config.controler().setProfiling(true);
+		Controler controler = new Controler(config);
+		controler.run();
+
+		IterationProfiler profiler = controler.getInjector().getInstance(IterationProfiler.class);
+		List<IterationProfiler.Section> sections = profiler.getSections(1);
+		Assert.assertTrue(hasSection(sections, "mobsim", ""));
+		Assert.assertTrue(hasSection(sections, "replanning", ""));
+		Assert.assertTrue(hasSection(sections, "notifyScoring", "org.matsim.core.scoring.PlansScoringImpl"));
+		Assert.assertTrue(hasSection(sections, "notifyReplanning", "org.matsim.core.controler.corelisteners.PlansReplanningImpl"));
+		Assert.assertTrue(sections.stream().anyMatch(s -> s.getPhase().equals("replanningStrategy")));
+		// the first iteration has no replanning
+		Assert.assertFalse(hasSection(profiler.getSections(0), "replanning", ""));
+
+		List<String> lines;
+		try (BufferedReader reader = IOUtils.getBufferedReader(this.utils.getOutputDirectory() + "profile.csv")) {
+			lines = reader.lines().collect(Collectors.toList());
+		}
+		Assert.assertTrue(lines.get(0).startsWith("iteration;phase;name;wall_ms"));
+		Assert.assertEquals(1 + profiler.getSections(0).size() + profiler.getSections(1).size(), lines.size());
+
+		String summary;
+		try (BufferedReader reader = IOUtils.getBufferedReader(this.utils.getOutputDirectory() + "profile_summary.json")) {
+			summary = reader.lines().collect(Collectors.joining("\n"));
+		}
+		Assert.assertTrue(summary.contains("\"iterations\" : 2"));
+		Assert.assertTrue(summary.contains("\"phase\" : \"mobsim\""));
+	}
+
+	private static boolean hasSection(List<IterationProfiler.Section> sections, String phase, String name) {
+		return sections.stream().anyMatch(s -> s.getPhase().equals(phase) && s.getName().equals(name));
+	}
+}
@@ -0,0 +1,94 @@
+package org.matsim.api.core.v01;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.population.Person;
+
+public class IdDoubleMapTest {
+
+	@Test
+	public void testPutGetRemoveSize() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class, 10, Double.NaN);
+		Id<Person> id1 = Id.create(1, Person.class);
+		Id<Person> id2 = Id.create(2, Person.class);
+
+		Assert.assertEquals(0, map.size());
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertTrue(Double.isNaN(map.get(id1)));
+		Assert.assertFalse(map.containsKey(id1));
+
+		Assert.assertTrue(Double.isNaN(map.put(id1, 1.5)));
+		Assert.assertEquals(1, map.size());
+		Assert.assertTrue(map.containsKey(id1));
+		Assert.assertTrue(map.containsKey(id1.index()));
+		Assert.assertEquals(1.5, map.get(id1), 0.0);
+		Assert.assertEquals(1.5, map.get(id1.index()), 0.0);
+
+		Assert.assertEquals(1.5, map.put(id1, 2.5), 0.0);
+		Assert.assertEquals(1, map.size());
+
+		Assert.assertTrue(Double.isNaN(map.put(id2, Double.NaN)));
+		Assert.assertEquals(2, map.size());
+		Assert.assertTrue(map.containsKey(id2));
+
+		Assert.assertEquals(2.5, map.remove(id1), 0.0);
+		Assert.assertEquals(1, map.size());
+		Assert.assertFalse(map.containsKey(id1));
+		Assert.assertTrue(Double.isNaN(map.get(id1)));
+		Assert.assertTrue(Double.isNaN(map.remove(id1)));
+		Assert.assertEquals(1, map.size());
+
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertFalse(map.containsKey(id2));
+	}
+
+	@Test
+	public void testAdd() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class, 0.0);
+		Id<Person> id = Id.create("add", Person.class);
+
+		Assert.assertEquals(3.0, map.add(id, 3.0), 0.0);
+		Assert.assertEquals(5.0, map.add(id.index(), 2.0), 0.0);
+		Assert.assertEquals(5.0, map.get(id), 0.0);
+		Assert.assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testGrowsBeyondInitialSize() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class, 2, -1.0);
+		Id<Person> id = Id.create("grow", Person.class);
+		int index = id.index() + 200;
+
+		Assert.assertEquals(-1.0, map.get(index), 0.0);
+		Assert.assertEquals(-1.0, map.put(index, 7.0), 0.0);
+		Assert.assertEquals(7.0, map.get(index), 0.0);
+		// values in the grown part of the array are initialized to the no entry value
+		Assert.assertEquals(-1.0, map.get(index - 1), 0.0);
+		Assert.assertEquals(-1.0, map.getNoEntryValue(), 0.0);
+	}
+
+	@Test
+	public void testForEach() {
+		IdDoubleMap<Person> map = new IdDoubleMap<>(Person.class);
+		Id<Person> id1 = Id.create("each-1", Person.class);
+		Id<Person> id2 = Id.create("each-2", Person.class);
+		Id<Person> id3 = Id.create("each-3", Person.class);
+		map.put(id3, 3.0);
+		map.put(id1, 1.0);
+		map.put(id2, 2.0);
+		map.remove(id2);
+
+		List<Id<Person>> ids = new ArrayList<>();
+		List<Double> values = new ArrayList<>();
+		map.forEach((id, value) -> {
+			ids.add(id);
+			values.add(value);
+		});
+		Assert.assertEquals(List.of(id1, id3), ids);
+		Assert.assertEquals(List.of(1.0, 3.0), values);
+	}
+}
@@ -21,12 +21,17 @@ package org.matsim.core.controler.corelisteners;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.Controler;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.testcases.MatsimTestUtils;
 
 import java.io.File;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -108,4 +113,32 @@ public class PlansDumpingIT {
 		assertTrue(new File(c.getControlerIO().getIterationFilename(9, "plans.xml.gz")).exists());
 		assertTrue(new File(c.getControlerIO().getIterationFilename(10, "plans.xml.gz")).exists());
 	}
+
+	@Test
+	public void testPlansDump_Asynchronously() {
+		Config config = this.util.loadConfig("test/scenarios/equil/config_plans1.xml");
+		config.controler().setLastIteration(4);
+		config.controler().setWritePlansInterval(2);
+		config.controler().setWritePlansAsynchronously(true);
+		config.global().setNumberOfThreads(2);
+		Controler c = new Controler(config);
+		c.getConfig().controler().setWriteEventsInterval(0);
+		c.getConfig().controler().setCreateGraphs(false);
+
+		c.run();
+
+		assertTrue(new File(c.getControlerIO().getIterationFilename(0, "plans.xml.gz")).exists());
+		assertTrue(new File(c.getControlerIO().getIterationFilename(1, "plans.xml.gz")).exists());
+		assertTrue(new File(c.getControlerIO().getIterationFilename(2, "plans.xml.gz")).exists());
+		assertFalse(new File(c.getControlerIO().getIterationFilename(3, "plans.xml.gz")).exists());
+		assertTrue(new File(c.getControlerIO().getIterationFilename(4, "plans.xml.gz")).exists());
+
+		// the dump of the last iteration is complete when the controler returns, and contains the selected plans only
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new PopulationReader(scenario).readFile(c.getControlerIO().getIterationFilename(4, "plans.xml.gz"));
+		assertEquals(c.getScenario().getPopulation().getPersons().size(), scenario.getPopulation().getPersons().size());
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			assertEquals(1, person.getPlans().size());
+		}
+	}
 }
@@ -0,0 +1,169 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.events.handler.PrimitiveLinkEventHandler;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class CompactEventArrayTest {
+
+	private final Id<Vehicle> vehicle = Id.createVehicleId("v1");
+	private final Id<Link> link1 = Id.createLinkId("l1");
+	private final Id<Link> link2 = Id.createLinkId("l2");
+
+	@Test
+	public void testEventObjectsAreCreatedLazily() {
+		CompactEventArray events = new CompactEventArray(1);
+		events.addLinkEnter(10, vehicle.index(), link1.index());
+		PersonStuckEvent stuck = new PersonStuckEvent(15, Id.createPersonId("p1"), link1, "car");
+		events.add(stuck);
+		events.addLinkLeave(20, vehicle.index(), link1.index());
+
+		Assert.assertEquals(3, events.size());
+		Assert.assertEquals(CompactEventArray.LINK_ENTER, events.getType(0));
+		Assert.assertEquals(CompactEventArray.OBJECT, events.getType(1));
+		Assert.assertEquals(CompactEventArray.LINK_LEAVE, events.getType(2));
+		Assert.assertEquals(15.0, events.getTime(1), 0.0);
+		Assert.assertEquals(link1.index(), events.getLinkIndex(2));
+		Assert.assertEquals(vehicle.index(), events.getVehicleIndex(2));
+
+		LinkEnterEvent enter = (LinkEnterEvent) events.get(0);
+		Assert.assertEquals(10.0, enter.getTime(), 0.0);
+		Assert.assertEquals(vehicle, enter.getVehicleId());
+		Assert.assertEquals(link1, enter.getLinkId());
+		Assert.assertSame(enter, events.get(0));
+		Assert.assertSame(stuck, events.get(1));
+		Assert.assertTrue(events.get(2) instanceof LinkLeaveEvent);
+
+		events.setTime(0, 12);
+		events.setTime(1, 16);
+		Assert.assertEquals(12.0, events.get(0).getTime(), 0.0);
+		Assert.assertEquals(16.0, stuck.getTime(), 0.0);
+
+		CompactEventArray copy = new CompactEventArray();
+		copy.add(events, 2);
+		copy.add(events, 1);
+		Assert.assertEquals(CompactEventArray.LINK_LEAVE, copy.getType(0));
+		Assert.assertEquals(20.0, copy.getTime(0), 0.0);
+		Assert.assertSame(stuck, copy.get(1));
+		copy.removeLast();
+		Assert.assertEquals(1, copy.size());
+	}
+
+	@Test
+	public void testPrimitiveHandlersGetNoObjects() {
+		CompactEventArray events = createEvents();
+		PrimitiveCounter primitive = new PrimitiveCounter();
+		EventsCollector collector = new EventsCollector();
+		EventsManagerImpl manager = new EventsManagerImpl();
+		manager.addHandler(primitive);
+		manager.addHandler(collector);
+		events.processEvents(manager);
+		assertHandled(events, primitive, collector);
+	}
+
+	@Test
+	public void testSingleHandlerEventsManager() {
+		CompactEventArray events = createEvents();
+		PrimitiveCounter primitive = new PrimitiveCounter();
+		events.processEvents(new SingleHandlerEventsManager(primitive));
+		EventsCollector collector = new EventsCollector();
+		events.processEvents(new SingleHandlerEventsManager(collector));
+		assertHandled(events, primitive, collector);
+
+		// a handler which does not handle link leave events
+		List<Event> entered = new ArrayList<>();
+		events.processEvents(new SingleHandlerEventsManager((LinkEnterEventHandler) entered::add));
+		Assert.assertEquals(2, entered.size());
+	}
+
+	@Test
+	public void testParallelEventsManager() {
+		for (boolean oneThreadPerHandler : new boolean[] { true, false }) {
+			CompactEventArray events = createEvents();
+			PrimitiveCounter primitive = new PrimitiveCounter();
+			EventsCollector collector = new EventsCollector();
+			ParallelEventsManager manager = new ParallelEventsManager(false, oneThreadPerHandler, 2, 1024);
+			manager.addHandler(primitive);
+			manager.addHandler(collector);
+			manager.initProcessing();
+			manager.processEvents(events);
+			manager.finishProcessing();
+			assertHandled(events, primitive, collector);
+		}
+	}
+
+	private CompactEventArray createEvents() {
+		CompactEventArray events = new CompactEventArray();
+		events.addLinkLeave(1, vehicle.index(), link1.index());
+		events.addLinkEnter(1, vehicle.index(), link2.index());
+		events.add(new PersonStuckEvent(5, Id.createPersonId("p1"), link2, "car"));
+		events.addLinkLeave(9, vehicle.index(), link2.index());
+		events.addLinkEnter(9, vehicle.index(), link1.index());
+		return events;
+	}
+
+	private void assertHandled(CompactEventArray events, PrimitiveCounter primitive, EventsCollector collector) {
+		Assert.assertEquals(List.of("leave l1@1.0", "enter l2@1.0", "leave l2@9.0", "enter l1@9.0"), primitive.calls);
+		Assert.assertEquals(events.size(), collector.getEvents().size());
+		for (int i = 0; i < events.size(); i++) {
+			Assert.assertSame(events.get(i), collector.getEvents().get(i));
+		}
+	}
+
+	private static class PrimitiveCounter implements LinkEnterEventHandler, LinkLeaveEventHandler, PrimitiveLinkEventHandler {
+		final List<String> calls = new ArrayList<>();
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			Assert.fail("link enter events in primitive form must not be passed as object");
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			Assert.fail("link leave events in primitive form must not be passed as object");
+		}
+
+		@Override
+		public void handleLinkEnter(double time, int vehicleIndex, int linkIndex) {
+			this.calls.add("enter " + Id.get(linkIndex, Link.class) + "@" + time);
+		}
+
+		@Override
+		public void handleLinkLeave(double time, int vehicleIndex, int linkIndex) {
+			this.calls.add("leave " + Id.get(linkIndex, Link.class) + "@" + time);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.events;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventHandlerProfiler.HandlerStats;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class EventHandlerProfilerTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testCountsPerHandlerAndEventClass() {
+		EventHandlerProfiler profiler = new EventHandlerProfiler(1);
+		EventsManagerImpl events = new EventsManagerImpl();
+		events.setHandlerProfiler(profiler);
+		events.addHandler(new EventsCollector());
+		events.addHandler(new LinkEnterCounter());
+		processEvents(events, 100);
+
+		assertStats(profiler, EventsCollector.class, LinkEnterEvent.class, 100, 100);
+		assertStats(profiler, EventsCollector.class, LinkLeaveEvent.class, 100, 100);
+		assertStats(profiler, LinkEnterCounter.class, LinkEnterEvent.class, 100, 100);
+		Assert.assertNull(profiler.getStats(LinkEnterCounter.class, LinkLeaveEvent.class));
+		Assert.assertEquals(3, profiler.getAllStats().size());
+
+		profiler.reset();
+		Assert.assertEquals(0, profiler.getAllStats().size());
+		processEvents(events, 10);
+		assertStats(profiler, LinkEnterCounter.class, LinkEnterEvent.class, 10, 10);
+	}
+
+	@Test
+	public void testOnlyEveryNthCallIsSampled() {
+		EventHandlerProfiler profiler = new EventHandlerProfiler(10);
+		EventsManagerImpl events = new EventsManagerImpl();
+		events.setHandlerProfiler(profiler);
+		events.addHandler(new LinkEnterCounter());
+		processEvents(events, 1000);
+
+		HandlerStats stats = assertStats(profiler, LinkEnterCounter.class, LinkEnterEvent.class, 1000, 100);
+		Assert.assertTrue(stats.getTotalNanos() >= stats.getMaxNanos());
+	}
+
+	@Test
+	public void testSingleHandlerEventsManager() {
+		EventHandlerProfiler profiler = new EventHandlerProfiler(3);
+		SingleHandlerEventsManager events = new SingleHandlerEventsManager(new LinkEnterCounter());
+		events.setHandlerProfiler(profiler);
+		processEvents(events, 30);
+
+		// the link leave events are not handled and must neither be counted nor sampled
+		assertStats(profiler, LinkEnterCounter.class, LinkEnterEvent.class, 30, 10);
+		Assert.assertNull(profiler.getStats(LinkEnterCounter.class, LinkLeaveEvent.class));
+	}
+
+	@Test
+	public void testParallelEventsManagers() {
+		List<EventsManager> managers = new ArrayList<>();
+		managers.add(new SimStepParallelEventsManagerImpl(2));
+		managers.add(new ParallelEventsManagerImpl(2));
+		managers.add(new ParallelEventsManager(true, true, -1, 1024));
+		for (EventsManager events : managers) {
+			EventHandlerProfiler profiler = new EventHandlerProfiler(1);
+			if (events instanceof SimStepParallelEventsManagerImpl) {
+				((SimStepParallelEventsManagerImpl) events).setHandlerProfiler(profiler);
+			} else if (events instanceof ParallelEventsManagerImpl) {
+				((ParallelEventsManagerImpl) events).setHandlerProfiler(profiler);
+			} else {
+				((ParallelEventsManager) events).setHandlerProfiler(profiler);
+			}
+			events.addHandler(new EventsCollector());
+			events.addHandler(new LinkEnterCounter());
+			events.initProcessing();
+			processEvents(events, 50);
+			events.finishProcessing();
+
+			String message = events.getClass().getSimpleName();
+			Assert.assertEquals(message, 50, profiler.getStats(EventsCollector.class, LinkEnterEvent.class).getInvocations());
+			Assert.assertEquals(message, 50, profiler.getStats(EventsCollector.class, LinkLeaveEvent.class).getInvocations());
+			Assert.assertEquals(message, 50, profiler.getStats(LinkEnterCounter.class, LinkEnterEvent.class).getInvocations());
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		HandlerStats stats = new EventHandlerProfiler(1).stats(LinkEnterCounter.class, LinkEnterEvent.class);
+		for (int i = 1; i <= 1000; i++) {
+			stats.addSample(i * 1000L);
+		}
+		Assert.assertEquals(1000, stats.getSampledInvocations());
+		Assert.assertEquals(500500.0, stats.getMeanNanos(), 1e-6);
+		Assert.assertEquals(1_000_000, stats.getMaxNanos());
+		Assert.assertEquals(1_000_000, stats.getPercentileNanos(1.0));
+		// the percentiles are upper bounds with a relative error of at most 12.5%
+		assertBetween(500_000, 500_000 * 1.125, stats.getPercentileNanos(0.5));
+		assertBetween(900_000, 900_000 * 1.125, stats.getPercentileNanos(0.9));
+		assertBetween(990_000, 1_000_000, stats.getPercentileNanos(0.99));
+		Assert.assertEquals(stats.getPercentileNanos(0.0), stats.getPercentileNanos(0.001));
+		assertBetween(1000, 1000 * 1.125, stats.getPercentileNanos(0.001));
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		EventHandlerProfiler profiler = new EventHandlerProfiler(1);
+		EventsManagerImpl events = new EventsManagerImpl();
+		events.setHandlerProfiler(profiler);
+		events.addHandler(new LinkEnterCounter());
+		processEvents(events, 10);
+		String filename = this.utils.getOutputDirectory() + "eventHandlerProfile.txt";
+		profiler.write(filename);
+
+		try (BufferedReader reader = IOUtils.getBufferedReader(filename)) {
+			Assert.assertTrue(reader.readLine().startsWith("handler\tevent\tinvocations"));
+			String[] line = reader.readLine().split("\t");
+			Assert.assertEquals(LinkEnterCounter.class.getName(), line[0]);
+			Assert.assertEquals(LinkEnterEvent.class.getName(), line[1]);
+			Assert.assertEquals("10", line[2]);
+			Assert.assertNull(reader.readLine());
+		}
+	}
+
+	private static void processEvents(EventsManager events, int count) {
+		for (int i = 0; i < count; i++) {
+			events.processEvent(new LinkEnterEvent(i, Id.createVehicleId(i), Id.createLinkId(i)));
+			events.processEvent(new LinkLeaveEvent(i, Id.createVehicleId(i), Id.createLinkId(i)));
+			events.afterSimStep(i);
+		}
+	}
+
+	private static HandlerStats assertStats(EventHandlerProfiler profiler, Class<?> handlerClass, Class<? extends Event> eventClass,
+			long invocations, long samples) {
+		HandlerStats stats = profiler.getStats(handlerClass, eventClass);
+		Assert.assertNotNull(stats);
+		Assert.assertEquals(invocations, stats.getInvocations());
+		Assert.assertEquals(samples, stats.getSampledInvocations());
+		Assert.assertTrue(stats.getPercentileNanos(0.5) <= stats.getPercentileNanos(0.99));
+		Assert.assertTrue(stats.getPercentileNanos(0.99) <= stats.getMaxNanos());
+		return stats;
+	}
+
+	private static void assertBetween(double min, double max, long actual) {
+		Assert.assertTrue(actual + " is not between " + min + " and " + max, actual >= min && actual <= max);
+	}
+
+	private static class LinkEnterCounter implements LinkEnterEventHandler {
+		int count = 0;
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.count++;
+		}
+	}
+}
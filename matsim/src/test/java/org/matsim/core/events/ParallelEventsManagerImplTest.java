@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class ParallelEventsManagerImplTest {
+
+	@Test
+	public void testAllHandlersGetAllEventsInOrder() {
+		ParallelEventsManagerImpl events = new ParallelEventsManagerImpl(3, 1000);
+		List<EventsCollector> collectors = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			EventsCollector collector = new EventsCollector();
+			collectors.add(collector);
+			events.addHandler(collector);
+		}
+		events.initProcessing();
+		List<Event> created = new ArrayList<>();
+		for (int step = 0; step < 100; step++) {
+			for (int i = 0; i < step * 10; i++) {
+				Event event = new LinkEnterEvent(step, Id.createVehicleId(i), Id.createLinkId(step));
+				created.add(event);
+				events.processEvent(event);
+			}
+			events.afterSimStep(step);
+		}
+		events.finishProcessing();
+
+		for (EventsCollector collector : collectors) {
+			Assert.assertEquals(created, collector.getEvents());
+		}
+		EventsDispatchMetrics metrics = events.getDispatchMetrics();
+		Assert.assertEquals(created.size(), metrics.getPublishedEvents());
+		// batches are published at the end of each time step and when they reach 1000/10 events
+		Assert.assertTrue(metrics.getPublishedBatches() > 99);
+		Assert.assertTrue(metrics.getMaxQueueDepth() >= 1);
+	}
+
+	@Test
+	public void testEventsCreatedByHandlersAreProcessed() {
+		ParallelEventsManagerImpl events = new ParallelEventsManagerImpl(2);
+		events.addHandler((LinkEnterEventHandler) event ->
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), event.getLinkId(), "car")));
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.finishProcessing();
+
+		Assert.assertEquals(2, collector.getEvents().size());
+		Assert.assertTrue(collector.getEvents().get(1) instanceof PersonStuckEvent);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testExceptionInHandlerIsReported() {
+		ParallelEventsManagerImpl events = new ParallelEventsManagerImpl(2);
+		events.addHandler((LinkEnterEventHandler) event -> {
+			throw new IllegalStateException("handler failed");
+		});
+		events.initProcessing();
+		for (int i = 0; i < 100; i++) {
+			events.processEvent(new LinkEnterEvent(i, Id.createVehicleId(0), Id.createLinkId(0)));
+			events.afterSimStep(i);
+		}
+		events.finishProcessing();
+	}
+}
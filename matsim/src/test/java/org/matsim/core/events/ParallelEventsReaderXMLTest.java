@@ -0,0 +1,149 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class ParallelEventsReaderXMLTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	/**
+	 * Reads a file large enough to fill all queues of the pipeline and compares the events to the sequential reader.
+	 */
+	@Test
+	public void testSameEventsAsSequentialReader() {
+		String filename = this.utils.getOutputDirectory() + "events.xml.gz";
+		EventWriterXML writer = new EventWriterXML(filename);
+		for (int i = 0; i < 100_000; i++) {
+			Id<Person> person = Id.create(i % 500, Person.class);
+			writer.handleEvent(new PersonDepartureEvent(i, person, Id.create(i % 70, Link.class), TransportMode.car));
+			writer.handleEvent(new LinkEnterEvent(i + 0.5, Id.create(i % 500, Vehicle.class), Id.create(i % 70, Link.class)));
+			writer.handleEvent(new ActivityStartEvent(i + 1, person, Id.create(i % 70, Link.class), null, "work", new Coord(i, -i)));
+			if (i % 10 == 0) {
+				GenericEvent event = new GenericEvent("custom", i + 1);
+				event.getAttributes().put("index", Integer.toString(i));
+				writer.handleEvent(event);
+			}
+		}
+		writer.closeFile();
+
+		List<Event> expected = readEvents(filename, false);
+		List<Event> actual = readEvents(filename, true);
+		Assert.assertEquals(310_000, expected.size());
+		Assert.assertEquals(expected, actual);
+		Assert.assertEquals(CustomEvent.class, actual.get(3).getClass());
+	}
+
+	@Test
+	public void testEmptyFile() {
+		String filename = this.utils.getOutputDirectory() + "events.xml";
+		new EventWriterXML(filename).closeFile();
+		Assert.assertEquals(0, readEvents(filename, true).size());
+	}
+
+	@Test
+	public void testHandlerExceptionStopsPipeline() {
+		String filename = this.utils.getOutputDirectory() + "events.xml";
+		EventWriterXML writer = new EventWriterXML(filename);
+		for (int i = 0; i < 50_000; i++) {
+			writer.handleEvent(new LinkEnterEvent(i, Id.create(i, Vehicle.class), Id.create(i, Link.class)));
+		}
+		writer.closeFile();
+
+		// synchronous events manager, so the exception is thrown while reading
+		EventsManager events = new EventsManagerImpl();
+		events.addHandler((BasicEventHandler) event -> {
+			if (event.getTime() == 2000) {
+				throw new IllegalStateException("handler failed");
+			}
+		});
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.setParallelXmlParsing(true);
+		try {
+			reader.readFile(filename);
+			Assert.fail("expected exception of the handler");
+		} catch (RuntimeException e) {
+			Throwable cause = e;
+			while (cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			Assert.assertEquals("handler failed", cause.getMessage());
+		}
+	}
+
+	private static List<Event> readEvents(String filename, boolean parallel) {
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		MatsimEventsReader reader = new MatsimEventsReader(events);
+		reader.addCustomEventMapper("custom", event -> new CustomEvent(event.getTime(), event.getAttributes().get("index")));
+		reader.setParallelXmlParsing(parallel);
+		reader.readFile(filename);
+		events.finishProcessing();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private static class CustomEvent extends Event {
+
+		private final String index;
+
+		CustomEvent(double time, String index) {
+			super(time);
+			this.index = index;
+		}
+
+		@Override
+		public String getEventType() {
+			return "custom";
+		}
+
+		@Override
+		public Map<String, String> getAttributes() {
+			Map<String, String> attr = super.getAttributes();
+			attr.put("index", this.index);
+			return attr;
+		}
+	}
+}
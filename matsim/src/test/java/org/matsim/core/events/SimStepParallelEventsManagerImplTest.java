@@ -21,6 +21,12 @@
 
  package org.matsim.core.events;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
@@ -72,4 +78,72 @@ public class SimStepParallelEventsManagerImplTest {
 					new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car")));
 	}
 
+	/**
+	 * All events of a time step must be handled when afterSimStep returns, and events created by several threads
+	 * must be handled in the order they were created.
+	 */
+	@Test
+	public void testEventsOfSeveralThreadsAreHandledInStep() throws Exception {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(3);
+		AtomicInteger handled = new AtomicInteger();
+		events.addHandler((LinkEnterEventHandler) event -> handled.incrementAndGet());
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+
+		int threads = 4;
+		int eventsPerThread = 1000;
+		List<LinkEnterEvent> created = new ArrayList<>();
+		for (int step = 0; step < 3; step++) {
+			double time = step;
+			CyclicBarrier barrier = new CyclicBarrier(threads);
+			List<Thread> producers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				producers.add(new Thread(() -> {
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+					for (int i = 0; i < eventsPerThread; i++) {
+						LinkEnterEvent event = new LinkEnterEvent(time, Id.createVehicleId(thread), Id.createLinkId(i));
+						synchronized (created) {
+							events.processEvent(event);
+							created.add(event);
+						}
+					}
+				}));
+			}
+			producers.forEach(Thread::start);
+			for (Thread producer : producers) {
+				producer.join();
+			}
+			events.afterSimStep(time);
+			Assert.assertEquals((step + 1) * threads * eventsPerThread, handled.get());
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(created, collector.getEvents());
+		EventsDispatchMetrics metrics = events.getDispatchMetrics();
+		Assert.assertEquals(3 * threads * eventsPerThread, metrics.getPublishedEvents());
+		Assert.assertEquals(3, metrics.getPublishedBatches());
+		Assert.assertEquals(3, metrics.getNumberOfHandlerThreads());
+		Assert.assertEquals(3, metrics.getProcessedBatches(0));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testExceptionInHandlerIsReported() {
+		final SimStepParallelEventsManagerImpl events = new SimStepParallelEventsManagerImpl(2);
+		events.addHandler((LinkEnterEventHandler) event -> {
+			throw new IllegalStateException("handler failed");
+		});
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+	}
+
 }
@@ -0,0 +1,142 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+
+public class EventWriterBinaryTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRoundTrip() {
+		Id<Person> person = Id.create("p<1>", Person.class);
+		Id<Vehicle> vehicle = Id.create("v\"1", Vehicle.class);
+		Id<Link> link1 = Id.create("1", Link.class);
+		Id<Link> link2 = Id.create("2", Link.class);
+		Id<ActivityFacility> facility = Id.create("f1", ActivityFacility.class);
+
+		List<Event> expected = new ArrayList<>();
+		expected.add(new ActivityEndEvent(3600.0, person, link1, facility, "home"));
+		expected.add(new PersonDepartureEvent(3600.0, person, link1, TransportMode.car));
+		expected.add(new PersonEntersVehicleEvent(3600.0, person, vehicle));
+		expected.add(new VehicleEntersTrafficEvent(3600.0, person, link1, vehicle, TransportMode.car, 1.0));
+		expected.add(new LinkLeaveEvent(3601.0, vehicle, link1));
+		expected.add(new LinkEnterEvent(3601.0, vehicle, link2));
+		expected.add(new GenericEvent("custom", 3650.25));
+		((GenericEvent) expected.get(expected.size() - 1)).getAttributes().put("key", "äöü");
+		expected.add(new VehicleLeavesTrafficEvent(3700.5, person, link2, vehicle, TransportMode.car, 1.0));
+		expected.add(new PersonLeavesVehicleEvent(3700.5, person, vehicle));
+		expected.add(new PersonArrivalEvent(3700.5, person, link2, TransportMode.car));
+		expected.add(new ActivityStartEvent(3701.0, person, link2, facility, "work", new Coord(-12.5, 42.0)));
+		expected.add(new ActivityStartEvent(3701.0, person, link2, null, "work", null));
+		// went back in time, still must be read correctly
+		expected.add(new PersonStuckEvent(100.0, person, link2, TransportMode.car));
+
+		List<Event> actual = writeAndRead(expected);
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+			Assert.assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+		}
+		Assert.assertEquals("writing must not change the generic event", "custom",
+				((GenericEvent) expected.get(6)).getAttributes().get(Event.ATTRIBUTE_TYPE));
+	}
+
+	/**
+	 * Makes sure events and strings are correctly read when they are spread over several blocks.
+	 */
+	@Test
+	public void testMultipleBlocks() {
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			expected.add(new LinkEnterEvent(i / 10, Id.create("v" + (i % 1000), Vehicle.class), Id.create("link_with_a_long_name_" + i, Link.class)));
+		}
+		List<Event> actual = writeAndRead(expected);
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testFileEnding() {
+		String filename = this.utils.getOutputDirectory() + "events.bin";
+		EventWriterBinary writer = new EventWriterBinary(filename);
+		writer.handleEvent(new LinkEnterEvent(10.0, Id.create("1", Vehicle.class), Id.create("1", Link.class)));
+		writer.closeFile();
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		new MatsimEventsReader(events).readFile(filename);
+		events.finishProcessing();
+		Assert.assertEquals(1, collector.getEvents().size());
+	}
+
+	private static List<Event> writeAndRead(List<Event> events) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		EventWriterBinary writer = new EventWriterBinary(baos);
+		for (Event event : events) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+
+		EventsManager manager = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		manager.addHandler(collector);
+		manager.initProcessing();
+		new MatsimEventsReader(manager).readStream(new ByteArrayInputStream(baos.toByteArray()), ControlerConfigGroup.EventsFileFormat.binary);
+		manager.finishProcessing();
+		return collector.getEvents();
+	}
+}
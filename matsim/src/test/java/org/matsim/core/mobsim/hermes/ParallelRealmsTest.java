@@ -0,0 +1,171 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.hermes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.hermes.HermesTest.Fixture;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+/**
+ * Tests Hermes with the network partitioned into several realms.
+ */
+public class ParallelRealmsTest {
+
+	@Before
+	public void prepareTest() {
+		Id.resetCaches();
+		ScenarioImporter.flush();
+		HermesConfigGroup.SIM_STEPS = 30 * 60 * 60;
+	}
+
+	@Test
+	public void testPartitionIsBalanced() {
+		Fixture f = new Fixture();
+		int[] realm_of_link = NetworkPartitioner.partition(f.network, Id.getNumberOfIds(org.matsim.api.core.v01.network.Link.class), 2);
+		// links are cut along the x axis
+		Assert.assertEquals(0, realm_of_link[f.link1.getId().index()]);
+		Assert.assertEquals(1, realm_of_link[f.link2.getId().index()]);
+		Assert.assertEquals(1, realm_of_link[f.link3.getId().index()]);
+	}
+
+	/**
+	 * Without congestion, crossing a realm border must not change the travel times.
+	 */
+	@Test
+	public void testSameEventsAsSingleRealm() {
+		Map<String, List<String>> singleRealm = eventsByAgent(runFixture(1, 10, 100));
+		prepareTest();
+		Map<String, List<String>> twoRealms = eventsByAgent(runFixture(2, 10, 100));
+		prepareTest();
+		Map<String, List<String>> threeRealms = eventsByAgent(runFixture(3, 10, 100));
+
+		Assert.assertEquals(singleRealm, twoRealms);
+		Assert.assertEquals(singleRealm, threeRealms);
+	}
+
+	/**
+	 * With all agents departing at the same time, agents queue at the realm border. The event stream
+	 * must still be ordered by time and every agent must arrive.
+	 */
+	@Test
+	public void testCongestedBorderKeepsEventsOrdered() {
+		int agents = 200;
+		List<Event> events = runFixture(2, 0, agents);
+
+		double time = Double.NEGATIVE_INFINITY;
+		int arrivals = 0;
+		for (Event event : events) {
+			Assert.assertTrue("events are not ordered by time", event.getTime() >= time);
+			time = event.getTime();
+			if (event instanceof PersonArrivalEvent) {
+				arrivals++;
+			}
+		}
+		Assert.assertEquals(agents, arrivals);
+
+		// every agent must leave a link before entering the next one
+		Map<String, List<String>> byAgent = eventsByAgent(events);
+		for (int i = 0; i < agents; i++) {
+			List<String> linkEvents = new ArrayList<>();
+			for (String event : byAgent.get("vehicle" + i)) {
+				linkEvents.add(event.startsWith(LinkEnterEvent.EVENT_TYPE) ? "enter" : "leave");
+			}
+			Assert.assertEquals(List.of("leave", "enter", "leave", "enter"), linkEvents);
+		}
+	}
+
+	/**
+	 * With three realms, the congested link 2 is a border link whose flow capacity lets more than one
+	 * vehicle per time step into the next realm. This must not change the travel times either.
+	 */
+	@Test
+	public void testCongestedBorderSameEventsAsSingleRealm() {
+		Map<String, List<String>> singleRealm = eventsByAgent(runFixture(1, 0, 200));
+		prepareTest();
+		Map<String, List<String>> threeRealms = eventsByAgent(runFixture(3, 0, 200));
+
+		Assert.assertEquals(singleRealm, threeRealms);
+	}
+
+	private static List<Event> runFixture(int realms, int departureInterval, int agents) {
+		Fixture f = new Fixture();
+		f.config.hermes().setNumberOfRealms(realms);
+		for (int i = 0; i < agents; i++) {
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(i, Person.class));
+			Plan plan = PersonUtils.createAndAddPlan(person, true);
+			Activity a1 = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", f.link1.getId());
+			a1.setEndTime(6 * 3600 + i * departureInterval);
+			Leg leg = PopulationUtils.createAndAddLeg(plan, TransportMode.car);
+			TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+			NetworkRoute route = f.scenario.getPopulation().getFactory().getRouteFactories().createRoute(NetworkRoute.class, f.link1.getId(), f.link3.getId());
+			route.setLinkIds(f.link1.getId(), f.linkIds2, f.link3.getId());
+			leg.setRoute(route);
+			PopulationUtils.createAndAddActivityFromLinkId(plan, "w", f.link3.getId());
+			f.plans.addPerson(person);
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		HermesTest.createHermes(f, events).run();
+		return collector.getEvents();
+	}
+
+	private static Map<String, List<String>> eventsByAgent(List<Event> events) {
+		Map<String, List<String>> byAgent = new HashMap<>();
+		for (Event event : events) {
+			String key;
+			if (event instanceof HasPersonId) {
+				key = "person" + ((HasPersonId) event).getPersonId();
+			} else if (event instanceof LinkEnterEvent) {
+				key = "vehicle" + ((LinkEnterEvent) event).getVehicleId();
+			} else if (event instanceof LinkLeaveEvent) {
+				key = "vehicle" + ((LinkLeaveEvent) event).getVehicleId();
+			} else {
+				continue;
+			}
+			byAgent.computeIfAbsent(key, k -> new ArrayList<>()).add(event.getEventType() + "@" + event.getTime());
+		}
+		return byAgent;
+	}
+}
@@ -0,0 +1,102 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.network.Node;
+
+public class QNetsimEngineWithThreadpoolTest {
+
+	@Test
+	public void testSortByWorkload() {
+		int[] activeNodes = {2, 0, 5, 3, 5, 1};
+		QNetsimEngineRunnerForThreadpool[] runners = new QNetsimEngineRunnerForThreadpool[activeNodes.length];
+		for (int i = 0; i < runners.length; i++) {
+			runners[i] = new QNetsimEngineRunnerForThreadpool();
+			runners[i].setMovingNodes(true);
+			for (int n = 0; n < activeNodes[i]; n++) {
+				runners[i].registerNodeAsActive(new DummyNode());
+			}
+		}
+		QNetsimEngineRunnerForThreadpool first = runners[2];
+		QNetsimEngineRunnerForThreadpool second = runners[4];
+
+		QNetsimEngineWithThreadpool.sortByWorkload(runners);
+
+		int[] expected = {5, 5, 3, 2, 1, 0};
+		for (int i = 0; i < runners.length; i++) {
+			Assert.assertEquals(expected[i], runners[i].getWorkload());
+		}
+		// the sort is stable
+		Assert.assertSame(first, runners[0]);
+		Assert.assertSame(second, runners[1]);
+
+		// no links are active
+		runners[0].setMovingNodes(false);
+		Assert.assertEquals(0, runners[0].getWorkload());
+	}
+
+	@Test
+	public void testStatistics() {
+		QNetsimEngineRunnerStatistics statistics = new QNetsimEngineRunnerStatistics(2, 8);
+
+		statistics.addPhase(QNetsimEngineRunnerStatistics.NODES, 0, 100, new long[] {100, 50});
+		Assert.assertEquals(100.0 / 75.0, statistics.getLastImbalance(QNetsimEngineRunnerStatistics.NODES), 1e-9);
+		Assert.assertEquals(50, statistics.getLastWaitNanos(QNetsimEngineRunnerStatistics.NODES));
+
+		statistics.addPhase(QNetsimEngineRunnerStatistics.NODES, 1, 60, new long[] {60, 60});
+		Assert.assertEquals(1.0, statistics.getLastImbalance(QNetsimEngineRunnerStatistics.NODES), 1e-9);
+		Assert.assertEquals(0, statistics.getLastWaitNanos(QNetsimEngineRunnerStatistics.NODES));
+
+		Assert.assertEquals(160, statistics.getWallNanos(QNetsimEngineRunnerStatistics.NODES));
+		Assert.assertEquals(270, statistics.getBusyNanos(QNetsimEngineRunnerStatistics.NODES));
+		Assert.assertEquals(50, statistics.getWaitNanos(QNetsimEngineRunnerStatistics.NODES));
+		Assert.assertEquals(160.0 / 135.0, statistics.getImbalance(QNetsimEngineRunnerStatistics.NODES), 1e-9);
+
+		// the links are counted separately, an idle step counts as balanced
+		statistics.addPhase(QNetsimEngineRunnerStatistics.LINKS, 0, 10, new long[] {0, 0});
+		Assert.assertEquals(1.0, statistics.getImbalance(QNetsimEngineRunnerStatistics.LINKS), 1e-9);
+		Assert.assertEquals(20, statistics.getWaitNanos(QNetsimEngineRunnerStatistics.LINKS));
+	}
+
+	private static class DummyNode implements QNodeI {
+		@Override
+		public boolean doSimStep(double now) {
+			return false;
+		}
+
+		@Override
+		public void init() {
+		}
+
+		@Override
+		public Node getNode() {
+			return null;
+		}
+
+		@Override
+		public Map<String, Object> getCustomAttributes() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanImplTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.router.TripRouter;
+import org.matsim.core.utils.misc.OptionalTime;
+
+public class CompactPlanImplTest {
+
+	@Test
+	public void testSameOutputAsPlanImpl() {
+		Population standard = createPopulation(false);
+		Population compact = createPopulation(true);
+		Assert.assertTrue(compact.getPersons().values().iterator().next().getSelectedPlan() instanceof CompactPlanImpl);
+		Assert.assertArrayEquals(toBytes(standard), toBytes(compact));
+
+		for (Person person : compact.getPersons().values()) {
+			PopulationUtils.compactPlans(person);
+		}
+		Assert.assertArrayEquals(toBytes(standard), toBytes(compact));
+	}
+
+	@Test
+	public void testActivitiesAndLegsAreViews() {
+		PopulationFactory pf = createPopulation(true).getFactory();
+		Plan plan = pf.createPlan();
+		Activity home = pf.createActivityFromLinkId("home", Id.createLinkId(1));
+		home.setEndTime(7 * 3600);
+		plan.addActivity(home);
+		Leg leg = pf.createLeg(TransportMode.car);
+		plan.addLeg(leg);
+
+		// the activity was moved into the plan, but can still be used
+		Assert.assertSame(home, plan.getPlanElements().get(0));
+		Assert.assertSame(leg, plan.getPlanElements().get(1));
+		home.setEndTime(8 * 3600);
+		home.setCoord(new Coord(1, 2, 3));
+		home.getAttributes().putAttribute("a", "b");
+		leg.setRoute(pf.getRouteFactories().createRoute(NetworkRoute.class, Id.createLinkId(1), Id.createLinkId(2)));
+
+		Activity fetched = (Activity) plan.getPlanElements().get(0);
+		Assert.assertEquals(OptionalTime.defined(8 * 3600), fetched.getEndTime());
+		Assert.assertEquals(OptionalTime.undefined(), fetched.getStartTime());
+		Assert.assertEquals(new Coord(1, 2, 3), fetched.getCoord());
+		Assert.assertEquals(Id.createLinkId(1), fetched.getLinkId());
+		Assert.assertNull(fetched.getFacilityId());
+		Assert.assertEquals("b", fetched.getAttributes().getAttribute("a"));
+		Assert.assertEquals(Id.createLinkId(2), ((Leg) plan.getPlanElements().get(1)).getRoute().getEndLinkId());
+	}
+
+	@Test
+	public void testInsertTrip() {
+		PopulationFactory pf = createPopulation(true).getFactory();
+		Plan plan = pf.createPlan();
+		Activity home = pf.createActivityFromLinkId("home", Id.createLinkId(1));
+		plan.addActivity(home);
+		Leg oldLeg = pf.createLeg(TransportMode.car);
+		oldLeg.setTravelTime(600);
+		plan.addLeg(oldLeg);
+		Activity work = pf.createActivityFromLinkId("work", Id.createLinkId(2));
+		plan.addActivity(work);
+
+		// plan elements of other implementations are stored as they are until the plan is compacted
+		Leg walk = PopulationUtils.createLeg(TransportMode.walk);
+		Activity interaction = PopulationUtils.createActivityFromLinkId("car interaction", Id.createLinkId(3));
+		Leg car = PopulationUtils.createLeg(TransportMode.car);
+		List<PlanElement> oldTrip = TripRouter.insertTrip(plan, home, Arrays.asList(walk, interaction, car), work);
+
+		Assert.assertEquals(1, oldTrip.size());
+		Assert.assertSame(oldLeg, oldTrip.get(0));
+		// the removed leg keeps its values
+		Assert.assertEquals(OptionalTime.defined(600), oldLeg.getTravelTime());
+		Assert.assertEquals(Arrays.asList(home, walk, interaction, car, work), new ArrayList<>(plan.getPlanElements()));
+		Assert.assertEquals("work", work.getType());
+
+		((CompactPlanImpl) plan).compact();
+
+		Assert.assertEquals(5, plan.getPlanElements().size());
+		Activity fetchedInteraction = (Activity) plan.getPlanElements().get(2);
+		Assert.assertNotSame(interaction, fetchedInteraction);
+		Assert.assertEquals("car interaction", fetchedInteraction.getType());
+		Assert.assertEquals(Id.createLinkId(3), fetchedInteraction.getLinkId());
+		Assert.assertEquals(TransportMode.walk, ((Leg) plan.getPlanElements().get(1)).getMode());
+		try {
+			work.getType();
+			Assert.fail("views must not be used after the plan was compacted");
+		} catch (IllegalStateException expected) {
+		}
+
+		plan.getPlanElements().remove(1);
+		Assert.assertEquals("car interaction", ((Activity) plan.getPlanElements().get(1)).getType());
+		Assert.assertEquals(4, plan.getPlanElements().size());
+	}
+
+	@Test
+	public void testCopyOfSelectedPlanIsCompact() {
+		Population population = createPopulation(true);
+		Person person = population.getPersons().values().iterator().next();
+		Plan copy = person.createCopyOfSelectedPlanAndMakeSelected();
+		Assert.assertTrue(copy instanceof CompactPlanImpl);
+		Assert.assertSame(person, copy.getPerson());
+		Assert.assertEquals(person.getPlans().get(0).getPlanElements().size(), copy.getPlanElements().size());
+	}
+
+	private static byte[] toBytes(Population population) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PopulationWriter(population).writeV6(out);
+		return out.toByteArray();
+	}
+
+	private static Population createPopulation(boolean compact) {
+		Config config = ConfigUtils.createConfig();
+		config.plans().setCompactPlans(compact);
+		if (compact) {
+			config.plans().setNetworkRouteType(PlansConfigGroup.NetworkRouteType.CompactNetworkRoute);
+		}
+		Population population = PopulationUtils.createPopulation(config);
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < 50; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			for (int p = 0; p < 3; p++) {
+				Plan plan = pf.createPlan();
+				plan.setScore(p == 0 ? null : i * 0.5 + p);
+				person.addPlan(plan);
+				Activity home = pf.createActivityFromCoord("home", new Coord(i, 2 * i));
+				home.setLinkId(Id.createLinkId(i % 7));
+				home.setEndTime(6 * 3600 + i * 60);
+				plan.addActivity(home);
+				Leg leg = pf.createLeg(p == 1 ? TransportMode.walk : TransportMode.car);
+				leg.setDepartureTime(6 * 3600 + i * 60);
+				leg.getAttributes().putAttribute("routingMode", leg.getMode());
+				if (p != 1) {
+					NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, Id.createLinkId(i % 7), Id.createLinkId(i % 5));
+					List<Id<Link>> links = new ArrayList<>();
+					for (int l = 0; l < i % 9; l++) {
+						links.add(Id.createLinkId(100 + l));
+					}
+					route.setLinkIds(route.getStartLinkId(), links, route.getEndLinkId());
+					route.setTravelTime(300 + i);
+					route.setDistance(1000.0 * i);
+					leg.setRoute(route);
+				}
+				plan.addLeg(leg);
+				Activity work = pf.createActivityFromLinkId("work", Id.createLinkId(i % 5));
+				work.setMaximumDuration(8 * 3600);
+				work.getAttributes().putAttribute("index", p);
+				plan.addActivity(work);
+			}
+			population.addPerson(person);
+		}
+		return population;
+	}
+}
@@ -0,0 +1,215 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationReaderMatsimV6Test.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ParallelPopulationReaderMatsimV6Test {
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSamePopulationAsSequentialReader() {
+		String file = writeTestPopulation();
+
+		Scenario sequential = ScenarioUtils.createScenario(createConfig(1));
+		new PopulationReader(sequential).readFile(file);
+		Scenario parallel = ScenarioUtils.createScenario(createConfig(4));
+		new PopulationReader(parallel).readFile(file);
+
+		Assert.assertEquals(2000, parallel.getPopulation().getPersons().size());
+		Assert.assertEquals(new ArrayList<>(sequential.getPopulation().getPersons().keySet()),
+				new ArrayList<>(parallel.getPopulation().getPersons().keySet()));
+		Assert.assertEquals("the population attributes are read by the main thread",
+				"parallel", parallel.getPopulation().getAttributes().getAttribute("description"));
+		Assert.assertArrayEquals(toBytes(sequential.getPopulation()), toBytes(parallel.getPopulation()));
+	}
+
+	@Test
+	public void testStreaming() {
+		String file = writeTestPopulation();
+
+		Scenario sequential = ScenarioUtils.createScenario(createConfig(1));
+		new PopulationReader(sequential).readFile(file);
+
+		Scenario streamed = ScenarioUtils.createScenario(createConfig(4));
+		StreamingPopulationReader reader = new StreamingPopulationReader(streamed);
+		List<Id<Person>> personIds = new ArrayList<>();
+		List<Integer> planElementCounts = new ArrayList<>();
+		reader.addAlgorithm(person -> {
+			personIds.add(person.getId());
+			planElementCounts.add(person.getSelectedPlan().getPlanElements().size());
+		});
+		reader.readFile(file);
+
+		List<Integer> expectedCounts = new ArrayList<>();
+		for (Person person : sequential.getPopulation().getPersons().values()) {
+			expectedCounts.add(person.getSelectedPlan().getPlanElements().size());
+		}
+		Assert.assertEquals(new ArrayList<>(sequential.getPopulation().getPersons().keySet()), personIds);
+		Assert.assertEquals(expectedCounts, planElementCounts);
+	}
+
+	/**
+	 * The ids must get the same indices as with the sequential reader, as they define the iteration order of e.g. IdMaps.
+	 */
+	@Test
+	public void testSameIdIndicesAsSequentialReader() {
+		String file = writePopulationWithNewIds();
+
+		Id.resetCaches();
+		new PopulationReader(ScenarioUtils.createScenario(createConfig(1))).readFile(file);
+		List<List<String>> sequential = getIdsByIndex();
+
+		Id.resetCaches();
+		new PopulationReader(ScenarioUtils.createScenario(createConfig(4))).readFile(file);
+		List<List<String>> parallel = getIdsByIndex();
+
+		Assert.assertEquals(2000, sequential.get(0).size());
+		Assert.assertEquals(sequential, parallel);
+	}
+
+	private static List<List<String>> getIdsByIndex() {
+		List<List<String>> ids = new ArrayList<>();
+		for (Class<?> type : Arrays.asList(Person.class, Link.class, ActivityFacility.class, Vehicle.class)) {
+			List<String> idsOfType = new ArrayList<>();
+			for (int i = 0; i < Id.getNumberOfIds(type); i++) {
+				idsOfType.add(Id.get(i, type).toString());
+			}
+			ids.add(idsOfType);
+		}
+		return ids;
+	}
+
+	/**
+	 * Writes a population with ids which are not used anywhere else.
+	 */
+	private String writePopulationWithNewIds() {
+		Random random = new Random(2021);
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < 2000; i++) {
+			Person person = pf.createPerson(Id.createPersonId("person" + i));
+			Plan plan = pf.createPlan();
+			person.addPlan(plan);
+			Activity home = pf.createActivityFromLinkId("home", Id.createLinkId("link" + random.nextInt(100000)));
+			home.setFacilityId(Id.create("facility" + random.nextInt(100000), ActivityFacility.class));
+			home.setEndTime(6 * 3600);
+			plan.addActivity(home);
+			Leg car = pf.createLeg(TransportMode.car);
+			List<Id<Link>> links = new ArrayList<>();
+			for (int l = 0; l < 5; l++) {
+				links.add(Id.createLinkId("link" + random.nextInt(100000)));
+			}
+			NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(home.getLinkId(), links, Id.createLinkId("link" + random.nextInt(100000)));
+			route.setVehicleId(Id.createVehicleId("vehicle" + random.nextInt(100000)));
+			car.setRoute(route);
+			plan.addLeg(car);
+			plan.addActivity(pf.createActivityFromLinkId("work", route.getEndLinkId()));
+			population.addPerson(person);
+		}
+		String file = utils.getOutputDirectory() + "/population_newIds.xml.gz";
+		new PopulationWriter(population).writeV6(file);
+		return file;
+	}
+
+	private static Config createConfig(int numberOfThreads) {
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(numberOfThreads);
+		return config;
+	}
+
+	private static byte[] toBytes(Population population) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PopulationWriter(population).writeV6(out);
+		return out.toByteArray();
+	}
+
+	private String writeTestPopulation() {
+		Random random = new Random(2020);
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		population.getAttributes().putAttribute("description", "parallel");
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < 2000; i++) {
+			Person person = pf.createPerson(Id.createPersonId("p" + i));
+			person.getAttributes().putAttribute("age", random.nextInt(90));
+			for (int p = 0; p < 1 + random.nextInt(3); p++) {
+				Plan plan = pf.createPlan();
+				plan.setScore(random.nextDouble() * 100);
+				plan.getAttributes().putAttribute("index", p);
+				person.addPlan(plan);
+				Activity home = pf.createActivityFromLinkId("home", Id.createLinkId(random.nextInt(10)));
+				home.setCoord(new Coord(random.nextInt(10000), random.nextInt(10000)));
+				home.setEndTime(6 * 3600 + random.nextInt(7200));
+				home.getAttributes().putAttribute("first", true);
+				plan.addActivity(home);
+
+				Leg car = pf.createLeg(TransportMode.car);
+				car.setDepartureTime(home.getEndTime().seconds());
+				car.setTravelTime(random.nextInt(3600));
+				car.getAttributes().putAttribute("note", "leg of " + person.getId());
+				List<Id<Link>> links = Arrays.asList(Id.createLinkId(1), Id.createLinkId(2), Id.createLinkId(3));
+				car.setRoute(RouteUtils.createLinkNetworkRouteImpl(home.getLinkId(), links, Id.createLinkId(4)));
+				plan.addLeg(car);
+
+				Activity work = pf.createActivityFromCoord("work", new Coord(random.nextInt(10000), random.nextInt(10000)));
+				work.setMaximumDuration(8 * 3600);
+				plan.addActivity(work);
+
+				plan.addLeg(pf.createLeg(TransportMode.walk));
+				plan.addActivity(pf.createActivityFromLinkId("home", home.getLinkId()));
+			}
+			person.setSelectedPlan(person.getPlans().get(random.nextInt(person.getPlans().size())));
+			population.addPerson(person);
+		}
+		String file = utils.getOutputDirectory() + "/population.xml.gz";
+		new PopulationWriter(population).writeV6(file);
+		return file;
+	}
+}
@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelPopulationWriterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class ParallelPopulationWriterTest {
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameOutputAsPopulationWriter() {
+		Population population = createPopulation(3 * ParallelPopulationWriter.PERSONS_PER_BLOCK + 17);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new PopulationWriter(population).writeV6(expected);
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		new ParallelPopulationWriter(population, 3).write(actual);
+
+		Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+
+	@Test
+	public void testCompressedBlocks() throws IOException {
+		Population population = createPopulation(20 * ParallelPopulationWriter.PERSONS_PER_BLOCK);
+		String sequentialFile = utils.getOutputDirectory() + "sequential.xml.gz";
+		String parallelFile = utils.getOutputDirectory() + "parallel.xml.gz";
+		new PopulationWriter(population).writeV6(sequentialFile);
+		new ParallelPopulationWriter(population, 2).write(parallelFile);
+
+		// the file consists of several gzip members, which decompress to the same content
+		try (InputStream expected = new GZIPInputStream(new FileInputStream(sequentialFile));
+				InputStream actual = new GZIPInputStream(new FileInputStream(parallelFile))) {
+			Assert.assertTrue(IOUtils.isEqual(expected, actual));
+		}
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(scenario).readFile(parallelFile);
+		Assert.assertTrue(PopulationUtils.equalPopulation(population, scenario.getPopulation()));
+	}
+
+	@Test
+	public void testUncompressedFile() {
+		Population population = createPopulation(10);
+		String file = utils.getOutputDirectory() + "parallel.xml";
+		new ParallelPopulationWriter(population, 2).write(file);
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(scenario).readFile(file);
+		Assert.assertTrue(PopulationUtils.equalPopulation(population, scenario.getPopulation()));
+	}
+
+	private static Population createPopulation(int size) {
+		Random random = new Random(2020);
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		population.getAttributes().putAttribute("description", "parallel");
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < size; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			person.getAttributes().putAttribute("age", random.nextInt(90));
+			Plan plan = pf.createPlan();
+			plan.setScore(random.nextDouble());
+			person.addPlan(plan);
+			Activity home = pf.createActivityFromCoord("home", new Coord(random.nextInt(10000), random.nextInt(10000)));
+			home.setEndTime(6 * 3600 + random.nextInt(7200));
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.walk);
+			leg.getAttributes().putAttribute("über", "ünicode");
+			plan.addLeg(leg);
+			plan.addActivity(pf.createActivityFromCoord("work", new Coord(random.nextInt(10000), random.nextInt(10000))));
+			population.addPerson(person);
+		}
+		return population;
+	}
+}
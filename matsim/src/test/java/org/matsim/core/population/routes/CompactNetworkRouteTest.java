@@ -0,0 +1,74 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactNetworkRouteTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.routes;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.misc.OptionalTime;
+
+public class CompactNetworkRouteTest extends AbstractNetworkRouteTest {
+
+	@Override
+	public NetworkRoute getNetworkRouteInstance(final Id<Link> fromLinkId, final Id<Link> toLinkId, final Network network) {
+		return (NetworkRoute) new CompactNetworkRouteFactory().createRoute(fromLinkId, toLinkId);
+	}
+
+	@Test
+	public void testClone() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		ArrayList<Id<Link>> srcRoute = new ArrayList<>();
+		srcRoute.add(Id.create(3, Link.class));
+		srcRoute.add(Id.create(4, Link.class));
+		NetworkRoute route1 = getNetworkRouteInstance(id1, id2, null);
+		route1.setLinkIds(id1, srcRoute, id2);
+		route1.setTravelTime(120);
+
+		NetworkRoute route2 = route1.clone();
+
+		srcRoute.add(Id.create(5, Link.class));
+		route1.setLinkIds(id1, srcRoute, id2);
+		route1.setTravelTimeUndefined();
+
+		Assert.assertEquals(3, route1.getLinkIds().size());
+		Assert.assertEquals(2, route2.getLinkIds().size());
+		Assert.assertEquals(OptionalTime.undefined(), route1.getTravelTime());
+		Assert.assertEquals(OptionalTime.defined(120), route2.getTravelTime());
+	}
+
+	@Test
+	public void testRouteDescription() {
+		Id<Link> id1 = Id.create(1, Link.class);
+		Id<Link> id2 = Id.create(2, Link.class);
+		NetworkRoute route = getNetworkRouteInstance(id1, id2, null);
+		route.setRouteDescription("1 3 4 2");
+		Assert.assertEquals("1 3 4 2", route.getRouteDescription());
+		Assert.assertEquals(2, route.getLinkIds().size());
+		Assert.assertEquals(Id.create(3, Link.class), route.getLinkIds().get(0));
+		Assert.assertEquals("links", route.getRouteType());
+	}
+
+}
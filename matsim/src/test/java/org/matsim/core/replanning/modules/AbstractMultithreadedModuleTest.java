@@ -20,12 +20,24 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningPlanDistribution;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 
 /**
@@ -60,6 +72,166 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testRoundRobin_keepsAssignment() {
+		List<Plan> plans = createPlans(20);
+		RecordingModule testee = new RecordingModule(3, ReplanningPlanDistribution.roundRobin);
+		runModule(testee, plans);
+		assertAllPlansHandledOnce(testee, plans);
+		for (int i = 0; i < plans.size(); i++) {
+			Assert.assertEquals("plan " + i + " handled by wrong instance", i % 3, testee.handledBy.get(plans.get(i)).intValue());
+		}
+	}
+
+	@Test
+	public void testWorkStealing_otherInstancesTakeOverWhileOneIsBusy() {
+		// the first plan blocks its instance until more than half of the plans were handled. With round robin, the
+		// other instance would only get the other half of the plans; with work stealing, it takes over the remaining chunks.
+		List<Plan> plans = createPlans(40);
+		RecordingModule testee = new RecordingModule(2, ReplanningPlanDistribution.workStealing);
+		testee.blockUntilHandled(plans.get(0), plans.size() / 2 + 1);
+		runModule(testee, plans);
+
+		Assert.assertTrue("the blocked plan was not released by the other instance", testee.blockingPlanReleased);
+		assertAllPlansHandledOnce(testee, plans);
+		Assert.assertEquals("both instances should have handled plans", 2, new HashSet<>(testee.handledBy.values()).size());
+		for (long busyNanos : testee.getLastBusyNanos()) {
+			Assert.assertTrue(busyNanos > 0);
+		}
+	}
+
+	@Test
+	public void testWorkStealing_crashingThread() {
+		DummyCrashingModule testee = new DummyCrashingModule(2, ReplanningPlanDistribution.workStealing);
+		testee.prepareReplanning(null);
+		for (Plan plan : createPlans(50)) {
+			testee.handlePlan(plan);
+		}
+		try {
+			testee.finishReplanning();
+			Assert.fail("expected exception, got none.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	@Test
+	public void testPipelined_startsBeforeFinishAndKeepsAssignment() throws InterruptedException {
+		List<Plan> plans = createPlans(20);
+		RecordingModule testee = new RecordingModule(3, ReplanningPlanDistribution.pipelined);
+		testee.prepareReplanning(null);
+		for (Plan plan : plans) {
+			testee.handlePlan(plan);
+		}
+		Assert.assertTrue("plans should be handled without finishReplanning()", testee.allHandled.await(10, TimeUnit.SECONDS));
+		testee.finishReplanning();
+
+		assertAllPlansHandledOnce(testee, plans);
+		for (int i = 0; i < plans.size(); i++) {
+			Assert.assertEquals("plan " + i + " handled by wrong instance", i % 3, testee.handledBy.get(plans.get(i)).intValue());
+		}
+		for (int instance = 0; instance < 3; instance++) {
+			List<Plan> expected = new ArrayList<>();
+			for (int i = instance; i < plans.size(); i += 3) {
+				expected.add(plans.get(i));
+			}
+			Assert.assertEquals("plans must be handled in the order they were added", expected, testee.handledPlans.get(instance));
+		}
+	}
+
+	@Test
+	public void testPipelined_crashingThread() {
+		DummyCrashingModule testee = new DummyCrashingModule(2, ReplanningPlanDistribution.pipelined);
+		testee.prepareReplanning(null);
+		for (Plan plan : createPlans(10)) {
+			testee.handlePlan(plan);
+		}
+		try {
+			testee.finishReplanning();
+			Assert.fail("expected exception, got none.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	@Test
+	public void testThreadPoolIsShared() {
+		Assert.assertSame(ReplanningExecutor.getPool(2), ReplanningExecutor.getPool(2));
+		Assert.assertNotSame(ReplanningExecutor.getPool(2), ReplanningExecutor.getPool(3));
+		Assert.assertEquals(3, ReplanningExecutor.getPool(3).getParallelism());
+	}
+
+	private static List<Plan> createPlans(int count) {
+		List<Plan> plans = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Plan plan = PopulationUtils.createPlan();
+			plan.setScore((double) i);
+			plans.add(plan);
+		}
+		return plans;
+	}
+
+	private static void runModule(AbstractMultithreadedModule module, List<Plan> plans) {
+		module.prepareReplanning(null);
+		for (Plan plan : plans) {
+			module.handlePlan(plan);
+		}
+		module.finishReplanning();
+	}
+
+	private static void assertAllPlansHandledOnce(RecordingModule module, List<Plan> plans) {
+		Assert.assertEquals(plans.size(), module.handledBy.size());
+		Assert.assertEquals(plans.size(), module.handledCount);
+		for (Plan plan : plans) {
+			Assert.assertNotNull(module.handledBy.get(plan));
+		}
+	}
+
+	private static class RecordingModule extends AbstractMultithreadedModule {
+		private final Map<Plan, Integer> handledBy = Collections.synchronizedMap(new IdentityHashMap<>());
+		private final Map<Integer, List<Plan>> handledPlans = Collections.synchronizedMap(new HashMap<>());
+		private final CountDownLatch allHandled = new CountDownLatch(20);
+		private int handledCount = 0;
+		private int instances = 0;
+		private Plan blockingPlan = null;
+		private CountDownLatch otherPlansHandled = null;
+		private volatile boolean blockingPlanReleased = false;
+
+		public RecordingModule(int nOfThreads, ReplanningPlanDistribution planDistribution) {
+			super(nOfThreads, planDistribution);
+		}
+
+		/**
+		 * Lets the instance handling the given plan wait until the given number of other plans were handled.
+		 */
+		void blockUntilHandled(Plan plan, int otherPlans) {
+			this.blockingPlan = plan;
+			this.otherPlansHandled = new CountDownLatch(otherPlans);
+		}
+
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			final int instance = this.instances++;
+			return plan -> {
+				synchronized (this) {
+					this.handledCount++;
+				}
+				this.handledBy.put(plan, instance);
+				this.handledPlans.computeIfAbsent(instance, k -> Collections.synchronizedList(new ArrayList<>())).add(plan);
+				this.allHandled.countDown();
+				if (plan == this.blockingPlan) {
+					try {
+						this.blockingPlanReleased = this.otherPlansHandled.await(30, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				} else if (this.otherPlansHandled != null) {
+					this.otherPlansHandled.countDown();
+				}
+			};
+		}
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
@@ -74,6 +246,9 @@ public class AbstractMultithreadedModuleTest {
 		public DummyCrashingModule(final int nOfThreads) {
 			super(nOfThreads);
 		}
+		public DummyCrashingModule(final int nOfThreads, ReplanningPlanDistribution planDistribution) {
+			super(nOfThreads, planDistribution);
+		}
 		@Override
 		public PlanAlgorithm getPlanAlgoInstance() {
 			return new CrashingPlanAlgo();
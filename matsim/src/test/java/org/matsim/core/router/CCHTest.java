@@ -0,0 +1,239 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CCHTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.costcalculators.RandomizingTimeDistanceTravelDisutilityFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioByInstanceModule;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class CCHTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new CCHFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCalcLeastCostPath_SameCostAsDijkstra() {
+		Network network = createRandomGrid(8, 12345);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, travelTimeCostCalculator, travelTimeCostCalculator);
+		LeastCostPathCalculator cch = getLeastCostPathCalculator(network);
+
+		for (Node from : network.getNodes().values()) {
+			for (Node to : network.getNodes().values()) {
+				Path expected = dijkstra.calcLeastCostPath(from, to, 8.0 * 3600, null, null);
+				Path path = cch.calcLeastCostPath(from, to, 8.0 * 3600, null, null);
+				if (expected == null) {
+					assertNull(path);
+					continue;
+				}
+				assertEquals(expected.travelCost, path.travelCost, 1e-6);
+				assertEquals(path.links.size() + 1, path.nodes.size());
+				assertEquals(from, path.nodes.get(0));
+				assertEquals(to, path.nodes.get(path.nodes.size() - 1));
+				for (int i = 0; i < path.links.size(); i++) {
+					assertEquals(path.nodes.get(i), path.links.get(i).getFromNode());
+					assertEquals(path.nodes.get(i + 1), path.links.get(i).getToNode());
+				}
+			}
+		}
+	}
+
+	public void testCalcLeastCostPath_Unreachable() {
+		Network network = createRandomGrid(3, 42);
+		Node island = NetworkUtils.createAndAddNode(network, Id.create("island", Node.class), new Coord(-1000, -1000));
+		Node from = network.getNodes().get(Id.create("0_0", Node.class));
+
+		LeastCostPathCalculator cch = getLeastCostPathCalculator(network);
+		assertNull(cch.calcLeastCostPath(from, island, 8.0 * 3600, null, null));
+		assertNull(cch.calcLeastCostPath(island, from, 8.0 * 3600, null, null));
+	}
+
+	public void testCreatePathCalculator_defaultConfigDisutility() {
+		Network network = createRandomGrid(4, 7);
+		Config config = ConfigUtils.createConfig();
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		CCHFactory factory = new CCHFactory();
+
+		// the default routing randomness needs a person to compute the travel disutility
+		TravelDisutility randomizing = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, config).createTravelDisutility(travelTime);
+		try {
+			factory.createPathCalculator(network, randomizing, travelTime);
+			fail("expected exception, got none.");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("routingRandomness"));
+		}
+
+		config.plansCalcRoute().setRoutingRandomness(0.0);
+		TravelDisutility disutility = new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, config).createTravelDisutility(travelTime);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, disutility, travelTime);
+		LeastCostPathCalculator cch = factory.createPathCalculator(network, disutility, travelTime);
+		Node from = network.getNodes().get(Id.create("0_0", Node.class));
+		Node to = network.getNodes().get(Id.create("3_3", Node.class));
+		assertEquals(dijkstra.calcLeastCostPath(from, to, 8.0 * 3600, null, null).travelCost,
+				cch.calcLeastCostPath(from, to, 8.0 * 3600, null, null).travelCost, 1e-6);
+	}
+
+	public void testCreatePathCalculator_customizationPerDisutilityInstance() {
+		Network network = createRandomGrid(6, 99);
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		CCHFactory factory = new CCHFactory();
+		// two instances of the same class, each making other links expensive
+		for (int penalizedParity = 0; penalizedParity < 2; penalizedParity++) {
+			TravelDisutility disutility = new ParityPenaltyDisutility(penalizedParity);
+			LeastCostPathCalculator dijkstra = new Dijkstra(network, disutility, travelTime);
+			LeastCostPathCalculator cch = factory.createPathCalculator(network, disutility, travelTime);
+			for (Node from : network.getNodes().values()) {
+				for (Node to : network.getNodes().values()) {
+					Path expected = dijkstra.calcLeastCostPath(from, to, 8.0 * 3600, null, null);
+					Path path = cch.calcLeastCostPath(from, to, 8.0 * 3600, null, null);
+					assertEquals(expected.travelCost, path.travelCost, 1e-6);
+				}
+			}
+		}
+	}
+
+	public void testNetworkRoutingProvider_sharedCustomization() {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setRoutingAlgorithmType(ControlerConfigGroup.RoutingAlgorithmType.CCH);
+		config.plansCalcRoute().setRoutingRandomness(0.0);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = createRandomGrid(4, 3);
+		for (Node node : network.getNodes().values()) {
+			scenario.getNetwork().addNode(node);
+		}
+		for (Link link : network.getLinks().values()) {
+			scenario.getNetwork().addLink(link);
+		}
+
+		com.google.inject.Injector injector = Injector.createInjector(config, new AbstractModule() {
+			@Override
+			public void install() {
+				install(new ScenarioByInstanceModule(scenario));
+				install(AbstractModule.override(Arrays.asList(new TripRouterModule()), new AbstractModule() {
+					@Override
+					public void install() {
+						addTravelTimeBinding(TransportMode.car).toInstance(new FreeSpeedTravelTime());
+						addTravelDisutilityFactoryBinding(TransportMode.car).toInstance(new RandomizingTimeDistanceTravelDisutilityFactory(TransportMode.car, config));
+					}
+				}));
+			}
+		});
+
+		// every router gets its own travel disutility, as used by the controler for each replanning thread
+		NetworkRoutingProvider provider = new NetworkRoutingProvider(TransportMode.car);
+		injector.injectMembers(provider);
+		RoutingModule router1 = provider.get();
+		RoutingModule router2 = provider.get();
+		assertNotSame(router1, router2);
+
+		CCHFactory factory = (CCHFactory) injector.getInstance(LeastCostPathCalculatorFactory.class);
+		assertEquals(1, factory.getNumberOfCustomizations());
+	}
+
+	/**
+	 * Multiplies the length of every other link by 10.
+	 */
+	private static class ParityPenaltyDisutility implements TravelDisutility {
+		private final int penalizedParity;
+
+		ParityPenaltyDisutility(int penalizedParity) {
+			this.penalizedParity = penalizedParity;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return link.getId().index() % 2 == this.penalizedParity ? 10 * link.getLength() : link.getLength();
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength();
+		}
+	}
+
+	/**
+	 * Creates a grid with links in both directions, except for some one-way links, with random lengths.
+	 */
+	private static Network createRandomGrid(int size, long seed) {
+		Random random = new Random(seed);
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(x * 100, y * 100));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y], random);
+				}
+				if (y + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1], random);
+				}
+			}
+		}
+		return network;
+	}
+
+	private static void addLinks(Network network, Node node1, Node node2, Random random) {
+		boolean oneWay = random.nextDouble() < 0.2;
+		if (!oneWay || random.nextBoolean()) {
+			addLink(network, node1, node2, random);
+		}
+		if (!oneWay || !network.getLinks().containsKey(Id.create(node1.getId() + "-" + node2.getId(), Link.class))) {
+			addLink(network, node2, node1, random);
+		}
+	}
+
+	private static void addLink(Network network, Node from, Node to, Random random) {
+		double length = 100 + random.nextInt(400);
+		NetworkUtils.createAndAddLink(network, Id.create(from.getId() + "-" + to.getId(), Link.class), from, to, length, 10.0, 1000, 1);
+	}
+}
@@ -0,0 +1,172 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SpeedyALTTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router.speedy;
+
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.AbstractLeastCostPathCalculatorTest;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class SpeedyALTTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(final Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new SpeedyALTFactory(4, 2).createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCalcLeastCostPath_SameAsDijkstra() {
+		Network network = createRandomGrid(8, 4711);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		assertSameAsDijkstra(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCalcLeastCostPath_TimeDependent_SameAsDijkstra() {
+		Network network = createRandomGrid(8, 815);
+		HourlyTravelTime travelTime = new HourlyTravelTime();
+		assertSameAsDijkstra(network, travelTime, travelTime);
+	}
+
+	public void testCalcLeastCostPath_Unreachable() {
+		Network network = createRandomGrid(3, 42);
+		Node island = NetworkUtils.createAndAddNode(network, Id.create("island", Node.class), new Coord(-1000, -1000));
+		Node from = network.getNodes().get(Id.create("0_0", Node.class));
+
+		LeastCostPathCalculator router = getLeastCostPathCalculator(network);
+		assertNull(router.calcLeastCostPath(from, island, 8.0 * 3600, null, null));
+		assertNull(router.calcLeastCostPath(island, from, 8.0 * 3600, null, null));
+	}
+
+	public void testFactory_SharesGraph() {
+		Network network = createRandomGrid(3, 42);
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		SpeedyALTFactory factory = new SpeedyALTFactory(4, 1);
+		SpeedyALTData data = factory.getALTData(network, travelTimeCostCalculator);
+
+		assertSame(data, factory.getALTData(network, travelTimeCostCalculator));
+		assertSame(data, factory.getALTData(network, new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup())));
+		assertEquals(9, data.getGraph().getNodeCount());
+		assertEquals(network.getLinks().size(), data.getGraph().getLinkCount());
+		assertEquals(4, data.getLandmarkCount());
+	}
+
+	private static void assertSameAsDijkstra(Network network, TravelDisutility travelDisutility, TravelTime travelTime) {
+		LeastCostPathCalculator dijkstra = new DijkstraFactory().createPathCalculator(network, travelDisutility, travelTime);
+		LeastCostPathCalculator router = new SpeedyALTFactory(4, 1).createPathCalculator(network, travelDisutility, travelTime);
+
+		double departureTime = 7.5 * 3600;
+		for (Node from : network.getNodes().values()) {
+			for (Node to : network.getNodes().values()) {
+				departureTime += 97;
+				Path expected = dijkstra.calcLeastCostPath(from, to, departureTime, null, null);
+				Path path = router.calcLeastCostPath(from, to, departureTime, null, null);
+				if (expected == null) {
+					assertNull(path);
+					continue;
+				}
+				assertEquals(expected.travelCost, path.travelCost, 1e-6);
+				assertEquals(expected.travelTime, path.travelTime, 1e-6);
+				assertEquals(path.links.size() + 1, path.nodes.size());
+				assertEquals(from, path.nodes.get(0));
+				assertEquals(to, path.nodes.get(path.nodes.size() - 1));
+				for (int i = 0; i < path.links.size(); i++) {
+					assertEquals(path.nodes.get(i), path.links.get(i).getFromNode());
+					assertEquals(path.nodes.get(i + 1), path.links.get(i).getToNode());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a grid with links in both directions, except for some one-way links, with random lengths.
+	 */
+	private static Network createRandomGrid(int size, long seed) {
+		Random random = new Random(seed);
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), new Coord(x * 100, y * 100));
+			}
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y], random);
+				}
+				if (y + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1], random);
+				}
+			}
+		}
+		return network;
+	}
+
+	private static void addLinks(Network network, Node node1, Node node2, Random random) {
+		boolean oneWay = random.nextDouble() < 0.2;
+		boolean forward = !oneWay || random.nextBoolean();
+		if (forward) {
+			addLink(network, node1, node2, random);
+		}
+		if (!oneWay || !forward) {
+			addLink(network, node2, node1, random);
+		}
+	}
+
+	private static void addLink(Network network, Node from, Node to, Random random) {
+		double length = 100 + random.nextInt(400);
+		NetworkUtils.createAndAddLink(network, Id.create(from.getId() + "-" + to.getId(), Link.class), from, to, length, 10.0, 1000, 1);
+	}
+
+	/**
+	 * Free speed travel times, doubled or tripled in some hours.
+	 */
+	private static class HourlyTravelTime implements TravelTime, TravelDisutility {
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			return link.getLength() / link.getFreespeed() * (1 + ((int) (time / 3600) + link.getId().index()) % 3);
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			return getLinkTravelTime(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+}
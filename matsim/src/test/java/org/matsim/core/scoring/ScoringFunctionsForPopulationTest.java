@@ -21,6 +21,9 @@
 
  package org.matsim.core.scoring;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.Coord;
@@ -126,12 +129,93 @@ public class ScoringFunctionsForPopulationTest {
 		Assert.assertEquals(1.234+2.345, rsf.separateScoreSum, 1e-7);
 	}
 
+	@Test
+	public void testShardedScoring() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < 10; i++) {
+			population.addPerson(pf.createPerson(Id.create("sharded" + i, Person.class)));
+		}
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsToActivities eventsToActivities = new EventsToActivities();
+		EventsToLegs eventsToLegs = new EventsToLegs(scenario);
+		ScoringFunctionFactory scoringFunctionFactory = agentId -> new RecordingScoringFunction();
+
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, 3);
+		for (int iteration = 0; iteration < 2; iteration++) {
+			controlerListenerManager.fireControlerIterationStartsEvent(iteration, false);
+			eventsManager.initProcessing();
+			for (Person p : population.getPersons().values()) {
+				sf.handleActivity(new PersonExperiencedActivity(p.getId(), pf.createActivityFromCoord("home", new Coord(100, 100))));
+				sf.handleLeg(new PersonExperiencedLeg(p.getId(), pf.createLeg("walk")));
+				sf.handleActivity(new PersonExperiencedActivity(p.getId(), pf.createActivityFromCoord("work", new Coord(1000, 100))));
+			}
+			for (int time = 0; time < 100; time++) {
+				for (Person p : population.getPersons().values()) {
+					eventsManager.processEvent(new PersonScoreEvent(time, p.getId(), 1.0, "testing"));
+				}
+			}
+			eventsManager.finishProcessing();
+			sf.finishScoringFunctions();
+
+			for (Person p : population.getPersons().values()) {
+				RecordingScoringFunction rsf = (RecordingScoringFunction) sf.getScoringFunctionForAgent(p.getId());
+				Assert.assertEquals(1, rsf.tripCounter);
+				Assert.assertEquals(100, rsf.separateScoreCounter);
+				Assert.assertEquals(100.0, rsf.separateScoreSum, 1e-7);
+				Assert.assertEquals(100, rsf.eventTimes.size());
+				for (int i = 0; i < rsf.eventTimes.size(); i++) {
+					Assert.assertEquals("events of a person must be scored in order", i, rsf.eventTimes.get(i), 0.0);
+				}
+				Assert.assertEquals(1, rsf.finishCounter);
+				Assert.assertTrue("scoring functions are finished in the shards", rsf.finishThreadName.startsWith("ScoringShard-"));
+			}
+		}
+	}
+
+	@Test
+	public void testShardedScoring_exceptionPropagates() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		Id<Person> personId = Id.create(1, Person.class);
+		population.addPerson(population.getFactory().createPerson(personId));
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		ScoringFunctionFactory scoringFunctionFactory = agentId -> new RecordingScoringFunction() {
+			@Override
+			public void addScore(double amount) {
+				throw new IllegalStateException("test exception");
+			}
+		};
+
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, eventsManager, new EventsToActivities(),
+				new EventsToLegs(scenario), population, scoringFunctionFactory, 2);
+		controlerListenerManager.fireControlerIterationStartsEvent(0, false);
+		eventsManager.initProcessing();
+		eventsManager.processEvent(new PersonScoreEvent(7*3600, personId, 1.234, "testing"));
+		eventsManager.processEvent(new PersonScoreEvent(8*3600, personId, 1.234, "testing"));
+		eventsManager.finishProcessing();
+		try {
+			sf.finishScoringFunctions();
+			Assert.fail("expected the exception of the scoring function");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("test exception", e.getMessage());
+		}
+	}
+
 	private static class RecordingScoringFunction implements ScoringFunction {
 
 		int tripCounter = 0;
 		TripStructureUtils.Trip lastTrip = null;
 		int separateScoreCounter = 0;
 		double separateScoreSum = 0;
+		List<Double> eventTimes = new ArrayList<>();
+		int finishCounter = 0;
+		String finishThreadName = null;
 
 		@Override
 		public void handleActivity(Activity activity) {
@@ -163,6 +247,8 @@ public class ScoringFunctionsForPopulationTest {
 
 		@Override
 		public void finish() {
+			this.finishCounter++;
+			this.finishThreadName = Thread.currentThread().getName();
 		}
 
 		@Override
@@ -172,6 +258,7 @@ public class ScoringFunctionsForPopulationTest {
 
 		@Override
 		public void handleEvent(Event event) {
+			this.eventTimes.add(event.getTime());
 		}
 	}
 
@@ -22,6 +22,7 @@
  package org.matsim.core.trafficmonitoring;
 
 import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import org.junit.Rule;
 import org.junit.Test;
@@ -40,12 +41,14 @@ import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.Injector;
 import org.matsim.core.events.EventsManagerModule;
+import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.ScenarioByInstanceModule;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.testcases.MatsimTestUtils;
 
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -119,4 +122,35 @@ public class TravelTimeCalculatorModuleTest {
 		assertThat(bike.getLinkTravelTimes().getLinkTravelTime(link, 0.0, null, null ), is(8.0));
 	}
 
+	@Test
+	public void testSnapshotsPerMode() {
+		Config config = ConfigUtils.createConfig();
+		config.plansCalcRoute().setNetworkModes( new LinkedHashSet<>( Arrays.asList( TransportMode.car, TransportMode.bike ) ) );
+		config.travelTimeCalculator().setSeparateModes(true);
+		config.travelTimeCalculator().setUseSnapshots(true);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Node node0 = scenario.getNetwork().getFactory().createNode(Id.createNodeId(0), new Coord(0, 0));
+		Node node1 = scenario.getNetwork().getFactory().createNode(Id.createNodeId(1), new Coord(1, 0));
+		scenario.getNetwork().addNode(node0);
+		scenario.getNetwork().addNode(node1);
+		Id<Link> linkId = Id.createLinkId(0);
+		Link link = scenario.getNetwork().getFactory().createLink(linkId, node0, node1);
+		link.setLength(10.0);
+		link.setFreespeed(1.0);
+		scenario.getNetwork().addLink(link);
+		com.google.inject.Injector injector = Injector.createInjector(config, new TravelTimeCalculatorModule(), new EventsManagerModule(), new ScenarioByInstanceModule(scenario));
+		TravelTime carTravelTime = injector.getInstance(Key.get(new TypeLiteral<Map<String, TravelTime>>() {})).get(TransportMode.car);
+		TravelTimeSnapshotService carSnapshots = injector.getInstance(Key.get(TravelTimeSnapshotService.class, Names.named("car")));
+		EventsManager events = injector.getInstance(EventsManager.class);
+		events.processEvent(new VehicleEntersTrafficEvent(0.0, Id.createPersonId(0), linkId, Id.createVehicleId(0), "car", 0.0));
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), linkId));
+		events.processEvent(new LinkLeaveEvent(20.0, Id.createVehicleId(0), linkId));
+		events.processEvent(new VehicleLeavesTrafficEvent(20.0, Id.createPersonId(0), linkId, Id.createVehicleId(0), "car", 0.0));
+
+		// the router only sees the new travel times after the next snapshot
+		assertThat(carTravelTime.getLinkTravelTime(link, 0.0, null, null), is(10.0));
+		carSnapshots.takeSnapshot(0);
+		assertThat(carTravelTime.getLinkTravelTime(link, 0.0, null, null), is(20.0));
+	}
+
 }
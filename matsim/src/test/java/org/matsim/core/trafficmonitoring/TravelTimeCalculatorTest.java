@@ -576,4 +576,102 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		Assert.assertEquals("Filtering analyzed transport modes is enabled, but no modes set. Therefore, use default (=car)", 100.0, 
 				ttc.getLinkTravelTimes().getLinkTravelTime(link2, 200, null, null), 1e-8);
 	}
+
+	/**
+	 * Tests that the travel times stored in flat arrays are the same as the ones of the default data objects,
+	 * including the consolidation of empty time bins.
+	 */
+	public void testConcurrentArray_sameAsArray() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.create("ca1", Node.class), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.create("ca2", Node.class), new Coord(1000, 0));
+		Link link1 = NetworkUtils.createAndAddLink(network, Id.create("ca1", Link.class), n1, n2, 1000.0, 10.0, 3600.0, 1.0);
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.create("ca2", Link.class), n2, n1, 1000.0, 20.0, 3600.0, 1.0);
+
+		TravelTimeCalculator arrayCalc = createCalculator(network, TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorArray);
+		TravelTimeCalculator concurrentCalc = createCalculator(network, TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorConcurrentArray);
+
+		java.util.Random random = new java.util.Random(4711);
+		for (int iteration = 0; iteration < 2; iteration++) {
+			arrayCalc.reset(iteration);
+			concurrentCalc.reset(iteration);
+			for (int i = 0; i < 500; i++) {
+				Id<Vehicle> vehId = Id.create("ca" + (i % 20), Vehicle.class);
+				Id<Link> linkId = random.nextBoolean() ? link1.getId() : link2.getId();
+				double enter = 6 * 3600 + random.nextDouble() * 4 * 3600;
+				// some very long travel times, so the consolidation changes the following bins
+				double travelTime = 100 + (random.nextInt(50) == 0 ? 3600 : random.nextDouble() * 300);
+				for (TravelTimeCalculator calc : new TravelTimeCalculator[] { arrayCalc, concurrentCalc }) {
+					calc.handleEvent(new LinkEnterEvent(enter, vehId, linkId));
+					calc.handleEvent(new LinkLeaveEvent(enter + travelTime, vehId, linkId));
+				}
+			}
+			for (double time = 0; time < 12 * 3600; time += 300) {
+				for (Link link : new Link[] { link1, link2 }) {
+					assertEquals(arrayCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null),
+							concurrentCalc.getLinkTravelTimes().getLinkTravelTime(link, time, null, null), 1e-8);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that the travel times stored in flat arrays can be collected from several threads at the same time.
+	 */
+	public void testConcurrentArray_multipleThreads() throws InterruptedException {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.create("mt1", Node.class), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.create("mt2", Node.class), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.create("mt1", Link.class), n1, n2, 1000.0, 100.0, 3600.0, 1.0);
+		TravelTimeCalculator ttcalc = createCalculator(network, TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorConcurrentArray);
+
+		int numberOfThreads = 4;
+		int eventsPerThread = 20000;
+		Thread[] threads = new Thread[numberOfThreads];
+		for (int t = 0; t < numberOfThreads; t++) {
+			final int thread = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < eventsPerThread; i++) {
+					// every thread has its own vehicles, some of them with ids created while the others are running
+					Id<Vehicle> vehId = Id.create("mt" + thread + "_" + (i % 5000), Vehicle.class);
+					double enter = 8 * 3600 + (i % 900);
+					ttcalc.handleEvent(new LinkEnterEvent(enter, vehId, link.getId()));
+					ttcalc.handleEvent(new LinkLeaveEvent(enter + 10 * (thread + 1), vehId, link.getId()));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// all threads contribute the same number of travel times of 10, 20, 30 and 40 seconds
+		assertEquals(25.0, ttcalc.getLinkTravelTimes().getLinkTravelTime(link, 8 * 3600, null, null), 1e-8);
+	}
+
+	/**
+	 * Tests that too many link ids and time slots for one array are reported, and do not overflow to a negative array size.
+	 */
+	public void testConcurrentArray_tooLarge() {
+		Network network = NetworkUtils.createNetwork();
+		Id.create("tl1", Link.class);
+		Id.create("tl2", Link.class);
+		try {
+			new ConcurrentArrayDataContainerProvider(network, Integer.MAX_VALUE / 2 + 1);
+			fail("expected RuntimeException.");
+		} catch (RuntimeException e) {
+			log.info("Catched expected exception: " + e.getMessage());
+		}
+	}
+
+	private static TravelTimeCalculator createCalculator(Network network, TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType type) {
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTravelTimeCalculatorType(type.name());
+		config.setTraveltimeBinSize(900);
+		config.setMaxTime(30 * 3600);
+		TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(network);
+		builder.setTimeslice(900);
+		builder.setMaxTime(30 * 3600);
+		builder.configure(config);
+		return builder.build();
+	}
 }
@@ -0,0 +1,144 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeSnapshotTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2020 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.trafficmonitoring;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class TravelTimeSnapshotTest {
+
+	@Test
+	public void testSnapshotIsImmutable() {
+		Fixture f = new Fixture("linearinterpolation");
+		TravelTimeSnapshotService service = new TravelTimeSnapshotService(f.calculator, f.network, 1.0);
+		Assert.assertEquals(-1, service.getCurrentSnapshot().getIteration());
+		Assert.assertEquals(100.0, service.getTravelTime().getLinkTravelTime(f.link1, 8 * 3600, null, null), 1e-8);
+
+		f.addTravelTime(f.link1, 8 * 3600, 300);
+		TravelTimeSnapshot snapshot0 = service.takeSnapshot(0);
+		for (double time = 0; time < 24 * 3600; time += 450) {
+			for (Link link : new Link[] { f.link1, f.link2 }) {
+				Assert.assertEquals(f.calculator.getLinkTravelTimes().getLinkTravelTime(link, time, null, null),
+						snapshot0.getLinkTravelTime(link, time, null, null), 1e-8);
+			}
+		}
+
+		// the next iteration does not change the snapshot of the previous one
+		f.calculator.reset(1);
+		f.addTravelTime(f.link1, 8 * 3600, 500);
+		Assert.assertEquals(300.0, snapshot0.getLinkTravelTime(f.link1, 8 * 3600 + 450, null, null), 1e-8);
+		Assert.assertEquals(300.0, service.getTravelTime().getLinkTravelTime(f.link1, 8 * 3600 + 450, null, null), 1e-8);
+
+		TravelTimeSnapshot snapshot1 = service.takeSnapshot(1);
+		Assert.assertSame(snapshot1, service.getCurrentSnapshot());
+		Assert.assertEquals(1, snapshot1.getIteration());
+		Assert.assertEquals(500.0, service.getTravelTime().getLinkTravelTime(f.link1, 8 * 3600 + 450, null, null), 1e-8);
+		Assert.assertEquals(300.0, snapshot0.getLinkTravelTime(f.link1, 8 * 3600 + 450, null, null), 1e-8);
+	}
+
+	@Test
+	public void testSmoothing() {
+		Fixture f = new Fixture("average");
+		TravelTimeSnapshotService service = new TravelTimeSnapshotService(f.calculator, f.network, 0.25);
+
+		f.addTravelTime(f.link1, 8 * 3600, 500);
+		service.takeSnapshot(0);
+		// the previous travel time is the free speed travel time of 100s
+		Assert.assertEquals(0.25 * 500 + 0.75 * 100, service.getTravelTime().getLinkTravelTime(f.link1, 8 * 3600, null, null), 1e-8);
+		Assert.assertEquals(100.0, service.getTravelTime().getLinkTravelTime(f.link1, 10 * 3600, null, null), 1e-8);
+		Assert.assertEquals(50.0, service.getTravelTime().getLinkTravelTime(f.link2, 8 * 3600, null, null), 1e-8);
+
+		f.calculator.reset(1);
+		f.addTravelTime(f.link1, 8 * 3600, 300);
+		service.takeSnapshot(1);
+		Assert.assertEquals(0.25 * 300 + 0.75 * 200, service.getTravelTime().getLinkTravelTime(f.link1, 8 * 3600, null, null), 1e-8);
+
+		// without traffic, the travel times approach the free speed travel time again
+		f.calculator.reset(2);
+		service.takeSnapshot(2);
+		Assert.assertEquals(0.25 * 100 + 0.75 * 225, service.getTravelTime().getLinkTravelTime(f.link1, 8 * 3600, null, null), 1e-8);
+	}
+
+	@Test
+	public void testUnchangedLinksAreShared() {
+		Fixture f = new Fixture("average");
+		TravelTimeSnapshotService service = new TravelTimeSnapshotService(f.calculator, f.network, 1.0);
+
+		f.addTravelTime(f.link1, 8 * 3600, 300);
+		f.addTravelTime(f.link2, 8 * 3600, 200);
+		TravelTimeSnapshot snapshot0 = service.takeSnapshot(0);
+
+		f.calculator.reset(1);
+		f.addTravelTime(f.link1, 8 * 3600, 300);
+		f.addTravelTime(f.link2, 8 * 3600, 250);
+		TravelTimeSnapshot snapshot1 = service.takeSnapshot(1);
+
+		Assert.assertTrue(snapshot1.sharesTravelTimesWith(snapshot0, f.link1));
+		Assert.assertFalse(snapshot1.sharesTravelTimesWith(snapshot0, f.link2));
+		Assert.assertEquals(200.0, snapshot0.getLinkTravelTime(f.link2, 8 * 3600, null, null), 1e-8);
+		Assert.assertEquals(250.0, snapshot1.getLinkTravelTime(f.link2, 8 * 3600, null, null), 1e-8);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAlpha() {
+		Fixture f = new Fixture("average");
+		new TravelTimeSnapshotService(f.calculator, f.network, 0.0);
+	}
+
+	private static class Fixture {
+		final Network network = NetworkUtils.createNetwork();
+		final Link link1;
+		final Link link2;
+		final TravelTimeCalculator calculator;
+		private int vehicleCounter = 0;
+
+		Fixture(String travelTimeGetter) {
+			Node n1 = NetworkUtils.createAndAddNode(this.network, Id.create("s1", Node.class), new Coord(0, 0));
+			Node n2 = NetworkUtils.createAndAddNode(this.network, Id.create("s2", Node.class), new Coord(1000, 0));
+			this.link1 = NetworkUtils.createAndAddLink(this.network, Id.create("s1", Link.class), n1, n2, 1000.0, 10.0, 3600.0, 1.0);
+			this.link2 = NetworkUtils.createAndAddLink(this.network, Id.create("s2", Link.class), n2, n1, 1000.0, 20.0, 3600.0, 1.0);
+
+			TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+			config.setTraveltimeBinSize(900);
+			config.setTravelTimeGetterType(travelTimeGetter);
+			TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(this.network);
+			builder.setTimeslice(900);
+			builder.setMaxTime(24 * 3600);
+			builder.configure(config);
+			this.calculator = builder.build();
+		}
+
+		void addTravelTime(Link link, double enterTime, double travelTime) {
+			Id<Vehicle> vehicleId = Id.create("s" + this.vehicleCounter++, Vehicle.class);
+			this.calculator.handleEvent(new LinkEnterEvent(enterTime, vehicleId, link.getId()));
+			this.calculator.handleEvent(new LinkLeaveEvent(enterTime + travelTime, vehicleId, link.getId()));
+		}
+	}
+}